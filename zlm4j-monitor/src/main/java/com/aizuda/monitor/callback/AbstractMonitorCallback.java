@@ -10,7 +10,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * 抽象监控回调类
- * 提供了基本的回调实现
+ * 提供了基本的回调实现，捕获处理异常，子类按需覆盖 handle 方法
+ * 
+ * 导出器是可选的：设置后在回调线程中先导出再处理，适合需要单独导出目标的回调；
+ * 未设置时只做处理，指标导出由监控配置的导出器完成
  * 
  * @author Cursor
  * @since 1.0
@@ -18,9 +21,19 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractMonitorCallback implements MonitorCallback {
     private static final Logger log = LoggerFactory.getLogger(AbstractMonitorCallback.class);
     
-    /** 指标导出器 */
+    /** 指标导出器，可选 */
     protected MetricsExporter exporter;
     
+    protected AbstractMonitorCallback() {
+    }
+    
+    /**
+     * @param exporter 回调线程中使用的导出器，为null时不导出
+     */
+    protected AbstractMonitorCallback(MetricsExporter exporter) {
+        this.exporter = exporter;
+    }
+    
     @Override
     public void onSystemMetrics(SystemMetrics metrics) {
         try {
@@ -74,33 +87,37 @@ public abstract class AbstractMonitorCallback implements MonitorCallback {
      *
      * @param metrics 系统指标对象
      */
-    protected abstract void handleSystemMetrics(SystemMetrics metrics);
+    protected void handleSystemMetrics(SystemMetrics metrics) {
+    }
     
     /**
      * 处理流媒体指标
      *
      * @param metrics 流媒体指标对象
      */
-    protected abstract void handleStreamMetrics(StreamMetrics metrics);
+    protected void handleStreamMetrics(StreamMetrics metrics) {
+    }
     
     /**
      * 处理网络指标
      *
      * @param metrics 网络指标对象
      */
-    protected abstract void handleNetworkMetrics(NetworkMetrics metrics);
+    protected void handleNetworkMetrics(NetworkMetrics metrics) {
+    }
     
     /**
      * 处理性能指标
      *
      * @param metrics 性能指标对象
      */
-    protected abstract void handlePerformanceMetrics(PerformanceMetrics metrics);
+    protected void handlePerformanceMetrics(PerformanceMetrics metrics) {
+    }
     
     /**
      * 设置指标导出器
      *
-     * @param exporter 导出器实例
+     * @param exporter 导出器实例，为null时不导出
      */
     public void setExporter(MetricsExporter exporter) {
         this.exporter = exporter;
@@ -0,0 +1,202 @@
+package com.aizuda.monitor.callback;
+
+import com.aizuda.monitor.collector.MetricsSelector;
+import com.aizuda.monitor.metrics.Metrics;
+import com.aizuda.monitor.metrics.NetworkMetrics;
+import com.aizuda.monitor.metrics.PerformanceMetrics;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.SystemMetrics;
+import com.aizuda.monitor.util.RingBlockingQueue;
+import com.aizuda.monitor.util.WaitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 回调通道
+ * 每个回调拥有独立的有界队列和分发线程，工作线程只入队，慢回调不会阻塞导出和其他回调；
+ * 队列满时丢弃最旧的采集，保证回调处理的始终是较新的数据；
+ * 指定选择器时只分发选中的指标
+ */
+public class CallbackLane implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CallbackLane.class);
+
+    /** 关闭时等待队列中剩余采集分发完成的最长时间(毫秒) */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    private final String name;
+    private final MonitorCallback callback;
+    private final MetricsSelector selector;
+    private final RingBlockingQueue<Entry> queue;
+    private final Thread dispatcher;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    /** 最近一次分发的采集从入队到开始处理的延迟(毫秒) */
+    private volatile long lag;
+    private volatile boolean running = true;
+
+    /**
+     * @param name      通道名称，用于线程名和指标名
+     * @param callback  回调
+     * @param queueSize 队列容量(采集次数)
+     * @param daemon    分发线程是否为守护线程
+     */
+    public CallbackLane(String name, MonitorCallback callback, int queueSize, boolean daemon) {
+        this(name, callback, MetricsSelector.ALL, queueSize, daemon);
+    }
+
+    /**
+     * @param name      通道名称，用于线程名和指标名
+     * @param callback  回调
+     * @param selector  指标选择器
+     * @param queueSize 队列容量(采集次数)
+     * @param daemon    分发线程是否为守护线程
+     */
+    public CallbackLane(String name, MonitorCallback callback, MetricsSelector selector, int queueSize, boolean daemon) {
+        this.name = name;
+        this.callback = callback;
+        this.selector = selector == null ? MetricsSelector.ALL : selector;
+        this.queue = new RingBlockingQueue<>(queueSize, WaitStrategy.PARK);
+        this.dispatcher = new Thread(this::dispatchLoop, "ZLMMonitor-Callback-" + name);
+        this.dispatcher.setDaemon(daemon);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 通道名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 回调
+     */
+    public MonitorCallback getCallback() {
+        return callback;
+    }
+
+    /**
+     * 指标选择器
+     */
+    public MetricsSelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * 入队一次采集，队列满时丢弃最旧的采集
+     */
+    public void offer(Object metrics) {
+        if (!running || metrics == null) {
+            return;
+        }
+        Entry entry = new Entry(metrics);
+        while (!queue.offer(entry)) {
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+        }
+    }
+
+    /**
+     * 队列中等待分发的采集次数
+     */
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * 已分发的采集次数
+     */
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    /**
+     * 因队列满丢弃的采集次数
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 最近一次分发的排队延迟(毫秒)
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * 停止接收新采集，分发完队列中剩余的采集后退出
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            dispatcher.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dispatcher.isAlive()) {
+            dispatcher.interrupt();
+            log.warn("回调通道关闭超时，丢弃剩余采集: {}, pending={}", name, queue.size());
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running || !queue.isEmpty()) {
+            Entry entry;
+            try {
+                entry = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry == null) {
+                continue;
+            }
+            lag = System.currentTimeMillis() - entry.enqueuedAt;
+            try {
+                Object metrics = entry.metrics instanceof Metrics
+                    ? selector.select((Metrics) entry.metrics) : entry.metrics;
+                dispatch(callback, metrics);
+            } catch (Exception e) {
+                log.error("回调处理失败: {}", name, e);
+            }
+            delivered.increment();
+        }
+    }
+
+    /**
+     * 按指标类型调用回调，再逐个分发其中的流事件
+     */
+    public static void dispatch(MonitorCallback callback, Object metrics) {
+        if (metrics instanceof SystemMetrics) {
+            callback.onSystemMetrics((SystemMetrics) metrics);
+        } else if (metrics instanceof StreamMetrics) {
+            callback.onStreamMetrics((StreamMetrics) metrics);
+        } else if (metrics instanceof NetworkMetrics) {
+            callback.onNetworkMetrics((NetworkMetrics) metrics);
+        } else if (metrics instanceof PerformanceMetrics) {
+            callback.onPerformanceMetrics((PerformanceMetrics) metrics);
+        }
+        if (metrics instanceof Metrics) {
+            for (StreamEvent event : ((Metrics) metrics).getEvents()) {
+                callback.onStreamEvent(event);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Object metrics;
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        Entry(Object metrics) {
+            this.metrics = metrics;
+        }
+    }
+}
@@ -4,10 +4,14 @@ import com.aizuda.monitor.metrics.SystemMetrics;
 import com.aizuda.monitor.metrics.StreamMetrics;
 import com.aizuda.monitor.metrics.NetworkMetrics;
 import com.aizuda.monitor.metrics.PerformanceMetrics;
+import com.aizuda.monitor.metrics.StreamEvent;
 
 /**
  * 监控回调接口
- * 用于接收监控指标数据
+ * 用于接收监控指标数据，各方法默认不处理，按需覆盖
+ * 
+ * 通过 ZLMMonitor.addCallback 注册的每个回调在独立的分发线程中串行调用，
+ * 处理较慢时只会积压和丢弃自己的数据，不影响导出和其他回调
  * 
  * @author Cursor
  * @since 1.0
@@ -19,26 +23,39 @@ public interface MonitorCallback {
      *
      * @param metrics 系统指标对象
      */
-    void onSystemMetrics(SystemMetrics metrics);
+    default void onSystemMetrics(SystemMetrics metrics) {
+    }
     
     /**
      * 流媒体指标回调
      *
      * @param metrics 流媒体指标对象
      */
-    void onStreamMetrics(StreamMetrics metrics);
+    default void onStreamMetrics(StreamMetrics metrics) {
+    }
     
     /**
      * 网络指标回调
      *
      * @param metrics 网络指标对象
      */
-    void onNetworkMetrics(NetworkMetrics metrics);
+    default void onNetworkMetrics(NetworkMetrics metrics) {
+    }
 
     /**
      * 性能指标回调
      *
      * @param metrics 性能指标对象
      */
-    void onPerformanceMetrics(PerformanceMetrics metrics);
-} 
\ No newline at end of file
+    default void onPerformanceMetrics(PerformanceMetrics metrics) {
+    }
+
+    /**
+     * 流事件回调
+     * 在所属指标的回调之后逐个调用
+     *
+     * @param event 流事件
+     */
+    default void onStreamEvent(StreamEvent event) {
+    }
+}
@@ -4,9 +4,15 @@ import com.aizuda.monitor.config.ConfigManager;
 import com.aizuda.monitor.config.MonitorConfig;
 import com.aizuda.monitor.metrics.Metrics;
 import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.zlm4j.callback.IMKSourceFindCallBack;
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
+import com.sun.jna.Pointer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.Consumer;
+
 /**
  * 抽象指标收集器基类
  * 实现了 MetricsCollector 接口的通用功能
@@ -31,6 +37,9 @@ public abstract class AbstractMetricsCollector<T extends Metrics> implements Met
     private volatile boolean initialized = false;
     private volatile boolean running = false;
     
+    /** 所有订阅合并后的媒体源匹配器 */
+    private volatile SourceMatcher sourceMatcher = SourceMatcher.ALL;
+    
     protected AbstractMetricsCollector(MonitorConfig config) {
         this.config = config;
         this.configManager = ConfigManager.getInstance();
@@ -71,6 +80,46 @@ public abstract class AbstractMetricsCollector<T extends Metrics> implements Met
         // 子类可以重写此方法处理配置变更
     }
     
+    /**
+     * 设置媒体源匹配器，下一次采集生效
+     */
+    public void setSourceMatcher(SourceMatcher sourceMatcher) {
+        this.sourceMatcher = sourceMatcher == null ? SourceMatcher.ALL : sourceMatcher;
+    }
+    
+    /**
+     * 获取媒体源匹配器
+     */
+    public SourceMatcher getSourceMatcher() {
+        return sourceMatcher;
+    }
+    
+    /**
+     * 遍历被订阅选中的媒体源
+     * 匹配器的字面量条件交给ZLM过滤，其余条件在读取流属性之前判断，未选中的流不会交给 visitor
+     */
+    protected void forEachSource(ZLMApi zlmApi, Consumer<MK_MEDIA_SOURCE> visitor) {
+        SourceMatcher matcher = sourceMatcher;
+        if (matcher.isEmpty()) {
+            return;
+        }
+        zlmApi.mk_media_source_for_each(Pointer.NULL, new IMKSourceFindCallBack() {
+            @Override
+            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
+                if (mediaSource == null) {
+                    return;
+                }
+                if (!matcher.isAllSources() && !matcher.acceptsSource(
+                        zlmApi.mk_media_source_get_vhost(mediaSource),
+                        zlmApi.mk_media_source_get_app(mediaSource),
+                        zlmApi.mk_media_source_get_stream(mediaSource))) {
+                    return;
+                }
+                visitor.accept(mediaSource);
+            }
+        }, "", matcher.nativeVhost(), matcher.nativeApp(), matcher.nativeStream());
+    }
+    
     /**
      * 获取当前生效的配置
      */
@@ -86,7 +135,19 @@ public abstract class AbstractMetricsCollector<T extends Metrics> implements Met
     /**
      * 启动收集器
      */
-    public abstract void start() throws Exception;
+    @Override
+    public void start() throws Exception {
+        if (running) {
+            return;
+        }
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+            doStart();
+            running = true;
+        }
+    }
     
     /**
      * 初始化收集器
@@ -140,6 +201,7 @@ public abstract class AbstractMetricsCollector<T extends Metrics> implements Met
     public T collect() throws Exception {
         checkState();
         T metrics = createMetrics();
+        metrics.setTimestamp(System.currentTimeMillis());
         try {
             doCollect(metrics);
             lastMetrics = metrics;
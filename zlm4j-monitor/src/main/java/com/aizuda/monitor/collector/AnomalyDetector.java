@@ -0,0 +1,214 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+
+import java.util.Arrays;
+
+/**
+ * 按流检测数据速率和观看人数的异常
+ * 按 vhost/app/stream 检测，同一个流的各协议媒体源只检测一次，观看人数取全部协议的总数，事件不带schema；
+ * 每个流的每个序列维护一个水平值、seasonBuckets 个季节偏移和残差的方差，均为指数平滑(加法 Holt-Winters，不含趋势)：
+ * 预期值 = 水平值 + 当前时段的季节偏移，z分数 = (观测值 - 预期值) / 残差标准差；
+ * 时段按墙钟时间把 seasonPeriod 等分，同一时段在每个周期复用同一个偏移，因此只占用固定内存
+ *
+ * 更新时残差截断到 ±threshold 个标准差，单次尖峰不会拉偏基线，持续的水平变化在若干周期内被吸收；
+ * 标准差不低于 {@link #MIN_DEVIATION} 和预期值的 {@link #MIN_RELATIVE_DEVIATION}，避免长期平稳的序列因一次小波动被判为异常。
+ * 每个流每个周期的代价为常数，状态按 id*{@link #SERIES}+序列 保存在原始类型数组中，只由采集线程访问
+ */
+final class AnomalyDetector {
+    /** 序列: 数据速率(字节/秒)、观看人数 */
+    static final int BITRATE = 0;
+    static final int READERS = 1;
+    static final int SERIES = 2;
+    /** 各序列标准差的下限 */
+    static final double[] MIN_DEVIATION = {1024, 1};
+    /** 标准差不低于预期值的该比例 */
+    static final double MIN_RELATIVE_DEVIATION = 0.05;
+    /** |z| 低于 threshold 的该比例时异常结束 */
+    static final double HYSTERESIS = 0.75;
+
+    private static final String[] METRICS = {
+        StreamMetrics.MetricNames.STREAM_BYTES_SPEED, StreamMetrics.MetricNames.STREAM_TOTAL_READER_COUNT};
+
+    private volatile MonitorConfig.AnomalyConfig config;
+
+    /** 季节时段数，变化时丢弃全部季节偏移 */
+    private int buckets;
+    /** 按 id*SERIES+序列 索引: 水平值、残差方差、已观测次数、是否异常中 */
+    private double[] level = new double[0];
+    private double[] variance = new double[0];
+    private int[] samples = new int[0];
+    private boolean[] anomalous = new boolean[0];
+    /** 按 (id*SERIES+序列)*buckets+时段 索引的季节偏移 */
+    private float[] season = new float[0];
+    private boolean dirty;
+
+    /** 以下为本周期的状态 */
+    private int bucket;
+    private double alpha;
+    private double gamma;
+    private double threshold;
+    private int warmup;
+    private int anomalousStreams;
+    private final int[] anomalousSeries = new int[SERIES];
+
+    AnomalyDetector(MonitorConfig.AnomalyConfig config) {
+        configure(config);
+    }
+
+    /**
+     * 应用配置，下一个采集周期生效
+     */
+    void configure(MonitorConfig.AnomalyConfig config) {
+        this.config = config;
+    }
+
+    boolean isEnabled() {
+        MonitorConfig.AnomalyConfig current = config;
+        return current != null && current.isEnabled();
+    }
+
+    /**
+     * 开始一个采集周期
+     */
+    void begin() {
+        MonitorConfig.AnomalyConfig current = config;
+        if (current.getSeasonBuckets() != buckets) {
+            buckets = current.getSeasonBuckets();
+            season = new float[samples.length * buckets];
+        }
+        long period = current.getSeasonPeriod();
+        bucket = (int) (System.currentTimeMillis() % period * buckets / period);
+        alpha = current.getAlpha();
+        gamma = current.getSeasonAlpha();
+        threshold = current.getThreshold();
+        warmup = current.getWarmup();
+        anomalousStreams = 0;
+        Arrays.fill(anomalousSeries, 0);
+    }
+
+    /**
+     * 更新一个流的序列并检测异常
+     *
+     * @param id          {@link StreamTable#visit} 分配的流id
+     * @param streamId    流标识
+     * @param bytesSpeed  数据速率(字节/秒)
+     * @param readerCount 全部协议的观看人数
+     * @param metrics     本周期的指标，异常开始或结束时加入事件
+     */
+    void stream(int id, StreamId streamId, long bytesSpeed, int readerCount, StreamMetrics metrics) {
+        ensureCapacity(id + 1);
+        dirty = true;
+        boolean bitrate = update(id * SERIES + BITRATE, BITRATE, bytesSpeed, streamId, metrics);
+        boolean readers = update(id * SERIES + READERS, READERS, readerCount, streamId, metrics);
+        if (bitrate || readers) {
+            anomalousStreams++;
+        }
+    }
+
+    /**
+     * @return 序列是否处于异常中
+     */
+    private boolean update(int slot, int series, double value, StreamId streamId, StreamMetrics metrics) {
+        int seasonSlot = slot * buckets + bucket;
+        int n = samples[slot];
+        if (n == 0) {
+            level[slot] = value - season[seasonSlot];
+            variance[slot] = 0;
+            samples[slot] = 1;
+            return false;
+        }
+        double expected = level[slot] + season[seasonSlot];
+        double residual = value - expected;
+        double deviation = Math.max(Math.sqrt(variance[slot]),
+            Math.max(MIN_DEVIATION[series], MIN_RELATIVE_DEVIATION * Math.abs(expected)));
+        double z = residual / deviation;
+
+        // 截断后的残差更新水平值、季节偏移和方差
+        double bound = threshold * deviation;
+        double clipped = Math.max(-bound, Math.min(bound, residual));
+        level[slot] += alpha * clipped;
+        season[seasonSlot] += (float) (gamma * (1 - alpha) * clipped);
+        variance[slot] += alpha * (clipped * clipped - variance[slot]);
+        if (n < warmup) {
+            samples[slot] = n + 1;
+            return false;
+        }
+        metrics.recordAnomalyScore(Math.abs(z));
+
+        if (!anomalous[slot] && Math.abs(z) >= threshold) {
+            anomalous[slot] = true;
+            metrics.addEvent(event(StreamEventType.ANOMALY_START, streamId, series, value, expected, z));
+        } else if (anomalous[slot] && Math.abs(z) < threshold * HYSTERESIS) {
+            anomalous[slot] = false;
+            metrics.addEvent(event(StreamEventType.ANOMALY_END, streamId, series, value, expected, z));
+        }
+        if (anomalous[slot]) {
+            anomalousSeries[series]++;
+        }
+        return anomalous[slot];
+    }
+
+    /**
+     * 流被淘汰，结束其异常并清理状态
+     */
+    void remove(int id, StreamId streamId, StreamMetrics metrics) {
+        if (id >= samples.length / SERIES) {
+            return;
+        }
+        for (int series = 0; series < SERIES; series++) {
+            int slot = id * SERIES + series;
+            if (anomalous[slot] && streamId != null) {
+                metrics.addEvent(event(StreamEventType.ANOMALY_END, streamId, series, -1, 0, 0));
+            }
+            reset(slot);
+        }
+    }
+
+    /**
+     * 丢弃全部状态，不发出事件，用于停用检测时
+     */
+    void clear() {
+        if (!dirty) {
+            return;
+        }
+        Arrays.fill(samples, 0);
+        Arrays.fill(anomalous, false);
+        Arrays.fill(season, 0f);
+        dirty = false;
+    }
+
+    /**
+     * 输出本周期异常中的流数和各序列的异常流数
+     */
+    void publish(StreamMetrics metrics) {
+        metrics.setAnomalyCounts(anomalousStreams, anomalousSeries[BITRATE], anomalousSeries[READERS]);
+    }
+
+    private void reset(int slot) {
+        samples[slot] = 0;
+        anomalous[slot] = false;
+        Arrays.fill(season, slot * buckets, (slot + 1) * buckets, 0f);
+    }
+
+    private static StreamEvent event(StreamEventType type, StreamId streamId, int series, double value,
+                                     double expected, double z) {
+        return new StreamEvent(type, null, streamId.getVhost(), streamId.getApp(),
+            streamId.getStream(), -1, METRICS[series], value, expected, z);
+    }
+
+    private void ensureCapacity(int streams) {
+        if (streams * SERIES <= samples.length) {
+            return;
+        }
+        int capacity = Math.max(streams, Math.max(samples.length / SERIES * 2, 64)) * SERIES;
+        level = Arrays.copyOf(level, capacity);
+        variance = Arrays.copyOf(variance, capacity);
+        samples = Arrays.copyOf(samples, capacity);
+        anomalous = Arrays.copyOf(anomalous, capacity);
+        season = Arrays.copyOf(season, capacity * buckets);
+    }
+}
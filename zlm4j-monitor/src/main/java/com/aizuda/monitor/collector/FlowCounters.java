@@ -0,0 +1,124 @@
+package com.aizuda.monitor.collector;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按流id分条带的原始类型计数器
+ * 每个线程按线程id落到一个条带，不同ZLM网络线程更新同一个流时写不同的缓存行；
+ * 计数单元按每段1024个流分段懒创建，段创建后不再移动，扩容不会丢失并发的累加
+ *
+ * 布局为 [条带][段内id][字段]，读取时按条带求和；id复用前清零，末尾不再使用的段可以释放
+ */
+public final class FlowCounters {
+    /** 推流会话字节数 */
+    public static final int PUBLISH_BYTES = 0;
+    /** 播放会话字节数 */
+    public static final int PLAY_BYTES = 1;
+    /** 推流会话数 */
+    public static final int PUBLISH_SESSIONS = 2;
+    /** 播放会话数 */
+    public static final int PLAY_SESSIONS = 3;
+    /** 推流会话时长(秒) */
+    public static final int PUBLISH_SECONDS = 4;
+    /** 播放会话时长(秒) */
+    public static final int PLAY_SECONDS = 5;
+    /** 字段数 */
+    public static final int FIELDS = 6;
+
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int MAX_STRIPES = 16;
+
+    private final int stripeMask;
+    private final AtomicReferenceArray<AtomicLongArray> segments;
+
+    /**
+     * @param maxStreams 最多计数的流数量
+     */
+    public FlowCounters(int maxStreams) {
+        int stripes = 1;
+        int cpus = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+        while (stripes < cpus) {
+            stripes <<= 1;
+        }
+        this.stripeMask = stripes - 1;
+        this.segments = new AtomicReferenceArray<>((maxStreams + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+    }
+
+    /**
+     * 累加计数，id超出范围时忽略
+     */
+    public void add(int id, int field, long delta) {
+        int index = id >>> SEGMENT_BITS;
+        if (id < 0 || index >= segments.length()) {
+            return;
+        }
+        AtomicLongArray segment = segments.get(index);
+        if (segment == null) {
+            segment = createSegment(index);
+        }
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        segment.getAndAdd(((stripe << SEGMENT_BITS) + (id & (SEGMENT_SIZE - 1))) * FIELDS + field, delta);
+    }
+
+    /**
+     * 读取单个流的计数
+     */
+    public long get(int id, int field) {
+        int index = id >>> SEGMENT_BITS;
+        if (id < 0 || index >= segments.length()) {
+            return 0;
+        }
+        AtomicLongArray segment = segments.get(index);
+        if (segment == null) {
+            return 0;
+        }
+        int offset = (id & (SEGMENT_SIZE - 1)) * FIELDS + field;
+        long sum = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            sum += segment.get((stripe << SEGMENT_BITS) * FIELDS + offset);
+        }
+        return sum;
+    }
+
+    /**
+     * 清零单个流的计数，用于id复用前
+     */
+    public void clear(int id) {
+        int index = id >>> SEGMENT_BITS;
+        if (id < 0 || index >= segments.length()) {
+            return;
+        }
+        AtomicLongArray segment = segments.get(index);
+        if (segment == null) {
+            return;
+        }
+        int offset = (id & (SEGMENT_SIZE - 1)) * FIELDS;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int base = (stripe << SEGMENT_BITS) * FIELDS + offset;
+            for (int field = 0; field < FIELDS; field++) {
+                segment.set(base + field, 0);
+            }
+        }
+    }
+
+    /**
+     * 释放全部id都不小于 limit 的段
+     */
+    public void trim(int limit) {
+        for (int index = (limit + SEGMENT_SIZE - 1) >>> SEGMENT_BITS; index < segments.length(); index++) {
+            if (segments.get(index) != null) {
+                segments.set(index, null);
+            }
+        }
+    }
+
+    private AtomicLongArray createSegment(int index) {
+        AtomicLongArray created = new AtomicLongArray((stripeMask + 1) * SEGMENT_SIZE * FIELDS);
+        if (segments.compareAndSet(index, null, created)) {
+            return created;
+        }
+        return segments.get(index);
+    }
+}
@@ -0,0 +1,81 @@
+package com.aizuda.monitor.collector;
+
+import java.util.Map;
+
+/**
+ * 一个采样周期内的会话流量
+ * 由 {@link StreamFlowAggregator#roll()} 在每次采集时生成，计数为本周期内结束的会话之和
+ */
+public final class FlowWindow {
+    private final double seconds;
+    private final long[] counts;
+    private final long[] totals;
+    private final Map<String, Integer> registeredStreams;
+    private final int trackedStreams;
+    private final int evictedStreams;
+
+    FlowWindow(double seconds, long[] counts, long[] totals, Map<String, Integer> registeredStreams,
+               int trackedStreams, int evictedStreams) {
+        this.seconds = seconds;
+        this.counts = counts;
+        this.totals = totals;
+        this.registeredStreams = registeredStreams;
+        this.trackedStreams = trackedStreams;
+        this.evictedStreams = evictedStreams;
+    }
+
+    /**
+     * 周期长度(秒)
+     */
+    public double getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * 本周期的计数
+     *
+     * @param field {@link FlowCounters} 中的字段
+     */
+    public long getCount(int field) {
+        return counts[field];
+    }
+
+    /**
+     * 本周期的每秒速率
+     *
+     * @param field {@link FlowCounters} 中的字段
+     */
+    public double getRate(int field) {
+        return counts[field] / seconds;
+    }
+
+    /**
+     * 启动以来的累计值，已淘汰的流仍计入
+     *
+     * @param field {@link FlowCounters} 中的字段
+     */
+    public long getTotal(int field) {
+        return totals[field];
+    }
+
+    /**
+     * 按协议统计的在线流数量
+     */
+    public Map<String, Integer> getRegisteredStreams() {
+        return registeredStreams;
+    }
+
+    /**
+     * 当前跟踪的流数量(在线或最近有会话)
+     */
+    public int getTrackedStreams() {
+        return trackedStreams;
+    }
+
+    /**
+     * 本周期淘汰的流数量
+     */
+    public int getEvictedStreams() {
+        return evictedStreams;
+    }
+}
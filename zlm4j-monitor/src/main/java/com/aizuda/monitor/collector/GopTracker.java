@@ -0,0 +1,242 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+
+import java.util.Arrays;
+
+/**
+ * GOP间隔跟踪
+ * 视频轨道的累计关键帧数增加时视为完成了新的GOP，记录一次GOP间隔观测值
+ * (ZLM统计的 mk_track_video_gop_interval_ms，未知时按两次变化之间的时间除以新增关键帧数估算)；
+ * 每个轨道保留最近 window 个观测值的环形窗口，按流输出窗口内的方差和最大值，全部观测值计入全局分布
+ *
+ * 窗口最大值或当前GOP已持续的时间超过切片时长时流被标记为GOP过长，标记和解除时各发出一个流事件；
+ * 按流跟踪，同一个流的各协议媒体源共享轨道，只计一次，事件不带schema；
+ * 窗口按 (id*{@link StreamTable#MAX_TRACKS}+轨道序号)*window 保存在原始类型数组中，只由采集线程访问
+ */
+final class GopTracker {
+    /** 未配置切片时长且无法读取ZLM的 hls.segDur 时使用的切片时长(毫秒) */
+    static final int DEFAULT_SEGMENT_DURATION = 2000;
+
+    private static final int TRACKS = StreamTable.MAX_TRACKS;
+
+    private volatile MonitorConfig.GopConfig config;
+    /** ZLM配置的HLS切片时长(毫秒)，未读取时为0 */
+    private volatile int zlmSegmentDuration;
+
+    /** 窗口长度，变化时丢弃全部观测值 */
+    private int window;
+    /** 按 (id*TRACKS+轨道序号)*window 索引的观测值(毫秒) */
+    private int[] samples = new int[0];
+    /** 按 id*TRACKS+轨道序号 索引: 窗口中的观测数、下一个写入位置、上次的关键帧数、关键帧数上次变化的时间 */
+    private int[] counts = new int[0];
+    private int[] positions = new int[0];
+    private long[] lastKeyFrames = new long[0];
+    private long[] lastKeyFrameAt = new long[0];
+    /** 按id索引: 已有上一周期关键帧数的轨道、本周期遍历到的轨道(位掩码)，是否GOP过长 */
+    private int[] seen = new int[0];
+    private int[] visited = new int[0];
+    private boolean[] flagged = new boolean[0];
+    private boolean dirty;
+
+    /** 以下为本周期的状态 */
+    private long now;
+    private int threshold;
+    private int id;
+    private int longStreams;
+
+    GopTracker(MonitorConfig.GopConfig config) {
+        configure(config);
+    }
+
+    /**
+     * 应用配置，下一个采集周期生效
+     */
+    void configure(MonitorConfig.GopConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 设置ZLM配置的HLS切片时长，配置中的切片时长为0时使用
+     */
+    void setZlmSegmentDuration(int millis) {
+        this.zlmSegmentDuration = millis;
+    }
+
+    boolean isEnabled() {
+        MonitorConfig.GopConfig current = config;
+        return current != null && current.isEnabled();
+    }
+
+    /**
+     * 开始一个采集周期
+     */
+    void begin() {
+        MonitorConfig.GopConfig current = config;
+        if (current.getWindow() != window) {
+            // 窗口重新开始累计，GOP过长标记保留到下一次判定
+            Arrays.fill(seen, 0);
+            window = current.getWindow();
+            samples = new int[counts.length * window];
+        }
+        int segment = current.getSegmentDuration() > 0 ? current.getSegmentDuration() : zlmSegmentDuration;
+        threshold = segment > 0 ? segment : DEFAULT_SEGMENT_DURATION;
+        now = System.nanoTime();
+        longStreams = 0;
+    }
+
+    /**
+     * 开始统计一个流
+     *
+     * @param id {@link StreamTable#visit} 分配的流id
+     */
+    void stream(int id) {
+        ensureCapacity(id + 1);
+        this.id = id;
+        visited[id] = 0;
+        dirty = true;
+    }
+
+    /**
+     * 视频轨道
+     *
+     * @param track         轨道序号
+     * @param keyFrames     累计关键帧数
+     * @param gopIntervalMs ZLM统计的GOP间隔(毫秒)，未知时为0
+     * @param metrics       本周期的指标，记录全局GOP间隔分布
+     */
+    void video(int track, long keyFrames, int gopIntervalMs, StreamMetrics metrics) {
+        if (track < 0 || track >= TRACKS) {
+            return;
+        }
+        int bit = 1 << track;
+        int slot = id * TRACKS + track;
+        long added = keyFrames - lastKeyFrames[slot];
+        if ((seen[id] & bit) == 0 || added < 0) {
+            // 首次遍历或轨道重建，从当前关键帧开始计时
+            counts[slot] = 0;
+            positions[slot] = 0;
+            lastKeyFrameAt[slot] = now;
+        } else if (added > 0) {
+            int interval = gopIntervalMs > 0
+                ? gopIntervalMs
+                : (int) Math.min((now - lastKeyFrameAt[slot]) / 1_000_000L / added, Integer.MAX_VALUE);
+            int base = slot * window;
+            samples[base + positions[slot]] = interval;
+            positions[slot] = (positions[slot] + 1) % window;
+            counts[slot] = Math.min(counts[slot] + 1, window);
+            lastKeyFrameAt[slot] = now;
+            metrics.recordGopInterval(interval);
+        }
+        lastKeyFrames[slot] = keyFrames;
+        seen[id] |= bit;
+        visited[id] |= bit;
+    }
+
+    /**
+     * 结束一个流的本周期统计，输出流的GOP间隔方差和最大值，更新GOP过长标记
+     */
+    void endStream(StreamId streamId, StreamMetrics metrics) {
+        int gone = seen[id] & ~visited[id];
+        seen[id] &= ~gone;
+        double max = -1;
+        double variance = -1;
+        long open = 0;
+        for (int track = 0; track < TRACKS; track++) {
+            if ((visited[id] & (1 << track)) == 0) {
+                continue;
+            }
+            int slot = id * TRACKS + track;
+            open = Math.max(open, (now - lastKeyFrameAt[slot]) / 1_000_000L);
+            int n = counts[slot];
+            if (n == 0) {
+                continue;
+            }
+            int base = slot * window;
+            long sum = 0;
+            int trackMax = 0;
+            for (int i = 0; i < n; i++) {
+                sum += samples[base + i];
+                trackMax = Math.max(trackMax, samples[base + i]);
+            }
+            double mean = (double) sum / n;
+            double squares = 0;
+            for (int i = 0; i < n; i++) {
+                double d = samples[base + i] - mean;
+                squares += d * d;
+            }
+            max = Math.max(max, trackMax);
+            variance = Math.max(variance, squares / n);
+        }
+        if (max >= 0) {
+            metrics.recordStreamGop(variance, max);
+        }
+        // 关键帧迟迟未到时，当前GOP已持续的时间同样计入
+        double longest = Math.max(max, open);
+        boolean tooLong = (max >= 0 || open > 0) && longest > threshold;
+        if (tooLong) {
+            longStreams++;
+        }
+        if (tooLong != flagged[id]) {
+            flagged[id] = tooLong;
+            metrics.addEvent(event(tooLong ? StreamEventType.GOP_LONG_START : StreamEventType.GOP_LONG_END,
+                streamId, longest));
+        }
+    }
+
+    /**
+     * 流被淘汰，解除GOP过长标记并清理状态
+     */
+    void remove(int id, StreamId streamId, StreamMetrics metrics) {
+        if (id >= seen.length) {
+            return;
+        }
+        if (flagged[id] && streamId != null) {
+            metrics.addEvent(event(StreamEventType.GOP_LONG_END, streamId, -1));
+        }
+        flagged[id] = false;
+        seen[id] = 0;
+    }
+
+    /**
+     * 丢弃全部状态，不发出事件，用于停用跟踪时
+     */
+    void clear() {
+        if (!dirty) {
+            return;
+        }
+        Arrays.fill(seen, 0);
+        Arrays.fill(flagged, false);
+        dirty = false;
+    }
+
+    /**
+     * 输出本周期GOP过长的流数
+     */
+    void publish(StreamMetrics metrics) {
+        metrics.setGopLongStreams(longStreams, threshold);
+    }
+
+    private StreamEvent event(StreamEventType type, StreamId streamId, double value) {
+        return new StreamEvent(type, null, streamId.getVhost(), streamId.getApp(),
+            streamId.getStream(), -1, value, threshold);
+    }
+
+    private void ensureCapacity(int streams) {
+        if (streams <= seen.length) {
+            return;
+        }
+        int capacity = Math.max(streams, Math.max(seen.length * 2, 64));
+        samples = Arrays.copyOf(samples, capacity * TRACKS * window);
+        counts = Arrays.copyOf(counts, capacity * TRACKS);
+        positions = Arrays.copyOf(positions, capacity * TRACKS);
+        lastKeyFrames = Arrays.copyOf(lastKeyFrames, capacity * TRACKS);
+        lastKeyFrameAt = Arrays.copyOf(lastKeyFrameAt, capacity * TRACKS);
+        seen = Arrays.copyOf(seen, capacity);
+        visited = Arrays.copyOf(visited, capacity);
+        flagged = Arrays.copyOf(flagged, capacity);
+    }
+}
@@ -0,0 +1,153 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.util.HeavyHitterSketch;
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_SOCK_INFO;
+import com.sun.jna.Pointer;
+
+/**
+ * 按周期统计流量最大、会话最多的客户端和流
+ * 客户端由 on_mk_flow_report 在会话结束时按对端地址和角色累加；
+ * 流由每次采集遍历媒体源时按数据速率乘观看人数累加，覆盖尚未结束的长会话。
+ * 两类来源分别计入各自的草图，不会重复计数；每个维度占用固定内存，与会话数和流数量无关
+ */
+final class HeavyHitterTracker {
+    /** 对端地址缓冲区长度，不小于 INET6_ADDRSTRLEN */
+    private static final int PEER_IP_LENGTH = 64;
+    private static final byte[] PLAY_SUFFIX = {'#', 'p', 'l', 'a', 'y'};
+    private static final byte[] PUBLISH_SUFFIX = {'#', 'p', 'u', 'b', 'l', 'i', 's', 'h'};
+    private static final int PEER_KEY_LENGTH = PEER_IP_LENGTH + PUBLISH_SUFFIX.length;
+    private static final int STREAM_KEY_LENGTH = 256;
+
+    private final ZLMApi zlmApi;
+    private final boolean direct;
+    private final ThreadLocal<byte[]> peerBuffer = ThreadLocal.withInitial(() -> new byte[PEER_KEY_LENGTH]);
+    /** 配置变更时整体替换 */
+    private volatile Sketches sketches;
+    private long lastWalk = System.nanoTime();
+    private double walkSeconds;
+
+    HeavyHitterTracker(ZLMApi zlmApi, MonitorConfig.TopKConfig config) {
+        this.zlmApi = zlmApi;
+        this.direct = StreamKeyReader.DirectApi.register(zlmApi);
+        configure(config);
+    }
+
+    /**
+     * 应用配置，参数变化时重建草图，当前周期的统计丢弃
+     */
+    void configure(MonitorConfig.TopKConfig config) {
+        if (config == null || !config.isEnabled()) {
+            sketches = null;
+            return;
+        }
+        Sketches current = sketches;
+        if (current == null || !current.matches(config)) {
+            sketches = new Sketches(config);
+        } else {
+            current.count = config.getCount();
+        }
+    }
+
+    boolean isEnabled() {
+        return sketches != null;
+    }
+
+    /**
+     * 会话结束，在ZLM网络线程中调用，稳态下不分配对象
+     */
+    void onFlowReport(MK_SOCK_INFO sockInfo, long totalBytes, boolean player) {
+        Sketches current = sketches;
+        if (current == null || sockInfo == null) {
+            return;
+        }
+        byte[] buffer = peerBuffer.get();
+        buffer[0] = 0;
+        if (direct) {
+            StreamKeyReader.DirectApi.mk_sock_info_peer_ip(Pointer.nativeValue(sockInfo.getPointer()), buffer);
+        } else {
+            zlmApi.mk_sock_info_peer_ip(sockInfo, buffer);
+        }
+        int length = 0;
+        while (length < PEER_IP_LENGTH && buffer[length] != 0) {
+            length++;
+        }
+        if (length == 0) {
+            return;
+        }
+        byte[] suffix = player ? PLAY_SUFFIX : PUBLISH_SUFFIX;
+        System.arraycopy(suffix, 0, buffer, length, suffix.length);
+        length += suffix.length;
+        current.peersByBytes.add(buffer, length, totalBytes);
+        current.peersBySessions.add(buffer, length, 1);
+    }
+
+    /**
+     * 开始一次媒体源遍历，记录距上次遍历的秒数
+     */
+    void beginWalk() {
+        long now = System.nanoTime();
+        walkSeconds = (now - lastWalk) / 1e9;
+        lastWalk = now;
+    }
+
+    /**
+     * 遍历到一个媒体源，由采集线程调用
+     *
+     * @param key         流键
+     * @param bytesSpeed  数据速率(字节/秒)
+     * @param readerCount 观看人数
+     */
+    void onSource(String key, int bytesSpeed, int readerCount) {
+        Sketches current = sketches;
+        if (current == null) {
+            return;
+        }
+        current.streamsByBytes.add(key, (long) (bytesSpeed * (double) Math.max(readerCount, 1) * walkSeconds));
+        current.streamsBySessions.add(key, readerCount);
+    }
+
+    /**
+     * 取出本周期的统计并清空，未启用时返回null
+     */
+    TopTalkers roll() {
+        Sketches current = sketches;
+        if (current == null) {
+            return null;
+        }
+        int count = current.count;
+        return new TopTalkers(
+            current.peersByBytes.topAndReset(count),
+            current.peersBySessions.topAndReset(count),
+            current.streamsByBytes.topAndReset(count),
+            current.streamsBySessions.topAndReset(count),
+            System.currentTimeMillis());
+    }
+
+    private static final class Sketches {
+        final int capacity;
+        final int width;
+        final int depth;
+        volatile int count;
+        final HeavyHitterSketch peersByBytes;
+        final HeavyHitterSketch peersBySessions;
+        final HeavyHitterSketch streamsByBytes;
+        final HeavyHitterSketch streamsBySessions;
+
+        Sketches(MonitorConfig.TopKConfig config) {
+            this.capacity = config.getCapacity();
+            this.width = config.getWidth();
+            this.depth = config.getDepth();
+            this.count = config.getCount();
+            this.peersByBytes = new HeavyHitterSketch(capacity, width, depth, PEER_KEY_LENGTH);
+            this.peersBySessions = new HeavyHitterSketch(capacity, width, depth, PEER_KEY_LENGTH);
+            this.streamsByBytes = new HeavyHitterSketch(capacity, width, depth, STREAM_KEY_LENGTH);
+            this.streamsBySessions = new HeavyHitterSketch(capacity, width, depth, STREAM_KEY_LENGTH);
+        }
+
+        boolean matches(MonitorConfig.TopKConfig config) {
+            return capacity == config.getCapacity() && width == config.getWidth() && depth == config.getDepth();
+        }
+    }
+}
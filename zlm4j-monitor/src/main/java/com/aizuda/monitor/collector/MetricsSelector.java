@@ -0,0 +1,295 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.metrics.Metrics;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.StreamSample;
+import com.aizuda.monitor.util.QuantileSketch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 指标选择器
+ * 按 vhost/app/stream 通配符和指标名集合描述订阅关心的范围，通配符支持 * 和 ?；
+ * 所有订阅的选择器合并为 {@link SourceMatcher} 下推到收集器，没有订阅关心的流和轨道在遍历时直接跳过
+ *
+ * vhost/app/stream 只决定遍历范围和流事件、按流采样的分发，不会按单个选择器重新汇总：
+ * 汇总值(流总数、总观看人数等)按所有选择器合并后的范围计算，对每个订阅方都相同
+ *
+ * <pre>
+ * MetricsSelector.builder().app("live").stream("*").metrics("stream.*", "video.fps").build();
+ * MetricsSelector.path("live/*");
+ * </pre>
+ */
+public final class MetricsSelector {
+    /** 选择全部流和全部指标 */
+    public static final MetricsSelector ALL = builder().build();
+
+    private final Glob vhost;
+    private final Glob app;
+    private final Glob stream;
+    /** 指标名通配符，为空表示全部指标 */
+    private final List<Glob> metrics;
+
+    private MetricsSelector(Builder builder) {
+        this.vhost = Glob.compile(builder.vhost);
+        this.app = Glob.compile(builder.app);
+        this.stream = Glob.compile(builder.stream);
+        List<Glob> compiled = new ArrayList<>(builder.metrics.size());
+        for (String metric : builder.metrics) {
+            compiled.add(Glob.compile(metric));
+        }
+        this.metrics = Collections.unmodifiableList(compiled);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 按 app/stream 路径创建选择器，如 live/*、live/camera-?，不含 / 时只匹配app
+     */
+    public static MetricsSelector path(String path) {
+        int slash = path.indexOf('/');
+        return slash < 0
+            ? builder().app(path).build()
+            : builder().app(path.substring(0, slash)).stream(path.substring(slash + 1)).build();
+    }
+
+    /**
+     * 流是否被选中
+     */
+    public boolean matchesSource(String vhost, String app, String stream) {
+        return this.vhost.matches(vhost) && this.app.matches(app) && this.stream.matches(stream);
+    }
+
+    /**
+     * 指标是否被选中
+     */
+    public boolean matchesMetric(String name) {
+        if (metrics.isEmpty()) {
+            return true;
+        }
+        for (Glob metric : metrics) {
+            if (metric.matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否可能选中以指定前缀开头的指标，用于判断能否跳过整类JNA调用(如 track.、video.)
+     */
+    public boolean matchesMetricPrefix(String prefix) {
+        if (metrics.isEmpty()) {
+            return true;
+        }
+        for (Glob metric : metrics) {
+            if (metric.mayMatchPrefix(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按指标名过滤一次采集结果
+     * 选择全部指标且没有需要按流过滤的事件和按流采样时直接返回原对象，否则返回只含选中指标的同类型副本，标签和时间戳保持不变；
+     * 分布指标在其任一分位值可能被选中时保留，事件在所属流和指标前缀都被选中时保留，按流采样在所属流被选中时保留
+     */
+    public Metrics select(Metrics metrics) {
+        if (metrics == null || (isAllMetrics() && (isAllSources() || !hasPerStreamData(metrics)))) {
+            return metrics;
+        }
+        Metrics selected = Metrics.create(metrics.getType());
+        selected.setTimestamp(metrics.getTimestamp());
+        selected.getTags().putAll(metrics.getTags());
+        for (Map.Entry<String, Number> entry : metrics.getValues().entrySet()) {
+            if (matchesMetric(entry.getKey())) {
+                selected.getValues().put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<String, QuantileSketch> entry : metrics.getDistributions().entrySet()) {
+            if (matchesMetricPrefix(entry.getKey() + ".")) {
+                selected.getDistributions().put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (StreamEvent event : metrics.getEvents()) {
+            if (matchesSource(event.getVhost(), event.getApp(), event.getStream())
+                && matchesMetricPrefix(event.getType().getMetricPrefix())) {
+                selected.getEvents().add(event);
+            }
+        }
+        if (metrics instanceof StreamMetrics && matchesMetricPrefix("stream.")) {
+            for (StreamSample sample : ((StreamMetrics) metrics).getStreamSamples()) {
+                if (matchesSource(sample.getVhost(), sample.getApp(), sample.getStream())) {
+                    ((StreamMetrics) selected).addStreamSample(sample);
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static boolean hasPerStreamData(Metrics metrics) {
+        return !metrics.getEvents().isEmpty()
+            || (metrics instanceof StreamMetrics && !((StreamMetrics) metrics).getStreamSamples().isEmpty());
+    }
+
+    /**
+     * 是否选择全部流
+     */
+    public boolean isAllSources() {
+        return vhost.any && app.any && stream.any;
+    }
+
+    /**
+     * 是否选择全部指标
+     */
+    public boolean isAllMetrics() {
+        return metrics.isEmpty();
+    }
+
+    Glob vhost() {
+        return vhost;
+    }
+
+    Glob app() {
+        return app;
+    }
+
+    Glob stream() {
+        return stream;
+    }
+
+    @Override
+    public String toString() {
+        return vhost.pattern + "/" + app.pattern + "/" + stream.pattern
+            + (metrics.isEmpty() ? "" : " " + metrics);
+    }
+
+    public static final class Builder {
+        private String vhost = "*";
+        private String app = "*";
+        private String stream = "*";
+        private final List<String> metrics = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder vhost(String vhost) {
+            this.vhost = vhost;
+            return this;
+        }
+
+        public Builder app(String app) {
+            this.app = app;
+            return this;
+        }
+
+        public Builder stream(String stream) {
+            this.stream = stream;
+            return this;
+        }
+
+        /**
+         * 添加关心的指标名，支持通配符；不添加时选择全部指标
+         */
+        public Builder metrics(String... names) {
+            Collections.addAll(metrics, names);
+            return this;
+        }
+
+        public Builder metrics(Collection<String> names) {
+            metrics.addAll(names);
+            return this;
+        }
+
+        public MetricsSelector build() {
+            return new MetricsSelector(this);
+        }
+    }
+
+    /**
+     * 预编译的通配符，全匹配和字面量走快速路径，其余编译为正则
+     */
+    static final class Glob {
+        final String pattern;
+        /** 匹配任意值 */
+        final boolean any;
+        /** 不含通配符时的字面量，否则为null */
+        final String literal;
+        /** 第一个通配符之前的字面前缀 */
+        private final String head;
+        private final Pattern regex;
+
+        private Glob(String pattern) {
+            this.pattern = pattern;
+            this.any = "*".equals(pattern);
+            int wildcard = firstWildcard(pattern);
+            this.literal = wildcard < 0 ? pattern : null;
+            this.head = wildcard < 0 ? pattern : pattern.substring(0, wildcard);
+            this.regex = any || literal != null ? null : Pattern.compile(toRegex(pattern));
+        }
+
+        static Glob compile(String pattern) {
+            return new Glob(pattern == null || pattern.isEmpty() ? "*" : pattern.trim());
+        }
+
+        boolean matches(String value) {
+            if (any) {
+                return true;
+            }
+            if (value == null) {
+                return false;
+            }
+            return literal != null ? literal.equals(value) : regex.matcher(value).matches();
+        }
+
+        /**
+         * 是否可能匹配以 prefix 开头的值
+         */
+        boolean mayMatchPrefix(String prefix) {
+            if (literal != null) {
+                return literal.startsWith(prefix);
+            }
+            return head.startsWith(prefix) || prefix.startsWith(head);
+        }
+
+        private static int firstWildcard(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '*' || c == '?') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String toRegex(String pattern) {
+            StringBuilder regex = new StringBuilder(pattern.length() + 8);
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '*' || c == '?') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return regex.toString();
+        }
+    }
+}
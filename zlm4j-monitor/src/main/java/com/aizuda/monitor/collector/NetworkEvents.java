@@ -0,0 +1,126 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.zlm4j.callback.IMKFlowReportCallBack;
+import com.aizuda.zlm4j.callback.IMKPlayCallBack;
+import com.aizuda.zlm4j.callback.IMKPublishCallBack;
+import com.aizuda.zlm4j.callback.IMKStreamChangeCallBack;
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_AUTH_INVOKER;
+import com.aizuda.zlm4j.structure.MK_EVENTS;
+import com.aizuda.zlm4j.structure.MK_MEDIA_INFO;
+import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
+import com.aizuda.zlm4j.structure.MK_PUBLISH_AUTH_INVOKER;
+import com.aizuda.zlm4j.structure.MK_SOCK_INFO;
+
+/**
+ * 进程内唯一的 MK_EVENTS 注册
+ * ZLM保存的是回调的函数指针，JNA回调对象被回收后ZLM会调用已释放的地址，因此事件结构和回调在进程内常驻，
+ * 只调用一次 mk_events_listen；回调转发给当前挂接的网络指标收集器，收集器关闭后摘除，重新启用时挂接到同一份注册上。
+ * 播放、推流鉴权回调只在首次注册时按需设置，没有收集器挂接时仍然放行
+ */
+final class NetworkEvents {
+    private static MK_EVENTS events;
+    private static ZLMApi zlmApi;
+    /** 首次注册时是否设置了鉴权回调 */
+    private static boolean authHooks;
+    private static volatile NetworkMetricsCollector current;
+    /** 推流鉴权放行时沿用的 protocol.enable_hls、protocol.enable_mp4 */
+    private static volatile int enableHls = 1;
+    private static volatile int enableMp4 = 0;
+
+    private NetworkEvents() {
+    }
+
+    /**
+     * 是否可以统计在线会话: 尚未注册，或已注册且设置了鉴权回调
+     */
+    static synchronized boolean canTrackSessions() {
+        return events == null || authHooks;
+    }
+
+    /**
+     * 挂接收集器，首次调用时注册事件
+     *
+     * @param trackSessions 是否需要鉴权回调，只在首次注册时生效
+     */
+    static synchronized void attach(ZLMApi api, NetworkMetricsCollector collector, boolean trackSessions) {
+        current = collector;
+        if (events == null) {
+            listen(api, trackSessions);
+        }
+    }
+
+    /**
+     * 摘除收集器，之后的回调不再转发给它
+     */
+    static synchronized void detach(NetworkMetricsCollector collector) {
+        if (current == collector) {
+            current = null;
+        }
+    }
+
+    static void setPublishOptions(int hls, int mp4) {
+        enableHls = hls;
+        enableMp4 = mp4;
+    }
+
+    private static void listen(ZLMApi api, boolean trackSessions) {
+        MK_EVENTS listening = new MK_EVENTS();
+        // 流变更回调
+        listening.on_mk_media_changed = new IMKStreamChangeCallBack() {
+            @Override
+            public void invoke(int regist, MK_MEDIA_SOURCE mediaSource) {
+                NetworkMetricsCollector collector = current;
+                if (collector != null && mediaSource != null) {
+                    collector.onMediaChanged(regist != 0, mediaSource);
+                }
+            }
+        };
+
+        // 流量统计回调，会话结束时在ZLM网络线程中触发
+        listening.on_mk_flow_report = new IMKFlowReportCallBack() {
+            @Override
+            public void invoke(MK_MEDIA_INFO mediaInfo, long totalBytes, long totalSeconds, int isPlayer, MK_SOCK_INFO sockInfo) {
+                NetworkMetricsCollector collector = current;
+                if (collector != null && mediaInfo != null) {
+                    collector.onFlowReport(mediaInfo, totalBytes, totalSeconds, isPlayer != 0, sockInfo);
+                }
+            }
+        };
+
+        if (trackSessions) {
+            // 播放、推流鉴权回调只用于计数，始终放行；注册后会替换宿主程序设置的鉴权回调
+            listening.on_mk_media_play = new IMKPlayCallBack() {
+                @Override
+                public void invoke(MK_MEDIA_INFO mediaInfo, MK_AUTH_INVOKER invoker, MK_SOCK_INFO sockInfo) {
+                    try {
+                        NetworkMetricsCollector collector = current;
+                        if (collector != null && mediaInfo != null) {
+                            collector.onSessionOpen(mediaInfo, sockInfo, true);
+                        }
+                    } finally {
+                        zlmApi.mk_auth_invoker_do(invoker, "");
+                    }
+                }
+            };
+            listening.on_mk_media_publish = new IMKPublishCallBack() {
+                @Override
+                public void invoke(MK_MEDIA_INFO mediaInfo, MK_PUBLISH_AUTH_INVOKER invoker, MK_SOCK_INFO sockInfo) {
+                    try {
+                        NetworkMetricsCollector collector = current;
+                        if (collector != null && mediaInfo != null) {
+                            collector.onSessionOpen(mediaInfo, sockInfo, false);
+                        }
+                    } finally {
+                        zlmApi.mk_publish_auth_invoker_do(invoker, "", enableHls, enableMp4);
+                    }
+                }
+            };
+        }
+
+        zlmApi = api;
+        events = listening;
+        authHooks = trackSessions;
+        api.mk_events_listen(listening);
+    }
+}
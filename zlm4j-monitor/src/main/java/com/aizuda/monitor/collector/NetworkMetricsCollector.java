@@ -3,14 +3,11 @@ package com.aizuda.monitor.collector;
 import com.aizuda.monitor.config.MonitorConfig;
 import com.aizuda.monitor.metrics.NetworkMetrics;
 import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.monitor.metrics.enums.Protocol;
 import com.aizuda.zlm4j.core.ZLMApi;
-import com.aizuda.zlm4j.structure.MK_EVENTS;
-import com.aizuda.zlm4j.callback.IMKStreamChangeCallBack;
-import com.aizuda.zlm4j.callback.IMKFlowReportCallBack;
 import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
 import com.aizuda.zlm4j.structure.MK_MEDIA_INFO;
 import com.aizuda.zlm4j.structure.MK_SOCK_INFO;
-import com.aizuda.zlm4j.callback.IMKSourceFindCallBack;
 import com.aizuda.zlm4j.callback.IMKGetStatisticCallBack;
 import com.aizuda.zlm4j.callback.IMKFreeUserDataCallBack;
 import com.aizuda.zlm4j.structure.MK_INI;
@@ -20,9 +17,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -34,59 +28,62 @@ import java.util.concurrent.TimeUnit;
 public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMetrics> {
     private static final Logger log = LoggerFactory.getLogger(NetworkMetricsCollector.class);
     private final ZLMApi zlmApi;
-    private final MK_EVENTS events;
-    private final Map<String, AtomicLong> flowStats = new ConcurrentHashMap<>();
-    private final Map<String, AtomicInteger> streamStats = new ConcurrentHashMap<>();
+    /** 会话流量: 流标识驻留后按id累加，每个采集周期按增量计算速率并淘汰已下线的流 */
+    private final StreamFlowAggregator flows;
+    /** 流量最大、会话最多的客户端和流，每个采集周期取出一次 */
+    private final HeavyHitterTracker topTalkers;
+    private volatile TopTalkers lastTopTalkers;
+    /** 网络质量指标前缀，有订阅选中时才遍历轨道计算 */
+    private static final String QUALITY_PREFIX = "network.";
+    /** 按流的网络质量，状态挂在流标识上 */
+    private final NetworkQualityModel quality = new NetworkQualityModel();
+    /** 按协议的在线会话，未启用时为null */
+    private final SessionTracker sessions;
+    private final long[] sessionCounts = new long[2 * SessionTracker.SLOTS];
     
     public NetworkMetricsCollector(ZLMApi zlmApi, MonitorConfig config) {
         super(config);
         this.zlmApi = zlmApi;
-        this.events = new MK_EVENTS();
-        initEvents();
+        this.flows = new StreamFlowAggregator(zlmApi);
+        this.topTalkers = new HeavyHitterTracker(zlmApi, config.getTopK());
+        this.sessions = createSessionTracker(zlmApi, config);
+        NetworkEvents.attach(zlmApi, this, sessions != null);
     }
     
-    private void initEvents() {
-        // 流变更回调
-        events.on_mk_media_changed = new IMKStreamChangeCallBack() {
-            @Override
-            public void invoke(int regist, MK_MEDIA_SOURCE mediaSource) {
-                if (mediaSource == null) {
-                    return;
-                }
-                String schema = zlmApi.mk_media_source_get_schema(mediaSource);
-                if (schema != null) {
-                    if (regist != 0) {
-                        streamStats.computeIfAbsent(schema, k -> new AtomicInteger()).incrementAndGet();
-                    } else {
-                        AtomicInteger count = streamStats.get(schema);
-                        if (count != null) {
-                            count.decrementAndGet();
-                        }
-                    }
-                }
-            }
-        };
-        
-        // 流量统计回调
-        events.on_mk_flow_report = new IMKFlowReportCallBack() {
-            @Override
-            public void invoke(MK_MEDIA_INFO mediaInfo, long totalBytes, long speed, int isPlayer, MK_SOCK_INFO sockInfo) {
-                if (mediaInfo == null) {
-                    return;
-                }
-                String schema = zlmApi.mk_media_info_get_schema(mediaInfo);
-                String vhost = zlmApi.mk_media_info_get_vhost(mediaInfo);
-                String app = zlmApi.mk_media_info_get_app(mediaInfo);
-                String stream = zlmApi.mk_media_info_get_stream(mediaInfo);
-                
-                if (schema != null) {
-                    String key = schema + "://" + vhost + "/" + app + "/" + stream;
-                    flowStats.computeIfAbsent(key, k -> new AtomicLong()).addAndGet(speed);
-                }
-            }
-        };
-        
-        zlmApi.mk_events_listen(events);
+    /**
+     * 流注册、注销，由 {@link NetworkEvents} 转发
+     */
+    void onMediaChanged(boolean regist, MK_MEDIA_SOURCE mediaSource) {
+        flows.onMediaChanged(regist, mediaSource);
+    }
+    
+    /**
+     * 会话结束时的流量统计，由 {@link NetworkEvents} 在ZLM网络线程中转发，稳态下不分配对象
+     */
+    void onFlowReport(MK_MEDIA_INFO mediaInfo, long totalBytes, long totalSeconds, boolean isPlayer, MK_SOCK_INFO sockInfo) {
+        StreamId streamId = flows.intern(mediaInfo);
+        if (sessions != null) {
+            sessions.onClose(schemaOf(streamId, mediaInfo), sockInfo, isPlayer);
+        }
+        if (flows.onFlowReport(streamId, totalBytes, totalSeconds, isPlayer, getSourceMatcher())) {
+            topTalkers.onFlowReport(sockInfo, totalBytes, isPlayer);
+        }
+    }
+    
+    /**
+     * 播放、推流鉴权时的会话计数，放行由 {@link NetworkEvents} 负责
+     */
+    void onSessionOpen(MK_MEDIA_INFO mediaInfo, MK_SOCK_INFO sockInfo, boolean isPlayer) {
+        if (sessions != null) {
+            sessions.onOpen(schemaOf(flows.intern(mediaInfo), mediaInfo), sockInfo, isPlayer);
+        }
+    }
+    
+    /**
+     * 会话所属流的 schema，驻留表已满时才通过字符串接口读取
+     */
+    private String schemaOf(StreamId streamId, MK_MEDIA_INFO mediaInfo) {
+        return streamId != null ? streamId.getSchema() : zlmApi.mk_media_info_get_schema(mediaInfo);
     }
     
     @Override
@@ -99,11 +96,6 @@ public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMet
         return MetricsType.NETWORK;
     }
     
-    @Override
-    public void start() throws Exception {
-        doStart();
-    }
-    
     @Override
     public void close() {
         try {
@@ -121,6 +113,50 @@ public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMet
         log.info("网络指标收集器初始化完成");
     }
     
+    /**
+     * 创建在线会话计数，并读取会话分类和推流放行所需的ZLM配置
+     * 会话只在 on_mk_flow_report 中扣减，而ZLM对流量低于 general.flowThreshold 的会话不触发该回调，
+     * 该值不为0时计数只增不减，此时不注册鉴权回调，连接数仍按观看人数估算
+     *
+     * @return 未启用或ZLM配置不满足时返回null
+     */
+    private SessionTracker createSessionTracker(ZLMApi zlmApi, MonitorConfig config) {
+        if (zlmApi == null || config.getSessions() == null || !config.getSessions().isEnabled()) {
+            return null;
+        }
+        MK_INI ini = zlmApi.mk_ini_default();
+        try {
+            String flowThreshold = zlmApi.mk_ini_get_option(ini, "general.flowThreshold");
+            if (flowThreshold == null || !"0".equals(flowThreshold.trim())) {
+                log.error("general.flowThreshold={}，流量低于该值的会话结束时不触发 on_mk_flow_report，无法精确统计在线会话，"
+                    + "未启用会话统计，请将其设为0", flowThreshold);
+                return null;
+            }
+            if (!NetworkEvents.canTrackSessions()) {
+                log.error("ZLM事件已在未启用会话统计时注册，鉴权回调需在首次注册时设置，未启用会话统计，请重启进程");
+                return null;
+            }
+            SessionTracker tracker = new SessionTracker(zlmApi);
+            tracker.setRtmpPorts(parsePort(zlmApi.mk_ini_get_option(ini, "rtmp.port")),
+                parsePort(zlmApi.mk_ini_get_option(ini, "rtmp.sslport")));
+            NetworkEvents.setPublishOptions(
+                "0".equals(zlmApi.mk_ini_get_option(ini, "protocol.enable_hls")) ? 0 : 1,
+                "1".equals(zlmApi.mk_ini_get_option(ini, "protocol.enable_mp4")) ? 1 : 0);
+            log.warn("已启用在线会话统计，on_mk_media_play、on_mk_media_publish 回调将始终放行，宿主程序的鉴权回调不再生效");
+            return tracker;
+        } finally {
+            zlmApi.mk_ini_release(ini);
+        }
+    }
+    
+    private static int parsePort(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
     @Override
     protected void doStart() throws Exception {
         log.info("网络指标收集器已启动");
@@ -133,6 +169,8 @@ public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMet
     
     @Override
     protected void doDestroy() throws Exception {
+        // 事件注册常驻进程，只摘除转发
+        NetworkEvents.detach(this);
         log.info("网络指标收集器已销毁");
     }
     
@@ -156,9 +194,21 @@ public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMet
             // 2. 收集流媒体指标
             collectMediaMetrics(metrics);
             
-            // 3. 收集协议指标
+            // 3. 汇总在线会话
+            collectSessionMetrics(metrics);
+            
+            // 4. 收集协议指标
             collectProtocolMetrics(metrics);
             
+            // 5. 汇总会话流量
+            collectFlowMetrics(metrics);
+            
+            // 6. 输出高频项
+            collectTopTalkers(metrics);
+            
+            // 7. 输出跨流分布
+            metrics.summarizeDistributions();
+            
         } catch (Exception e) {
             log.error("收集网络指标失败", e);
             throw e;
@@ -197,73 +247,185 @@ public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMet
     }
     
     private void collectMediaMetrics(NetworkMetrics metrics) {
-        // 遍历所有媒体源
-        zlmApi.mk_media_source_for_each(Pointer.NULL, new IMKSourceFindCallBack() {
-            @Override
-            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                // 获取基本信息
-                String app = zlmApi.mk_media_source_get_app(mediaSource);
-                String stream = zlmApi.mk_media_source_get_stream(mediaSource);
-                String schema = zlmApi.mk_media_source_get_schema(mediaSource);
-                
-                // 获取流状态
-                int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
-                int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
-                int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
-                int originType = zlmApi.mk_media_source_get_origin_type(mediaSource);
-                long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
-                
-                // 更新流媒体指标
-                metrics.setStreamInfo(schema, app, stream, originType, aliveSecond);
-                metrics.setStreamStats(readerCount, totalReaderCount, bytesSpeed);
-                
-                // 获取轨道信息
+        // 遍历被订阅选中的媒体源
+        final boolean collectTracks = getSourceMatcher().needsTracks();
+        final boolean trackTopTalkers = topTalkers.isEnabled();
+        final boolean collectQuality = getSourceMatcher().needsMetric(QUALITY_PREFIX);
+        final long[] bandwidth = new long[1];
+        topTalkers.beginWalk();
+        quality.begin();
+        forEachSource(zlmApi, mediaSource -> {
+            // 获取基本信息
+            String app = zlmApi.mk_media_source_get_app(mediaSource);
+            String stream = zlmApi.mk_media_source_get_stream(mediaSource);
+            String schema = zlmApi.mk_media_source_get_schema(mediaSource);
+            String vhost = trackTopTalkers || collectQuality ? zlmApi.mk_media_source_get_vhost(mediaSource) : null;
+            
+            // 获取流状态
+            int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
+            int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
+            int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
+            int originType = zlmApi.mk_media_source_get_origin_type(mediaSource);
+            long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
+            
+            // 更新流媒体指标
+            metrics.setStreamInfo(schema, app, stream, originType, aliveSecond);
+            metrics.setStreamStats(readerCount, totalReaderCount, bytesSpeed);
+            bandwidth[0] += bytesSpeed;
+            
+            Protocol protocol = Protocol.of(schema);
+            StreamId streamId = collectQuality ? flows.touch(schema, vhost, app, stream) : null;
+            NetworkQualityModel.StreamState state = streamId != null ? quality.stream(streamId) : null;
+            
+            // 获取轨道信息，没有订阅关心轨道指标和网络质量时跳过
+            if (collectTracks || state != null) {
                 int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
                 for (int i = 0; i < trackCount; i++) {
                     MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
+                    if (track == null) {
+                        continue;
+                    }
                     try {
                         int isVideo = zlmApi.mk_track_is_video(track);
                         if (isVideo == 1) {
-                            int width = zlmApi.mk_track_video_width(track);
-                            int height = zlmApi.mk_track_video_height(track);
                             int fps = zlmApi.mk_track_video_fps(track);
-                            metrics.updateVideoMetrics(width, height, fps);
+                            if (collectTracks) {
+                                int width = zlmApi.mk_track_video_width(track);
+                                int height = zlmApi.mk_track_video_height(track);
+                                metrics.updateVideoMetrics(width, height, fps);
+                            }
+                            if (state != null) {
+                                state.video(i, zlmApi.mk_track_frames(track), zlmApi.mk_track_video_key_frames(track),
+                                    fps, zlmApi.mk_track_video_gop_interval_ms(track),
+                                    zlmApi.mk_media_source_get_track_loss(mediaSource, track));
+                            }
+                        } else if (state != null) {
+                            state.audio(i, zlmApi.mk_track_frames(track),
+                                zlmApi.mk_media_source_get_track_loss(mediaSource, track));
                         }
                     } finally {
                         zlmApi.mk_track_unref(track);
                     }
                 }
-                
-                // 更新协议统计
-                if (schema != null) {
-                    switch (schema.toLowerCase()) {
-                        case "rtmp":
-                            metrics.setRtmpConnections(readerCount);
-                            metrics.setRtmpBytes(bytesSpeed);
-                            break;
-                        case "rtsp":
-                            metrics.setRtspConnections(readerCount);
-                            metrics.setRtspBytes(bytesSpeed);
-                            break;
-                        case "http":
-                            metrics.updateConnectionMetrics(0, 0, readerCount, 0);
-                            metrics.setHttpBytes(bytesSpeed);
-                            break;
-                        case "webrtc":  // 修改为 webrtc
-                            metrics.setRtcConnections(readerCount);
-                            metrics.setRtcBytes(bytesSpeed);
-                            break;
-                    }
-                    
-                    // 更新流的其他信息
-                    metrics.addProtocolBytes(schema, bytesSpeed);
-                    metrics.incrementProtocolConnections(schema);
-                }
-                
-                // 更新总体统计
-                metrics.setActiveConnections(totalReaderCount);
             }
-        }, "", "", "", "");
+            if (state != null) {
+                quality.end(state, protocol, metrics);
+            }
+            
+            // 更新协议统计，启用会话统计时连接数改由事件计数
+            if (sessions == null) {
+                metrics.addProtocolConnections(protocol, readerCount);
+            }
+            metrics.addProtocolBytes(protocol, bytesSpeed);
+            
+            if (trackTopTalkers) {
+                topTalkers.onSource(schema + "://" + vhost + "/" + app + "/" + stream, bytesSpeed, readerCount);
+            }
+            
+            // 更新总体统计
+            metrics.setActiveConnections(totalReaderCount);
+        });
+        if (collectQuality) {
+            quality.publish(metrics, bandwidth[0]);
+        }
+    }
+    
+    /**
+     * 流的网络质量分(0-100)，未启用网络质量或流尚无数据时返回-1
+     */
+    public float getStreamQuality(String schema, String vhost, String app, String stream) {
+        StreamId streamId = flows.find(schema, vhost, app, stream);
+        NetworkQualityModel.StreamState state = streamId != null ? streamId.quality : null;
+        return state != null ? state.getScore() : -1;
+    }
+    
+    private void collectSessionMetrics(NetworkMetrics metrics) {
+        if (sessions != null) {
+            sessions.read(sessionCounts);
+            long play = 0;
+            long publish = 0;
+            for (Protocol protocol : Protocol.values()) {
+                long protocolPlay = sessionCounts[SessionTracker.index(true, protocol.ordinal())];
+                long protocolPublish = sessionCounts[SessionTracker.index(false, protocol.ordinal())];
+                metrics.addProtocolConnections(protocol, protocolPlay + protocolPublish);
+                play += protocolPlay;
+                publish += protocolPublish;
+            }
+            metrics.setSessionCounts(play, publish,
+                sessionCounts[SessionTracker.index(true, SessionTracker.HTTP_FLV)],
+                sessionCounts[SessionTracker.index(true, SessionTracker.HTTP_HLS)],
+                sessionCounts[SessionTracker.index(true, SessionTracker.HTTP_FMP4)],
+                sessionCounts[SessionTracker.index(true, SessionTracker.HTTP_TS)]);
+            // WebSocket与HTTP共用端口，回调中无法区分，WebSocket会话已计入同格式的HTTP连接数
+            metrics.setWsFlvConnections(0);
+            metrics.setWsHlsConnections(0);
+            metrics.setWsFmp4Connections(0);
+        }
+        
+        // 按协议汇总，rtmp.connections、rtmp.bytes 等为全部流之和
+        metrics.updateProtocolMetrics();
+    }
+    
+    private void collectFlowMetrics(NetworkMetrics metrics) {
+        FlowWindow window = flows.roll(getSourceMatcher());
+        metrics.setFlowMetrics(
+            window.getTotal(FlowCounters.PUBLISH_BYTES),
+            window.getTotal(FlowCounters.PLAY_BYTES),
+            window.getTotal(FlowCounters.PUBLISH_SESSIONS),
+            window.getTotal(FlowCounters.PLAY_SESSIONS),
+            window.getTotal(FlowCounters.PUBLISH_SECONDS),
+            window.getTotal(FlowCounters.PLAY_SECONDS),
+            window.getTrackedStreams());
+        metrics.setFlowRates(
+            window.getRate(FlowCounters.PUBLISH_BYTES),
+            window.getRate(FlowCounters.PLAY_BYTES),
+            window.getCount(FlowCounters.PUBLISH_SESSIONS),
+            window.getCount(FlowCounters.PLAY_SESSIONS));
+        
+        // 在线流数量按协议汇总
+        int rtmp = 0;
+        int rtsp = 0;
+        int rtc = 0;
+        int http = 0;
+        for (Map.Entry<String, Integer> entry : window.getRegisteredStreams().entrySet()) {
+            Protocol protocol = Protocol.of(entry.getKey());
+            if (protocol == Protocol.RTMP) {
+                rtmp += entry.getValue();
+            } else if (protocol == Protocol.RTSP) {
+                rtsp += entry.getValue();
+            } else if (protocol == Protocol.RTC || protocol == Protocol.WEBRTC) {
+                rtc += entry.getValue();
+            } else {
+                // ts、fmp4、hls 等均经HTTP分发
+                http += entry.getValue();
+            }
+        }
+        metrics.setRtmpStreams(rtmp);
+        metrics.setRtspStreams(rtsp);
+        metrics.setRtcStreams(rtc);
+        metrics.setHttpStreams(http);
+        if (window.getEvictedStreams() > 0) {
+            log.debug("淘汰已下线的流: {}，当前跟踪: {}", window.getEvictedStreams(), window.getTrackedStreams());
+        }
+    }
+    
+    private void collectTopTalkers(NetworkMetrics metrics) {
+        TopTalkers top = topTalkers.roll();
+        lastTopTalkers = top;
+        if (top == null) {
+            return;
+        }
+        metrics.setTopK(NetworkMetrics.MetricNames.TOPK_PEER_BYTES, top.getPeersByBytes().getTop());
+        metrics.setTopK(NetworkMetrics.MetricNames.TOPK_PEER_SESSIONS, top.getPeersBySessions().getTop());
+        metrics.setTopK(NetworkMetrics.MetricNames.TOPK_STREAM_BYTES, top.getStreamsByBytes().getTop());
+        metrics.setTopK(NetworkMetrics.MetricNames.TOPK_STREAM_SESSIONS, top.getStreamsBySessions().getTop());
+    }
+    
+    /**
+     * 最近一个采集周期的高频项，未启用或尚未采集时返回null
+     */
+    public TopTalkers getTopTalkers() {
+        return lastTopTalkers;
     }
     
     private void collectProtocolMetrics(NetworkMetrics metrics) {
@@ -301,9 +463,10 @@ public class NetworkMetricsCollector extends AbstractMetricsCollector<NetworkMet
     
     @Override
     protected void onConfigChange(MonitorConfig newConfig) {
-        // 只处理配置变更通知，不修改收集逻辑
+        // 只处理配置变更通知和高频项统计参数，不修改收集逻辑
         if (!newConfig.getMetrics().getNetwork().isEnabled()) {
             log.info("网络指标收集已禁用");
         }
+        topTalkers.configure(newConfig.getTopK());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,239 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.metrics.NetworkMetrics;
+import com.aizuda.monitor.metrics.enums.Protocol;
+
+import java.util.Arrays;
+
+/**
+ * 按流估算网络质量
+ * 每个采集周期由采集线程遍历轨道，用相对上一周期的增量计算三项得分，均在 [0, 1] 之间:
+ * 丢包(轨道丢包率的最大值，{@link #LOSS_AT_ZERO}% 时为0)、帧率(视频为实际帧率与声明帧率之比，音频无新帧时为0)、
+ * 关键帧间隔(超过GOP间隔两倍后逐渐降到0.5)。三项之积乘100为本周期得分，再做指数平滑得到流的质量分
+ *
+ * 流的状态挂在 {@link StreamId} 上，流被淘汰时一起释放；协议和全局质量为本周期各流质量分的平均值
+ */
+final class NetworkQualityModel {
+    /** 单个流跟踪的最大轨道数 */
+    static final int MAX_TRACKS = 8;
+    /** 丢包率(百分比)达到该值时丢包得分为0 */
+    static final float LOSS_AT_ZERO = 10f;
+    /** 平滑系数 */
+    static final float ALPHA = 0.3f;
+
+    private final double[] protocolScores = new double[Protocol.COUNT];
+    private final int[] protocolStreams = new int[Protocol.COUNT];
+    private double scoreSum;
+    private double jitterSum;
+    private double lossSum;
+    private int streams;
+    private int lossStreams;
+    private long now;
+
+    /**
+     * 开始一个采集周期
+     */
+    void begin() {
+        now = System.nanoTime();
+        Arrays.fill(protocolScores, 0);
+        Arrays.fill(protocolStreams, 0);
+        scoreSum = 0;
+        jitterSum = 0;
+        lossSum = 0;
+        streams = 0;
+        lossStreams = 0;
+    }
+
+    /**
+     * 流的质量状态，首次遍历到时创建
+     */
+    StreamState stream(StreamId streamId) {
+        StreamState state = streamId.quality;
+        if (state == null) {
+            state = new StreamState();
+            streamId.quality = state;
+        }
+        state.beginTick(now);
+        return state;
+    }
+
+    /**
+     * 结束一个流的本周期统计，更新质量分并计入协议汇总
+     *
+     * @return 本周期的质量分，没有可用数据时返回-1
+     */
+    float end(StreamState state, Protocol protocol, NetworkMetrics metrics) {
+        float score = state.endTick();
+        if (score < 0) {
+            return score;
+        }
+        streams++;
+        scoreSum += score;
+        jitterSum += state.jitter;
+        if (state.tickLoss >= 0) {
+            lossStreams++;
+            lossSum += state.tickLoss;
+        }
+        if (protocol != null) {
+            protocolScores[protocol.ordinal()] += score;
+            protocolStreams[protocol.ordinal()]++;
+        }
+        metrics.recordStreamQuality(score);
+        return score;
+    }
+
+    /**
+     * 输出本周期的全局和协议质量
+     *
+     * @param bandwidth 遍历到的流的数据速率之和(字节/秒)
+     */
+    void publish(NetworkMetrics metrics, long bandwidth) {
+        if (streams == 0) {
+            metrics.setNetworkQuality(100f, 0f, 0f, bandwidth);
+            return;
+        }
+        metrics.setNetworkQuality((float) (scoreSum / streams), (float) (jitterSum / streams),
+            lossStreams == 0 ? 0f : (float) (lossSum / lossStreams), bandwidth);
+        for (Protocol protocol : Protocol.values()) {
+            int n = protocolStreams[protocol.ordinal()];
+            if (n > 0) {
+                metrics.setProtocolQuality(protocol, (float) (protocolScores[protocol.ordinal()] / n));
+            }
+        }
+    }
+
+    /**
+     * 单个流的质量状态，只由采集线程访问，质量分可由其他线程读取
+     */
+    static final class StreamState {
+        private final long[] lastFrames = new long[MAX_TRACKS];
+        private final long[] lastKeyFrames = new long[MAX_TRACKS];
+        private final long[] lastKeyFrameAt = new long[MAX_TRACKS];
+        /** 轨道是否已有上一周期的计数 */
+        private int seenTracks;
+        private long lastTick;
+        private long now;
+        private double seconds;
+        private float lastIntervalMs;
+
+        /** 本周期各项得分，-1表示没有数据 */
+        private float tickLoss;
+        private float frameScore;
+        private float cadenceScore;
+        private boolean hasData;
+
+        /** 帧间隔抖动(毫秒)，平滑值 */
+        private float jitter;
+        private volatile float score = -1;
+
+        /**
+         * 质量分(0-100)，尚无数据时返回-1
+         */
+        float getScore() {
+            return score;
+        }
+
+        void beginTick(long now) {
+            this.now = now;
+            this.seconds = lastTick == 0 ? 0 : (now - lastTick) / 1e9;
+            this.lastTick = now;
+            tickLoss = -1;
+            frameScore = 1;
+            cadenceScore = 1;
+            hasData = false;
+        }
+
+        /**
+         * 视频轨道
+         *
+         * @param track         轨道序号
+         * @param frames        累计帧数
+         * @param keyFrames     累计关键帧数
+         * @param fps           声明帧率，未知时为0
+         * @param gopIntervalMs GOP间隔(毫秒)，未知时为0
+         * @param loss          丢包率(百分比)，不适用时为-1
+         */
+        void video(int track, long frames, long keyFrames, int fps, int gopIntervalMs, float loss) {
+            loss(loss);
+            if (track < 0 || track >= MAX_TRACKS) {
+                return;
+            }
+            int bit = 1 << track;
+            if (keyFrames != lastKeyFrames[track] || (seenTracks & bit) == 0) {
+                lastKeyFrameAt[track] = now;
+            }
+            long delta = frames - lastFrames[track];
+            if ((seenTracks & bit) != 0 && delta >= 0 && seconds > 0) {
+                hasData = true;
+                if (fps > 0) {
+                    frameScore = Math.min(frameScore, (float) Math.min(delta / seconds / fps, 1.0));
+                } else if (delta == 0) {
+                    frameScore = 0;
+                }
+                if (delta > 0) {
+                    float intervalMs = (float) (seconds * 1000 / delta);
+                    if (lastIntervalMs > 0) {
+                        jitter += (Math.abs(intervalMs - lastIntervalMs) - jitter) * ALPHA;
+                    }
+                    lastIntervalMs = intervalMs;
+                }
+                if (gopIntervalMs > 0) {
+                    double overdue = (now - lastKeyFrameAt[track]) / 1e6 - 2.0 * gopIntervalMs;
+                    if (overdue > 0) {
+                        cadenceScore = Math.min(cadenceScore,
+                            (float) (1 - 0.5 * Math.min(overdue / (2.0 * gopIntervalMs), 1)));
+                    }
+                }
+            }
+            lastFrames[track] = frames;
+            lastKeyFrames[track] = keyFrames;
+            seenTracks |= bit;
+        }
+
+        /**
+         * 音频轨道
+         *
+         * @param track  轨道序号
+         * @param frames 累计帧数
+         * @param loss   丢包率(百分比)，不适用时为-1
+         */
+        void audio(int track, long frames, float loss) {
+            loss(loss);
+            if (track < 0 || track >= MAX_TRACKS) {
+                return;
+            }
+            int bit = 1 << track;
+            long delta = frames - lastFrames[track];
+            if ((seenTracks & bit) != 0 && delta >= 0 && seconds > 0) {
+                hasData = true;
+                if (delta == 0) {
+                    frameScore = 0;
+                }
+            }
+            lastFrames[track] = frames;
+            seenTracks |= bit;
+        }
+
+        private void loss(float loss) {
+            if (loss >= 0) {
+                hasData = true;
+                tickLoss = Math.max(tickLoss, loss);
+            }
+        }
+
+        /**
+         * @return 平滑后的质量分，本周期没有数据时返回-1
+         */
+        private float endTick() {
+            if (!hasData) {
+                return -1;
+            }
+            float lossScore = tickLoss < 0 ? 1 : 1 - Math.min(tickLoss / LOSS_AT_ZERO, 1);
+            float raw = 100 * lossScore * frameScore * cadenceScore;
+            float current = score;
+            float next = current < 0 ? raw : current + (raw - current) * ALPHA;
+            score = Math.max(0, Math.min(100, next));
+            return score;
+        }
+    }
+}
@@ -3,11 +3,9 @@ package com.aizuda.monitor.collector;
 import com.aizuda.monitor.config.MonitorConfig;
 import com.aizuda.monitor.metrics.PerformanceMetrics;
 import com.aizuda.monitor.metrics.enums.MetricsType;
-import com.aizuda.zlm4j.callback.IMKSourceFindCallBack;
 import com.aizuda.zlm4j.core.ZLMApi;
 import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
 import com.aizuda.zlm4j.structure.MK_TRACK;
-import com.sun.jna.Pointer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +75,9 @@ public class PerformanceMetricsCollector extends AbstractMetricsCollector<Perfor
             // 5. 收集播放性能指标
             collectPlayMetrics(metrics);
             
+            // 6. 输出跨轨道分布
+            metrics.summarizeDistributions();
+            
         } catch (Exception e) {
             log.error("收集性能指标失败", e);
             throw e;
@@ -84,112 +85,99 @@ public class PerformanceMetricsCollector extends AbstractMetricsCollector<Perfor
     }
     
     private void collectEncoderMetrics(PerformanceMetrics metrics) {
-        // 获取所有媒体源
-        zlmApi.mk_media_source_for_each(null, new IMKSourceFindCallBack() {
-            @Override
-            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                if (mediaSource != null) {
-                    // 获取每个 track 的性能指标
-                    int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
-                    for (int i = 0; i < trackCount; i++) {
-                        MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
-                        if (track != null) {
-                            try {
-                                collectTrackMetrics(metrics, mediaSource, track);
-                            } finally {
-                                zlmApi.mk_track_unref(track);
-                            }
-                        }
+        // 没有订阅关心轨道指标时跳过整个轨道遍历
+        if (!getSourceMatcher().needsTracks()) {
+            return;
+        }
+        // 获取被订阅选中的媒体源
+        forEachSource(zlmApi, mediaSource -> {
+            // 获取每个 track 的性能指标
+            int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
+            for (int i = 0; i < trackCount; i++) {
+                MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
+                if (track != null) {
+                    try {
+                        collectTrackMetrics(metrics, mediaSource, track, true);
+                    } finally {
+                        zlmApi.mk_track_unref(track);
                     }
                 }
             }
-        }, "", "", "", "");
+        });
     }
     
     private void collectDecoderMetrics(PerformanceMetrics metrics) {
-        // 获取所有媒体源
-        zlmApi.mk_media_source_for_each(null, new IMKSourceFindCallBack() {
-            @Override
-            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                if (mediaSource != null) {
-                    // 获取每个 track 的性能指标
-                    int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
-                    for (int i = 0; i < trackCount; i++) {
-                        MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
-                        if (track != null) {
-                            try {
-                                collectTrackMetrics(metrics, mediaSource, track);
-                            } finally {
-                                // 释放 track 引用
-                                zlmApi.mk_track_unref(track);
-                            }
-                        }
+        // 没有订阅关心轨道指标时跳过整个轨道遍历
+        if (!getSourceMatcher().needsTracks()) {
+            return;
+        }
+        // 获取被订阅选中的媒体源
+        forEachSource(zlmApi, mediaSource -> {
+            // 获取每个 track 的性能指标
+            int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
+            for (int i = 0; i < trackCount; i++) {
+                MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
+                if (track != null) {
+                    try {
+                        collectTrackMetrics(metrics, mediaSource, track, false);
+                    } finally {
+                        // 释放 track 引用
+                        zlmApi.mk_track_unref(track);
                     }
                 }
             }
-        }, "", "", "", "");
+        });
     }
     
     private void collectTranscoderMetrics(PerformanceMetrics metrics) {
-        // 获取所有媒体源
-        zlmApi.mk_media_source_for_each(null, new IMKSourceFindCallBack() {
-            @Override
-            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                if (mediaSource != null) {
-                    // 获取基本指标
-                    int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
-                    long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
-                    
-                    metrics.setTranscoderBps(bytesSpeed);
-                    metrics.setTranscoderTime(aliveSecond);
-                }
-            }
-        }, "", "", "", "");
+        // 获取被订阅选中的媒体源
+        forEachSource(zlmApi, mediaSource -> {
+            // 获取基本指标
+            int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
+            long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
+            
+            metrics.setTranscoderBps(bytesSpeed);
+            metrics.setTranscoderTime(aliveSecond);
+        });
     }
     
     private void collectPublishMetrics(PerformanceMetrics metrics) {
-        // 获取所有媒体源
-        zlmApi.mk_media_source_for_each(null, new IMKSourceFindCallBack() {
-            @Override
-            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                if (mediaSource != null) {
-                    // 获取基本指标
-                    int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
-                    int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
-                    int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
-                    long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
-                    
-                    metrics.setPublishCount(readerCount);
-                    metrics.setTotalPublishCount(totalReaderCount);
-                    metrics.setPublishTime(aliveSecond);
-                    metrics.setPublishBytes(bytesSpeed);
-                }
-            }
-        }, "", "", "", "");
+        // 获取被订阅选中的媒体源
+        forEachSource(zlmApi, mediaSource -> {
+            // 获取基本指标
+            int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
+            int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
+            int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
+            long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
+            
+            metrics.setPublishCount(readerCount);
+            metrics.setTotalPublishCount(totalReaderCount);
+            metrics.setPublishTime(aliveSecond);
+            metrics.setPublishBytes(bytesSpeed);
+        });
     }
     
     private void collectPlayMetrics(PerformanceMetrics metrics) {
-        // 获取所有媒体源
-        zlmApi.mk_media_source_for_each(null, new IMKSourceFindCallBack() {
-            @Override
-            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                if (mediaSource != null) {
-                    // 获取基本指标
-                    int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
-                    int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
-                    int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
-                    long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
-                    
-                    metrics.setPlayCount(readerCount);
-                    metrics.setTotalPlayCount(totalReaderCount);
-                    metrics.setPlayTime(aliveSecond);
-                    metrics.setPlayBytes(bytesSpeed);
-                }
-            }
-        }, "", "", "", "");
+        // 获取被订阅选中的媒体源
+        forEachSource(zlmApi, mediaSource -> {
+            // 获取基本指标
+            int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
+            int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
+            int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
+            long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
+            
+            metrics.setPlayCount(readerCount);
+            metrics.setTotalPlayCount(totalReaderCount);
+            metrics.setPlayTime(aliveSecond);
+            metrics.setPlayBytes(bytesSpeed);
+        });
     }
     
-    private void collectTrackMetrics(PerformanceMetrics metrics, MK_MEDIA_SOURCE mediaSource, MK_TRACK track) {
+    /**
+     * @param recordDistribution 是否计入跨轨道分布，同一次采集中每个轨道只计入一次
+     */
+    private void collectTrackMetrics(PerformanceMetrics metrics, MK_MEDIA_SOURCE mediaSource, MK_TRACK track,
+                                     boolean recordDistribution) {
         try {
             // 获取基本指标
             int codecId = zlmApi.mk_track_codec_id(track);
@@ -237,17 +225,15 @@ public class PerformanceMetricsCollector extends AbstractMetricsCollector<Perfor
             metrics.setTrackDuration(duration);
             metrics.setTrackFrames(frames);
             metrics.setTrackLoss(loss);
+            if (recordDistribution) {
+                metrics.recordTrackLoss(loss);
+            }
             
         } catch (Exception e) {
             log.warn("获取 track 性能指标失败", e);
         }
     }
     
-    @Override
-    public void start() throws Exception {
-        doStart();
-    }
-    
     @Override
     public void close() {
         try {
@@ -0,0 +1,156 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.metrics.enums.Protocol;
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_SOCK_INFO;
+import com.sun.jna.Pointer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按协议和HTTP子格式统计在线会话
+ * on_mk_media_play / on_mk_media_publish 在会话建立时加一，on_mk_flow_report 在会话结束时减一，
+ * 两者按相同的 schema 和本地端口分类，计数是精确的在线会话数而不是遍历时按观看人数的估算
+ *
+ * 计数按线程id分条带，每个条带独占缓存行，ZLM各网络线程的更新互不竞争；
+ * 读取时按条带求和，代价只与协议数和条带数有关，与会话数无关。
+ * ZLM只对流量不低于 general.flowThreshold 的会话触发 on_mk_flow_report，该值不为0时低于阈值的会话结束后不会减一，
+ * 因此只在该值为0时创建
+ */
+final class SessionTracker {
+    /** HTTP-FLV，含同端口的 WebSocket-FLV */
+    static final int HTTP_FLV = Protocol.COUNT;
+    /** HLS，含 HLS-fMP4 */
+    static final int HTTP_HLS = Protocol.COUNT + 1;
+    /** HTTP-fMP4，含同端口的 WebSocket-fMP4 */
+    static final int HTTP_FMP4 = Protocol.COUNT + 2;
+    /** HTTP-TS，含同端口的 WebSocket-TS */
+    static final int HTTP_TS = Protocol.COUNT + 3;
+    /** 每个角色的计数槽数: 按 {@link Protocol} 序号的协议槽之后是HTTP子格式 */
+    static final int SLOTS = Protocol.COUNT + 4;
+
+    private static final int MAX_STRIPES = 16;
+    /** 每个条带的长度按8个long(64字节)对齐，并多留一行避免与相邻条带共享缓存行 */
+    private static final int STRIDE = ((2 * SLOTS + 7) & ~7) + 8;
+
+    private final ZLMApi zlmApi;
+    private final boolean direct;
+    private final int stripeMask;
+    private final AtomicLongArray cells;
+    /** RTMP端口，为0时不区分RTMP和HTTP-FLV */
+    private volatile int rtmpPort;
+    private volatile int rtmpSslPort;
+
+    SessionTracker(ZLMApi zlmApi) {
+        this.zlmApi = zlmApi;
+        this.direct = StreamKeyReader.DirectApi.register(zlmApi);
+        int stripes = 1;
+        int cpus = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+        while (stripes < cpus) {
+            stripes <<= 1;
+        }
+        this.stripeMask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * STRIDE);
+    }
+
+    /**
+     * 设置RTMP端口，schema为rtmp而本地端口不是RTMP端口的播放会话计为HTTP-FLV
+     */
+    void setRtmpPorts(int port, int sslPort) {
+        this.rtmpPort = port;
+        this.rtmpSslPort = sslPort;
+    }
+
+    /**
+     * 会话建立，在ZLM网络线程中调用
+     *
+     * @param schema   流的 schema
+     * @param sockInfo 会话的连接
+     * @param player   是否为播放会话
+     */
+    void onOpen(String schema, MK_SOCK_INFO sockInfo, boolean player) {
+        update(schema, sockInfo, player, 1);
+    }
+
+    /**
+     * 会话结束，在ZLM网络线程中调用，稳态下不分配对象
+     */
+    void onClose(String schema, MK_SOCK_INFO sockInfo, boolean player) {
+        update(schema, sockInfo, player, -1);
+    }
+
+    /**
+     * 读取全部计数
+     *
+     * @param counts 长度不小于 2*{@link #SLOTS}，按 {@link #index(boolean, int)} 写入各槽的在线会话数
+     */
+    void read(long[] counts) {
+        for (int i = 0; i < 2 * SLOTS; i++) {
+            long sum = 0;
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                sum += cells.get(stripe * STRIDE + i);
+            }
+            // 结束事件可能先于建立事件被读到
+            counts[i] = Math.max(sum, 0);
+        }
+    }
+
+    /**
+     * 计数槽在 {@link #read(long[])} 结果中的位置
+     *
+     * @param player 是否为播放会话
+     * @param slot   {@link Protocol#ordinal()} 或HTTP子格式
+     */
+    static int index(boolean player, int slot) {
+        return (player ? SLOTS : 0) + slot;
+    }
+
+    private void update(String schema, MK_SOCK_INFO sockInfo, boolean player, long delta) {
+        Protocol protocol = Protocol.of(schema);
+        if (protocol == null) {
+            return;
+        }
+        int base = (int) Thread.currentThread().getId() & stripeMask;
+        base = base * STRIDE + (player ? SLOTS : 0);
+        int format = -1;
+        if (protocol == Protocol.HTTP) {
+            format = httpFormat(schema);
+        } else if (protocol == Protocol.RTMP && player && !isRtmpPort(sockInfo)) {
+            // HTTP-FLV、WebSocket-FLV 播放的是RTMP源
+            protocol = Protocol.HTTP;
+            format = HTTP_FLV;
+        }
+        cells.getAndAdd(base + protocol.ordinal(), delta);
+        if (format >= 0) {
+            cells.getAndAdd(base + format, delta);
+        }
+    }
+
+    private static int httpFormat(String schema) {
+        switch (schema) {
+            case "hls":
+            case "hls.fmp4":
+                return HTTP_HLS;
+            case "fmp4":
+                return HTTP_FMP4;
+            case "ts":
+                return HTTP_TS;
+            case "flv":
+                return HTTP_FLV;
+            default:
+                return -1;
+        }
+    }
+
+    private boolean isRtmpPort(MK_SOCK_INFO sockInfo) {
+        int port = rtmpPort;
+        int sslPort = rtmpSslPort;
+        if ((port == 0 && sslPort == 0) || sockInfo == null) {
+            return true;
+        }
+        int local = (direct
+            ? StreamKeyReader.DirectApi.mk_sock_info_local_port(Pointer.nativeValue(sockInfo.getPointer()))
+            : zlmApi.mk_sock_info_local_port(sockInfo)) & 0xFFFF;
+        return local == port || local == sslPort;
+    }
+}
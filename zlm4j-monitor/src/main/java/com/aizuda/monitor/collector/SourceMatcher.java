@@ -0,0 +1,155 @@
+package com.aizuda.monitor.collector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 收集器遍历媒体源时使用的匹配器
+ * 由所有订阅的 {@link MetricsSelector} 合并而成，收集器据此：
+ * 1. 所有选择器的某一字段为同一字面量时，作为 mk_media_source_for_each 的过滤参数交给ZLM过滤；
+ * 2. 在读取流属性和轨道之前按 vhost/app/stream 跳过没有订阅关心的流；
+ * 3. 没有订阅关心轨道指标(track.、video.、audio.)时跳过整个轨道遍历
+ *
+ * 收集器的汇总值按合并后的范围计算，不区分来自哪个选择器
+ */
+public final class SourceMatcher {
+    /** 轨道级指标的名称前缀 */
+    private static final String[] TRACK_PREFIXES = {"track.", "video.", "audio."};
+
+    /** 版本号分配器，流标识据此缓存匹配结果 */
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+
+    /** 不做任何过滤 */
+    public static final SourceMatcher ALL = of(Collections.singletonList(MetricsSelector.ALL));
+
+    private final List<MetricsSelector> selectors;
+    private final int version = VERSIONS.incrementAndGet() & 0x3FFFFFFF;
+    private final boolean allSources;
+    private final boolean tracks;
+    private final String vhost;
+    private final String app;
+    private final String stream;
+
+    private SourceMatcher(List<MetricsSelector> selectors) {
+        this.selectors = selectors;
+        boolean all = false;
+        boolean needTracks = false;
+        for (MetricsSelector selector : selectors) {
+            all |= selector.isAllSources();
+            for (String prefix : TRACK_PREFIXES) {
+                needTracks |= selector.matchesMetricPrefix(prefix);
+            }
+        }
+        this.allSources = all;
+        this.tracks = needTracks;
+        this.vhost = commonLiteral(selectors, 0);
+        this.app = commonLiteral(selectors, 1);
+        this.stream = commonLiteral(selectors, 2);
+    }
+
+    /**
+     * 合并多个选择器，为空时不匹配任何流
+     */
+    public static SourceMatcher of(Collection<MetricsSelector> selectors) {
+        return new SourceMatcher(Collections.unmodifiableList(new ArrayList<>(selectors)));
+    }
+
+    /**
+     * 匹配器版本，每个匹配器唯一
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 没有任何订阅，收集器可跳过遍历
+     */
+    public boolean isEmpty() {
+        return selectors.isEmpty();
+    }
+
+    /**
+     * 是否选择全部流，为true时收集器无需为过滤读取 vhost/app/stream
+     */
+    public boolean isAllSources() {
+        return allSources;
+    }
+
+    /**
+     * 流是否被至少一个订阅选中
+     */
+    public boolean acceptsSource(String vhost, String app, String stream) {
+        if (allSources) {
+            return true;
+        }
+        for (MetricsSelector selector : selectors) {
+            if (selector.matchesSource(vhost, app, stream)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否有订阅关心轨道级指标
+     */
+    public boolean needsTracks() {
+        return tracks;
+    }
+
+    /**
+     * 是否有订阅可能选中以指定前缀开头的指标
+     */
+    public boolean needsMetric(String prefix) {
+        for (MetricsSelector selector : selectors) {
+            if (selector.matchesMetricPrefix(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 传给 mk_media_source_for_each 的vhost过滤参数，空串表示不过滤
+     */
+    public String nativeVhost() {
+        return vhost;
+    }
+
+    /**
+     * 传给 mk_media_source_for_each 的app过滤参数，空串表示不过滤
+     */
+    public String nativeApp() {
+        return app;
+    }
+
+    /**
+     * 传给 mk_media_source_for_each 的stream过滤参数，空串表示不过滤
+     */
+    public String nativeStream() {
+        return stream;
+    }
+
+    @Override
+    public String toString() {
+        return "SourceMatcher" + selectors;
+    }
+
+    /**
+     * 所有选择器在某一字段上为同一字面量时返回该字面量，否则返回空串
+     */
+    private static String commonLiteral(List<MetricsSelector> selectors, int field) {
+        String common = null;
+        for (MetricsSelector selector : selectors) {
+            MetricsSelector.Glob glob = field == 0 ? selector.vhost() : field == 1 ? selector.app() : selector.stream();
+            if (glob.literal == null || (common != null && !common.equals(glob.literal))) {
+                return "";
+            }
+            common = glob.literal;
+        }
+        return common == null ? "" : common;
+    }
+}
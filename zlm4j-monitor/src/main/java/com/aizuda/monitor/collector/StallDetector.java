@@ -0,0 +1,222 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 视频轨道卡顿检测
+ * 按流检测，同一个流的各协议媒体源共享轨道，只检测一次，事件不带schema；
+ * 每个采集周期比较视频轨道的累计帧数与上一周期的差值，差值为0或低于 帧率*间隔*minFrameRatio 时记为帧数不足，
+ * 连续 ticks 个周期帧数不足判定为卡顿并发出 {@link StreamEventType#STALL_START}，之后第一个帧数正常的周期发出
+ * {@link StreamEventType#STALL_END}；流被淘汰或轨道消失时卡顿同样结束
+ *
+ * 上一周期的帧数和连续不足的周期数按 id*{@link StreamTable#MAX_TRACKS}+轨道序号 保存在原始类型数组中，id来自 {@link StreamTable}；
+ * 只由采集线程访问
+ */
+final class StallDetector {
+    private static final int TRACKS = StreamTable.MAX_TRACKS;
+
+    private volatile MonitorConfig.StallConfig config;
+
+    /** 按 id*TRACKS+轨道序号 索引 */
+    private long[] lastFrames = new long[0];
+    private int[] lowTicks = new int[0];
+    /** 按id索引: 已有上一周期帧数的轨道、卡顿中的轨道、本周期遍历到的轨道(位掩码)，上次遍历的时间 */
+    private int[] seen = new int[0];
+    private int[] stalled = new int[0];
+    private int[] visited = new int[0];
+    private long[] lastVisit = new long[0];
+    /** 是否保存有任何流的状态 */
+    private boolean dirty;
+
+    /** 以下为本周期的状态 */
+    private long now;
+    private int id;
+    private double seconds;
+    private int stalledTracks;
+    private int stalledStreams;
+    private final Map<String, Integer> stalledApps = new HashMap<>();
+    /** 上一周期有卡顿的app，本周期没有时输出0 */
+    private final Set<String> lastApps = new HashSet<>();
+
+    StallDetector(MonitorConfig.StallConfig config) {
+        configure(config);
+    }
+
+    /**
+     * 应用配置，下一个采集周期生效
+     */
+    void configure(MonitorConfig.StallConfig config) {
+        this.config = config;
+    }
+
+    boolean isEnabled() {
+        MonitorConfig.StallConfig current = config;
+        return current != null && current.isEnabled();
+    }
+
+    /**
+     * 开始一个采集周期
+     */
+    void begin() {
+        now = System.nanoTime();
+        stalledTracks = 0;
+        stalledStreams = 0;
+        stalledApps.clear();
+    }
+
+    /**
+     * 开始统计一个流
+     *
+     * @param id {@link StreamTable#visit} 分配的流id
+     */
+    void stream(int id) {
+        ensureCapacity(id + 1);
+        this.id = id;
+        long last = lastVisit[id];
+        seconds = last == 0 ? 0 : (now - last) / 1e9;
+        lastVisit[id] = now;
+        visited[id] = 0;
+        dirty = true;
+    }
+
+    /**
+     * 视频轨道
+     *
+     * @param track    轨道序号
+     * @param frames   累计帧数
+     * @param fps      声明帧率，未知时为0
+     * @param streamId 所属的流
+     * @param metrics  本周期的指标，卡顿开始或结束时加入事件
+     */
+    void video(int track, long frames, int fps, StreamId streamId, StreamMetrics metrics) {
+        if (track < 0 || track >= TRACKS) {
+            return;
+        }
+        int bit = 1 << track;
+        int slot = id * TRACKS + track;
+        long delta = frames - lastFrames[slot];
+        // 帧数回退说明轨道已重建，重新开始计数
+        if ((seen[id] & bit) != 0 && seconds > 0 && delta >= 0) {
+            MonitorConfig.StallConfig current = config;
+            double expected = fps > 0 ? fps * seconds : 0;
+            if (delta == 0 || delta < expected * current.getMinFrameRatio()) {
+                if (++lowTicks[slot] >= current.getTicks() && (stalled[id] & bit) == 0) {
+                    stalled[id] |= bit;
+                    metrics.addEvent(event(StreamEventType.STALL_START, streamId, track, delta, expected));
+                }
+            } else {
+                lowTicks[slot] = 0;
+                if ((stalled[id] & bit) != 0) {
+                    stalled[id] &= ~bit;
+                    metrics.addEvent(event(StreamEventType.STALL_END, streamId, track, delta, expected));
+                }
+            }
+        }
+        lastFrames[slot] = frames;
+        seen[id] |= bit;
+        visited[id] |= bit;
+    }
+
+    /**
+     * 结束一个流的本周期统计，本周期未遍历到的轨道视为已消失
+     */
+    void endStream(StreamId streamId, StreamMetrics metrics) {
+        int gone = seen[id] & ~visited[id];
+        if (gone != 0) {
+            forget(id, gone, streamId, metrics);
+        }
+        int mask = stalled[id];
+        if (mask != 0) {
+            stalledTracks += Integer.bitCount(mask);
+            stalledStreams++;
+            stalledApps.merge(streamId.getApp(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * 流被淘汰，结束其卡顿并清理状态
+     */
+    void remove(int id, StreamId streamId, StreamMetrics metrics) {
+        if (id < seen.length && seen[id] != 0) {
+            forget(id, seen[id], streamId, metrics);
+        }
+        if (id < lastVisit.length) {
+            lastVisit[id] = 0;
+        }
+    }
+
+    /**
+     * 丢弃全部状态，不发出事件，用于停用检测时
+     */
+    void clear() {
+        if (!dirty) {
+            return;
+        }
+        Arrays.fill(lowTicks, 0);
+        Arrays.fill(seen, 0);
+        Arrays.fill(stalled, 0);
+        Arrays.fill(lastVisit, 0);
+        lastApps.clear();
+        dirty = false;
+    }
+
+    /**
+     * 输出本周期的卡顿轨道数、卡顿流数和各app的卡顿流数
+     */
+    void publish(StreamMetrics metrics) {
+        metrics.setStallCounts(stalledTracks, stalledStreams);
+        for (Map.Entry<String, Integer> entry : stalledApps.entrySet()) {
+            metrics.setAppStalledStreams(entry.getKey(), entry.getValue());
+        }
+        for (String app : lastApps) {
+            if (!stalledApps.containsKey(app)) {
+                metrics.setAppStalledStreams(app, 0);
+            }
+        }
+        lastApps.clear();
+        lastApps.addAll(stalledApps.keySet());
+    }
+
+    private void forget(int id, int mask, StreamId streamId, StreamMetrics metrics) {
+        for (int track = 0; track < TRACKS; track++) {
+            int bit = 1 << track;
+            if ((mask & bit) == 0) {
+                continue;
+            }
+            if ((stalled[id] & bit) != 0 && streamId != null) {
+                metrics.addEvent(event(StreamEventType.STALL_END, streamId, track, -1, 0));
+            }
+            lowTicks[id * TRACKS + track] = 0;
+        }
+        seen[id] &= ~mask;
+        stalled[id] &= ~mask;
+    }
+
+    private static StreamEvent event(StreamEventType type, StreamId streamId, int track, double value,
+                                     double expected) {
+        return new StreamEvent(type, null, streamId.getVhost(), streamId.getApp(),
+            streamId.getStream(), track, value, expected);
+    }
+
+    private void ensureCapacity(int streams) {
+        if (streams <= seen.length) {
+            return;
+        }
+        int capacity = Math.max(streams, Math.max(seen.length * 2, 64));
+        lastFrames = Arrays.copyOf(lastFrames, capacity * TRACKS);
+        lowTicks = Arrays.copyOf(lowTicks, capacity * TRACKS);
+        seen = Arrays.copyOf(seen, capacity);
+        stalled = Arrays.copyOf(stalled, capacity);
+        visited = Arrays.copyOf(visited, capacity);
+        lastVisit = Arrays.copyOf(lastVisit, capacity);
+    }
+}
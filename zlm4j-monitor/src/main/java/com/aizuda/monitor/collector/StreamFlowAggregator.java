@@ -0,0 +1,175 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_MEDIA_INFO;
+import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按流聚合会话流量
+ * ZLM网络线程在会话结束时累加到按流id分条带的计数器；采集线程每个周期调用一次 {@link #roll()}，
+ * 以各流计数相对上一周期的增量得到本周期的字节速率和结束的会话数，速率按两次采集的实际间隔计算
+ *
+ * 流在线状态由 on_mk_media_changed 维护，已注销且连续 {@link #IDLE_TICKS_BEFORE_EVICT} 个周期没有会话的流被淘汰，
+ * 驻留的流和计数只与在线及最近活跃的流数量成正比
+ */
+final class StreamFlowAggregator {
+    /** 已注销的流连续多少个采集周期没有会话后淘汰 */
+    static final int IDLE_TICKS_BEFORE_EVICT = 2;
+
+    private final StreamIdInterner interner = new StreamIdInterner();
+    private final FlowCounters counters = new FlowCounters(StreamIdInterner.MAX_STREAMS);
+    private final StreamKeyReader keys;
+
+    /** 以下字段只在 roll 中访问 */
+    private final long[] totals = new long[FlowCounters.FIELDS];
+    private long lastRoll = System.nanoTime();
+    private int[] evicting = new int[16];
+    /** 上一周期淘汰、本周期回收id的流，回收前补记淘汰后才到达的会话 */
+    private StreamId[] retired = new StreamId[16];
+    private int retiredCount;
+
+    StreamFlowAggregator(ZLMApi zlmApi) {
+        this.keys = new StreamKeyReader(zlmApi, interner);
+    }
+
+    /**
+     * 读取并驻留会话所属的流，在ZLM网络线程中调用，稳态下不分配对象
+     *
+     * @return 流标识，schema为空或驻留表已满时返回null
+     */
+    StreamId intern(MK_MEDIA_INFO mediaInfo) {
+        int id = keys.intern(mediaInfo);
+        return id == StreamIdInterner.NO_ID ? null : interner.get(id);
+    }
+
+    /**
+     * 驻留遍历到的在线流，由采集线程调用
+     * ZLM在监控启动前注册的流没有注册事件，遍历中出现的流在下一次 {@link #roll(SourceMatcher)} 时不会被淘汰
+     *
+     * @return 流标识，驻留表已满时返回null
+     */
+    StreamId touch(String schema, String vhost, String app, String stream) {
+        int id = keys.intern(schema, vhost, app, stream, true);
+        StreamId streamId = id == StreamIdInterner.NO_ID ? null : interner.get(id);
+        if (streamId != null) {
+            streamId.idleTicks = 0;
+        }
+        return streamId;
+    }
+
+    /**
+     * 查找已驻留的流，不驻留新的流
+     */
+    StreamId find(String schema, String vhost, String app, String stream) {
+        int id = keys.intern(schema, vhost, app, stream, false);
+        return id == StreamIdInterner.NO_ID ? null : interner.get(id);
+    }
+
+    /**
+     * 会话结束，在ZLM网络线程中调用，稳态下不分配对象
+     *
+     * @param streamId {@link #intern(MK_MEDIA_INFO)} 的结果
+     * @return 该流是否被订阅选中并已计数
+     */
+    boolean onFlowReport(StreamId streamId, long totalBytes, long totalSeconds, boolean player,
+                         SourceMatcher matcher) {
+        // 驻留后到这里之间可能已被淘汰
+        if (streamId == null || interner.get(streamId.getId()) != streamId || !streamId.accepts(matcher)) {
+            return false;
+        }
+        int id = streamId.getId();
+        counters.add(id, player ? FlowCounters.PLAY_BYTES : FlowCounters.PUBLISH_BYTES, totalBytes);
+        counters.add(id, player ? FlowCounters.PLAY_SESSIONS : FlowCounters.PUBLISH_SESSIONS, 1);
+        counters.add(id, player ? FlowCounters.PLAY_SECONDS : FlowCounters.PUBLISH_SECONDS, totalSeconds);
+        return true;
+    }
+
+    /**
+     * 流注册或注销
+     */
+    void onMediaChanged(boolean regist, MK_MEDIA_SOURCE mediaSource) {
+        // 与淘汰并发时流标识可能刚被移除，重新驻留一次记到新的流标识上
+        for (int attempt = 0; attempt < 2; attempt++) {
+            int id = keys.intern(mediaSource);
+            StreamId streamId = id == StreamIdInterner.NO_ID ? null : interner.get(id);
+            if (streamId == null) {
+                continue;
+            }
+            streamId.registered(regist);
+            if (interner.get(id) == streamId) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 结束当前周期，由采集线程调用
+     *
+     * @param matcher 统计在线流数量时的订阅选择
+     * @return 本周期的会话流量
+     */
+    synchronized FlowWindow roll(SourceMatcher matcher) {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - lastRoll) / 1e9, 1e-3);
+        lastRoll = now;
+
+        long[] counts = new long[FlowCounters.FIELDS];
+        // 上一周期淘汰的流已经过一个完整周期，仍在途的回调都已结束，补记剩余计数后回收id
+        for (int i = 0; i < retiredCount; i++) {
+            StreamId streamId = retired[i];
+            for (int field = 0; field < FlowCounters.FIELDS; field++) {
+                counts[field] += counters.get(streamId.getId(), field) - streamId.lastCounts[field];
+            }
+            retired[i] = null;
+        }
+        retiredCount = 0;
+        interner.recycle(counters::clear);
+        int limit = interner.limit();
+        counters.trim(limit);
+
+        Map<String, Integer> registered = new HashMap<>();
+        int evictCount = 0;
+        for (int id = 0; id < limit; id++) {
+            StreamId streamId = interner.get(id);
+            if (streamId == null) {
+                continue;
+            }
+            boolean active = false;
+            for (int field = 0; field < FlowCounters.FIELDS; field++) {
+                long value = counters.get(id, field);
+                long delta = value - streamId.lastCounts[field];
+                if (delta != 0) {
+                    counts[field] += delta;
+                    streamId.lastCounts[field] = value;
+                    active = true;
+                }
+            }
+            if (streamId.isRegistered()) {
+                streamId.idleTicks = 0;
+                if (streamId.accepts(matcher)) {
+                    registered.merge(streamId.getSchema().toLowerCase(), 1, Integer::sum);
+                }
+            } else if (active) {
+                streamId.idleTicks = 0;
+            } else if (++streamId.idleTicks >= IDLE_TICKS_BEFORE_EVICT) {
+                if (evictCount == evicting.length) {
+                    evicting = Arrays.copyOf(evicting, evictCount * 2);
+                    retired = Arrays.copyOf(retired, evictCount * 2);
+                }
+                evicting[evictCount] = id;
+                retired[evictCount++] = streamId;
+            }
+        }
+        interner.evict(evicting, evictCount);
+        retiredCount = evictCount;
+
+        for (int field = 0; field < FlowCounters.FIELDS; field++) {
+            totals[field] += counts[field];
+        }
+        return new FlowWindow(seconds, counts, totals.clone(), registered, interner.size(), evictCount);
+    }
+}
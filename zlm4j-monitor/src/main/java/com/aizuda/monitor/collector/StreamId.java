@@ -0,0 +1,110 @@
+package com.aizuda.monitor.collector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 驻留的流标识
+ * 由 {@link StreamIdInterner} 为每个 schema/vhost/app/stream 分配一次，之后以整数id索引计数器，
+ * 事件回调中只比较字节，不再创建字符串
+ */
+public final class StreamId {
+    private static final AtomicIntegerFieldUpdater<StreamId> REGISTRATIONS =
+        AtomicIntegerFieldUpdater.newUpdater(StreamId.class, "registrations");
+
+    private final int id;
+    private final String schema;
+    private final String vhost;
+    private final String app;
+    private final String stream;
+    /** schema\0vhost\0app\0stream 的UTF-8字节 */
+    private final byte[] key;
+    /** 最近一次匹配的结果: 匹配器版本 << 1 | 是否选中 */
+    private volatile int acceptState = -1;
+    /** 在ZLM中注册的次数，由 on_mk_media_changed 维护 */
+    private volatile int registrations;
+
+    /** 以下字段只由网络采集线程访问: 上次采集时各计数的累计值、连续无流量的采集次数 */
+    final long[] lastCounts = new long[FlowCounters.FIELDS];
+    int idleTicks;
+    /** 网络质量状态，首次遍历到时创建，质量分可由其他线程读取 */
+    volatile NetworkQualityModel.StreamState quality;
+
+    StreamId(int id, byte[] key) {
+        this.id = id;
+        this.key = key;
+        String[] parts = new String[4];
+        int start = 0;
+        int part = 0;
+        for (int i = 0; i <= key.length && part < parts.length; i++) {
+            if (i == key.length || key[i] == 0) {
+                parts[part++] = new String(key, start, i - start, StandardCharsets.UTF_8);
+                start = i + 1;
+            }
+        }
+        this.schema = parts[0];
+        this.vhost = parts[1];
+        this.app = parts[2];
+        this.stream = parts[3];
+    }
+
+    /**
+     * 驻留id，从0开始连续分配
+     */
+    public int getId() {
+        return id;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getVhost() {
+        return vhost;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    /**
+     * 是否被匹配器选中，结果按匹配器版本缓存，匹配器不变时不再做通配符匹配
+     */
+    public boolean accepts(SourceMatcher matcher) {
+        int state = acceptState;
+        if (state >>> 1 == matcher.getVersion()) {
+            return (state & 1) != 0;
+        }
+        boolean accepted = matcher.acceptsSource(vhost, app, stream);
+        acceptState = matcher.getVersion() << 1 | (accepted ? 1 : 0);
+        return accepted;
+    }
+
+    /**
+     * 是否已在ZLM中注册(流在线)
+     */
+    public boolean isRegistered() {
+        return registrations > 0;
+    }
+
+    void registered(boolean regist) {
+        if (regist) {
+            REGISTRATIONS.incrementAndGet(this);
+        } else {
+            REGISTRATIONS.getAndUpdate(this, n -> n > 0 ? n - 1 : 0);
+        }
+    }
+
+    byte[] key() {
+        return key;
+    }
+
+    @Override
+    public String toString() {
+        return schema + "://" + vhost + "/" + app + "/" + stream;
+    }
+}
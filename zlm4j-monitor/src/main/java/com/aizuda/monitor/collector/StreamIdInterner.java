@@ -0,0 +1,252 @@
+package com.aizuda.monitor.collector;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * 流标识驻留表
+ * 以 schema\0vhost\0app\0stream 字节的64位哈希开放寻址，命中后逐字节比对确认；
+ * 查找无锁且不分配对象，只有首次出现的流和淘汰在锁内进行
+ *
+ * id优先复用最小的空闲id，同时驻留的流不超过 {@link #MAX_STREAMS}，超出后返回 {@link #NO_ID}。
+ * 淘汰的id先进入隔离区，下一次 {@link #recycle(IntConsumer)} 时才可复用，
+ * 保证淘汰时仍在ZLM线程中执行的回调不会把数据记到复用该id的新流上
+ */
+public final class StreamIdInterner {
+    /** 最多同时驻留的流数量 */
+    public static final int MAX_STREAMS = 1 << 16;
+    /** 驻留表已满 */
+    public static final int NO_ID = -1;
+
+    private static final int MIN_TABLE = 64;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** 哈希槽，读者无锁读取，写者在锁内修改或整体替换 */
+    private volatile Table table = new Table(MIN_TABLE);
+    /** 按id索引的流标识，空闲id为null */
+    private volatile StreamId[] streams = new StreamId[MIN_TABLE];
+    /** 已分配过的最大id加1，遍历时的上界 */
+    private volatile int limit;
+    private volatile int size;
+    /** 小于 limit 的空闲id */
+    private final BitSet free = new BitSet();
+    /** 已淘汰、等待复用的id */
+    private int[] quarantine = new int[16];
+    private int quarantined;
+
+    /**
+     * 计算键字节的哈希
+     */
+    public static long hash(byte[] key, int length) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            h ^= key[i] & 0xff;
+            h *= FNV_PRIME;
+        }
+        // 0 表示空槽
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 查找或驻留流标识
+     *
+     * @param key    schema\0vhost\0app\0stream 的UTF-8字节，可以是复用的缓冲区
+     * @param length 有效长度
+     * @return 流id，驻留表已满时返回 {@link #NO_ID}
+     */
+    public int intern(byte[] key, int length) {
+        long h = hash(key, length);
+        int id = find(table, h, key, length);
+        if (id != NO_ID) {
+            return id;
+        }
+        return insert(h, key, length);
+    }
+
+    /**
+     * 查找已驻留的流标识，不驻留新的流
+     *
+     * @return 流id，未驻留时返回 {@link #NO_ID}
+     */
+    public int lookup(byte[] key, int length) {
+        return find(table, hash(key, length), key, length);
+    }
+
+    /**
+     * 按id获取流标识，id空闲时返回null
+     */
+    public StreamId get(int id) {
+        StreamId[] current = streams;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * 当前驻留的流数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * id上界，所有驻留的流id都小于该值
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * 淘汰流标识，id进入隔离区
+     *
+     * @param ids   待淘汰的id
+     * @param count 有效数量
+     */
+    public synchronized void evict(int[] ids, int count) {
+        if (count == 0) {
+            return;
+        }
+        StreamId[] current = streams;
+        for (int i = 0; i < count; i++) {
+            int id = ids[i];
+            if (current[id] == null) {
+                continue;
+            }
+            current[id] = null;
+            if (quarantined == quarantine.length) {
+                quarantine = Arrays.copyOf(quarantine, quarantined * 2);
+            }
+            quarantine[quarantined++] = id;
+            size--;
+        }
+        // 重建哈希槽，开放寻址不能直接删除
+        table = Table.build(current, limit, tableCapacity(size));
+        streams = current;
+    }
+
+    /**
+     * 释放隔离区中的id，可以复用前先由 onRecycle 清理该id的计数
+     * 空闲id位于末尾时收缩 limit
+     */
+    public synchronized void recycle(IntConsumer onRecycle) {
+        for (int i = 0; i < quarantined; i++) {
+            onRecycle.accept(quarantine[i]);
+            free.set(quarantine[i]);
+        }
+        quarantined = 0;
+        int top = limit;
+        while (top > 0 && free.get(top - 1)) {
+            free.clear(--top);
+        }
+        limit = top;
+    }
+
+    private int find(Table t, long h, byte[] key, int length) {
+        StreamId[] current = streams;
+        int slot = (int) (h ^ (h >>> 32)) & t.mask;
+        while (true) {
+            long stored = t.hashes[slot];
+            if (stored == 0) {
+                return NO_ID;
+            }
+            if (stored == h) {
+                int id = t.ids[slot];
+                StreamId candidate = id < current.length ? current[id] : null;
+                if (candidate != null && equals(candidate.key(), key, length)) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & t.mask;
+        }
+    }
+
+    private synchronized int insert(long h, byte[] key, int length) {
+        int existing = find(table, h, key, length);
+        if (existing != NO_ID) {
+            return existing;
+        }
+        int id = free.nextSetBit(0);
+        if (id < 0) {
+            id = limit;
+            if (id >= MAX_STREAMS) {
+                return NO_ID;
+            }
+        } else {
+            free.clear(id);
+        }
+        StreamId[] current = streams;
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = new StreamId(id, Arrays.copyOf(key, length));
+        // 先发布流标识，再发布哈希槽，读者看到槽时一定能取到对应的流标识
+        streams = current;
+        if (id >= limit) {
+            limit = id + 1;
+        }
+        size++;
+        Table t = table;
+        if (size * 2 > t.hashes.length) {
+            t = Table.build(current, limit, tableCapacity(size));
+        } else {
+            t.put(h, id);
+        }
+        table = t;
+        return id;
+    }
+
+    private static int tableCapacity(int size) {
+        int capacity = MIN_TABLE;
+        while (capacity < size * 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static boolean equals(byte[] stored, byte[] key, int length) {
+        if (stored.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (stored[i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Table {
+        final long[] hashes;
+        final int[] ids;
+        final int mask;
+
+        Table(int capacity) {
+            this.hashes = new long[capacity];
+            this.ids = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void put(long h, int id) {
+            int slot = (int) (h ^ (h >>> 32)) & mask;
+            while (hashes[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            ids[slot] = id;
+            hashes[slot] = h;
+        }
+
+        /**
+         * 以 id 小于 limit 的全部驻留流构建哈希槽
+         */
+        static Table build(StreamId[] streams, int limit, int capacity) {
+            Table table = new Table(capacity);
+            for (int i = 0; i < limit; i++) {
+                if (streams[i] != null) {
+                    byte[] key = streams[i].key();
+                    table.put(hash(key, key.length), i);
+                }
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_MEDIA_INFO;
+import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+/**
+ * 从 MK_MEDIA_INFO / MK_MEDIA_SOURCE 读取流标识并驻留
+ * 会话流量回调中的 MK_MEDIA_INFO: ZLMApi 为JNA接口代理时，以直接映射调用 mk_media_info_get_* 取得C字符串地址，
+ * 用线程复用的指针和缓冲区原地读取字节后查驻留表，稳态下不创建字符串也不分配对象；
+ * 否则退回 ZLMApi 的字符串接口，编码到同一个线程缓冲区后查驻留表
+ *
+ * MK_MEDIA_INFO 属于单个会话，不同会话的同一个流指针不同，因此按字节内容而非指针驻留
+ */
+final class StreamKeyReader {
+    private static final Logger log = LoggerFactory.getLogger(StreamKeyReader.class);
+
+    /** 单个字段的最大字节数，超出部分截断 */
+    private static final int MAX_FIELD = 512;
+
+    private final ZLMApi zlmApi;
+    private final StreamIdInterner interner;
+    private final boolean direct;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    StreamKeyReader(ZLMApi zlmApi, StreamIdInterner interner) {
+        this.zlmApi = zlmApi;
+        this.interner = interner;
+        this.direct = DirectApi.register(zlmApi);
+    }
+
+    /**
+     * 是否使用直接映射读取
+     */
+    boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * 读取并驻留流标识
+     *
+     * @return 流id，schema为空或驻留表已满时返回 {@link StreamIdInterner#NO_ID}
+     */
+    int intern(MK_MEDIA_INFO mediaInfo) {
+        Scratch s = scratch.get();
+        s.length = 0;
+        if (direct) {
+            long ctx = Pointer.nativeValue(mediaInfo.getPointer());
+            if (!s.appendNative(DirectApi.mk_media_info_get_schema(ctx))) {
+                return StreamIdInterner.NO_ID;
+            }
+            s.appendNative(DirectApi.mk_media_info_get_vhost(ctx));
+            s.appendNative(DirectApi.mk_media_info_get_app(ctx));
+            s.appendNative(DirectApi.mk_media_info_get_stream(ctx));
+        } else {
+            if (!s.appendString(zlmApi.mk_media_info_get_schema(mediaInfo))) {
+                return StreamIdInterner.NO_ID;
+            }
+            s.appendString(zlmApi.mk_media_info_get_vhost(mediaInfo));
+            s.appendString(zlmApi.mk_media_info_get_app(mediaInfo));
+            s.appendString(zlmApi.mk_media_info_get_stream(mediaInfo));
+        }
+        // 去掉最后一个分隔符
+        return interner.intern(s.buffer, s.length - 1);
+    }
+
+    /**
+     * 读取并驻留媒体源的流标识，用于注册/注销等低频事件，通过字符串接口读取
+     *
+     * @return 流id，schema为空或驻留表已满时返回 {@link StreamIdInterner#NO_ID}
+     */
+    int intern(MK_MEDIA_SOURCE mediaSource) {
+        return intern(zlmApi.mk_media_source_get_schema(mediaSource), zlmApi.mk_media_source_get_vhost(mediaSource),
+            zlmApi.mk_media_source_get_app(mediaSource), zlmApi.mk_media_source_get_stream(mediaSource), true);
+    }
+
+    /**
+     * 按已读取的字符串驻留或查找流标识
+     *
+     * @param insert 未驻留时是否驻留
+     * @return 流id，schema为空、驻留表已满或未驻留且不驻留时返回 {@link StreamIdInterner#NO_ID}
+     */
+    int intern(String schema, String vhost, String app, String stream, boolean insert) {
+        Scratch s = scratch.get();
+        s.length = 0;
+        if (!s.appendString(schema)) {
+            return StreamIdInterner.NO_ID;
+        }
+        s.appendString(vhost);
+        s.appendString(app);
+        s.appendString(stream);
+        return insert ? interner.intern(s.buffer, s.length - 1) : interner.lookup(s.buffer, s.length - 1);
+    }
+
+    /**
+     * 线程复用的读取缓冲区，字段以 \0 分隔
+     */
+    private static final class Scratch {
+        private final Pointer cursor = new Pointer(0);
+        private byte[] buffer = new byte[256];
+        private int length;
+
+        /**
+         * 追加一个C字符串，地址为0时返回false并追加空字段
+         */
+        boolean appendNative(long address) {
+            if (address == 0) {
+                append0();
+                return false;
+            }
+            Pointer.nativeValue(cursor, address);
+            int n = (int) cursor.indexOf(0, (byte) 0);
+            if (n < 0 || n > MAX_FIELD) {
+                n = MAX_FIELD;
+            }
+            ensure(n + 1);
+            cursor.read(0, buffer, length, n);
+            length += n;
+            append0();
+            return true;
+        }
+
+        /**
+         * 按UTF-8追加一个字符串，为null时返回false并追加空字段
+         */
+        boolean appendString(String value) {
+            if (value == null) {
+                append0();
+                return false;
+            }
+            int n = Math.min(value.length(), MAX_FIELD);
+            ensure(n * 3 + 1);
+            for (int i = 0; i < n; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    buffer[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[length++] = (byte) (0xC0 | (c >> 6));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[length++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | (cp & 0x3F));
+                } else {
+                    buffer[length++] = (byte) (0xE0 | (c >> 12));
+                    buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            append0();
+            return true;
+        }
+
+        private void append0() {
+            ensure(1);
+            buffer[length++] = 0;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * mk_media_info_get_*、mk_sock_info_peer_ip、mk_sock_info_local_port 的直接映射，指针以long传递，调用不经过接口代理也不装箱
+     */
+    static final class DirectApi {
+        private static volatile Boolean registered;
+
+        static native long mk_media_info_get_schema(long ctx);
+
+        static native long mk_media_info_get_vhost(long ctx);
+
+        static native long mk_media_info_get_app(long ctx);
+
+        static native long mk_media_info_get_stream(long ctx);
+
+        /** 地址写入 buf 并以 \0 结尾 */
+        static native long mk_sock_info_peer_ip(long ctx, byte[] buf);
+
+        static native short mk_sock_info_local_port(long ctx);
+
+        private DirectApi() {
+        }
+
+        /**
+         * 注册到 ZLMApi 代理所加载的动态库，只注册一次
+         */
+        static synchronized boolean register(ZLMApi zlmApi) {
+            if (registered != null) {
+                return registered;
+            }
+            NativeLibrary library = null;
+            if (zlmApi != null && Proxy.isProxyClass(zlmApi.getClass())) {
+                InvocationHandler handler = Proxy.getInvocationHandler(zlmApi);
+                if (handler instanceof Library.Handler) {
+                    library = ((Library.Handler) handler).getNativeLibrary();
+                }
+            }
+            if (library == null) {
+                // 不缓存失败结果，之后传入真实的JNA代理时仍可注册
+                log.debug("ZLMApi不是JNA接口代理，流标识通过字符串接口读取");
+                return false;
+            }
+            try {
+                Native.register(DirectApi.class, library);
+                registered = Boolean.TRUE;
+                log.debug("mk_media_info_get_*、mk_sock_info_* 直接映射已注册: {}", library.getName());
+            } catch (Throwable t) {
+                registered = Boolean.FALSE;
+                log.warn("mk_media_info_get_*、mk_sock_info_* 直接映射注册失败，改用字符串接口读取: {}", t.toString());
+            }
+            return registered;
+        }
+    }
+}
@@ -2,12 +2,12 @@ package com.aizuda.monitor.collector;
 
 import com.aizuda.monitor.config.MonitorConfig;
 import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.StreamSample;
 import com.aizuda.monitor.metrics.enums.MetricsType;
-import com.aizuda.zlm4j.callback.IMKSourceFindCallBack;
 import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_INI;
 import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
 import com.aizuda.zlm4j.structure.MK_TRACK;
-import com.sun.jna.Pointer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,10 +23,23 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
     private static final Logger log = LoggerFactory.getLogger(StreamMetricsCollector.class);
     
     private final ZLMApi zlmApi;
+    /** 遍历到的流，按id索引各检测器的状态 */
+    private final StreamTable streams;
+    private final StallDetector stalls;
+    private final GopTracker gops;
+    private final AnomalyDetector anomalies;
+    /** 本周期是否检测卡顿、跟踪GOP间隔、检测异常，只由采集线程访问 */
+    private boolean detectStalls;
+    private boolean trackGops;
+    private boolean detectAnomalies;
     
     public StreamMetricsCollector(ZLMApi zlmApi, MonitorConfig config) {
         super(config);  // 调用父类构造函数
         this.zlmApi = zlmApi;
+        this.streams = new StreamTable(zlmApi);
+        this.stalls = new StallDetector(config.getStall());
+        this.gops = new GopTracker(config.getGop());
+        this.anomalies = new AnomalyDetector(config.getAnomaly());
     }
     
     @Override
@@ -36,10 +49,13 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
     
     @Override
     protected void onConfigChange(MonitorConfig newConfig) {
-        // 只处理配置变更通知，不修改收集逻辑
+        // 只处理配置变更通知和检测参数，不修改收集逻辑
         if (!newConfig.getMetrics().getStream().isEnabled()) {
             log.info("流媒体指标收集已禁用");
         }
+        stalls.configure(newConfig.getStall());
+        gops.configure(newConfig.getGop());
+        anomalies.configure(newConfig.getAnomaly());
     }
     
     @Override
@@ -70,50 +86,101 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
             final AtomicInteger totalStreams = new AtomicInteger(0);
             final Map<String, AtomicInteger> protocolStreams = new ConcurrentHashMap<>();
             
-            zlmApi.mk_media_source_for_each(null, new IMKSourceFindCallBack() {
-                @Override
-                public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
-                    if (mediaSource != null) {
-                        try {
-                            // 统计总流数
-                            totalStreams.incrementAndGet();
-                            
-                            // 获取流基本信息
-                            String app = zlmApi.mk_media_source_get_app(mediaSource);
-                            String stream = zlmApi.mk_media_source_get_stream(mediaSource);
-                            String schema = zlmApi.mk_media_source_get_schema(mediaSource);
-                            int originType = zlmApi.mk_media_source_get_origin_type(mediaSource);
-                            long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
-                            
-                            // 获取流状态
-                            int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
-                            int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
-                            int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
-                            
-                            // 更新流媒体指标
-                            metrics.setStreamInfo(schema, app, stream, originType, aliveSecond);
-                            metrics.setStreamStats(readerCount, totalReaderCount, bytesSpeed);
-                            
-                            // 更新协议统计
-                            if (schema != null) {
-                                metrics.incrementProtocolStreams(schema);
-                                metrics.addProtocolBytes(schema, bytesSpeed);
+            // 只遍历被订阅选中的流，没有订阅关心轨道指标且不做检测时跳过轨道遍历
+            final boolean collectTracks = getSourceMatcher().needsTracks();
+            detectStalls = stalls.isEnabled() && getSourceMatcher().needsMetric("stall.");
+            trackGops = gops.isEnabled() && getSourceMatcher().needsMetric("gop.");
+            detectAnomalies = anomalies.isEnabled() && getSourceMatcher().needsMetric("anomaly.");
+            final boolean detect = detectStalls || trackGops || detectAnomalies;
+            // 启用本地存储或归档时记录按流采样，供查询按流分组
+            final boolean recordSamples = isStoreEnabled() && getSourceMatcher().needsMetric("stream.");
+            if (detectStalls) {
+                stalls.begin();
+            } else {
+                stalls.clear();
+            }
+            if (trackGops) {
+                gops.begin();
+            } else {
+                gops.clear();
+            }
+            if (detectAnomalies) {
+                anomalies.begin();
+            } else {
+                anomalies.clear();
+            }
+            forEachSource(zlmApi, mediaSource -> {
+                try {
+                    // 统计总流数
+                    totalStreams.incrementAndGet();
+                    
+                    // 获取流基本信息
+                    String app = zlmApi.mk_media_source_get_app(mediaSource);
+                    String stream = zlmApi.mk_media_source_get_stream(mediaSource);
+                    String schema = zlmApi.mk_media_source_get_schema(mediaSource);
+                    int originType = zlmApi.mk_media_source_get_origin_type(mediaSource);
+                    long aliveSecond = zlmApi.mk_media_source_get_alive_second(mediaSource);
+                    
+                    // 获取流状态
+                    int readerCount = zlmApi.mk_media_source_get_reader_count(mediaSource);
+                    int totalReaderCount = zlmApi.mk_media_source_get_total_reader_count(mediaSource);
+                    int bytesSpeed = zlmApi.mk_media_source_get_bytes_speed(mediaSource);
+                    
+                    // 更新流媒体指标
+                    metrics.setStreamInfo(schema, app, stream, originType, aliveSecond);
+                    metrics.setStreamStats(readerCount, totalReaderCount, bytesSpeed);
+                    metrics.recordStreamDistribution(bytesSpeed, readerCount);
+                    String vhost = detect || recordSamples ? zlmApi.mk_media_source_get_vhost(mediaSource) : null;
+                    if (recordSamples) {
+                        metrics.addStreamSample(new StreamSample(schema, vhost, app, stream,
+                            readerCount, totalReaderCount, bytesSpeed, aliveSecond));
+                    }
+                    
+                    // 更新协议统计
+                    if (schema != null) {
+                        metrics.incrementProtocolStreams(schema);
+                        metrics.addProtocolBytes(schema, bytesSpeed);
                                 
-                                // 按协议类型统计流数
-                                protocolStreams.computeIfAbsent(schema.toLowerCase(), k -> new AtomicInteger()).incrementAndGet();
+                        // 按协议类型统计流数
+                        protocolStreams.computeIfAbsent(schema.toLowerCase(), k -> new AtomicInteger()).incrementAndGet();
+                    }
+                    
+                    // 检测数据速率和观看人数异常，收集轨道信息，检测卡顿和GOP间隔；
+                    // 同一个流的多个协议的媒体源共享轨道，只在本周期第一次遍历到时检测
+                    StreamId streamId = null;
+                    if (detect) {
+                        int id = streams.visit(vhost, app, stream);
+                        streamId = id >= 0 ? streams.get(id) : null;
+                        if (streamId != null) {
+                            if (detectAnomalies) {
+                                anomalies.stream(id, streamId, bytesSpeed, totalReaderCount, metrics);
+                            }
+                            if (detectStalls) {
+                                stalls.stream(id);
+                            }
+                            if (trackGops) {
+                                gops.stream(id);
                             }
-                            
-                            // 收集轨道信息
-                            collectTrackInfo(metrics, mediaSource);
-                            
-                        } catch (Exception e) {
-                            log.warn("收集流媒体指标失败: app={}, stream={}", 
-                                   zlmApi.mk_media_source_get_app(mediaSource),
-                                   zlmApi.mk_media_source_get_stream(mediaSource), e);
                         }
                     }
+                    if (collectTracks || (streamId != null && (detectStalls || trackGops))) {
+                        collectTrackInfo(metrics, mediaSource, collectTracks, streamId);
+                    }
+                    if (streamId != null && (detectStalls || trackGops)) {
+                        if (detectStalls) {
+                            stalls.endStream(streamId, metrics);
+                        }
+                        if (trackGops) {
+                            gops.endStream(streamId, metrics);
+                        }
+                    }
+                    
+                } catch (Exception e) {
+                    log.warn("收集流媒体指标失败: app={}, stream={}", 
+                           zlmApi.mk_media_source_get_app(mediaSource),
+                           zlmApi.mk_media_source_get_stream(mediaSource), e);
                 }
-            }, "", "", "", "");
+            });
             
             // 设置总流数
             metrics.setMetric(StreamMetrics.MetricNames.STREAM_COUNT, totalStreams.get());
@@ -125,13 +192,40 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
                 metrics.setMetric(StreamMetrics.MetricNames.PROTOCOL_STREAMS_PREFIX + protocol, count);
             }
             
+            // 淘汰已下线的流，输出卡顿、GOP间隔和异常统计
+            streams.sweep(id -> {
+                StreamId evicted = streams.get(id);
+                stalls.remove(id, evicted, metrics);
+                gops.remove(id, evicted, metrics);
+                anomalies.remove(id, evicted, metrics);
+            });
+            if (detectStalls) {
+                stalls.publish(metrics);
+            }
+            if (trackGops) {
+                gops.publish(metrics);
+            }
+            if (detectAnomalies) {
+                anomalies.publish(metrics);
+            }
+            
+            // 输出跨流分布
+            metrics.summarizeDistributions();
+            
         } catch (Exception e) {
             log.error("收集流媒体指标失败", e);
             throw e;
         }
     }
     
-    private void collectTrackInfo(StreamMetrics metrics, MK_MEDIA_SOURCE mediaSource) {
+    /**
+     * 遍历轨道
+     *
+     * @param collectTracks 是否输出轨道指标
+     * @param streamId      需要检测卡顿或跟踪GOP间隔时为流标识，否则为null
+     */
+    private void collectTrackInfo(StreamMetrics metrics, MK_MEDIA_SOURCE mediaSource, boolean collectTracks,
+                                  StreamId streamId) {
         int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
         for (int i = 0; i < trackCount; i++) {
             MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
@@ -139,16 +233,29 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
                 try {
                     int isVideo = zlmApi.mk_track_is_video(track);
                     if (isVideo == 1) {
-                        // 收集视频轨道信息
-                        int width = zlmApi.mk_track_video_width(track);
-                        int height = zlmApi.mk_track_video_height(track);
-                        int fps = zlmApi.mk_track_video_fps(track);
-                        int gopSize = zlmApi.mk_track_video_gop_size(track);
-                        int gopInterval = zlmApi.mk_track_video_gop_interval_ms(track);
-                        long keyFrames = zlmApi.mk_track_video_key_frames(track);
-                        
-                        metrics.setVideoInfo(width, height, fps, gopSize, gopInterval, keyFrames);
-                    } else {
+                        boolean stall = streamId != null && detectStalls;
+                        boolean gop = streamId != null && trackGops;
+                        int fps = stall || collectTracks ? zlmApi.mk_track_video_fps(track) : 0;
+                        if (stall) {
+                            stalls.video(i, zlmApi.mk_track_frames(track), fps, streamId, metrics);
+                        }
+                        if (gop || collectTracks) {
+                            int gopInterval = zlmApi.mk_track_video_gop_interval_ms(track);
+                            long keyFrames = zlmApi.mk_track_video_key_frames(track);
+                            if (gop) {
+                                gops.video(i, keyFrames, gopInterval, metrics);
+                            }
+                            if (collectTracks) {
+                                // 收集视频轨道信息
+                                int width = zlmApi.mk_track_video_width(track);
+                                int height = zlmApi.mk_track_video_height(track);
+                                int gopSize = zlmApi.mk_track_video_gop_size(track);
+                                
+                                metrics.setVideoInfo(width, height, fps, gopSize, gopInterval, keyFrames);
+                                metrics.recordVideoDistribution(fps, gopInterval);
+                            }
+                        }
+                    } else if (collectTracks) {
                         // 收集音频轨道信息
                         int sampleRate = zlmApi.mk_track_audio_sample_rate(track);
                         int channels = zlmApi.mk_track_audio_channel(track);
@@ -163,11 +270,6 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
         }
     }
     
-    @Override
-    public void start() throws Exception {
-        doStart();
-    }
-    
     @Override
     public void close() {
         try {
@@ -182,9 +284,36 @@ public class StreamMetricsCollector extends AbstractMetricsCollector<StreamMetri
         if (zlmApi == null) {
             throw new IllegalStateException("ZLM API未初始化");
         }
+        gops.setZlmSegmentDuration(readSegmentDuration());
         log.info("流媒体指标收集器初始化完成");
     }
     
+    /**
+     * 本地存储或磁盘归档是否启用，二者在监控初始化时按启动配置创建
+     */
+    private boolean isStoreEnabled() {
+        MonitorConfig.StoreConfig store = config.getStore();
+        return store != null && (store.isEnabled()
+            || (store.getArchive() != null && store.getArchive().isEnabled()));
+    }
+    
+    /**
+     * 读取ZLM配置的HLS切片时长
+     *
+     * @return 切片时长(毫秒)，无法读取时返回0
+     */
+    private int readSegmentDuration() {
+        MK_INI ini = zlmApi.mk_ini_default();
+        try {
+            String value = zlmApi.mk_ini_get_option(ini, "hls.segDur");
+            return value == null ? 0 : (int) (Double.parseDouble(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        } finally {
+            zlmApi.mk_ini_release(ini);
+        }
+    }
+    
     @Override
     protected void doStart() throws Exception {
         log.info("流媒体指标收集器已启动");
@@ -0,0 +1,98 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.zlm4j.core.ZLMApi;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 流媒体收集器遍历到的流
+ * ZLM为同一个流的每种协议各注册一个媒体源(rtmp、rtsp、hls等)，它们共享同一组轨道；
+ * 这里按 vhost/app/stream 去重，每个流只分配一个整数id，一个周期内只有第一次遍历到的媒体源参与检测，
+ * 同一次卡顿、GOP过长或异常只发出一个事件、只计一次数
+ *
+ * 为每个遍历到的流分配整数id，检测器以id(或 id*{@link #MAX_TRACKS}+轨道序号)索引原始类型数组保存跨周期的状态，稳态下不分配对象；
+ * 连续 {@link #UNSEEN_TICKS_BEFORE_EVICT} 个周期未遍历到的流(已注销或不再被订阅选中)被淘汰，id复用前通知检测器清理
+ *
+ * 只由采集线程访问
+ */
+final class StreamTable {
+    /** 检测器为单个流保留状态的最大轨道数 */
+    static final int MAX_TRACKS = 8;
+    /** 连续多少个采集周期未遍历到后淘汰 */
+    static final int UNSEEN_TICKS_BEFORE_EVICT = 2;
+    /** 本周期已由同一个流的其他协议的媒体源遍历过 */
+    static final int VISITED = -2;
+    /** 驻留键的schema部分，按流去重后不区分协议 */
+    private static final String ANY_SCHEMA = "";
+
+    private final StreamIdInterner interner = new StreamIdInterner();
+    private final StreamKeyReader keys;
+    /** 按id索引，最近一次遍历到的周期序号 */
+    private int[] lastSeen = new int[64];
+    /** 从1开始，lastSeen为0表示从未遍历到 */
+    private int tick = 1;
+    private int[] evicting = new int[16];
+
+    StreamTable(ZLMApi zlmApi) {
+        this.keys = new StreamKeyReader(zlmApi, interner);
+    }
+
+    /**
+     * 本周期遍历到一个流的某个协议的媒体源
+     *
+     * @return 流id；本周期已遍历过该流时返回 {@link #VISITED}，驻留表已满时返回 {@link StreamIdInterner#NO_ID}
+     */
+    int visit(String vhost, String app, String stream) {
+        int id = keys.intern(ANY_SCHEMA, vhost, app, stream, true);
+        if (id == StreamIdInterner.NO_ID) {
+            return id;
+        }
+        if (id >= lastSeen.length) {
+            lastSeen = Arrays.copyOf(lastSeen, Math.max(lastSeen.length * 2, id + 1));
+        }
+        if (lastSeen[id] == tick) {
+            return VISITED;
+        }
+        lastSeen[id] = tick;
+        return id;
+    }
+
+    /**
+     * 按id获取流标识，schema为空串
+     */
+    StreamId get(int id) {
+        return interner.get(id);
+    }
+
+    /**
+     * 当前驻留的流数量
+     */
+    int size() {
+        return interner.size();
+    }
+
+    /**
+     * 结束本周期，淘汰连续未遍历到的流
+     *
+     * @param onEvict 流被淘汰、id复用之前调用，此时 {@link #get(int)} 仍返回该流
+     */
+    void sweep(IntConsumer onEvict) {
+        int limit = interner.limit();
+        int count = 0;
+        for (int id = 0; id < limit; id++) {
+            if (interner.get(id) != null && tick - lastSeen[id] >= UNSEEN_TICKS_BEFORE_EVICT) {
+                onEvict.accept(id);
+                if (count == evicting.length) {
+                    evicting = Arrays.copyOf(evicting, count * 2);
+                }
+                evicting[count++] = id;
+            }
+        }
+        interner.evict(evicting, count);
+        // 没有其他线程持有这里的id，淘汰后即可复用
+        interner.recycle(id -> {
+        });
+        tick++;
+    }
+}
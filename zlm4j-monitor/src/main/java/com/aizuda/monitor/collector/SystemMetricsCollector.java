@@ -181,11 +181,6 @@ public class SystemMetricsCollector extends AbstractMetricsCollector<SystemMetri
         metrics.setNetTxErrors(netStats[5]);
     }
 
-    @Override
-    public void start() throws Exception {
-        doStart();
-    }
-
     @Override
     public void close() {
         try {
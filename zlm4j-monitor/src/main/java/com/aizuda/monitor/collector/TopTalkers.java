@@ -0,0 +1,61 @@
+package com.aizuda.monitor.collector;
+
+import com.aizuda.monitor.util.HeavyHitterSketch;
+
+/**
+ * 一个采集周期内流量最大、会话最多的客户端和流
+ * 客户端键为 地址#play 或 地址#publish，来自本周期结束的会话；
+ * 流键为 schema://vhost/app/stream，来自本周期遍历到的流，字节数按数据速率、观看人数和周期长度估算
+ */
+public final class TopTalkers {
+    private final HeavyHitterSketch.Snapshot peersByBytes;
+    private final HeavyHitterSketch.Snapshot peersBySessions;
+    private final HeavyHitterSketch.Snapshot streamsByBytes;
+    private final HeavyHitterSketch.Snapshot streamsBySessions;
+    private final long timestamp;
+
+    TopTalkers(HeavyHitterSketch.Snapshot peersByBytes, HeavyHitterSketch.Snapshot peersBySessions,
+               HeavyHitterSketch.Snapshot streamsByBytes, HeavyHitterSketch.Snapshot streamsBySessions,
+               long timestamp) {
+        this.peersByBytes = peersByBytes;
+        this.peersBySessions = peersBySessions;
+        this.streamsByBytes = streamsByBytes;
+        this.streamsBySessions = streamsBySessions;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * 按已结束会话的字节数排列的客户端
+     */
+    public HeavyHitterSketch.Snapshot getPeersByBytes() {
+        return peersByBytes;
+    }
+
+    /**
+     * 按已结束会话数排列的客户端
+     */
+    public HeavyHitterSketch.Snapshot getPeersBySessions() {
+        return peersBySessions;
+    }
+
+    /**
+     * 按估算分发字节数排列的流
+     */
+    public HeavyHitterSketch.Snapshot getStreamsByBytes() {
+        return streamsByBytes;
+    }
+
+    /**
+     * 按观看人数排列的流
+     */
+    public HeavyHitterSketch.Snapshot getStreamsBySessions() {
+        return streamsBySessions;
+    }
+
+    /**
+     * 统计结束时间(毫秒)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
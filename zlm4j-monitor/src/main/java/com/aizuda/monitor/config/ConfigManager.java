@@ -208,6 +208,15 @@ public class ConfigManager implements AutoCloseable {
         target.setThread(source.getThread());
         target.setExporter(source.getExporter());
         target.setMetrics(source.getMetrics());
+        target.setStore(source.getStore());
+        target.setPublisher(source.getPublisher());
+        target.setCallback(source.getCallback());
+        target.setLookup(source.getLookup());
+        target.setTopK(source.getTopK());
+        target.setSessions(source.getSessions());
+        target.setStall(source.getStall());
+        target.setGop(source.getGop());
+        target.setAnomaly(source.getAnomaly());
     }
     
     /**
@@ -1,8 +1,15 @@
 package com.aizuda.monitor.config;
 
+import com.aizuda.monitor.collector.MetricsSelector;
+import com.aizuda.monitor.flow.OverflowStrategy;
 import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.monitor.util.ExportThreadMode;
+import com.aizuda.monitor.util.WaitStrategy;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 监控配置类
@@ -38,6 +45,24 @@ public class MonitorConfig {
     private ExporterConfig exporter = new ExporterConfig();
     /** 指标配置 */
     private MetricsConfig metrics = new MetricsConfig();
+    /** 本地时序存储配置 */
+    private StoreConfig store = new StoreConfig();
+    /** 指标订阅配置 */
+    private PublisherConfig publisher = new PublisherConfig();
+    /** 回调分发配置 */
+    private CallbackConfig callback = new CallbackConfig();
+    /** 单流查询配置 */
+    private LookupConfig lookup = new LookupConfig();
+    /** 高频项统计配置 */
+    private TopKConfig topK = new TopKConfig();
+    /** 在线会话统计配置 */
+    private SessionConfig sessions = new SessionConfig();
+    /** 视频卡顿检测配置 */
+    private StallConfig stall = new StallConfig();
+    /** GOP间隔跟踪配置 */
+    private GopConfig gop = new GopConfig();
+    /** 异常检测配置 */
+    private AnomalyConfig anomaly = new AnomalyConfig();
     
     /**
      * 默认构造函数
@@ -77,6 +102,33 @@ public class MonitorConfig {
         this.metrics.setStream(new MetricTypeConfig(true));
         this.metrics.setNetwork(new MetricTypeConfig(true));
         this.metrics.setPerformance(new MetricTypeConfig(true));
+        
+        // 本地时序存储默认配置
+        this.store = new StoreConfig();
+        
+        // 指标订阅默认配置
+        this.publisher = new PublisherConfig();
+        
+        // 回调分发默认配置
+        this.callback = new CallbackConfig();
+        
+        // 单流查询默认配置
+        this.lookup = new LookupConfig();
+        
+        // 高频项统计默认配置
+        this.topK = new TopKConfig();
+        
+        // 在线会话统计默认配置
+        this.sessions = new SessionConfig();
+        
+        // 视频卡顿检测默认配置
+        this.stall = new StallConfig();
+        
+        // GOP间隔跟踪默认配置
+        this.gop = new GopConfig();
+        
+        // 异常检测默认配置
+        this.anomaly = new AnomalyConfig();
     }
     
     /**
@@ -101,6 +153,19 @@ public class MonitorConfig {
         if (thread.getQueueCapacity() <= 0) {
             throw new IllegalArgumentException("队列容量必须大于0");
         }
+        try {
+            WaitStrategy.of(thread.getWaitStrategy());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("thread.waitStrategy只能为busy-spin、yield或park");
+        }
+        try {
+            ExportThreadMode.of(thread.getExportThreads());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("thread.exportThreads只能为platform或virtual");
+        }
+        if (thread.getExportQueueSize() <= 0) {
+            throw new IllegalArgumentException("thread.exportQueueSize必须大于0");
+        }
         
         // 验证导出器配置
         if (exporter.getNames() == null || exporter.getNames().isEmpty()) {
@@ -129,6 +194,166 @@ public class MonitorConfig {
                 throw new IllegalArgumentException("batchTimeout必须大于0");
             }
         }
+        
+        // 本地时序存储验证
+        if (store != null && store.isEnabled()) {
+            if (store.getMaxMemory() <= 0) {
+                throw new IllegalArgumentException("store.maxMemory必须大于0");
+            }
+            if (store.getRawPoints() <= 0 || store.getMinutePoints() <= 0 || store.getTenMinutePoints() <= 0) {
+                throw new IllegalArgumentException("store各分辨率的保留点数必须大于0");
+            }
+            if (store.getIdlePeriods() <= 0) {
+                throw new IllegalArgumentException("store.idlePeriods必须大于0");
+            }
+        }
+        
+        // 指标订阅验证
+        if (publisher != null) {
+            if (publisher.getBufferSize() <= 0) {
+                throw new IllegalArgumentException("publisher.bufferSize必须大于0");
+            }
+            try {
+                OverflowStrategy.of(publisher.getOverflow());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("publisher.overflow只能为drop-oldest、drop-latest或error");
+            }
+        }
+        
+        // 回调分发验证
+        if (callback != null && callback.getQueueSize() <= 0) {
+            throw new IllegalArgumentException("callback.queueSize必须大于0");
+        }
+        
+        // 单流查询验证
+        if (lookup != null) {
+            if (lookup.getTtl() < 0) {
+                throw new IllegalArgumentException("lookup.ttl不能小于0");
+            }
+            if (lookup.getMaxEntries() <= 0) {
+                throw new IllegalArgumentException("lookup.maxEntries必须大于0");
+            }
+        }
+        
+        // 高频项统计验证
+        if (topK != null && topK.isEnabled()) {
+            if (topK.getCapacity() <= 0 || topK.getCount() <= 0 || topK.getCount() > topK.getCapacity()) {
+                throw new IllegalArgumentException("topK.capacity必须大于0，topK.count必须在1-capacity之间");
+            }
+            if (topK.getWidth() <= 0 || topK.getWidth() > 1 << 20) {
+                throw new IllegalArgumentException("topK.width必须在1-1048576之间");
+            }
+            if (topK.getDepth() <= 0 || topK.getDepth() > 16) {
+                throw new IllegalArgumentException("topK.depth必须在1-16之间");
+            }
+        }
+        
+        // 视频卡顿检测验证
+        if (stall != null && stall.isEnabled()) {
+            if (stall.getTicks() <= 0) {
+                throw new IllegalArgumentException("stall.ticks必须大于0");
+            }
+            if (!(stall.getMinFrameRatio() >= 0 && stall.getMinFrameRatio() < 1)) {
+                throw new IllegalArgumentException("stall.minFrameRatio必须在[0, 1)之间");
+            }
+        }
+        
+        // GOP间隔跟踪验证
+        if (gop != null && gop.isEnabled()) {
+            if (gop.getWindow() < 2 || gop.getWindow() > 256) {
+                throw new IllegalArgumentException("gop.window必须在2-256之间");
+            }
+            if (gop.getSegmentDuration() < 0) {
+                throw new IllegalArgumentException("gop.segmentDuration不能小于0");
+            }
+        }
+        
+        // 异常检测验证
+        if (anomaly != null && anomaly.isEnabled()) {
+            if (!(anomaly.getAlpha() > 0 && anomaly.getAlpha() < 1)) {
+                throw new IllegalArgumentException("anomaly.alpha必须在(0, 1)之间");
+            }
+            if (!(anomaly.getSeasonAlpha() >= 0 && anomaly.getSeasonAlpha() < 1)) {
+                throw new IllegalArgumentException("anomaly.seasonAlpha必须在[0, 1)之间");
+            }
+            if (anomaly.getSeasonBuckets() <= 0 || anomaly.getSeasonBuckets() > 1440) {
+                throw new IllegalArgumentException("anomaly.seasonBuckets必须在1-1440之间");
+            }
+            if (anomaly.getSeasonPeriod() < anomaly.getSeasonBuckets()) {
+                throw new IllegalArgumentException("anomaly.seasonPeriod不能小于seasonBuckets");
+            }
+            if (!(anomaly.getThreshold() > 0)) {
+                throw new IllegalArgumentException("anomaly.threshold必须大于0");
+            }
+            if (anomaly.getWarmup() < 1) {
+                throw new IllegalArgumentException("anomaly.warmup必须大于0");
+            }
+        }
+        
+        // 磁盘归档验证
+        if (store != null && store.getArchive() != null && store.getArchive().isEnabled()) {
+            ArchiveConfig archive = store.getArchive();
+            if (archive.getDirectory() == null || archive.getDirectory().isEmpty()) {
+                throw new IllegalArgumentException("store.archive.directory不能为空");
+            }
+            if (archive.getSegmentDuration() <= 0 || archive.getRetention() <= 0) {
+                throw new IllegalArgumentException("store.archive.segmentDuration和retention必须大于0");
+            }
+            if (archive.getSegmentSize() <= 0 || archive.getSegmentSize() > 1024) {
+                throw new IllegalArgumentException("store.archive.segmentSize必须在1-1024之间");
+            }
+            if (archive.getBlockPoints() <= 1 || archive.getFlushInterval() <= 0) {
+                throw new IllegalArgumentException("store.archive.blockPoints必须大于1且flushInterval必须大于0");
+            }
+        }
+        
+        // InfluxDB导出器验证
+        if (exporter.getNames().contains("influx")) {
+            if (exporter.getInflux() == null) {
+                throw new IllegalArgumentException("influx配置不能为空");
+            }
+            exporter.getInflux().validate("influx");
+        }
+        
+        // OTLP导出器验证
+        if (exporter.getNames().contains("otlp")) {
+            if (exporter.getOtlp() == null) {
+                throw new IllegalArgumentException("otlp配置不能为空");
+            }
+            exporter.getOtlp().validate("otlp");
+            String temporality = exporter.getOtlp().getTemporality();
+            if (!"cumulative".equalsIgnoreCase(temporality) && !"delta".equalsIgnoreCase(temporality)) {
+                throw new IllegalArgumentException("otlp.temporality只能为cumulative或delta");
+            }
+        }
+        
+        // 暂存区验证
+        SpoolConfig spool = exporter.getSpool();
+        if (spool != null && spool.isEnabled()) {
+            if (spool.getDirectory() == null || spool.getDirectory().isEmpty()) {
+                throw new IllegalArgumentException("exporter.spool.directory不能为空");
+            }
+            if (spool.getSegmentSize() <= 0 || spool.getMaxDiskSize() < spool.getSegmentSize() * 2) {
+                throw new IllegalArgumentException("exporter.spool.segmentSize必须大于0且maxDiskSize至少为其2倍");
+            }
+            if (spool.getReplayRate() <= 0 || spool.getProbeInterval() <= 0) {
+                throw new IllegalArgumentException("exporter.spool.replayRate和probeInterval必须大于0");
+            }
+        }
+        
+        // Graphite导出器验证
+        if (exporter.getNames().contains("graphite")) {
+            GraphiteConfig graphite = exporter.getGraphite();
+            if (graphite == null || graphite.getEndpoints() == null || graphite.getEndpoints().isEmpty()) {
+                throw new IllegalArgumentException("graphite.endpoints不能为空");
+            }
+            if (graphite.getBufferSize() <= 0) {
+                throw new IllegalArgumentException("graphite.bufferSize必须大于0");
+            }
+            if (graphite.getConnectTimeout() <= 0) {
+                throw new IllegalArgumentException("graphite.connectTimeout必须大于0");
+            }
+        }
     }
 
     // Getter and Setter methods
@@ -179,6 +404,78 @@ public class MonitorConfig {
     public void setMetrics(MetricsConfig metrics) {
         this.metrics = metrics;
     }
+
+    public StoreConfig getStore() {
+        return store;
+    }
+
+    public void setStore(StoreConfig store) {
+        this.store = store;
+    }
+
+    public PublisherConfig getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(PublisherConfig publisher) {
+        this.publisher = publisher;
+    }
+
+    public CallbackConfig getCallback() {
+        return callback;
+    }
+
+    public void setCallback(CallbackConfig callback) {
+        this.callback = callback;
+    }
+
+    public LookupConfig getLookup() {
+        return lookup;
+    }
+
+    public void setLookup(LookupConfig lookup) {
+        this.lookup = lookup;
+    }
+
+    public TopKConfig getTopK() {
+        return topK;
+    }
+
+    public void setTopK(TopKConfig topK) {
+        this.topK = topK;
+    }
+
+    public SessionConfig getSessions() {
+        return sessions;
+    }
+
+    public void setSessions(SessionConfig sessions) {
+        this.sessions = sessions;
+    }
+
+    public StallConfig getStall() {
+        return stall;
+    }
+
+    public void setStall(StallConfig stall) {
+        this.stall = stall;
+    }
+
+    public GopConfig getGop() {
+        return gop;
+    }
+
+    public void setGop(GopConfig gop) {
+        this.gop = gop;
+    }
+
+    public AnomalyConfig getAnomaly() {
+        return anomaly;
+    }
+
+    public void setAnomaly(AnomalyConfig anomaly) {
+        this.anomaly = anomaly;
+    }
     
     /**
      * 线程池配置类
@@ -189,6 +486,12 @@ public class MonitorConfig {
         private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
         private long keepAliveTime = 60;
         private boolean allowCoreTimeout = false;
+        /** 工作队列为空时工作线程的等待策略: busy-spin、yield、park */
+        private String waitStrategy = "park";
+        /** 导出线程模式: platform、virtual(需要JDK 21) */
+        private String exportThreads = "platform";
+        /** virtual模式下每个导出器的队列容量(采集次数)，满时丢弃最旧的采集 */
+        private int exportQueueSize = 64;
 
         public int getCorePoolSize() {
             return corePoolSize;
@@ -229,6 +532,30 @@ public class MonitorConfig {
         public void setAllowCoreTimeout(boolean allowCoreTimeout) {
             this.allowCoreTimeout = allowCoreTimeout;
         }
+
+        public String getWaitStrategy() {
+            return waitStrategy;
+        }
+
+        public void setWaitStrategy(String waitStrategy) {
+            this.waitStrategy = waitStrategy;
+        }
+
+        public String getExportThreads() {
+            return exportThreads;
+        }
+
+        public void setExportThreads(String exportThreads) {
+            this.exportThreads = exportThreads;
+        }
+
+        public int getExportQueueSize() {
+            return exportQueueSize;
+        }
+
+        public void setExportQueueSize(int exportQueueSize) {
+            this.exportQueueSize = exportQueueSize;
+        }
     }
     
     /**
@@ -239,6 +566,16 @@ public class MonitorConfig {
         private boolean batchEnabled = false;
         private int batchSize = 100;
         private long batchTimeout = 60;
+        /** InfluxDB导出器配置 */
+        private InfluxConfig influx = new InfluxConfig();
+        /** Graphite导出器配置 */
+        private GraphiteConfig graphite = new GraphiteConfig();
+        /** OTLP导出器配置 */
+        private OtlpConfig otlp = new OtlpConfig();
+        /** 本地暂存区配置 */
+        private SpoolConfig spool = new SpoolConfig();
+        /** 导出和本地存储关心的流和指标 */
+        private SelectorConfig selector = new SelectorConfig();
 
         public List<String> getNames() {
             return names;
@@ -271,6 +608,937 @@ public class MonitorConfig {
         public void setBatchTimeout(long batchTimeout) {
             this.batchTimeout = batchTimeout;
         }
+
+        public InfluxConfig getInflux() {
+            return influx;
+        }
+
+        public void setInflux(InfluxConfig influx) {
+            this.influx = influx;
+        }
+
+        public GraphiteConfig getGraphite() {
+            return graphite;
+        }
+
+        public void setGraphite(GraphiteConfig graphite) {
+            this.graphite = graphite;
+        }
+
+        public OtlpConfig getOtlp() {
+            return otlp;
+        }
+
+        public void setOtlp(OtlpConfig otlp) {
+            this.otlp = otlp;
+        }
+
+        public SpoolConfig getSpool() {
+            return spool;
+        }
+
+        public void setSpool(SpoolConfig spool) {
+            this.spool = spool;
+        }
+
+        public SelectorConfig getSelector() {
+            return selector;
+        }
+
+        public void setSelector(SelectorConfig selector) {
+            this.selector = selector;
+        }
+    }
+    
+    /**
+     * 指标选择配置
+     * vhost/app/stream 支持 * 和 ? 通配符，metrics 为空表示全部指标；
+     * 与回调、订阅的选择器合并后下推到收集器，没有任何一方关心的流不再逐个查询
+     */
+    public static class SelectorConfig {
+        private String vhost = "*";
+        private String app = "*";
+        private String stream = "*";
+        /** 指标名通配符列表，为空表示全部指标 */
+        private List<String> metrics = new ArrayList<>();
+
+        public String getVhost() {
+            return vhost;
+        }
+
+        public void setVhost(String vhost) {
+            this.vhost = vhost;
+        }
+
+        public String getApp() {
+            return app;
+        }
+
+        public void setApp(String app) {
+            this.app = app;
+        }
+
+        public String getStream() {
+            return stream;
+        }
+
+        public void setStream(String stream) {
+            this.stream = stream;
+        }
+
+        public List<String> getMetrics() {
+            return metrics;
+        }
+
+        public void setMetrics(List<String> metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * 转换为选择器
+         */
+        public MetricsSelector toSelector() {
+            MetricsSelector.Builder builder = MetricsSelector.builder().vhost(vhost).app(app).stream(stream);
+            if (metrics != null) {
+                builder.metrics(metrics);
+            }
+            return builder.build();
+        }
+    }
+    
+    /**
+     * 导出器本地暂存区配置
+     * 远端不可写时采集数据按导出器写入本地分段文件，恢复后按采集顺序限速补发
+     */
+    public static class SpoolConfig {
+        /** 是否启用 */
+        private boolean enabled = false;
+        /** 暂存目录，每个导出器一个子目录 */
+        private String directory = "data/spool";
+        /** 单个分段文件大小(MB) */
+        private int segmentSize = 16;
+        /** 全部导出器合计的磁盘上限(MB)，超过后删除积压最多的导出器的最旧分段 */
+        private int maxDiskSize = 1024;
+        /** 每个导出器每秒补发的最大采集次数 */
+        private int replayRate = 50;
+        /** 远端不可写时的探测间隔(毫秒) */
+        private long probeInterval = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getMaxDiskSize() {
+            return maxDiskSize;
+        }
+
+        public void setMaxDiskSize(int maxDiskSize) {
+            this.maxDiskSize = maxDiskSize;
+        }
+
+        public int getReplayRate() {
+            return replayRate;
+        }
+
+        public void setReplayRate(int replayRate) {
+            this.replayRate = replayRate;
+        }
+
+        public long getProbeInterval() {
+            return probeInterval;
+        }
+
+        public void setProbeInterval(long probeInterval) {
+            this.probeInterval = probeInterval;
+        }
+    }
+    
+    /**
+     * HTTP批量导出器通用配置
+     * 数据先进入有界内存缓冲区，由写线程按批次POST，失败时按指数退避重试
+     */
+    public static class HttpExporterConfig {
+        /** 写入地址 */
+        private String url;
+        /** 附加请求头 */
+        private Map<String, String> headers = new LinkedHashMap<>();
+        /** 单次POST的最大条数 */
+        private int batchSize = 5000;
+        /** 内存缓冲区最大条数，超出后丢弃最旧数据 */
+        private int bufferSize = 100000;
+        /** 刷新间隔(毫秒) */
+        private long flushInterval = 1000;
+        /** 是否启用gzip压缩 */
+        private boolean gzip = true;
+        /** 最大重试次数 */
+        private int maxRetries = 5;
+        /** 初始退避时间(毫秒)，每次重试翻倍 */
+        private long retryBackoff = 500;
+        /** 最大退避时间(毫秒) */
+        private long maxRetryBackoff = 30000;
+        /** 连接超时(毫秒) */
+        private int connectTimeout = 3000;
+        /** 读取超时(毫秒) */
+        private int readTimeout = 10000;
+
+        /**
+         * 验证配置
+         *
+         * @param name 导出器名称，用于错误信息
+         */
+        public void validate(String name) {
+            if (url == null || url.isEmpty()) {
+                throw new IllegalArgumentException(name + ".url不能为空");
+            }
+            if (batchSize <= 0 || bufferSize < batchSize) {
+                throw new IllegalArgumentException(name + ".batchSize必须大于0且不大于bufferSize");
+            }
+            if (flushInterval <= 0) {
+                throw new IllegalArgumentException(name + ".flushInterval必须大于0");
+            }
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public void setHeaders(Map<String, String> headers) {
+            this.headers = headers;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        public void setGzip(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public long getRetryBackoff() {
+            return retryBackoff;
+        }
+
+        public void setRetryBackoff(long retryBackoff) {
+            this.retryBackoff = retryBackoff;
+        }
+
+        public long getMaxRetryBackoff() {
+            return maxRetryBackoff;
+        }
+
+        public void setMaxRetryBackoff(long maxRetryBackoff) {
+            this.maxRetryBackoff = maxRetryBackoff;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+    }
+    
+    /**
+     * InfluxDB导出器配置
+     * 以行协议写入InfluxDB/VictoriaMetrics，url需为完整写入地址且精度为纳秒，
+     * 例如 http://127.0.0.1:8086/api/v2/write?org=zlm&bucket=zlm&precision=ns
+     */
+    public static class InfluxConfig extends HttpExporterConfig {
+        /** 访问令牌(v2)，为空时不发送Authorization头 */
+        private String token;
+        /** 度量名前缀，最终度量名为 前缀 + 指标类型 */
+        private String measurementPrefix = "zlm_";
+        /** 附加到每个数据点的全局标签 */
+        private Map<String, String> tags = new LinkedHashMap<>();
+
+        public InfluxConfig() {
+            setUrl("http://127.0.0.1:8086/write?db=zlm&precision=ns");
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public String getMeasurementPrefix() {
+            return measurementPrefix;
+        }
+
+        public void setMeasurementPrefix(String measurementPrefix) {
+            this.measurementPrefix = measurementPrefix;
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public void setTags(Map<String, String> tags) {
+            this.tags = tags;
+        }
+    }
+    
+    /**
+     * OTLP导出器配置
+     * 以OTLP/HTTP protobuf格式写入OpenTelemetry Collector
+     */
+    public static class OtlpConfig extends HttpExporterConfig {
+        /** 指标名前缀，最终指标名为 前缀.类型.指标名 */
+        private String prefix = "zlm";
+        /** service.name 资源属性 */
+        private String serviceName = "zlm4j-monitor";
+        /** 附加资源属性，用于标识节点 */
+        private Map<String, String> resourceAttributes = new LinkedHashMap<>();
+        /** 累计型指标的聚合时间性: cumulative 或 delta */
+        private String temporality = "cumulative";
+
+        public OtlpConfig() {
+            setUrl("http://127.0.0.1:4318/v1/metrics");
+            // 每条即一次采集，批次按采集次数计
+            setBatchSize(100);
+            setBufferSize(10000);
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getServiceName() {
+            return serviceName;
+        }
+
+        public void setServiceName(String serviceName) {
+            this.serviceName = serviceName;
+        }
+
+        public Map<String, String> getResourceAttributes() {
+            return resourceAttributes;
+        }
+
+        public void setResourceAttributes(Map<String, String> resourceAttributes) {
+            this.resourceAttributes = resourceAttributes;
+        }
+
+        public String getTemporality() {
+            return temporality;
+        }
+
+        public void setTemporality(String temporality) {
+            this.temporality = temporality;
+        }
+
+        /**
+         * 是否使用delta时间性
+         */
+        public boolean isDelta() {
+            return "delta".equalsIgnoreCase(temporality);
+        }
+    }
+    
+    /**
+     * Graphite导出器配置
+     * 以plaintext协议写入Carbon，每个地址保持一条长连接
+     */
+    public static class GraphiteConfig {
+        /** Carbon地址列表，格式 host:port */
+        private List<String> endpoints = new ArrayList<>(Arrays.asList("127.0.0.1:2003"));
+        /** 指标路径前缀 */
+        private String prefix = "zlm";
+        /** 参与拼接指标路径的标签，按顺序取值 */
+        private List<String> identityTags = new ArrayList<>(Arrays.asList("vhost", "app", "stream"));
+        /** 断连期间每个地址缓存的最大行数，超出后丢弃最旧数据 */
+        private int bufferSize = 50000;
+        /** 初始重连间隔(毫秒)，每次失败翻倍并加随机抖动 */
+        private long reconnectBackoff = 1000;
+        /** 最大重连间隔(毫秒) */
+        private long maxReconnectBackoff = 60000;
+        /** 建立连接的超时时间(毫秒)，超时后按连接失败处理 */
+        private long connectTimeout = 5000;
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public void setPrefix(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public List<String> getIdentityTags() {
+            return identityTags;
+        }
+
+        public void setIdentityTags(List<String> identityTags) {
+            this.identityTags = identityTags;
+        }
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public long getReconnectBackoff() {
+            return reconnectBackoff;
+        }
+
+        public void setReconnectBackoff(long reconnectBackoff) {
+            this.reconnectBackoff = reconnectBackoff;
+        }
+
+        public long getMaxReconnectBackoff() {
+            return maxReconnectBackoff;
+        }
+
+        public void setMaxReconnectBackoff(long maxReconnectBackoff) {
+            this.maxReconnectBackoff = maxReconnectBackoff;
+        }
+
+        public long getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(long connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+    }
+    
+    /**
+     * 指标订阅配置
+     * 作为 metricsPublisher() 订阅者的默认值，订阅时可单独指定
+     */
+    public static class PublisherConfig {
+        /** 每个订阅者的缓冲区大小(采集次数) */
+        private int bufferSize = 256;
+        /** 缓冲区满时的处理策略: drop-oldest、drop-latest、error */
+        private String overflow = "drop-oldest";
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public String getOverflow() {
+            return overflow;
+        }
+
+        public void setOverflow(String overflow) {
+            this.overflow = overflow;
+        }
+    }
+
+    /**
+     * 回调分发配置
+     * 每个回调拥有独立的队列和分发线程
+     */
+    public static class CallbackConfig {
+        /** 每个回调的队列容量(采集次数)，满时丢弃最旧的采集 */
+        private int queueSize = 256;
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+    }
+
+    /**
+     * 单流查询配置
+     * queryStream 的结果在 ttl 内直接复用，同一个流的并发查询合并为一次查找
+     */
+    public static class LookupConfig {
+        /** 结果缓存时间(毫秒)，0表示不缓存，只合并并发查询 */
+        private long ttl = 200;
+        /** 最多缓存的流数量，超出时清理过期结果 */
+        private int maxEntries = 10000;
+
+        public long getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * 高频项统计配置
+     * 按采集周期统计流量最大和会话最多的客户端地址与流，每个维度占用固定内存:
+     * capacity 个计数槽加 width*depth*8 字节的 Count-Min 草图
+     */
+    public static class TopKConfig {
+        /** 是否启用 */
+        private boolean enabled = true;
+        /** 每个维度保留的计数槽数量 */
+        private int capacity = 256;
+        /** 每个周期导出的前N项 */
+        private int count = 10;
+        /** Count-Min 草图每行的列数 */
+        private int width = 2048;
+        /** Count-Min 草图行数 */
+        private int depth = 4;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public void setWidth(int width) {
+            this.width = width;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public void setDepth(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * 在线会话统计配置
+     * 注册 on_mk_media_play、on_mk_media_publish 回调按协议统计在线会话，回调始终放行，修改后需重启生效
+     */
+    public static class SessionConfig {
+        /** 是否启用，启用后会替换宿主程序的播放、推流鉴权回调，默认关闭 */
+        private boolean enabled = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    /**
+     * 视频卡顿检测配置
+     * 流媒体收集器按周期比较各视频轨道的累计帧数，本周期帧数为0或低于 帧率*间隔*minFrameRatio
+     * 连续 ticks 个周期时判定为卡顿，卡顿开始和恢复时各发出一个流事件
+     */
+    public static class StallConfig {
+        /** 是否启用 */
+        private boolean enabled = true;
+        /** 连续多少个采集周期帧数不足后判定为卡顿 */
+        private int ticks = 3;
+        /** 本周期帧数低于按声明帧率应有帧数的该比例时视为帧数不足，为0时只检测完全没有新帧 */
+        private double minFrameRatio = 0.2;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getTicks() {
+            return ticks;
+        }
+
+        public void setTicks(int ticks) {
+            this.ticks = ticks;
+        }
+
+        public double getMinFrameRatio() {
+            return minFrameRatio;
+        }
+
+        public void setMinFrameRatio(double minFrameRatio) {
+            this.minFrameRatio = minFrameRatio;
+        }
+    }
+
+    /**
+     * GOP间隔跟踪配置
+     * 每个视频轨道保留最近 window 次GOP间隔观测值，占用 window*4 字节；
+     * 窗口内最大GOP间隔或当前GOP已持续的时间超过切片时长的流标记为GOP过长
+     */
+    public static class GopConfig {
+        /** 是否启用 */
+        private boolean enabled = true;
+        /** 每个视频轨道保留的GOP间隔观测值数量 */
+        private int window = 16;
+        /** 切片时长(毫秒)，为0时使用ZLM配置的 hls.segDur */
+        private int segmentDuration = 0;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWindow() {
+            return window;
+        }
+
+        public void setWindow(int window) {
+            this.window = window;
+        }
+
+        public int getSegmentDuration() {
+            return segmentDuration;
+        }
+
+        public void setSegmentDuration(int segmentDuration) {
+            this.segmentDuration = segmentDuration;
+        }
+    }
+
+    /**
+     * 异常检测配置
+     * 按流对数据速率和观看人数做指数平滑和按时段的季节基线，|z| 超过阈值时发出异常事件；
+     * 每个流占用约 2*(24+seasonBuckets*4) 字节
+     */
+    public static class AnomalyConfig {
+        /** 是否启用 */
+        private boolean enabled = true;
+        /** 水平值和残差方差的平滑系数 */
+        private double alpha = 0.05;
+        /** 季节偏移的平滑系数，为0时不使用季节基线 */
+        private double seasonAlpha = 0.1;
+        /** 一个季节周期划分的时段数 */
+        private int seasonBuckets = 24;
+        /** 季节周期(毫秒) */
+        private long seasonPeriod = 86400000L;
+        /** |z| 达到该值时判定为异常 */
+        private double threshold = 4.0;
+        /** 序列观测满多少次后才判定异常 */
+        private int warmup = 30;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getAlpha() {
+            return alpha;
+        }
+
+        public void setAlpha(double alpha) {
+            this.alpha = alpha;
+        }
+
+        public double getSeasonAlpha() {
+            return seasonAlpha;
+        }
+
+        public void setSeasonAlpha(double seasonAlpha) {
+            this.seasonAlpha = seasonAlpha;
+        }
+
+        public int getSeasonBuckets() {
+            return seasonBuckets;
+        }
+
+        public void setSeasonBuckets(int seasonBuckets) {
+            this.seasonBuckets = seasonBuckets;
+        }
+
+        public long getSeasonPeriod() {
+            return seasonPeriod;
+        }
+
+        public void setSeasonPeriod(long seasonPeriod) {
+            this.seasonPeriod = seasonPeriod;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(double threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getWarmup() {
+            return warmup;
+        }
+
+        public void setWarmup(int warmup) {
+            this.warmup = warmup;
+        }
+    }
+
+    /**
+     * 本地时序存储配置
+     * 每个序列占用 rawPoints*16 + (minutePoints+tenMinutePoints)*48 字节堆外内存
+     */
+    public static class StoreConfig {
+        /** 是否启用 */
+        private boolean enabled = true;
+        /** 堆外内存上限(MB) */
+        private long maxMemory = 64;
+        /** 原始点保留个数，默认采样间隔下约1小时 */
+        private int rawPoints = 720;
+        /** 1分钟汇总保留个数，默认6小时 */
+        private int minutePoints = 360;
+        /** 10分钟汇总保留个数，默认3天 */
+        private int tenMinutePoints = 432;
+        /** 序列连续多少个1分钟汇总周期没有新数据时回收，默认1小时 */
+        private int idlePeriods = 60;
+        /** 磁盘归档配置 */
+        private ArchiveConfig archive = new ArchiveConfig();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxMemory() {
+            return maxMemory;
+        }
+
+        public void setMaxMemory(long maxMemory) {
+            this.maxMemory = maxMemory;
+        }
+
+        public int getRawPoints() {
+            return rawPoints;
+        }
+
+        public void setRawPoints(int rawPoints) {
+            this.rawPoints = rawPoints;
+        }
+
+        public int getMinutePoints() {
+            return minutePoints;
+        }
+
+        public void setMinutePoints(int minutePoints) {
+            this.minutePoints = minutePoints;
+        }
+
+        public int getTenMinutePoints() {
+            return tenMinutePoints;
+        }
+
+        public void setTenMinutePoints(int tenMinutePoints) {
+            this.tenMinutePoints = tenMinutePoints;
+        }
+
+        public int getIdlePeriods() {
+            return idlePeriods;
+        }
+
+        public void setIdlePeriods(int idlePeriods) {
+            this.idlePeriods = idlePeriods;
+        }
+
+        public ArchiveConfig getArchive() {
+            return archive;
+        }
+
+        public void setArchive(ArchiveConfig archive) {
+            this.archive = archive;
+        }
+    }
+    
+    /**
+     * 磁盘归档配置
+     * 原始点以Gorilla压缩写入内存映射的段文件，按时间窗口轮转并按保留期限删除
+     */
+    public static class ArchiveConfig {
+        /** 是否启用 */
+        private boolean enabled = false;
+        /** 段文件目录 */
+        private String directory = "data/archive";
+        /** 段时间窗口(毫秒) */
+        private long segmentDuration = 3600000;
+        /** 保留时长(小时) */
+        private int retention = 72;
+        /** 单个段文件映射大小(MB)，写满后在同一窗口开新段 */
+        private int segmentSize = 64;
+        /** 每个数据块的最大点数 */
+        private int blockPoints = 120;
+        /** 数据块最长缓存时间(毫秒)，超过后即使未满也落盘 */
+        private long flushInterval = 60000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public long getSegmentDuration() {
+            return segmentDuration;
+        }
+
+        public void setSegmentDuration(long segmentDuration) {
+            this.segmentDuration = segmentDuration;
+        }
+
+        public int getRetention() {
+            return retention;
+        }
+
+        public void setRetention(int retention) {
+            this.retention = retention;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getBlockPoints() {
+            return blockPoints;
+        }
+
+        public void setBlockPoints(int blockPoints) {
+            this.blockPoints = blockPoints;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
     }
     
     /**
@@ -0,0 +1,148 @@
+package com.aizuda.monitor.core;
+
+import com.aizuda.monitor.storage.MetricsExporter;
+import com.aizuda.monitor.util.RingBlockingQueue;
+import com.aizuda.monitor.util.VirtualThreads;
+import com.aizuda.monitor.util.WaitStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * 导出通道
+ * virtual导出模式下每个导出器一个有界队列和一个虚拟线程，工作线程只入队，
+ * 同一导出器的采集按入队顺序依次导出，慢导出器只会积压和丢弃自己队列中最旧的采集
+ */
+final class ExportLane {
+    private static final Logger log = LoggerFactory.getLogger(ExportLane.class);
+
+    /** 关闭时等待队列中剩余采集导出完成的最长时间(毫秒) */
+    static final long CLOSE_TIMEOUT = 5000;
+
+    private final MetricsExporter exporter;
+    private final BiConsumer<MetricsExporter, Object> sink;
+    private final RingBlockingQueue<Entry> queue;
+    private final Thread worker;
+
+    private final LongAdder dropped = new LongAdder();
+    /** 最近一次导出的采集从入队到开始导出的延迟(毫秒) */
+    private volatile long lag;
+    private volatile boolean running = true;
+
+    /**
+     * @param exporter  导出器
+     * @param sink      在虚拟线程中执行的导出逻辑
+     * @param queueSize 队列容量(采集次数)
+     */
+    ExportLane(MetricsExporter exporter, BiConsumer<MetricsExporter, Object> sink, int queueSize) {
+        this.exporter = exporter;
+        this.sink = sink;
+        this.queue = new RingBlockingQueue<>(queueSize, WaitStrategy.PARK);
+        this.worker = VirtualThreads.newThread("ZLMMonitor-Export-" + exporter.getName(), this::exportLoop);
+        this.worker.start();
+    }
+
+    /**
+     * 入队一次采集，队列满时丢弃最旧的采集
+     * 入队后再检查一次通道状态: 与关闭并发时虚拟线程可能已看到空队列并退出，
+     * 此时撤回这次采集并返回false，由调用方在当前线程导出；撤回失败说明虚拟线程已取走
+     *
+     * @return 通道已关闭且采集未入队时返回false
+     */
+    boolean offer(Object metrics) {
+        if (!running) {
+            return false;
+        }
+        Entry entry = new Entry(metrics);
+        while (!queue.offer(entry)) {
+            if (queue.poll() != null) {
+                dropped.increment();
+            }
+        }
+        return running || !queue.remove(entry);
+    }
+
+    String getName() {
+        return exporter.getName();
+    }
+
+    int getPending() {
+        return queue.size();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    long getLag() {
+        return lag;
+    }
+
+    /**
+     * 停止接收新采集，虚拟线程导出完队列中剩余的采集后退出
+     */
+    void shutdown() {
+        running = false;
+    }
+
+    /**
+     * 等待虚拟线程退出，到达截止时间仍未导出完时中断并丢弃剩余采集
+     *
+     * @param deadline 截止时间(毫秒时间戳)
+     */
+    void awaitTermination(long deadline) {
+        try {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                worker.join(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            worker.interrupt();
+            int pending = 0;
+            while (queue.poll() != null) {
+                pending++;
+            }
+            dropped.add(pending);
+            log.warn("导出通道关闭超时，丢弃剩余采集: {}, pending={}", getName(), pending);
+        }
+    }
+
+    private void exportLoop() {
+        while (running || !queue.isEmpty()) {
+            Entry entry;
+            try {
+                entry = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry == null) {
+                continue;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            lag = System.currentTimeMillis() - entry.enqueuedAt;
+            try {
+                sink.accept(exporter, entry.metrics);
+            } catch (RuntimeException e) {
+                log.error("导出通道处理失败: {}", getName(), e);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Object metrics;
+        private final long enqueuedAt = System.currentTimeMillis();
+
+        Entry(Object metrics) {
+            this.metrics = metrics;
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package com.aizuda.monitor.core;
 
+import com.aizuda.monitor.callback.CallbackLane;
 import com.aizuda.monitor.callback.MonitorCallback;
 import com.aizuda.monitor.collector.*;
 import com.aizuda.monitor.config.ConfigManager;
 import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.flow.Flow;
+import com.aizuda.monitor.flow.MetricsPublisher;
+import com.aizuda.monitor.flow.OverflowStrategy;
 import com.aizuda.monitor.metrics.*;
+import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.monitor.query.MetricsQuery;
+import com.aizuda.monitor.query.StreamInfo;
+import com.aizuda.monitor.query.StreamLookup;
 import com.aizuda.monitor.storage.MetricsExporter;
 import com.aizuda.monitor.storage.MetricsExporterLoader;
+import com.aizuda.monitor.storage.MetricsSpool;
+import com.aizuda.monitor.tsdb.MetricsArchive;
+import com.aizuda.monitor.tsdb.MetricsStore;
 import com.aizuda.zlm4j.core.ZLMApi;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.aizuda.monitor.util.ExportThreadMode;
+import com.aizuda.monitor.util.LogLinearHistogram;
 import com.aizuda.monitor.util.ObjectPool;
+import com.aizuda.monitor.util.RingBlockingQueue;
+import com.aizuda.monitor.util.VirtualThreads;
+import com.aizuda.monitor.util.WaitStrategy;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,7 +35,7 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * ZLM监控核心类
@@ -68,23 +85,54 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class ZLMMonitor implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(ZLMMonitor.class);
+    /** 比较导出器配置段 */
+    private static final ObjectMapper SETTINGS_MAPPER = new ObjectMapper();
+    
+    /** 线程池指标任务的名称 */
+    private static final String POOL_TICK = "threadPool";
     
     // 监控组件
     private final ZLMApi zlmApi;
     // 配置管理器
     private final ConfigManager configManager;
     // 收集器
-    private final List<AbstractMetricsCollector<?>> collectors = new ArrayList<>();
+    private final List<AbstractMetricsCollector<?>> collectors = new CopyOnWriteArrayList<>();
     // 导出器
-    private final List<MetricsExporter> exporters = new ArrayList<>();
-    // 回调
-    private MonitorCallback callback;
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+    // 本地时序存储
+    private MetricsStore metricsStore;
+    // 磁盘归档
+    private MetricsArchive metricsArchive;
+    /** 导出暂存区 */
+    private MetricsSpool metricsSpool;
+    /** 回调通道，每个回调一个 */
+    private final List<CallbackLane> callbackLanes = new CopyOnWriteArrayList<>();
+    /** setCallback 设置的回调所在通道 */
+    private CallbackLane primaryLane;
+    private final AtomicInteger callbackSequence = new AtomicInteger();
+    /** 指标订阅发布者 */
+    private MetricsPublisher metricsPublisher;
+    /** 单流查询 */
+    private StreamLookup streamLookup;
+    /** 导出和本地存储使用的指标选择器 */
+    private volatile MetricsSelector pipelineSelector = MetricsSelector.ALL;
     // 
     private ScheduledExecutorService scheduleExecutor;
     // 工作线程池
-    private ThreadPoolExecutor workExecutor;
+    private volatile ThreadPoolExecutor workExecutor;
+    /** 是否为virtual导出模式，platform模式下导出在工作线程中依次执行 */
+    private volatile boolean virtualExport;
+    /** virtual模式下每个导出器的队列容量 */
+    private volatile int exportQueueSize;
+    /** virtual模式下各导出器的导出通道，首次导出时创建 */
+    private final Map<MetricsExporter, ExportLane> exportLanes = new ConcurrentHashMap<>();
     // 运行状态
     private volatile boolean running = false;
+    /** 周期任务，键为收集器名称或 threadPool */
+    private final Map<String, ScheduledTick> ticks = new ConcurrentHashMap<>();
+    /** 当前生效的采样间隔和初始延迟 */
+    private long appliedSampleInterval;
+    private long appliedInitialDelay;
     // 线程池监控指标
     private ThreadPoolMetrics threadPoolMetrics;
     // 配置
@@ -124,6 +172,22 @@ public class ZLMMonitor implements AutoCloseable {
             // 3. 初始化导出器
             initExporters(config);
             
+            // 4. 初始化本地时序存储
+            initStore(config);
+            
+            // 5. 初始化导出暂存区
+            initSpool(config);
+            
+            // 6. 初始化指标发布者
+            initPublisher(config);
+            
+            // 7. 初始化单流查询
+            initLookup(config);
+            
+            // 8. 按订阅范围设置收集器的遍历范围
+            pipelineSelector = pipelineSelector(config);
+            refreshSourceMatcher();
+            
             log.info("ZLM监控初始化完成");
         } catch (Exception e) {
             log.error("ZLM监控初始化失败", e);
@@ -144,10 +208,32 @@ public class ZLMMonitor implements AutoCloseable {
         // 3. 初始化线程池监控
         threadPoolMetrics = new ThreadPoolMetrics(workExecutor);
         
-        log.info("线程池初始化完成: workPool[core={}, max={}, queueSize={}], schedulePool[size=1]", 
+        // 4. 确定导出线程模式
+        virtualExport = useVirtualExport(config.getThread());
+        exportQueueSize = config.getThread().getExportQueueSize();
+        
+        log.info("线程池初始化完成: workPool[core={}, max={}, queueSize={}, waitStrategy={}], schedulePool[size=1], exportThreads={}", 
             config.getThread().getCorePoolSize(),
             config.getThread().getMaxPoolSize(),
-            config.getThread().getQueueCapacity());
+            config.getThread().getQueueCapacity(),
+            config.getThread().getWaitStrategy(),
+            virtualExport ? ExportThreadMode.VIRTUAL : ExportThreadMode.PLATFORM);
+    }
+    
+    /**
+     * 是否使用虚拟线程导出
+     * virtual模式且运行在JDK 21及以上时返回true，否则导出在工作线程中执行
+     */
+    private boolean useVirtualExport(MonitorConfig.ThreadConfig config) {
+        if (ExportThreadMode.of(config.getExportThreads()) != ExportThreadMode.VIRTUAL) {
+            return false;
+        }
+        if (!VirtualThreads.isSupported()) {
+            log.warn("当前JDK不支持虚拟线程，导出回退为工作线程执行: java.version={}",
+                System.getProperty("java.version"));
+            return false;
+        }
+        return true;
     }
     
     /**
@@ -168,39 +254,36 @@ public class ZLMMonitor implements AutoCloseable {
             }
         };
         
-        // 2. 自定义拒绝策略
-        RejectedExecutionHandler rejectedHandler = new RejectedExecutionHandler() {
-            @Override
-            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                try {
-                    // 记录任务被拒绝
-                    threadPoolMetrics.taskRejected();
-                    
-                    // 尝试将任务放入队列
-                    if (!executor.getQueue().offer(r, 100, TimeUnit.MILLISECONDS)) {
-                        log.warn("工作线程队列已满，丢弃任务");
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+        // 2. 自定义拒绝策略: 队列满时直接丢弃，不阻塞调度线程
+        RejectedExecutionHandler rejectedHandler = (r, executor) -> {
+            threadPoolMetrics.taskRejected();
+            if (!executor.isShutdown()) {
+                log.warn("工作线程队列已满，丢弃任务");
             }
         };
         
         // 3. 创建增强的线程池
-        return new ThreadPoolExecutor(
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
             config.getCorePoolSize(),
             config.getMaxPoolSize(),
             config.getKeepAliveTime(),
             TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(config.getQueueCapacity()),
+            new RingBlockingQueue<>(config.getQueueCapacity(), WaitStrategy.of(config.getWaitStrategy())),
             threadFactory,
             rejectedHandler
         ) {
+            @Override
+            public void execute(Runnable command) {
+                // 未经 submitTask 提交的任务(如CompletableFuture)归入其他类型
+                super.execute(command instanceof TrackedTask ? command
+                    : new TrackedTask(TrackedTask.OTHER, command));
+            }
+            
             @Override
             protected void beforeExecute(Thread t, Runnable r) {
                 try {
                     super.beforeExecute(t, r);
-                    threadPoolMetrics.beforeExecute();
+                    threadPoolMetrics.beforeExecute((TrackedTask) r);
                 } catch (Exception e) {
                     log.error("执行beforeExecute钩子方法失败", e);
                 }
@@ -209,26 +292,24 @@ public class ZLMMonitor implements AutoCloseable {
             @Override
             protected void afterExecute(Runnable r, Throwable t) {
                 try {
-                    threadPoolMetrics.afterExecute(t);
+                    threadPoolMetrics.afterExecute((TrackedTask) r, t);
                     super.afterExecute(r, t);
                 } catch (Exception e) {
                     log.error("执行afterExecute钩子方法失败", e);
-                } finally {
-                    // 确清理ThreadLocal
-                    threadPoolMetrics.cleanupThreadLocal();
-                }
-            }
-            
-            @Override
-            protected void terminated() {
-                try {
-                    threadPoolMetrics.cleanup();
-                    super.terminated();
-                } catch (Exception e) {
-                    log.error("执行terminated钩子方法失败", e);
                 }
             }
         };
+        executor.allowCoreThreadTimeOut(config.isAllowCoreTimeout());
+        return executor;
+    }
+    
+    /**
+     * 提交任务到工作线程池，记录入队时间和任务类型
+     *
+     * @param source 任务类型，收集器名称或 threadPool
+     */
+    private void submitTask(String source, Runnable task) {
+        workExecutor.execute(new TrackedTask(source, task));
     }
     
     /**
@@ -244,59 +325,112 @@ public class ZLMMonitor implements AutoCloseable {
         });
     }
     
+    /**
+     * 带入队时间和任务类型的工作任务
+     * 开始执行时间记录在任务自身，不依赖ThreadLocal
+     */
+    private static final class TrackedTask implements Runnable {
+        /** 未指定类型的任务 */
+        static final String OTHER = "other";
+        
+        private final String source;
+        private final Runnable task;
+        private final long enqueueNanos = System.nanoTime();
+        private long startNanos;
+        
+        TrackedTask(String source, Runnable task) {
+            this.source = source;
+            this.task = task;
+        }
+        
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+    
     /**
      * 线程池监控指标
+     * 计数使用LongAdder，排队等待和执行耗时分别记录到无锁直方图，
+     * 每个采集周期输出p50、p99和最大值(微秒)后清零；
+     * 同时按任务类型(收集器名称)和导出器名称分别统计耗时
      */
     private static class ThreadPoolMetrics {
-        private final ThreadPoolExecutor executor;
-        private final AtomicLong totalTasks = new AtomicLong();
-        private final AtomicLong activeTasks = new AtomicLong();
-        private final AtomicLong completedTasks = new AtomicLong();
-        private final AtomicLong rejectedTasks = new AtomicLong();
-        private final AtomicLong failedTasks = new AtomicLong();
-        private final AtomicLong totalExecutionTime = new AtomicLong();
-        private final ThreadLocal<Long> startTime = new ThreadLocal<>();
+        private static final long NANOS_PER_MICRO = 1000;
+        
+        private volatile ThreadPoolExecutor executor;
+        private final LongAdder totalTasks = new LongAdder();
+        private final LongAdder activeTasks = new LongAdder();
+        private final LongAdder completedTasks = new LongAdder();
+        private final LongAdder rejectedTasks = new LongAdder();
+        private final LongAdder failedTasks = new LongAdder();
+        private final LongAdder totalExecutionTime = new LongAdder();
+        
+        /** 全部任务的排队等待和执行耗时 */
+        private final LogLinearHistogram queueWait = new LogLinearHistogram();
+        private final LogLinearHistogram runTime = new LogLinearHistogram();
+        /** 按任务类型的执行耗时 */
+        private final Map<String, TaskStats> tasks = new ConcurrentHashMap<>();
+        /** 按导出器的导出耗时 */
+        private final Map<String, TaskStats> exporters = new ConcurrentHashMap<>();
         
         public ThreadPoolMetrics(ThreadPoolExecutor executor) {
             this.executor = executor;
         }
         
-        public void beforeExecute() {
-            totalTasks.incrementAndGet();
-            activeTasks.incrementAndGet();
-            startTime.set(System.nanoTime());
+        /**
+         * 线程池替换后切换统计对象，累计计数保留
+         */
+        public void setExecutor(ThreadPoolExecutor executor) {
+            this.executor = executor;
+        }
+        
+        public void beforeExecute(TrackedTask task) {
+            totalTasks.increment();
+            activeTasks.increment();
+            task.startNanos = System.nanoTime();
+            long wait = task.startNanos - task.enqueueNanos;
+            queueWait.record(wait);
+            stats(tasks, task.source).queueWait.record(wait);
         }
         
-        public void afterExecute(Throwable t) {
-            activeTasks.decrementAndGet();
-            completedTasks.incrementAndGet();
+        public void afterExecute(TrackedTask task, Throwable t) {
+            activeTasks.decrement();
+            completedTasks.increment();
+            long elapsed = System.nanoTime() - task.startNanos;
+            totalExecutionTime.add(elapsed);
+            runTime.record(elapsed);
+            TaskStats stats = stats(tasks, task.source);
+            stats.runTime.record(elapsed);
             
             // 处理执行异常
             if (t != null) {
-                failedTasks.incrementAndGet();
-            }
-            
-            // 计算执行时间
-            Long start = startTime.get();
-            if (start != null) {
-                totalExecutionTime.addAndGet(System.nanoTime() - start);
+                failedTasks.increment();
+                stats.failed.increment();
             }
         }
         
         public void taskRejected() {
-            rejectedTasks.incrementAndGet();
+            rejectedTasks.increment();
         }
         
-        public void cleanupThreadLocal() {
-            startTime.remove();
+        /**
+         * 记录一次导出耗时
+         */
+        public void exportTime(String exporter, long nanos) {
+            stats(exporters, exporter).runTime.record(nanos);
         }
         
-        public void cleanup() {
-            // 清理所有资源
-            startTime.remove();
+        private static TaskStats stats(Map<String, TaskStats> map, String name) {
+            TaskStats stats = map.get(name);
+            return stats != null ? stats : map.computeIfAbsent(name, k -> new TaskStats());
         }
         
+        /**
+         * 获取线程池指标，直方图类指标为上次调用以来的区间值
+         */
         public Map<String, Number> getMetrics() {
+            ThreadPoolExecutor executor = this.executor;
             Map<String, Number> metrics = new HashMap<>();
             // 线程池状态
             metrics.put("poolSize", executor.getPoolSize());
@@ -307,18 +441,34 @@ public class ZLMMonitor implements AutoCloseable {
             metrics.put("queueRemainingCapacity", executor.getQueue().remainingCapacity());
             
             // 任务统计
-            metrics.put("totalTasks", totalTasks.get());
-            metrics.put("activeTasks", activeTasks.get());
-            metrics.put("completedTasks", completedTasks.get());
-            metrics.put("rejectedTasks", rejectedTasks.get());
-            metrics.put("failedTasks", failedTasks.get());
+            long completed = completedTasks.sum();
+            long failed = failedTasks.sum();
+            metrics.put("totalTasks", totalTasks.sum());
+            metrics.put("activeTasks", activeTasks.sum());
+            metrics.put("completedTasks", completed);
+            metrics.put("rejectedTasks", rejectedTasks.sum());
+            metrics.put("failedTasks", failed);
             
             // 性能指标
-            long completed = completedTasks.get();
             if (completed > 0) {
-                metrics.put("avgExecutionTime", totalExecutionTime.get() / completed);
+                metrics.put("avgExecutionTime", totalExecutionTime.sum() / completed);
                 metrics.put("taskSuccessRate", 
-                    (completed - failedTasks.get()) * 100.0 / completed);
+                    (completed - failed) * 100.0 / completed);
+            }
+            
+            // 排队等待和执行耗时分布
+            putHistogram(metrics, "queueWait", queueWait.snapshotAndReset());
+            putHistogram(metrics, "runTime", runTime.snapshotAndReset());
+            for (Map.Entry<String, TaskStats> entry : tasks.entrySet()) {
+                String prefix = "task." + entry.getKey() + ".";
+                TaskStats stats = entry.getValue();
+                putHistogram(metrics, prefix + "queueWait", stats.queueWait.snapshotAndReset());
+                putHistogram(metrics, prefix + "runTime", stats.runTime.snapshotAndReset());
+                metrics.put(prefix + "failedTasks", stats.failed.sum());
+            }
+            for (Map.Entry<String, TaskStats> entry : exporters.entrySet()) {
+                putHistogram(metrics, "exporter." + entry.getKey() + ".exportTime",
+                    entry.getValue().runTime.snapshotAndReset());
             }
             
             // 线程池饱和度
@@ -332,30 +482,36 @@ public class ZLMMonitor implements AutoCloseable {
             
             return metrics;
         }
+        
+        /**
+         * 输出区间次数、p50、p99和最大值，耗时单位为微秒
+         */
+        private static void putHistogram(Map<String, Number> metrics, String name,
+                                         LogLinearHistogram.Snapshot snapshot) {
+            metrics.put(name + "Count", snapshot.getCount());
+            metrics.put(name + "P50", snapshot.getValueAtQuantile(0.5) / NANOS_PER_MICRO);
+            metrics.put(name + "P99", snapshot.getValueAtQuantile(0.99) / NANOS_PER_MICRO);
+            metrics.put(name + "Max", snapshot.getMax() / NANOS_PER_MICRO);
+        }
+        
+        /**
+         * 单个任务类型或导出器的统计
+         */
+        private static final class TaskStats {
+            private final LogLinearHistogram queueWait = new LogLinearHistogram();
+            private final LogLinearHistogram runTime = new LogLinearHistogram();
+            private final LongAdder failed = new LongAdder();
+        }
     }
     
     /**
      * 初始化收集器
      */
     private void initCollectors(MonitorConfig config) {
-        // 添加系统指标收集器
-        if (config.isSystemMetricsEnabled()) {
-            collectors.add(new SystemMetricsCollector(zlmApi, config));
-        }
-        
-        // 添加流媒体指标收集器
-        if (config.isStreamMetricsEnabled()) {
-            collectors.add(new StreamMetricsCollector(zlmApi, config));
-        }
-        
-        // 添加网络指收集器
-        if (config.isNetworkMetricsEnabled()) {
-            collectors.add(new NetworkMetricsCollector(zlmApi, config));
-        }
-        
-        // 添加性能指标收集器
-        if (config.isPerformanceMetricsEnabled()) {
-            collectors.add(new PerformanceMetricsCollector(zlmApi, config));
+        for (MetricsType type : MetricsType.values()) {
+            if (isTypeEnabled(type, config)) {
+                collectors.add(createCollector(type, config));
+            }
         }
         
         // 始化所有收集器
@@ -375,7 +531,8 @@ public class ZLMMonitor implements AutoCloseable {
         // 加载配置的导出器
         for (String name : config.getExporterNames()) {
             try {
-                MetricsExporter exporter = MetricsExporterLoader.getExporter(name);
+                MetricsExporter exporter = MetricsExporterLoader.newExporter(name);
+                exporter.configure(config.getExporter());
                 exporters.add(exporter);
             } catch (Exception e) {
                 log.error("加载导出器失败: {}", name, e);
@@ -402,6 +559,89 @@ public class ZLMMonitor implements AutoCloseable {
         }
     }
     
+    /**
+     * 初始化本地时序存储
+     */
+    private void initStore(MonitorConfig config) {
+        MonitorConfig.StoreConfig storeConfig = config.getStore();
+        if (storeConfig != null && storeConfig.isEnabled()) {
+            try {
+                metricsStore = new MetricsStore(storeConfig);
+            } catch (Exception e) {
+                log.error("初始化本地存储失败", e);
+            }
+        }
+        if (storeConfig != null && storeConfig.getArchive() != null && storeConfig.getArchive().isEnabled()) {
+            try {
+                metricsArchive = new MetricsArchive(storeConfig.getArchive());
+            } catch (Exception e) {
+                log.error("初始化磁盘归档失败", e);
+            }
+        }
+    }
+    
+    /**
+     * 初始化导出暂存区
+     */
+    private void initSpool(MonitorConfig config) {
+        MonitorConfig.SpoolConfig spoolConfig = config.getExporter().getSpool();
+        if (spoolConfig != null && spoolConfig.isEnabled()) {
+            try {
+                metricsSpool = new MetricsSpool(spoolConfig);
+            } catch (Exception e) {
+                log.error("初始化导出暂存区失败", e);
+            }
+        }
+    }
+    
+    /**
+     * 初始化指标发布者，没有订阅者时发布为空操作
+     */
+    private void initPublisher(MonitorConfig config) {
+        MonitorConfig.PublisherConfig publisherConfig = config.getPublisher() != null
+            ? config.getPublisher() : new MonitorConfig.PublisherConfig();
+        metricsPublisher = new MetricsPublisher(publisherConfig.getBufferSize(),
+            OverflowStrategy.of(publisherConfig.getOverflow()), config.isDaemon());
+        metricsPublisher.setSubscriptionListener(this::refreshSourceMatcher);
+    }
+    
+    /**
+     * 初始化单流查询
+     */
+    private void initLookup(MonitorConfig config) {
+        MonitorConfig.LookupConfig lookupConfig = config.getLookup() != null
+            ? config.getLookup() : new MonitorConfig.LookupConfig();
+        streamLookup = new StreamLookup(zlmApi, lookupConfig.getTtl(), lookupConfig.getMaxEntries());
+    }
+    
+    private static MetricsSelector pipelineSelector(MonitorConfig config) {
+        MonitorConfig.SelectorConfig selector = config.getExporter() != null ? config.getExporter().getSelector() : null;
+        return selector != null ? selector.toSelector() : MetricsSelector.ALL;
+    }
+    
+    /**
+     * 合并导出、回调和订阅的选择器并下推到所有收集器
+     * 没有导出器和本地存储时导出选择器不参与合并，三方都不关心的流在遍历时直接跳过；
+     * 汇总值按合并后的范围计算，各方按自己的选择器只过滤指标名、流事件和按流采样
+     */
+    private void refreshSourceMatcher() {
+        List<MetricsSelector> selectors = new ArrayList<>();
+        if (!exporters.isEmpty() || metricsStore != null || metricsArchive != null) {
+            selectors.add(pipelineSelector);
+        }
+        for (CallbackLane lane : callbackLanes) {
+            selectors.add(lane.getSelector());
+        }
+        if (metricsPublisher != null) {
+            selectors.addAll(metricsPublisher.getSelectors());
+        }
+        SourceMatcher matcher = SourceMatcher.of(selectors);
+        for (AbstractMetricsCollector<?> collector : collectors) {
+            collector.setSourceMatcher(matcher);
+        }
+        log.debug("收集器遍历范围已更新: {}", matcher);
+    }
+    
     @Override
     public void close() throws Exception {
         try {
@@ -438,6 +678,35 @@ public class ZLMMonitor implements AutoCloseable {
                 }
             }
             
+            // 关闭回调通道
+            closeCallbackLanes();
+            
+            // 关闭指标发布者，订阅者收到onComplete
+            if (metricsPublisher != null) {
+                metricsPublisher.close();
+            }
+            
+            // 关闭导出暂存区
+            if (metricsSpool != null) {
+                try {
+                    metricsSpool.close();
+                } catch (Exception e) {
+                    log.error("关闭导出暂存区失败", e);
+                }
+            }
+            
+            // 关闭本地存储
+            if (metricsStore != null) {
+                metricsStore.close();
+            }
+            if (metricsArchive != null) {
+                try {
+                    metricsArchive.close();
+                } catch (Exception e) {
+                    log.error("关闭磁盘归档失败", e);
+                }
+            }
+            
             // 关闭配置管理器
             if (configManager != null) {
                 try {
@@ -474,12 +743,18 @@ public class ZLMMonitor implements AutoCloseable {
             // 启动所有导出器
             for (MetricsExporter exporter : exporters) {
                 try {
+                    attachSpool(exporter);
                     exporter.start();
                 } catch (Exception e) {
                     log.error("启动导出器失败: {}", exporter.getName(), e);
                 }
             }
             
+            // 启动暂存数据补发
+            if (metricsSpool != null) {
+                metricsSpool.start(this::findExporter);
+            }
+            
             // 启动调度任务
             scheduleCollectors();
             
@@ -493,57 +768,33 @@ public class ZLMMonitor implements AutoCloseable {
      */
     private void scheduleCollectors() {
         MonitorConfig config = configManager.getConfig();
+        appliedSampleInterval = config.getSampleInterval();
+        appliedInitialDelay = config.getInitialDelay();
         
         // 1. 调度指标收集任务
         for (AbstractMetricsCollector<?> collector : collectors) {
-            scheduleExecutor.scheduleWithFixedDelay(
-                () -> {
-                    try {
-                        // 收集标
-                        Object metrics = collector.collect();
-                        
-                        // 使用工作线程池处理指标导出
-                        workExecutor.execute(() -> {
-                            try {
-                                // 通知回调
-                                notifyCallback(metrics);
-                                
-                                // 导出指标
-                                exportMetrics(metrics);
-                            } catch (Exception e) {
-                                log.error("处理指标败: {}", collector.getName(), e);
-                            }
-                        });
-                    } catch (Exception e) {
-                        log.error("收指标失败: {}", collector.getName(), e);
-                    }
-                },
-                config.getInitialDelay(),
-                config.getSampleInterval(),
-                TimeUnit.MILLISECONDS
-            );
+            scheduleCollector(collector);
         }
         
         // 2. 调度线程池指标收集任务
-        scheduleExecutor.scheduleWithFixedDelay(
-            () -> {
+        ScheduledTick poolTick = new ScheduledTick(POOL_TICK, () -> {
                 try {
                     // 收集线程池指标
                     Map<String, Number> poolMetrics = threadPoolMetrics.getMetrics();
+                    long collectTime = System.currentTimeMillis();
                     
                     // 使用工作线程池处理指标导出
-                    workExecutor.execute(() -> {
+                    submitTask(POOL_TICK, () -> {
                         try {
-                            // 导出线程池指标
-                            for (MetricsExporter exporter : exporters) {
-                                try {
-                                    // 创建性能指标对象并设置线程池指标
-                                    PerformanceMetrics metrics = new PerformanceMetrics();
-                                    metrics.setThreadPoolMetrics(poolMetrics);
-                                    exporter.exportPerformance(metrics);
-                                } catch (Exception e) {
-                                    log.error("导出线程池指标失败: {}", exporter.getName(), e);
-                                }
+                            // 线程池计数只读取一次，导出和本地存储使用同一份指标
+                            Object selected = pipelineSelector.select(poolPerformanceMetrics(poolMetrics, collectTime));
+                            
+                            // 导出线程池指标，virtual模式下与其他指标一样经各导出器的通道导出
+                            exportMetrics(selected);
+                            
+                            // 写入本地存储
+                            if (metricsStore != null || metricsArchive != null) {
+                                storeMetrics(selected);
                             }
                             
                             // 记录关键指标到日志
@@ -565,62 +816,448 @@ public class ZLMMonitor implements AutoCloseable {
                 } catch (Exception e) {
                     log.error("收集线程池指标失败", e);
                 }
-            },
-            config.getInitialDelay(),
-            config.getSampleInterval(),
-            TimeUnit.MILLISECONDS
-        );
+        });
+        ticks.put(POOL_TICK, poolTick);
+        poolTick.schedule(appliedInitialDelay, appliedSampleInterval);
+    }
+    
+    /**
+     * 调度单个收集器的采集任务
+     */
+    private void scheduleCollector(AbstractMetricsCollector<?> collector) {
+        ScheduledTick tick = new ScheduledTick(collector.getName(), () -> {
+            try {
+                // 收集标
+                Object metrics = collector.collect();
+                
+                // 使用工作线程池处理指标导出
+                submitTask(collector.getName(), () -> {
+                    try {
+                        // 通知回调
+                        notifyCallback(metrics);
+                        
+                        // 推送给订阅者
+                        publishMetrics(metrics);
+                        
+                        // 导出指标
+                        Object selected = selectForPipeline(metrics);
+                        exportMetrics(selected);
+                        
+                        // 写入本地存储
+                        storeMetrics(selected);
+                    } catch (Exception e) {
+                        log.error("处理指标败: {}", collector.getName(), e);
+                    }
+                });
+            } catch (Exception e) {
+                log.error("收指标失败: {}", collector.getName(), e);
+            }
+        });
+        ScheduledTick previous = ticks.put(collector.getName(), tick);
+        if (previous != null) {
+            previous.cancel();
+        }
+        tick.schedule(appliedInitialDelay, appliedSampleInterval);
+    }
+    
+    /**
+     * 可重新调度的周期任务
+     * 每次调度分配新的代号，已取消但仍在调度线程中排队或刚开始执行的旧任务因代号不符直接跳过；
+     * 重新调度时以上次开始执行的时间推算下一次执行，间隔变化不会产生空档也不会重复执行
+     */
+    private final class ScheduledTick {
+        private final String name;
+        private final Runnable body;
+        private final long createdAt = System.currentTimeMillis();
+        /** 上次开始执行的时间，0表示尚未执行 */
+        private long lastStart;
+        private long generation;
+        private ScheduledFuture<?> future;
+        
+        ScheduledTick(String name, Runnable body) {
+            this.name = name;
+            this.body = body;
+        }
+        
+        synchronized void schedule(long initialDelay, long interval) {
+            if (future != null) {
+                future.cancel(false);
+            }
+            long current = ++generation;
+            future = scheduleExecutor.scheduleWithFixedDelay(() -> fire(current),
+                initialDelay, interval, TimeUnit.MILLISECONDS);
+        }
+        
+        /**
+         * 按新的初始延迟和间隔重新调度
+         */
+        synchronized void reschedule(long initialDelay, long interval) {
+            long now = System.currentTimeMillis();
+            long delay = lastStart == 0
+                ? Math.max(0, createdAt + initialDelay - now)
+                : Math.max(0, lastStart + interval - now);
+            schedule(delay, interval);
+            log.debug("采集任务已重新调度: {}, delay={}ms, interval={}ms", name, delay, interval);
+        }
+        
+        synchronized void cancel() {
+            generation++;
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+        
+        private void fire(long expected) {
+            synchronized (this) {
+                if (expected != generation) {
+                    return;
+                }
+                lastStart = System.currentTimeMillis();
+            }
+            body.run();
+        }
+    }
+    
+    /**
+     * 创建线程池性能指标，附带暂存区积压、本地存储用量和各回调通道、导出通道的积压
+     */
+    private PerformanceMetrics poolPerformanceMetrics(Map<String, Number> poolMetrics, long collectTime) {
+        PerformanceMetrics metrics = new PerformanceMetrics();
+        metrics.setTimestamp(collectTime);
+        metrics.setThreadPoolMetrics(poolMetrics);
+        if (metricsSpool != null) {
+            metrics.setSpoolMetrics(metricsSpool.getBacklog(), metricsSpool.getDiskUsage(),
+                metricsSpool.getDroppedRecords());
+        }
+        if (metricsStore != null) {
+            metrics.setStoreMetrics(metricsStore.getSeriesCount(), metricsStore.getMemoryUsed(),
+                metricsStore.getDroppedPoints(), metricsStore.getEvictedSeries());
+        }
+        for (CallbackLane lane : callbackLanes) {
+            metrics.setCallbackMetrics(lane.getName(), lane.getPending(), lane.getDropped(), lane.getLag());
+        }
+        for (ExportLane lane : exportLanes.values()) {
+            metrics.setExportLaneMetrics(lane.getName(), lane.getPending(), lane.getDropped(), lane.getLag());
+        }
+        if (streamLookup != null && streamLookup.getRequests() > 0) {
+            metrics.setLookupMetrics(streamLookup.getRequests(), streamLookup.getFinds(), streamLookup.size());
+        }
+        return metrics;
+    }
+    
+    /**
+     * 推送给指标订阅者，只入队不等待
+     */
+    private void publishMetrics(Object metrics) {
+        if (metricsPublisher != null && metrics instanceof Metrics) {
+            metricsPublisher.publish((Metrics) metrics);
+        }
+    }
+    
+    /**
+     * 按导出选择器过滤指标名，选择全部指标时返回原对象
+     */
+    private Object selectForPipeline(Object metrics) {
+        return metrics instanceof Metrics ? pipelineSelector.select((Metrics) metrics) : metrics;
     }
     
     /**
      * 导出指标
+     * 虚拟线程模式下每个导出器拥有一个有界队列和一个虚拟线程，工作线程只入队不等待导出完成，
+     * 慢导出器只积压自己的队列，不会拖慢其他导出器和后续采集，虚拟线程数量也不随积压增长
      */
     private void exportMetrics(Object metrics) {
         for (MetricsExporter exporter : exporters) {
-            try {
-                if (metrics instanceof SystemMetrics) {
-                    exporter.exportSystem((SystemMetrics) metrics);
-                } else if (metrics instanceof StreamMetrics) {
-                    exporter.exportStream((StreamMetrics) metrics);
-                } else if (metrics instanceof NetworkMetrics) {
-                    exporter.exportNetwork((NetworkMetrics) metrics);
-                } else if (metrics instanceof PerformanceMetrics) {
-                    exporter.exportPerformance((PerformanceMetrics) metrics);
-                }
-            } catch (Exception e) {
+            if (!virtualExport) {
+                exportTo(exporter, metrics);
+                continue;
+            }
+            ExportLane lane = exportLanes.computeIfAbsent(exporter,
+                e -> new ExportLane(e, this::exportTo, exportQueueSize));
+            if (!lane.offer(metrics)) {
+                // 通道已关闭(停止、切换模式或移除导出器)，在当前线程导出
+                exportTo(exporter, metrics);
+            }
+        }
+    }
+    
+    /**
+     * 导出到单个导出器
+     * 启用暂存区时，导出器不可写、存在积压或导出失败的数据写入暂存区，由补发线程按序补发
+     */
+    private void exportTo(MetricsExporter exporter, Object metrics) {
+        long start = System.nanoTime();
+        try {
+            doExportTo(exporter, metrics);
+        } finally {
+            threadPoolMetrics.exportTime(exporter.getName(), System.nanoTime() - start);
+        }
+    }
+    
+    private void doExportTo(MetricsExporter exporter, Object metrics) {
+        if (metricsSpool != null && metrics instanceof Metrics
+            && (metricsSpool.hasBacklog(exporter.getName()) || !exporter.isAvailable())) {
+            metricsSpool.append(exporter.getName(), (Metrics) metrics);
+            return;
+        }
+        try {
+            if (metrics instanceof SystemMetrics) {
+                exporter.exportSystem((SystemMetrics) metrics);
+            } else if (metrics instanceof StreamMetrics) {
+                exporter.exportStream((StreamMetrics) metrics);
+            } else if (metrics instanceof NetworkMetrics) {
+                exporter.exportNetwork((NetworkMetrics) metrics);
+            } else if (metrics instanceof PerformanceMetrics) {
+                exporter.exportPerformance((PerformanceMetrics) metrics);
+            }
+        } catch (Exception e) {
+            if (metricsSpool != null && metrics instanceof Metrics) {
+                log.warn("导出指标失败，写入暂存区: {}, error={}", exporter.getName(), e.getMessage());
+                metricsSpool.append(exporter.getName(), (Metrics) metrics);
+            } else {
                 log.error("导出指标失败: {}", exporter.getName(), e);
             }
         }
     }
     
     /**
-     * 设置监控回调
+     * 启用暂存区时，导出器内部缓冲区放不下或重试耗尽的采集写入暂存区，而不是丢弃
      */
-    public void setCallback(MonitorCallback callback) {
-        this.callback = callback;
+    private void attachSpool(MetricsExporter exporter) {
+        MetricsSpool spool = metricsSpool;
+        if (spool != null) {
+            String name = exporter.getName();
+            exporter.setOverflowHandler(metrics -> spool.append(name, metrics));
+        }
     }
     
     /**
-     * 通知回调
+     * 按名称查找当前生效的导出器
      */
-    private void notifyCallback(Object metrics) {
-        if (callback != null) {
+    private MetricsExporter findExporter(String name) {
+        for (MetricsExporter exporter : exporters) {
+            if (exporter.getName().equals(name)) {
+                return exporter;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 写入本地时序存储
+     */
+    private void storeMetrics(Object metrics) {
+        if (!(metrics instanceof Metrics)) {
+            return;
+        }
+        if (metricsStore != null) {
             try {
-                if (metrics instanceof SystemMetrics) {
-                    callback.onSystemMetrics((SystemMetrics) metrics);
-                } else if (metrics instanceof StreamMetrics) {
-                    callback.onStreamMetrics((StreamMetrics) metrics);
-                } else if (metrics instanceof NetworkMetrics) {
-                    callback.onNetworkMetrics((NetworkMetrics) metrics);
-                } else if (metrics instanceof PerformanceMetrics) {
-                    callback.onPerformanceMetrics((PerformanceMetrics) metrics);
-                }
+                metricsStore.ingest((Metrics) metrics);
             } catch (Exception e) {
-                log.error("回处理失败", e);
+                log.error("写入本地存储失败", e);
+            }
+        }
+        if (metricsArchive != null) {
+            try {
+                metricsArchive.ingest((Metrics) metrics);
+            } catch (Exception e) {
+                log.error("写入磁盘归档失败", e);
             }
         }
     }
     
+    /**
+     * 获取本地时序存储
+     *
+     * @return 本地时序存储，未启用时返回null
+     */
+    public MetricsStore getMetricsStore() {
+        return metricsStore;
+    }
+    
+    /**
+     * 获取磁盘归档
+     *
+     * @return 磁盘归档，未启用时返回null
+     */
+    public MetricsArchive getMetricsArchive() {
+        return metricsArchive;
+    }
+    
+    /**
+     * 创建本地指标查询
+     *
+     * @return 查询对象
+     * @throws IllegalStateException 本地存储和磁盘归档均未启用
+     */
+    public MetricsQuery query() {
+        return new MetricsQuery(metricsStore, metricsArchive);
+    }
+    
+    /**
+     * 查询单个流的实时属性
+     * 通过 mk_media_source_find 直接定位该流，不等待下一次采集也不遍历全部流；
+     * 结果在 lookup.ttl 内直接复用，同一个流的并发查询合并为一次查找
+     *
+     * @param schema 协议，如 rtmp、rtsp
+     * @param vhost  虚拟主机，为null时使用默认虚拟主机
+     * @param app    应用名
+     * @param stream 流ID
+     * @return 流的实时属性，流不存在时返回null
+     */
+    public StreamInfo queryStream(String schema, String vhost, String app, String stream) {
+        return streamLookup.find(schema, vhost, app, stream);
+    }
+    
+    /**
+     * 获取最近一个采集周期流量最大、会话最多的客户端和流
+     * 与导出的 network.topk.* 指标对应，指标只含名次和计数，名次对应的键在这里读取
+     *
+     * @return 高频项，未启用网络指标或 topK 时返回null
+     */
+    public TopTalkers topTalkers() {
+        for (AbstractMetricsCollector<?> collector : collectors) {
+            if (collector instanceof NetworkMetricsCollector) {
+                return ((NetworkMetricsCollector) collector).getTopTalkers();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 获取流的网络质量分
+     * 由丢包率、实际帧率与声明帧率之比和关键帧间隔按采集周期计算并平滑，与导出的 network.quality.* 指标对应
+     *
+     * @param schema 协议，如 rtmp、rtsp
+     * @param vhost  虚拟主机，为null时使用默认虚拟主机
+     * @param app    应用名
+     * @param stream 流ID
+     * @return 质量分(0-100)，未启用网络指标、流未被遍历或尚无数据时返回-1
+     */
+    public float streamQuality(String schema, String vhost, String app, String stream) {
+        for (AbstractMetricsCollector<?> collector : collectors) {
+            if (collector instanceof NetworkMetricsCollector) {
+                String host = vhost == null || vhost.isEmpty() ? StreamLookup.DEFAULT_VHOST : vhost;
+                return ((NetworkMetricsCollector) collector).getStreamQuality(schema, host, app, stream);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 获取指标发布者
+     * 每个订阅者拥有独立的缓冲区并按请求数量推送采集结果，慢订阅者按溢出策略丢弃数据，不影响采集和导出；
+     * 推送的数据与 {@link MonitorCallback} 收到的相同；
+     * 通过 {@link MetricsPublisher#subscribe(Flow.Subscriber, MetricsSelector)} 订阅时只推送选中的指标，
+     * 收集器也只遍历被选中的流
+     *
+     * @return 采集结果发布者
+     */
+    public MetricsPublisher metricsPublisher() {
+        return metricsPublisher;
+    }
+    
+    /**
+     * 获取导出暂存区
+     *
+     * @return 导出暂存区，未启用时返回null
+     */
+    public MetricsSpool getMetricsSpool() {
+        return metricsSpool;
+    }
+    
+    /**
+     * 设置监控回调，替换之前通过本方法设置的回调
+     * 与 {@link #addCallback(MonitorCallback)} 相同，回调在独立的分发线程中调用
+     *
+     * @param callback 回调，为null时只移除之前的回调
+     */
+    public synchronized void setCallback(MonitorCallback callback) {
+        if (primaryLane != null) {
+            removeCallback(primaryLane.getCallback());
+            primaryLane = null;
+        }
+        if (callback != null) {
+            primaryLane = openCallbackLane(callback, MetricsSelector.ALL);
+        }
+    }
+    
+    /**
+     * 添加监控回调
+     * 每个回调拥有独立的有界队列和分发线程，处理较慢时丢弃自己队列中最旧的采集，
+     * 不阻塞导出和其他回调；积压、丢弃和延迟以 performance.callback.{通道名}.* 随线程池指标导出
+     *
+     * @param callback 回调
+     */
+    public void addCallback(MonitorCallback callback) {
+        addCallback(callback, MetricsSelector.ALL);
+    }
+    
+    /**
+     * 添加只关心部分流和指标的监控回调
+     * 回调只收到选中的指标，收集器也只遍历所有回调、订阅和导出关心的流
+     *
+     * @param callback 回调
+     * @param selector 指标选择器
+     */
+    public void addCallback(MonitorCallback callback, MetricsSelector selector) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+        openCallbackLane(callback, selector);
+    }
+    
+    /**
+     * 移除监控回调，队列中剩余的采集分发完成后返回
+     *
+     * @param callback 回调
+     * @return 回调是否存在
+     */
+    public boolean removeCallback(MonitorCallback callback) {
+        for (CallbackLane lane : callbackLanes) {
+            if (lane.getCallback() == callback && callbackLanes.remove(lane)) {
+                refreshSourceMatcher();
+                lane.close();
+                log.info("回调已移除: {}", lane.getName());
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private CallbackLane openCallbackLane(MonitorCallback callback, MetricsSelector selector) {
+        MonitorConfig.CallbackConfig callbackConfig = configManager.getConfig().getCallback() != null
+            ? configManager.getConfig().getCallback() : new MonitorConfig.CallbackConfig();
+        String type = callback.getClass().getSimpleName();
+        String name = (type.isEmpty() ? "callback" : type) + "-" + callbackSequence.incrementAndGet();
+        CallbackLane lane = new CallbackLane(name, callback, selector, callbackConfig.getQueueSize(),
+            configManager.getConfig().isDaemon());
+        callbackLanes.add(lane);
+        refreshSourceMatcher();
+        log.info("回调已添加: {}, queueSize={}, selector={}", name, callbackConfig.getQueueSize(), lane.getSelector());
+        return lane;
+    }
+    
+    /**
+     * 通知回调，只入队不等待处理
+     */
+    private void notifyCallback(Object metrics) {
+        for (CallbackLane lane : callbackLanes) {
+            lane.offer(metrics);
+        }
+    }
+    
+    /**
+     * 关闭全部回调通道
+     */
+    private void closeCallbackLanes() {
+        for (CallbackLane lane : callbackLanes) {
+            lane.close();
+        }
+        callbackLanes.clear();
+    }
+    
     /**
      * 停止监控
      */
@@ -652,6 +1289,7 @@ public class ZLMMonitor implements AutoCloseable {
                 workExecutor.shutdownNow();
                 Thread.currentThread().interrupt();
             }
+            closeExportLanes();
             
             running = false;
             log.info("ZLM监控已停止");
@@ -673,6 +1311,21 @@ public class ZLMMonitor implements AutoCloseable {
                 // 3. 更新导出器配置
                 updateExportersConfig(newConfig);
                 
+                // 4. 更新新订阅者的默认缓冲区设置
+                if (metricsPublisher != null && newConfig.getPublisher() != null) {
+                    metricsPublisher.setDefaults(newConfig.getPublisher().getBufferSize(),
+                        OverflowStrategy.of(newConfig.getPublisher().getOverflow()));
+                }
+                
+                // 5. 更新单流查询的缓存设置
+                if (streamLookup != null && newConfig.getLookup() != null) {
+                    streamLookup.setLimits(newConfig.getLookup().getTtl(), newConfig.getLookup().getMaxEntries());
+                }
+                
+                // 6. 更新导出选择器和收集器遍历范围
+                pipelineSelector = pipelineSelector(newConfig);
+                refreshSourceMatcher();
+                
                 log.info("配置变更处理完成");
             }
         } catch (Exception e) {
@@ -680,76 +1333,241 @@ public class ZLMMonitor implements AutoCloseable {
         }
     }
     
+    @SuppressWarnings("unchecked")
     private void updateThreadPoolConfig(MonitorConfig newConfig) {
         MonitorConfig.ThreadConfig threadConfig = newConfig.getThread();
-        if (threadConfig != null) {
-            // 更新工作线程池配置
-            workExecutor.setCorePoolSize(threadConfig.getCorePoolSize());
-            workExecutor.setMaximumPoolSize(threadConfig.getMaxPoolSize());
-            workExecutor.setKeepAliveTime(threadConfig.getKeepAliveTime(), TimeUnit.SECONDS);
-            
-            log.info("线程池配置已更新: core={}, max={}, keepAlive={}s",
-                threadConfig.getCorePoolSize(),
-                threadConfig.getMaxPoolSize(),
-                threadConfig.getKeepAliveTime());
+        if (threadConfig == null) {
+            return;
         }
+        
+        updateExportExecutor(threadConfig);
+        
+        // 队列容量超出已分配的槽位或等待策略变化时，换用新的线程池
+        RingBlockingQueue<Runnable> queue = (RingBlockingQueue<Runnable>) workExecutor.getQueue();
+        if (queue.getWaitStrategy() != WaitStrategy.of(threadConfig.getWaitStrategy())
+            || !queue.setCapacity(threadConfig.getQueueCapacity())) {
+            replaceWorkThreadPool(threadConfig);
+            return;
+        }
+        
+        // 更新工作线程池配置，调整顺序保证核心线程数始终不超过最大线程数
+        ThreadPoolExecutor executor = workExecutor;
+        if (threadConfig.getCorePoolSize() > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threadConfig.getMaxPoolSize());
+            executor.setCorePoolSize(threadConfig.getCorePoolSize());
+        } else {
+            executor.setCorePoolSize(threadConfig.getCorePoolSize());
+            executor.setMaximumPoolSize(threadConfig.getMaxPoolSize());
+        }
+        executor.setKeepAliveTime(threadConfig.getKeepAliveTime(), TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(threadConfig.isAllowCoreTimeout());
+        
+        log.info("线程池配置已更新: core={}, max={}, keepAlive={}s, queueCapacity={}, allowCoreTimeout={}",
+            threadConfig.getCorePoolSize(),
+            threadConfig.getMaxPoolSize(),
+            threadConfig.getKeepAliveTime(),
+            threadConfig.getQueueCapacity(),
+            threadConfig.isAllowCoreTimeout());
+    }
+    
+    /**
+     * 按导出线程模式和队列容量更新导出方式，现有导出通道导出完已入队的采集后关闭，
+     * virtual模式下新通道在下次导出时按新容量创建
+     */
+    private void updateExportExecutor(MonitorConfig.ThreadConfig threadConfig) {
+        boolean virtual = ExportThreadMode.of(threadConfig.getExportThreads()) == ExportThreadMode.VIRTUAL
+            && VirtualThreads.isSupported();
+        int queueSize = threadConfig.getExportQueueSize();
+        if (virtual == virtualExport && queueSize == exportQueueSize) {
+            return;
+        }
+        boolean modeChanged = virtual != virtualExport;
+        exportQueueSize = queueSize;
+        virtualExport = virtual;
+        closeExportLanes();
+        if (modeChanged) {
+            log.info("导出线程模式已切换: {}", virtual ? ExportThreadMode.VIRTUAL : ExportThreadMode.PLATFORM);
+        } else {
+            log.info("导出队列容量已更新: exportQueueSize={}", queueSize);
+        }
+    }
+    
+    /**
+     * 关闭全部导出通道，各通道同时导出已入队的采集，共用一个等待时限
+     */
+    private void closeExportLanes() {
+        List<ExportLane> lanes = new ArrayList<>();
+        for (MetricsExporter exporter : exportLanes.keySet()) {
+            ExportLane lane = exportLanes.remove(exporter);
+            if (lane != null) {
+                lane.shutdown();
+                lanes.add(lane);
+            }
+        }
+        long deadline = System.currentTimeMillis() + ExportLane.CLOSE_TIMEOUT;
+        for (ExportLane lane : lanes) {
+            lane.awaitTermination(deadline);
+        }
+    }
+    
+    private void closeExportLane(MetricsExporter exporter) {
+        ExportLane lane = exportLanes.remove(exporter);
+        if (lane != null) {
+            lane.shutdown();
+            lane.awaitTermination(System.currentTimeMillis() + ExportLane.CLOSE_TIMEOUT);
+        }
+    }
+    
+    /**
+     * 换用按新配置创建的线程池
+     * 新任务立即提交到新线程池，旧线程池执行完已排队的任务后退出，切换过程中不丢弃任务
+     */
+    private void replaceWorkThreadPool(MonitorConfig.ThreadConfig threadConfig) {
+        ThreadPoolExecutor previous = workExecutor;
+        ThreadPoolExecutor replacement = createWorkThreadPool(threadConfig);
+        threadPoolMetrics.setExecutor(replacement);
+        workExecutor = replacement;
+        previous.shutdown();
+        log.info("工作线程池已替换: core={}, max={}, queueCapacity={}, waitStrategy={}, 旧线程池剩余任务={}",
+            threadConfig.getCorePoolSize(),
+            threadConfig.getMaxPoolSize(),
+            threadConfig.getQueueCapacity(),
+            threadConfig.getWaitStrategy(),
+            previous.getQueue().size());
     }
     
     private void updateCollectorsConfig(MonitorConfig newConfig) {
-        // 1. 停止已禁用收集器
-        collectors.removeIf(collector -> {
+        // 1. 停止并移除已禁用的收集器，单个收集器关闭失败不影响其他收集器
+        for (AbstractMetricsCollector<?> collector : collectors) {
             if (!isCollectorEnabled(collector, newConfig)) {
+                ScheduledTick tick = ticks.remove(collector.getName());
+                if (tick != null) {
+                    tick.cancel();
+                }
+                collectors.remove(collector);
                 try {
-                    collector.stop();
-                    log.info("收集器已停止: {}", collector.getName());
-                    return true;
+                    collector.close();
+                    log.info("收集器已移除: {}", collector.getName());
                 } catch (Exception e) {
-                    log.error("停止收集器失败: {}", collector.getName(), e);
+                    log.error("关闭收集器失败: {}", collector.getName(), e);
                 }
             }
-            return false;
-        });
+        }
+        
+        // 2. 按新配置添加并调度新启用的收集器
+        for (MetricsType type : MetricsType.values()) {
+            if (isTypeEnabled(type, newConfig) && !hasCollector(type)) {
+                addCollector(createCollector(type, newConfig), newConfig);
+            }
+        }
         
-        // 2. 启动新启用的收集器
-        if (newConfig.isSystemMetricsEnabled() && !hasCollector(SystemMetricsCollector.class)) {
-            addCollector(new SystemMetricsCollector(zlmApi, newConfig));
+        // 3. 采样间隔或初始延迟变化时重新调度全部周期任务
+        if (running && (newConfig.getSampleInterval() != appliedSampleInterval
+            || newConfig.getInitialDelay() != appliedInitialDelay)) {
+            appliedSampleInterval = newConfig.getSampleInterval();
+            appliedInitialDelay = newConfig.getInitialDelay();
+            for (ScheduledTick tick : ticks.values()) {
+                tick.reschedule(appliedInitialDelay, appliedSampleInterval);
+            }
+            log.info("采集任务已重新调度: sampleInterval={}ms, initialDelay={}ms",
+                appliedSampleInterval, appliedInitialDelay);
         }
-        // ... 其他收集器类似处理
     }
     
     private void updateExportersConfig(MonitorConfig newConfig) {
-        // 1. 停止已移的导出器
+        // 1. 关闭已移除的导出器
         List<String> enabledExporters = newConfig.getExporterNames();
-        exporters.removeIf(exporter -> {
+        for (MetricsExporter exporter : exporters) {
             if (!enabledExporters.contains(exporter.getName())) {
-                try {
-                    exporter.stop();
-                    log.info("导出器已停止: {}", exporter.getName());
-                    return true;
-                } catch (Exception e) {
-                    log.error("停止导出器失败: {}", exporter.getName(), e);
-                }
+                removeExporter(exporter);
             }
-            return false;
-        });
+        }
         
-        // 2. 添加新的导出器
+        // 2. 配置段有变化的导出器按新配置重建，新启用的导出器按新配置创建
         for (String name : enabledExporters) {
-            if (!hasExporter(name)) {
-                try {
-                    MetricsExporter exporter = MetricsExporterLoader.getExporter(name);
-                    exporters.add(exporter);
+            MetricsExporter current = findExporter(name);
+            MetricsExporter exporter;
+            try {
+                exporter = MetricsExporterLoader.newExporter(name);
+                exporter.configure(newConfig.getExporter());
+            } catch (Exception e) {
+                log.error("加载导出器失败: {}", name, e);
+                continue;
+            }
+            if (current != null) {
+                if (sameSettings(current.getSettings(), exporter.getSettings())) {
+                    continue;
+                }
+                removeExporter(current);
+            }
+            try {
+                // 与启动流程一致，先初始化再启动，监控未运行时留给 start() 统一启动
+                exporter.init();
+                attachSpool(exporter);
+                if (running) {
                     exporter.start();
-                    log.info("导出器已添加并启动: {}", name);
-                } catch (Exception e) {
-                    log.error("添加导出器失败: {}", name, e);
                 }
+                exporters.add(exporter);
+                log.info(current != null ? "导出器已按新配置重建: {}" : "导出器已添加并启动: {}", name);
+            } catch (Exception e) {
+                log.error("添加导出器失败: {}", name, e);
             }
         }
     }
     
+    /**
+     * 移除并关闭导出器，先导出通道中已入队的采集，关闭时导出器发送缓冲区中剩余的数据
+     */
+    private void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+        closeExportLane(exporter);
+        try {
+            exporter.close();
+            log.info("导出器已关闭: {}", exporter.getName());
+        } catch (Exception e) {
+            log.error("关闭导出器失败: {}", exporter.getName(), e);
+        }
+    }
+    
+    /**
+     * 按内容比较两个导出器配置段
+     */
+    private static boolean sameSettings(Object current, Object updated) {
+        if (current == updated) {
+            return true;
+        }
+        if (current == null || updated == null) {
+            return false;
+        }
+        try {
+            return SETTINGS_MAPPER.valueToTree(current).equals(SETTINGS_MAPPER.valueToTree(updated));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 创建指定类型的收集器
+     */
+    private AbstractMetricsCollector<?> createCollector(MetricsType type, MonitorConfig config) {
+        switch (type) {
+            case SYSTEM:
+                return new SystemMetricsCollector(zlmApi, config);
+            case STREAM:
+                return new StreamMetricsCollector(zlmApi, config);
+            case NETWORK:
+                return new NetworkMetricsCollector(zlmApi, config);
+            default:
+                return new PerformanceMetricsCollector(zlmApi, config);
+        }
+    }
+    
     private boolean isCollectorEnabled(AbstractMetricsCollector<?> collector, MonitorConfig config) {
-        switch (collector.getType()) {
+        return isTypeEnabled(collector.getType(), config);
+    }
+    
+    private boolean isTypeEnabled(MetricsType type, MonitorConfig config) {
+        switch (type) {
             case SYSTEM:
                 return config.isSystemMetricsEnabled();
             case STREAM:
@@ -763,19 +1581,19 @@ public class ZLMMonitor implements AutoCloseable {
         }
     }
     
-    private boolean hasCollector(Class<?> collectorClass) {
-        return collectors.stream().anyMatch(c -> c.getClass().equals(collectorClass));
+    private boolean hasCollector(MetricsType type) {
+        return collectors.stream().anyMatch(c -> c.getType() == type);
     }
     
-    private boolean hasExporter(String name) {
-        return exporters.stream().anyMatch(e -> e.getName().equals(name));
-    }
-    
-    private void addCollector(AbstractMetricsCollector<?> collector) {
+    private void addCollector(AbstractMetricsCollector<?> collector, MonitorConfig newConfig) {
         try {
-            collector.init(config);
+            collector.init(newConfig);
             collector.start();
             collectors.add(collector);
+            refreshSourceMatcher();
+            if (running) {
+                scheduleCollector(collector);
+            }
             log.info("收集器已添加并启动: {}", collector.getName());
         } catch (Exception e) {
             log.error("添加收集器失败: {}", collector.getName(), e);
@@ -829,9 +1647,7 @@ public class ZLMMonitor implements AutoCloseable {
             exporters.clear();
             
             // 3. 清理其他资源
-            if (callback != null) {
-                callback = null;
-            }
+            closeCallbackLanes();
         } catch (Exception e) {
             log.error("清理资源失败", e);
         }
@@ -862,8 +1678,11 @@ public class ZLMMonitor implements AutoCloseable {
             // 通知回调
             notifyCallback(metrics);
             
+            // 推送给订阅者
+            publishMetrics(metrics);
+            
             // 导出指标
-            exportMetrics(metrics);
+            exportMetrics(selectForPipeline(metrics));
         } catch (Exception e) {
             log.error("处理指标失败", e);
         }
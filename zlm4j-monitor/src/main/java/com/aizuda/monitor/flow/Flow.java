@@ -0,0 +1,77 @@
+package com.aizuda.monitor.flow;
+
+/**
+ * 响应式流接口
+ * 与JDK 9的 java.util.concurrent.Flow 方法签名一致，供JDK 8使用；
+ * JDK 9及以上可通过方法引用逐一转发为JDK接口，语义(Reactive Streams规范)完全相同
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * 数据发布者
+     *
+     * @param <T> 数据类型
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * 添加订阅者，发布者随后调用 {@link Subscriber#onSubscribe(Subscription)}
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * 数据订阅者
+     * 同一订阅者的各个方法按顺序调用，不会并发
+     *
+     * @param <T> 数据类型
+     */
+    public interface Subscriber<T> {
+        /**
+         * 订阅建立，在其他任何方法之前调用一次
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * 下一个数据，调用次数不超过已请求的数量
+         */
+        void onNext(T item);
+
+        /**
+         * 订阅因错误终止，之后不再有任何调用
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * 发布者已关闭，之后不再有任何调用
+         */
+        void onComplete();
+    }
+
+    /**
+     * 订阅关系
+     */
+    public interface Subscription {
+        /**
+         * 请求n个数据，n必须大于0，累计请求超过 Long.MAX_VALUE 视为不限量
+         */
+        void request(long n);
+
+        /**
+         * 取消订阅，之后发布者最终停止调用订阅者
+         */
+        void cancel();
+    }
+
+    /**
+     * 处理器，既是订阅者也是发布者
+     *
+     * @param <T> 订阅的数据类型
+     * @param <R> 发布的数据类型
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
@@ -0,0 +1,390 @@
+package com.aizuda.monitor.flow;
+
+import com.aizuda.monitor.collector.MetricsSelector;
+import com.aizuda.monitor.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 采集结果发布者
+ * 每个订阅者拥有独立的有界缓冲区，按订阅者请求的数量(背压)在投递线程中依次推送；
+ * 缓冲区满时按溢出策略丢弃或终止该订阅，{@link #publish(Metrics)} 只做入队，不会被慢订阅者阻塞
+ *
+ * 投递线程按需创建、空闲60秒后回收，同一订阅者同一时刻只占用一个投递线程；
+ * 订阅时可指定 {@link MetricsSelector}，订阅者只收到选中的指标
+ */
+public class MetricsPublisher implements Flow.Publisher<MetricsTick>, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsPublisher.class);
+
+    private final List<TickSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder droppedTicks = new LongAdder();
+    private final ExecutorService executor;
+
+    /** 新订阅者的默认缓冲区大小和溢出策略 */
+    private volatile int bufferSize;
+    private volatile OverflowStrategy overflow;
+    private volatile boolean closed = false;
+    /** 订阅增减时的通知，用于重新计算收集器的遍历范围 */
+    private volatile Runnable subscriptionListener;
+
+    /**
+     * @param bufferSize 默认缓冲区大小(采集次数)
+     * @param overflow   默认溢出策略
+     * @param daemon     投递线程是否为守护线程
+     */
+    public MetricsPublisher(int bufferSize, OverflowStrategy overflow, boolean daemon) {
+        setDefaults(bufferSize, overflow);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ZLMMonitor-Publisher-" + threadNumber.getAndIncrement());
+            t.setDaemon(daemon);
+            return t;
+        });
+    }
+
+    /**
+     * 修改新订阅者的默认缓冲区大小和溢出策略，已有订阅不受影响
+     */
+    public void setDefaults(int bufferSize, OverflowStrategy overflow) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("缓冲区大小必须大于0");
+        }
+        this.bufferSize = bufferSize;
+        this.overflow = overflow == null ? OverflowStrategy.DROP_OLDEST : overflow;
+    }
+
+    /**
+     * 使用默认缓冲区大小和溢出策略订阅
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super MetricsTick> subscriber) {
+        subscribe(subscriber, bufferSize, overflow);
+    }
+
+    /**
+     * 使用默认缓冲区大小和溢出策略订阅选中的指标
+     *
+     * @param subscriber 订阅者
+     * @param selector   指标选择器
+     */
+    public void subscribe(Flow.Subscriber<? super MetricsTick> subscriber, MetricsSelector selector) {
+        subscribe(subscriber, bufferSize, overflow, selector);
+    }
+
+    /**
+     * 使用指定缓冲区大小和溢出策略订阅
+     *
+     * @param subscriber 订阅者
+     * @param bufferSize 缓冲区大小(采集次数)
+     * @param overflow   溢出策略
+     */
+    public void subscribe(Flow.Subscriber<? super MetricsTick> subscriber, int bufferSize, OverflowStrategy overflow) {
+        subscribe(subscriber, bufferSize, overflow, MetricsSelector.ALL);
+    }
+
+    /**
+     * 使用指定缓冲区大小、溢出策略和指标选择器订阅
+     *
+     * @param subscriber 订阅者
+     * @param bufferSize 缓冲区大小(采集次数)
+     * @param overflow   溢出策略
+     * @param selector   指标选择器
+     */
+    public void subscribe(Flow.Subscriber<? super MetricsTick> subscriber, int bufferSize, OverflowStrategy overflow,
+                          MetricsSelector selector) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("缓冲区大小必须大于0");
+        }
+        TickSubscription subscription = new TickSubscription(subscriber, bufferSize,
+            overflow == null ? OverflowStrategy.DROP_OLDEST : overflow,
+            selector == null ? MetricsSelector.ALL : selector);
+        subscriptions.add(subscription);
+        notifySubscriptionChanged();
+        if (closed) {
+            // 与close()交错时保证订阅者收到onComplete
+            subscription.complete();
+        }
+        subscription.signal();
+        log.debug("新增指标订阅: bufferSize={}, overflow={}, selector={}", bufferSize, subscription.overflow,
+            subscription.selector);
+    }
+
+    /**
+     * 发布一次采集结果，没有订阅者时直接返回
+     * 多个工作线程并发发布时串行入队，保证每个订阅者收到的序号递增
+     */
+    public synchronized void publish(Metrics metrics) {
+        if (metrics == null || closed || subscriptions.isEmpty()) {
+            return;
+        }
+        MetricsTick tick = new MetricsTick(sequence.incrementAndGet(), metrics);
+        for (TickSubscription subscription : subscriptions) {
+            subscription.offer(tick);
+        }
+    }
+
+    /**
+     * 当前订阅者数量
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 当前所有订阅的指标选择器
+     */
+    public List<MetricsSelector> getSelectors() {
+        List<MetricsSelector> selectors = new ArrayList<>(subscriptions.size());
+        for (TickSubscription subscription : subscriptions) {
+            selectors.add(subscription.selector);
+        }
+        return selectors;
+    }
+
+    /**
+     * 设置订阅增减时的通知
+     */
+    public void setSubscriptionListener(Runnable listener) {
+        this.subscriptionListener = listener;
+    }
+
+    private void notifySubscriptionChanged() {
+        Runnable listener = subscriptionListener;
+        if (listener != null) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.warn("订阅变更通知失败", e);
+            }
+        }
+    }
+
+    /**
+     * 所有订阅者因缓冲区溢出累计丢弃的采集次数，同一次采集被多个订阅者丢弃时分别计数
+     */
+    public long getDroppedTicks() {
+        return droppedTicks.sum();
+    }
+
+    /**
+     * 关闭发布者，订阅者收到缓冲区中剩余的数据后收到onComplete
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (TickSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("指标发布者已关闭");
+    }
+
+    /**
+     * 单个订阅
+     * 生产者只入队和发信号，所有对订阅者的调用都在投递任务中串行执行(wip计数保证同一时刻只有一个投递任务)
+     */
+    private final class TickSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super MetricsTick> subscriber;
+        private final int capacity;
+        private final OverflowStrategy overflow;
+        private final MetricsSelector selector;
+        /** 缓冲区，以自身为锁 */
+        private final ArrayDeque<MetricsTick> buffer;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        /** 待投递的错误，投递任务中检查 */
+        private volatile Throwable error;
+        /** 发布者已关闭，缓冲区清空后发送onComplete */
+        private volatile boolean done;
+        /** 已终止(取消、完成或出错)，之后不再调用订阅者 */
+        private volatile boolean terminated;
+        /** 是否已调用onSubscribe，仅由投递任务访问 */
+        private boolean subscribed;
+
+        TickSubscription(Flow.Subscriber<? super MetricsTick> subscriber, int capacity, OverflowStrategy overflow,
+                         MetricsSelector selector) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.selector = selector;
+            this.buffer = new ArrayDeque<>(Math.min(capacity, 1024));
+        }
+
+        void offer(MetricsTick tick) {
+            if (terminated || error != null) {
+                return;
+            }
+            synchronized (buffer) {
+                if (buffer.size() >= capacity) {
+                    switch (overflow) {
+                        case DROP_OLDEST:
+                            buffer.pollFirst();
+                            droppedTicks.increment();
+                            break;
+                        case DROP_LATEST:
+                            droppedTicks.increment();
+                            return;
+                        default:
+                            droppedTicks.increment();
+                            error = new IllegalStateException("订阅者处理过慢，缓冲区已满: capacity=" + capacity);
+                            break;
+                    }
+                }
+                if (error == null) {
+                    buffer.addLast(tick);
+                }
+            }
+            signal();
+        }
+
+        void complete() {
+            done = true;
+            signal();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // 规范3.9: 非法请求以onError终止
+                error = new IllegalArgumentException("请求数量必须大于0: " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            terminate();
+        }
+
+        /**
+         * 唤起投递任务，已有投递任务在执行时只增加wip，由其再循环一次
+         */
+        void signal() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // 发布者已关闭，在当前线程完成最后的投递
+                run();
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    try {
+                        subscriber.onSubscribe(this);
+                    } catch (Throwable t) {
+                        log.warn("订阅者onSubscribe异常，取消订阅", t);
+                        terminate();
+                    }
+                }
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            while (!terminated) {
+                Throwable failure = error;
+                if (failure != null) {
+                    terminate();
+                    try {
+                        subscriber.onError(failure);
+                    } catch (Throwable t) {
+                        log.warn("订阅者onError异常", t);
+                    }
+                    return;
+                }
+
+                MetricsTick tick = null;
+                boolean empty;
+                synchronized (buffer) {
+                    if (demand.get() > 0) {
+                        tick = buffer.pollFirst();
+                    }
+                    empty = buffer.isEmpty();
+                }
+                if (tick == null) {
+                    if (done && empty) {
+                        terminate();
+                        try {
+                            subscriber.onComplete();
+                        } catch (Throwable t) {
+                            log.warn("订阅者onComplete异常", t);
+                        }
+                    }
+                    return;
+                }
+
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                // 只按来源过滤的订阅同样需要筛选，选择器不需要过滤时原样返回
+                Metrics selected = selector.select(tick.getMetrics());
+                if (selected != tick.getMetrics()) {
+                    tick = new MetricsTick(tick.getSequence(), selected);
+                }
+                try {
+                    subscriber.onNext(tick);
+                } catch (Throwable t) {
+                    // 规范2.13: onNext抛出异常视为订阅者已取消
+                    log.warn("订阅者onNext异常，取消订阅", t);
+                    terminate();
+                }
+            }
+        }
+
+        private void terminate() {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
+            if (subscriptions.remove(this) && !closed) {
+                notifySubscriptionChanged();
+            }
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.aizuda.monitor.flow;
+
+import com.aizuda.monitor.metrics.Metrics;
+import com.aizuda.monitor.metrics.enums.MetricsType;
+
+/**
+ * 一次采集结果
+ * 发布给所有订阅者的同一个实例，订阅者不应修改其中的指标
+ */
+public final class MetricsTick {
+    private final long sequence;
+    private final Metrics metrics;
+
+    public MetricsTick(long sequence, Metrics metrics) {
+        this.sequence = sequence;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 发布序号，从1开始递增，订阅者可据此发现因缓冲区溢出丢弃的数据
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * 指标类型
+     */
+    public MetricsType getType() {
+        return metrics.getType();
+    }
+
+    /**
+     * 采集时间戳(毫秒)
+     */
+    public long getTimestamp() {
+        return metrics.getTimestamp();
+    }
+
+    /**
+     * 采集到的指标
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsTick{sequence=" + sequence + ", type=" + getType() + ", timestamp=" + getTimestamp() + "}";
+    }
+}
@@ -0,0 +1,28 @@
+package com.aizuda.monitor.flow;
+
+/**
+ * 订阅者缓冲区满时的处理策略
+ * 缓冲区满说明订阅者处理速度低于采集速度，任何策略都不会阻塞采集
+ */
+public enum OverflowStrategy {
+    /** 丢弃缓冲区中最旧的数据，保留最新数据，适合看板、告警等只关心最新状态的订阅者 */
+    DROP_OLDEST,
+
+    /** 丢弃新到的数据，保留已缓冲的数据 */
+    DROP_LATEST,
+
+    /** 以 {@link IllegalStateException} 终止订阅，适合不允许丢数据的录制类订阅者 */
+    ERROR;
+
+    /**
+     * 按名称解析，忽略大小写，支持中划线
+     *
+     * @throws IllegalArgumentException 未知的策略名
+     */
+    public static OverflowStrategy of(String name) {
+        if (name == null || name.isEmpty()) {
+            return DROP_OLDEST;
+        }
+        return valueOf(name.trim().replace('-', '_').toUpperCase());
+    }
+}
@@ -1,7 +1,11 @@
 package com.aizuda.monitor.metrics;
 
+import com.aizuda.monitor.util.QuantileSketch;
+
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * 抽象指标基类
@@ -18,6 +22,15 @@ public abstract class AbstractMetrics implements Metrics {
     /** 标签存储 */
     private final Map<String, String> tags = new ConcurrentHashMap<>();
     
+    /** 分布指标存储 */
+    private final Map<String, QuantileSketch> distributions = new ConcurrentHashMap<>();
+    
+    /** 流事件存储 */
+    private final List<StreamEvent> events = new CopyOnWriteArrayList<>();
+    
+    /** 采集时间戳(毫秒) */
+    private volatile long timestamp;
+    
     @Override
     public Map<String, String> getTags() {
         return tags;
@@ -28,10 +41,33 @@ public abstract class AbstractMetrics implements Metrics {
         return metrics;
     }
     
+    @Override
+    public Map<String, QuantileSketch> getDistributions() {
+        return distributions;
+    }
+    
+    @Override
+    public List<StreamEvent> getEvents() {
+        return events;
+    }
+    
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    @Override
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+    
     @Override
     public void reset() {
         metrics.clear();
         tags.clear();
+        distributions.clear();
+        events.clear();
+        timestamp = 0L;
     }
     
     /**
@@ -74,6 +110,44 @@ public abstract class AbstractMetrics implements Metrics {
         });
     }
 
+    /**
+     * 向分布指标记录一个值，负数忽略
+     *
+     * @param name 指标名
+     * @param value 单个流或轨道的值
+     */
+    public void recordDistribution(String name, double value) {
+        distributions.computeIfAbsent(getMetricsPrefix() + name, k -> new QuantileSketch()).add(value);
+    }
+    
+    /**
+     * 添加一个流事件
+     *
+     * @param event 收集器检测到的事件
+     */
+    public void addEvent(StreamEvent event) {
+        events.add(event);
+    }
+    
+    /**
+     * 把分布指标的p50、p95、p99、最大值和记录数输出为普通指标，名称为 指标名.p50 等
+     * 由收集器在一次采集结束时调用
+     */
+    public void summarizeDistributions() {
+        for (Map.Entry<String, QuantileSketch> entry : distributions.entrySet()) {
+            QuantileSketch sketch = entry.getValue();
+            if (sketch.getCount() == 0) {
+                continue;
+            }
+            String name = entry.getKey();
+            metrics.put(name + ".p50", sketch.getValueAtQuantile(0.5));
+            metrics.put(name + ".p95", sketch.getValueAtQuantile(0.95));
+            metrics.put(name + ".p99", sketch.getValueAtQuantile(0.99));
+            metrics.put(name + ".max", sketch.getMax());
+            metrics.put(name + ".count", sketch.getCount());
+        }
+    }
+    
     @Override
     public Map<String, Object> toMap() {
         Map<String, Object> map = new ConcurrentHashMap<>();
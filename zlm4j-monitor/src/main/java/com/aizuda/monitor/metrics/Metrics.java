@@ -1,7 +1,10 @@
 package com.aizuda.monitor.metrics;
 
 import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.monitor.util.QuantileSketch;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -36,6 +39,46 @@ public interface Metrics {
      */
     Map<String, Number> getValues();
     
+    /**
+     * 获取分布指标
+     * 一次采集内按流或轨道记录的分位数草图，可序列化后跨节点无损合并；
+     * 分位值同时以 指标名.p50 等普通指标输出
+     *
+     * @return 分布Map，key为指标名，value为分位数草图
+     */
+    default Map<String, QuantileSketch> getDistributions() {
+        return Collections.emptyMap();
+    }
+    
+    /**
+     * 获取流事件
+     * 一次采集内检测到的事件，按检测顺序排列
+     *
+     * @return 事件列表
+     */
+    default List<StreamEvent> getEvents() {
+        return Collections.emptyList();
+    }
+    
+    /**
+     * 获取采集时间戳
+     * 由收集器在每次采集时写入，导出器据此标记数据点时间
+     *
+     * @return 采集时间(毫秒)，未采集或实现不记录时为0
+     */
+    default long getTimestamp() {
+        return 0L;
+    }
+    
+    /**
+     * 设置采集时间戳
+     * 默认忽略，不记录时间戳的实现由导出器按导出时间标记
+     *
+     * @param timestamp 采集时间(毫秒)
+     */
+    default void setTimestamp(long timestamp) {
+    }
+    
     /**
      * 重置指标
      * 清空所有指标值，准备下一轮收集
@@ -115,4 +158,23 @@ public interface Metrics {
      * @return 包含所有指标数据的Map
      */
     Map<String, Object> toMap();
+    
+    /**
+     * 按指标类型创建空指标
+     *
+     * @param type 指标类型
+     * @return 对应类型的空指标
+     */
+    static Metrics create(MetricsType type) {
+        switch (type) {
+            case SYSTEM:
+                return new SystemMetrics();
+            case STREAM:
+                return new StreamMetrics();
+            case NETWORK:
+                return new NetworkMetrics();
+            default:
+                return new PerformanceMetrics();
+        }
+    }
 } 
\ No newline at end of file
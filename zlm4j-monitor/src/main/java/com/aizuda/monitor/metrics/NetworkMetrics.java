@@ -1,10 +1,11 @@
 package com.aizuda.monitor.metrics;
 
 import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.monitor.metrics.enums.Protocol;
+import com.aizuda.monitor.util.HeavyHitterSketch;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 网络指标
@@ -15,26 +16,12 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class NetworkMetrics extends AbstractMetrics {
     
-    /** 协议映射 */
-    public static final Map<String, String> PROTOCOL_MAP = new ConcurrentHashMap<>();
-    static {
-        PROTOCOL_MAP.put("HTTP", "http");
-        PROTOCOL_MAP.put("RTSP", "rtsp");
-        PROTOCOL_MAP.put("RTMP", "rtmp");
-        PROTOCOL_MAP.put("WS", "ws");
-        PROTOCOL_MAP.put("RTC", "rtc");
-        PROTOCOL_MAP.put("SRT", "srt");
-        PROTOCOL_MAP.put("GB28181", "gb");
-        PROTOCOL_MAP.put("WEBRTC", "webrtc");
-        PROTOCOL_MAP.put("UDP", "udp");
-    }
-    
-    /** 协议计数器 */
-    private final Map<String, AtomicLong> protocolConnections = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> protocolBytes = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> protocolPackets = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> protocolErrors = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> protocolLatency = new ConcurrentHashMap<>();
+    /** 协议计数器，按 {@link Protocol} 序号索引，由采集线程写入 */
+    private final long[] protocolConnections = new long[Protocol.COUNT];
+    private final long[] protocolBytes = new long[Protocol.COUNT];
+    private final long[] protocolPackets = new long[Protocol.COUNT];
+    private final long[] protocolErrors = new long[Protocol.COUNT];
+    private final long[] protocolLatency = new long[Protocol.COUNT];
     
     /** 服务端口 */
     private short httpPort;
@@ -61,6 +48,30 @@ public class NetworkMetrics extends AbstractMetrics {
             public static final String PACKETS_OUT = "packets.out";
             public static final String PACKETS_LOST = "packets.lost";
             
+            /** 会话流量指标(on_mk_flow_report，会话结束时累计) */
+            public static final String FLOW_PUBLISH_BYTES = "flow.publish.bytes";
+            public static final String FLOW_PLAY_BYTES = "flow.play.bytes";
+            public static final String FLOW_PUBLISH_SESSIONS = "flow.publish.sessions";
+            public static final String FLOW_PLAY_SESSIONS = "flow.play.sessions";
+            public static final String FLOW_PUBLISH_SECONDS = "flow.publish.seconds";
+            public static final String FLOW_PLAY_SECONDS = "flow.play.seconds";
+            public static final String FLOW_STREAMS = "flow.streams";
+            /** 会话流量指标(按采集周期) */
+            public static final String FLOW_PUBLISH_BYTES_RATE = "flow.publish.bytes_rate";
+            public static final String FLOW_PLAY_BYTES_RATE = "flow.play.bytes_rate";
+            public static final String FLOW_PUBLISH_CLOSED_SESSIONS = "flow.publish.closed_sessions";
+            public static final String FLOW_PLAY_CLOSED_SESSIONS = "flow.play.closed_sessions";
+            
+            /** 在线会话指标(on_mk_media_play/on_mk_media_publish 建立，on_mk_flow_report 结束) */
+            public static final String SESSION_PLAY = "session.play";
+            public static final String SESSION_PUBLISH = "session.publish";
+            
+            /** 高频项指标前缀，后接名次(从1开始)，名次对应的客户端和流见 ZLMMonitor.topTalkers() */
+            public static final String TOPK_PEER_BYTES = "topk.peer.bytes.";
+            public static final String TOPK_PEER_SESSIONS = "topk.peer.sessions.";
+            public static final String TOPK_STREAM_BYTES = "topk.stream.bytes.";
+            public static final String TOPK_STREAM_SESSIONS = "topk.stream.sessions.";
+            
             /** UDP指标 */
             public static final String UDP_CONNECTIONS = "udp.connections";
             public static final String UDP_BYTES_IN = "udp.bytes.in";
@@ -107,6 +118,10 @@ public class NetworkMetrics extends AbstractMetrics {
             public static final String NETWORK_RTT = "network.rtt";
             public static final String NETWORK_LOSS_RATE = "network.loss.rate";
             public static final String NETWORK_BANDWIDTH = "network.bandwidth";
+            /** 协议质量前缀，后接协议名，如 network.quality.rtmp */
+            public static final String NETWORK_QUALITY_PROTOCOL = "network.quality.";
+            /** 流质量分布 */
+            public static final String NETWORK_QUALITY_STREAM_DISTRIBUTION = "network.quality.stream";
             
             /** 客户端指标 */
             public static final String CLIENT_COUNT = "client.count";
@@ -137,17 +152,6 @@ public class NetworkMetrics extends AbstractMetrics {
             public static final String STREAM_BYTES_SPEED = "stream.bytes_speed";
         }
         
-        public NetworkMetrics() {
-            // 初始化协计数器
-            for (String protocol : PROTOCOL_MAP.keySet()) {
-                protocolConnections.put(protocol, new AtomicLong());
-                protocolBytes.put(protocol, new AtomicLong());
-                protocolPackets.put(protocol, new AtomicLong());
-                protocolErrors.put(protocol, new AtomicLong());
-                protocolLatency.put(protocol, new AtomicLong());
-            }
-        }
-        
         @Override
         public MetricsType getType() {
             return MetricsType.NETWORK;
@@ -158,22 +162,26 @@ public class NetworkMetrics extends AbstractMetrics {
             super.reset();
             
             // 重置协议计数器
-            for (String protocol : PROTOCOL_MAP.keySet()) {
-                protocolConnections.get(protocol).set(0);
-                protocolBytes.get(protocol).set(0);
-                protocolPackets.get(protocol).set(0);
-                protocolErrors.get(protocol).set(0);
-                protocolLatency.get(protocol).set(0);
-            }
+            Arrays.fill(protocolConnections, 0);
+            Arrays.fill(protocolBytes, 0);
+            Arrays.fill(protocolPackets, 0);
+            Arrays.fill(protocolErrors, 0);
+            Arrays.fill(protocolLatency, 0);
         }
         
         /**
          * 增加协议连接数
          */
         public void incrementProtocolConnections(String protocol) {
-            AtomicLong counter = protocolConnections.get(protocol);
-            if (counter != null) {
-                counter.incrementAndGet();
+            addProtocolConnections(Protocol.of(protocol), 1);
+        }
+        
+        /**
+         * 增加协议连接数，协议为null时忽略
+         */
+        public void addProtocolConnections(Protocol protocol, long connections) {
+            if (protocol != null) {
+                protocolConnections[protocol.ordinal()] += connections;
             }
         }
         
@@ -181,9 +189,15 @@ public class NetworkMetrics extends AbstractMetrics {
          * 增加协议字节数
          */
         public void addProtocolBytes(String protocol, long bytes) {
-            AtomicLong counter = protocolBytes.get(protocol);
-            if (counter != null) {
-                counter.addAndGet(bytes);
+            addProtocolBytes(Protocol.of(protocol), bytes);
+        }
+        
+        /**
+         * 增加协议字节数，协议为null时忽略
+         */
+        public void addProtocolBytes(Protocol protocol, long bytes) {
+            if (protocol != null) {
+                protocolBytes[protocol.ordinal()] += bytes;
             }
         }
         
@@ -191,9 +205,9 @@ public class NetworkMetrics extends AbstractMetrics {
          * 增加协议数据包数
          */
         public void addProtocolPackets(String protocol, long packets) {
-            AtomicLong counter = protocolPackets.get(protocol);
-            if (counter != null) {
-                counter.addAndGet(packets);
+            Protocol p = Protocol.of(protocol);
+            if (p != null) {
+                protocolPackets[p.ordinal()] += packets;
             }
         }
         
@@ -201,19 +215,16 @@ public class NetworkMetrics extends AbstractMetrics {
          * 增加协议错误数
          */
         public void incrementProtocolErrors(String protocol) {
-            AtomicLong counter = protocolErrors.get(protocol);
-            if (counter != null) {
-                counter.incrementAndGet();
-            }
+            addProtocolErrors(protocol, 1);
         }
         
         /**
          * 更新协议延迟
          */
         public void updateProtocolLatency(String protocol, long latency) {
-            AtomicLong counter = protocolLatency.get(protocol);
-            if (counter != null) {
-                counter.set(latency);
+            Protocol p = Protocol.of(protocol);
+            if (p != null) {
+                protocolLatency[p.ordinal()] = latency;
             }
         }
         
@@ -221,15 +232,14 @@ public class NetworkMetrics extends AbstractMetrics {
          * 更新协议指标
          */
         public void updateProtocolMetrics() {
-            for (Map.Entry<String, String> entry : PROTOCOL_MAP.entrySet()) {
-                String protocol = entry.getKey();
-                String prefix = entry.getValue();
-                
-                setMetric(prefix + ".connections", protocolConnections.get(protocol).get());
-                setMetric(prefix + ".bytes", protocolBytes.get(protocol).get());
-                setMetric(prefix + ".packets", protocolPackets.get(protocol).get());
-                setMetric(prefix + ".errors", protocolErrors.get(protocol).get());
-                setMetric(prefix + ".latency", protocolLatency.get(protocol).get());
+            for (Protocol protocol : Protocol.values()) {
+                int i = protocol.ordinal();
+                String prefix = protocol.getPrefix();
+                setMetric(prefix + ".connections", protocolConnections[i]);
+                setMetric(prefix + ".bytes", protocolBytes[i]);
+                setMetric(prefix + ".packets", protocolPackets[i]);
+                setMetric(prefix + ".errors", protocolErrors[i]);
+                setMetric(prefix + ".latency", protocolLatency[i]);
             }
         }
         
@@ -244,11 +254,10 @@ public class NetworkMetrics extends AbstractMetrics {
             long totalPacketsOut = 0;
             long totalPacketsLost = 0;
             
-            for (Map.Entry<String, String> entry : PROTOCOL_MAP.entrySet()) {
-                String protocol = entry.getKey();
-                totalConnections += protocolConnections.get(protocol).get();
-                totalBytesIn += protocolBytes.get(protocol).get();
-                totalPacketsIn += protocolPackets.get(protocol).get();
+            for (int i = 0; i < Protocol.COUNT; i++) {
+                totalConnections += protocolConnections[i];
+                totalBytesIn += protocolBytes[i];
+                totalPacketsIn += protocolPackets[i];
             }
             
             setMetric(MetricNames.ACTIVE_CONNECTIONS, totalConnections);
@@ -273,6 +282,76 @@ public class NetworkMetrics extends AbstractMetrics {
             setMetric(MetricNames.ACTIVE_CONNECTIONS, connections);
         }
     
+    /**
+     * 设置会话流量指标，均为启动以来的累计值
+     *
+     * @param publishBytes 已结束推流会话的字节数
+     * @param playBytes 已结束播放会话的字节数
+     * @param publishSessions 已结束的推流会话数
+     * @param playSessions 已结束的播放会话数
+     * @param publishSeconds 已结束推流会话的时长(秒)
+     * @param playSeconds 已结束播放会话的时长(秒)
+     * @param streams 当前跟踪的流数量(在线或最近有会话)
+     */
+    public void setFlowMetrics(long publishBytes, long playBytes, long publishSessions, long playSessions,
+                               long publishSeconds, long playSeconds, int streams) {
+        setMetric(MetricNames.FLOW_PUBLISH_BYTES, publishBytes);
+        setMetric(MetricNames.FLOW_PLAY_BYTES, playBytes);
+        setMetric(MetricNames.FLOW_PUBLISH_SESSIONS, publishSessions);
+        setMetric(MetricNames.FLOW_PLAY_SESSIONS, playSessions);
+        setMetric(MetricNames.FLOW_PUBLISH_SECONDS, publishSeconds);
+        setMetric(MetricNames.FLOW_PLAY_SECONDS, playSeconds);
+        setMetric(MetricNames.FLOW_STREAMS, streams);
+    }
+    
+    /**
+     * 设置本采集周期的会话流量
+     *
+     * @param publishBytesRate 本周期结束的推流会话字节数按周期长度折算的每秒字节数
+     * @param playBytesRate 本周期结束的播放会话字节数按周期长度折算的每秒字节数
+     * @param publishClosedSessions 本周期结束的推流会话数
+     * @param playClosedSessions 本周期结束的播放会话数
+     */
+    public void setFlowRates(double publishBytesRate, double playBytesRate,
+                             long publishClosedSessions, long playClosedSessions) {
+        setMetric(MetricNames.FLOW_PUBLISH_BYTES_RATE, publishBytesRate);
+        setMetric(MetricNames.FLOW_PLAY_BYTES_RATE, playBytesRate);
+        setMetric(MetricNames.FLOW_PUBLISH_CLOSED_SESSIONS, publishClosedSessions);
+        setMetric(MetricNames.FLOW_PLAY_CLOSED_SESSIONS, playClosedSessions);
+    }
+    
+    /**
+     * 设置在线会话数，活跃连接数为播放与推流会话之和
+     *
+     * @param play 播放会话数
+     * @param publish 推流会话数
+     * @param httpFlv HTTP-FLV播放会话数，含同端口的WebSocket-FLV
+     * @param hls HLS播放会话数
+     * @param httpFmp4 HTTP-fMP4播放会话数，含同端口的WebSocket-fMP4
+     * @param httpTs HTTP-TS播放会话数，含同端口的WebSocket-TS
+     */
+    public void setSessionCounts(long play, long publish, long httpFlv, long hls, long httpFmp4, long httpTs) {
+        setMetric(MetricNames.SESSION_PLAY, play);
+        setMetric(MetricNames.SESSION_PUBLISH, publish);
+        setMetric(MetricNames.ACTIVE_CONNECTIONS, play + publish);
+        setMetric(MetricNames.HTTP_FLV_CONNECTIONS, httpFlv);
+        setMetric(MetricNames.HTTP_HLS_CONNECTIONS, hls);
+        setMetric(MetricNames.HTTP_FMP4_CONNECTIONS, httpFmp4);
+        setMetric(MetricNames.HTTP_TS_CONNECTIONS, httpTs);
+    }
+    
+    /**
+     * 设置本采集周期的高频项，按名次输出计数
+     *
+     * @param prefix 指标前缀，如 {@link MetricNames#TOPK_PEER_BYTES}
+     * @param top 按计数从大到小排列的高频项
+     */
+    public void setTopK(String prefix, List<HeavyHitterSketch.Entry> top) {
+        for (int i = 0; i < top.size(); i++) {
+            setMetric(prefix + (i + 1), top.get(i).getCount());
+        }
+    }
+    
     /**
      * 获取入站流量(字节)
      */
@@ -661,9 +740,9 @@ public class NetworkMetrics extends AbstractMetrics {
      * 添加协议错误数
      */
     public void addProtocolErrors(String protocol, long errors) {
-        AtomicLong counter = protocolErrors.get(protocol);
-        if (counter != null) {
-            counter.addAndGet(errors);
+        Protocol p = Protocol.of(protocol);
+        if (p != null) {
+            protocolErrors[p.ordinal()] += errors;
         }
     }
 
@@ -682,9 +761,9 @@ public class NetworkMetrics extends AbstractMetrics {
      */
     public void setTotalErrors(long errors) {
         // 将错误数平均分配给各个协议
-        long errorsPerProtocol = errors / PROTOCOL_MAP.size();
-        for (String protocol : PROTOCOL_MAP.keySet()) {
-            addProtocolErrors(protocol, errorsPerProtocol);
+        long errorsPerProtocol = errors / Protocol.COUNT;
+        for (int i = 0; i < Protocol.COUNT; i++) {
+            protocolErrors[i] += errorsPerProtocol;
         }
     }
     
@@ -699,6 +778,35 @@ public class NetworkMetrics extends AbstractMetrics {
         setMetric(MetricNames.NETWORK_BANDWIDTH, bandwidth);
     }
     
+    /**
+     * 设置由流质量模型得到的网络质量，ZLM不提供RTT，不设置 {@link MetricNames#NETWORK_RTT}
+     *
+     * @param quality 各流质量分的平均值(0-100)
+     * @param jitter 帧间隔抖动的平均值(毫秒)
+     * @param lossRate 轨道丢包率的平均值(百分比)
+     * @param bandwidth 数据速率之和(字节/秒)
+     */
+    public void setNetworkQuality(float quality, float jitter, float lossRate, long bandwidth) {
+        setMetric(MetricNames.NETWORK_QUALITY, quality);
+        setMetric(MetricNames.NETWORK_JITTER, jitter);
+        setMetric(MetricNames.NETWORK_LOSS_RATE, lossRate);
+        setMetric(MetricNames.NETWORK_BANDWIDTH, bandwidth);
+    }
+    
+    /**
+     * 设置协议质量，为该协议各流质量分的平均值
+     */
+    public void setProtocolQuality(Protocol protocol, float quality) {
+        setMetric(MetricNames.NETWORK_QUALITY_PROTOCOL + protocol.getPrefix(), quality);
+    }
+    
+    /**
+     * 记录单个流的质量分分布
+     */
+    public void recordStreamQuality(float quality) {
+        recordDistribution(MetricNames.NETWORK_QUALITY_STREAM_DISTRIBUTION, quality);
+    }
+    
     /**
      * 更新客户端指标
      */
@@ -44,6 +44,28 @@ public class PerformanceMetrics extends AbstractMetrics {
         /** 线程池指标 */
         public static final String THREAD_POOL_PREFIX = "thread.pool.";
         
+        /** 导出暂存区指标 */
+        public static final String SPOOL_BACKLOG = "spool.backlog";
+        public static final String SPOOL_DISK_USAGE = "spool.disk_usage";
+        public static final String SPOOL_DROPPED = "spool.dropped";
+        
+        /** 本地时序存储指标 */
+        public static final String STORE_SERIES = "store.series";
+        public static final String STORE_MEMORY_USED = "store.memory_used";
+        public static final String STORE_DROPPED = "store.dropped";
+        public static final String STORE_EVICTED = "store.evicted";
+        
+        /** 回调通道指标，完整名称为 callback.{通道名}.{pending|dropped|lag} */
+        public static final String CALLBACK_PREFIX = "callback.";
+        
+        /** virtual模式导出通道指标，完整名称为 export.{导出器名}.{pending|dropped|lag} */
+        public static final String EXPORT_LANE_PREFIX = "export.";
+        
+        /** 单流查询指标 */
+        public static final String LOOKUP_REQUESTS = "lookup.requests";
+        public static final String LOOKUP_FINDS = "lookup.finds";
+        public static final String LOOKUP_CACHED = "lookup.cached";
+        
         /** Track 相关指标 */
         public static final String TRACK_CODEC_ID = "track.codec_id";
         public static final String TRACK_CODEC_NAME = "track.codec_name";
@@ -52,6 +74,8 @@ public class PerformanceMetrics extends AbstractMetrics {
         public static final String TRACK_DURATION = "track.duration";
         public static final String TRACK_FRAMES = "track.frames";
         public static final String TRACK_LOSS = "track.loss";
+        /** 跨轨道丢包率分布，输出 .p50/.p95/.p99/.max/.count */
+        public static final String TRACK_LOSS_DISTRIBUTION = "track.loss";
         public static final String TRACK_TOTAL_READER = "track.total_reader";
         public static final String TRACK_READER = "track.reader";
         
@@ -207,6 +231,77 @@ public class PerformanceMetrics extends AbstractMetrics {
         }
     }
     
+    /**
+     * 设置导出暂存区指标
+     *
+     * @param backlog 待补发的采集次数
+     * @param diskUsage 暂存文件占用的磁盘空间(字节)
+     * @param dropped 因超过磁盘上限丢弃的采集次数
+     */
+    public void setSpoolMetrics(long backlog, long diskUsage, long dropped) {
+        setMetric(MetricNames.SPOOL_BACKLOG, backlog);
+        setMetric(MetricNames.SPOOL_DISK_USAGE, diskUsage);
+        setMetric(MetricNames.SPOOL_DROPPED, dropped);
+    }
+    
+    /**
+     * 设置本地时序存储指标
+     *
+     * @param series 当前序列数
+     * @param memoryUsed 已分配给序列的堆外内存(字节)
+     * @param dropped 因内存不足或乱序丢弃的采样点数
+     * @param evicted 因空闲或内存不足被回收的序列数
+     */
+    public void setStoreMetrics(long series, long memoryUsed, long dropped, long evicted) {
+        setMetric(MetricNames.STORE_SERIES, series);
+        setMetric(MetricNames.STORE_MEMORY_USED, memoryUsed);
+        setMetric(MetricNames.STORE_DROPPED, dropped);
+        setMetric(MetricNames.STORE_EVICTED, evicted);
+    }
+    
+    /**
+     * 设置回调通道指标
+     *
+     * @param lane 通道名称
+     * @param pending 队列中等待分发的采集次数
+     * @param dropped 因队列满丢弃的采集次数
+     * @param lag 最近一次分发的排队延迟(毫秒)
+     */
+    public void setCallbackMetrics(String lane, long pending, long dropped, long lag) {
+        String prefix = MetricNames.CALLBACK_PREFIX + lane + ".";
+        setMetric(prefix + "pending", pending);
+        setMetric(prefix + "dropped", dropped);
+        setMetric(prefix + "lag", lag);
+    }
+    
+    /**
+     * 设置导出通道指标
+     *
+     * @param exporter 导出器名称
+     * @param pending 队列中等待导出的采集次数
+     * @param dropped 因队列满丢弃的采集次数
+     * @param lag 最近一次导出的排队延迟(毫秒)
+     */
+    public void setExportLaneMetrics(String exporter, long pending, long dropped, long lag) {
+        String prefix = MetricNames.EXPORT_LANE_PREFIX + exporter + ".";
+        setMetric(prefix + "pending", pending);
+        setMetric(prefix + "dropped", dropped);
+        setMetric(prefix + "lag", lag);
+    }
+    
+    /**
+     * 设置单流查询指标
+     *
+     * @param requests 累计查询次数
+     * @param finds 累计实际调用 mk_media_source_find 的次数，其余由缓存或合并的并发查询返回
+     * @param cached 当前缓存的流数量
+     */
+    public void setLookupMetrics(long requests, long finds, long cached) {
+        setMetric(MetricNames.LOOKUP_REQUESTS, requests);
+        setMetric(MetricNames.LOOKUP_FINDS, finds);
+        setMetric(MetricNames.LOOKUP_CACHED, cached);
+    }
+    
     // 视频轨道相关方法
     public void setVideoWidth(int width) {
         setMetric(MetricNames.VIDEO_WIDTH, width);
@@ -271,6 +366,13 @@ public class PerformanceMetrics extends AbstractMetrics {
         setMetric(MetricNames.TRACK_LOSS, loss);
     }
     
+    /**
+     * 记录单个轨道的丢包率分布，不适用的轨道(-1)忽略
+     */
+    public void recordTrackLoss(float loss) {
+        recordDistribution(MetricNames.TRACK_LOSS_DISTRIBUTION, loss);
+    }
+    
     public void setTrackCodecName(String codecName) {
         // 将 codec name 转换为 hash code 作为数字指标
         setMetric(MetricNames.TRACK_CODEC_NAME, codecName != null ? codecName.hashCode() : 0);
@@ -0,0 +1,143 @@
+package com.aizuda.monitor.metrics;
+
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+
+/**
+ * 流事件
+ * 由收集器检测后加入当次采集的指标，通过 {@link Metrics#getEvents()} 读取，
+ * 并在回调分发时逐个交给 MonitorCallback.onStreamEvent
+ */
+public final class StreamEvent {
+    private final StreamEventType type;
+    private final String schema;
+    private final String vhost;
+    private final String app;
+    private final String stream;
+    private final int track;
+    private final String metric;
+    private final double value;
+    private final double expected;
+    private final double score;
+    private final long timestamp;
+
+    /**
+     * @param type     事件类型
+     * @param schema   协议
+     * @param vhost    虚拟主机
+     * @param app      应用名
+     * @param stream   流ID
+     * @param track    轨道序号，流级事件为-1
+     * @param value    触发事件的观测值
+     * @param expected 观测值的预期值
+     */
+    public StreamEvent(StreamEventType type, String schema, String vhost, String app, String stream, int track,
+                       double value, double expected) {
+        this(type, schema, vhost, app, stream, track, null, value, expected, 0);
+    }
+
+    /**
+     * @param type     事件类型
+     * @param schema   协议
+     * @param vhost    虚拟主机
+     * @param app      应用名
+     * @param stream   流ID
+     * @param track    轨道序号，流级事件为-1
+     * @param metric   观测值对应的指标名，可以为null
+     * @param value    触发事件的观测值
+     * @param expected 观测值的预期值
+     * @param score    偏离程度，如z分数
+     */
+    public StreamEvent(StreamEventType type, String schema, String vhost, String app, String stream, int track,
+                       String metric, double value, double expected, double score) {
+        this(type, schema, vhost, app, stream, track, metric, value, expected, score, System.currentTimeMillis());
+    }
+
+    /**
+     * 还原已检测到的事件，如从导出暂存区读回时保留原检测时间
+     *
+     * @param timestamp 检测时间(毫秒)
+     */
+    public StreamEvent(StreamEventType type, String schema, String vhost, String app, String stream, int track,
+                       String metric, double value, double expected, double score, long timestamp) {
+        this.type = type;
+        this.schema = schema;
+        this.vhost = vhost;
+        this.app = app;
+        this.stream = stream;
+        this.track = track;
+        this.metric = metric;
+        this.value = value;
+        this.expected = expected;
+        this.score = score;
+        this.timestamp = timestamp;
+    }
+
+    public StreamEventType getType() {
+        return type;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getVhost() {
+        return vhost;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    /**
+     * 轨道序号，流级事件为-1
+     */
+    public int getTrack() {
+        return track;
+    }
+
+    /**
+     * 观测值对应的指标名，如 stream.bytes_speed，不适用时为null
+     */
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * 触发事件的观测值，含义见各事件类型
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * 观测值的预期值，含义见各事件类型
+     */
+    public double getExpected() {
+        return expected;
+    }
+
+    /**
+     * 偏离程度，如异常检测的z分数，不适用时为0
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * 检测时间(毫秒)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + schema + "://" + vhost + "/" + app + "/" + stream
+            + (track >= 0 ? "#" + track : "") + (metric != null ? " " + metric : "")
+            + " value=" + value + " expected=" + expected + (score != 0 ? " score=" + score : "");
+    }
+}
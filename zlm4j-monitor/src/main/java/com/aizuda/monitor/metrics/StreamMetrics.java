@@ -1,6 +1,8 @@
 package com.aizuda.monitor.metrics;
 
 import com.aizuda.monitor.metrics.enums.MetricsType;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -27,6 +29,9 @@ public class StreamMetrics extends AbstractMetrics {
     private final Map<String, AtomicLong> protocolStreams = new ConcurrentHashMap<>();
     private final Map<String, AtomicLong> protocolBytes = new ConcurrentHashMap<>();
     
+    /** 按流采样，由采集线程写入，交给存储线程后只读 */
+    private final List<StreamSample> streamSamples = new ArrayList<>();
+    
     public static class MetricNames {
         /** 基础指标 */
         public static final String STREAM_COUNT = "stream.count";
@@ -49,10 +54,36 @@ public class StreamMetrics extends AbstractMetrics {
         public static final String VIDEO_GOP_INTERVAL = "video.gop_interval";
         public static final String VIDEO_KEY_FRAMES = "video.key_frames";
         
+        /** 跨流分布指标，输出 .p50/.p95/.p99/.max/.count */
+        public static final String STREAM_BITRATE_DISTRIBUTION = "stream.bitrate";
+        public static final String STREAM_READERS_DISTRIBUTION = "stream.readers";
+        public static final String VIDEO_FPS_DISTRIBUTION = "video.fps";
+        public static final String VIDEO_GOP_INTERVAL_DISTRIBUTION = "video.gop_interval";
+        
         /** 音频轨道相关指标 */
         public static final String AUDIO_SAMPLE_RATE = "audio.sample_rate";
         public static final String AUDIO_CHANNEL = "audio.channel";
         public static final String AUDIO_SAMPLE_BIT = "audio.sample_bit";
+        
+        /** 视频卡顿指标 */
+        public static final String STALL_TRACKS = "stall.tracks";
+        public static final String STALL_STREAMS = "stall.streams";
+        public static final String STALL_APP_PREFIX = "stall.app.";
+        
+        /** GOP间隔指标: GOP间隔超过切片时长的流数、判定使用的切片时长(毫秒) */
+        public static final String GOP_LONG_STREAMS = "gop.long.streams";
+        public static final String GOP_SEGMENT_DURATION = "gop.segment_duration";
+        /** 全部GOP间隔观测值的分布，以及按流统计的窗口内GOP间隔方差和最大值的分布，输出 .p50/.p95/.p99/.max/.count */
+        public static final String GOP_INTERVAL_DISTRIBUTION = "gop.interval";
+        public static final String GOP_STREAM_VARIANCE_DISTRIBUTION = "gop.stream.variance";
+        public static final String GOP_STREAM_MAX_DISTRIBUTION = "gop.stream.max";
+        
+        /** 异常检测指标: 异常中的流数、数据速率和观看人数异常的流数 */
+        public static final String ANOMALY_STREAMS = "anomaly.streams";
+        public static final String ANOMALY_BITRATE_STREAMS = "anomaly.bitrate";
+        public static final String ANOMALY_READERS_STREAMS = "anomaly.readers";
+        /** 各流各序列 |z| 的分布，用于调整阈值，输出 .p50/.p95/.p99/.max/.count */
+        public static final String ANOMALY_SCORE_DISTRIBUTION = "anomaly.zscore";
     }
     
     @Override
@@ -60,6 +91,26 @@ public class StreamMetrics extends AbstractMetrics {
         return MetricsType.STREAM;
     }
     
+    @Override
+    public void reset() {
+        super.reset();
+        streamSamples.clear();
+    }
+    
+    /**
+     * 记录单个流的采样，供本地存储写成按流的序列
+     */
+    public void addStreamSample(StreamSample sample) {
+        streamSamples.add(sample);
+    }
+    
+    /**
+     * 本次采集的按流采样，未启用本地存储时为空
+     */
+    public List<StreamSample> getStreamSamples() {
+        return streamSamples;
+    }
+    
     /**
      * 设置流媒体基本信息
      */
@@ -108,6 +159,28 @@ public class StreamMetrics extends AbstractMetrics {
         return normalized != null ? normalized : protocol.toLowerCase();
     }
     
+    /**
+     * 记录单个流的码率和观看人数分布
+     *
+     * @param bytesSpeed 数据速率(字节/秒)，按比特/秒记录
+     * @param readerCount 观看人数
+     */
+    public void recordStreamDistribution(int bytesSpeed, int readerCount) {
+        recordDistribution(MetricNames.STREAM_BITRATE_DISTRIBUTION, bytesSpeed * 8.0);
+        recordDistribution(MetricNames.STREAM_READERS_DISTRIBUTION, readerCount);
+    }
+    
+    /**
+     * 记录单个视频轨道的帧率和GOP间隔分布
+     *
+     * @param fps 帧率
+     * @param gopInterval GOP间隔(毫秒)
+     */
+    public void recordVideoDistribution(int fps, int gopInterval) {
+        recordDistribution(MetricNames.VIDEO_FPS_DISTRIBUTION, fps);
+        recordDistribution(MetricNames.VIDEO_GOP_INTERVAL_DISTRIBUTION, gopInterval);
+    }
+    
     /** 视频轨道相关指标 */
     public void setVideoInfo(int width, int height, int fps, int gopSize, int gopInterval, long keyFrames) {
         setMetric(MetricNames.VIDEO_WIDTH, width);
@@ -118,6 +191,72 @@ public class StreamMetrics extends AbstractMetrics {
         setMetric(MetricNames.VIDEO_KEY_FRAMES, keyFrames);
     }
     
+    /**
+     * 设置卡顿中的视频轨道数和流数
+     */
+    public void setStallCounts(int tracks, int streams) {
+        setMetric(MetricNames.STALL_TRACKS, tracks);
+        setMetric(MetricNames.STALL_STREAMS, streams);
+    }
+    
+    /**
+     * 设置app下卡顿中的流数
+     */
+    public void setAppStalledStreams(String app, int streams) {
+        setMetric(MetricNames.STALL_APP_PREFIX + app, streams);
+    }
+    
+    /**
+     * 记录一次GOP间隔观测值
+     *
+     * @param intervalMs GOP间隔(毫秒)
+     */
+    public void recordGopInterval(int intervalMs) {
+        recordDistribution(MetricNames.GOP_INTERVAL_DISTRIBUTION, intervalMs);
+    }
+    
+    /**
+     * 记录单个流窗口内GOP间隔的方差和最大值
+     *
+     * @param variance 方差(毫秒²)
+     * @param maxMs 最大值(毫秒)
+     */
+    public void recordStreamGop(double variance, double maxMs) {
+        recordDistribution(MetricNames.GOP_STREAM_VARIANCE_DISTRIBUTION, variance);
+        recordDistribution(MetricNames.GOP_STREAM_MAX_DISTRIBUTION, maxMs);
+    }
+    
+    /**
+     * 设置GOP间隔超过切片时长的流数
+     *
+     * @param streams 流数
+     * @param segmentDurationMs 判定使用的切片时长(毫秒)
+     */
+    public void setGopLongStreams(int streams, int segmentDurationMs) {
+        setMetric(MetricNames.GOP_LONG_STREAMS, streams);
+        setMetric(MetricNames.GOP_SEGMENT_DURATION, segmentDurationMs);
+    }
+    
+    /**
+     * 记录单个序列的z分数绝对值
+     */
+    public void recordAnomalyScore(double score) {
+        recordDistribution(MetricNames.ANOMALY_SCORE_DISTRIBUTION, score);
+    }
+    
+    /**
+     * 设置异常中的流数
+     *
+     * @param streams 任一序列异常的流数
+     * @param bitrate 数据速率异常的流数
+     * @param readers 观看人数异常的流数
+     */
+    public void setAnomalyCounts(int streams, int bitrate, int readers) {
+        setMetric(MetricNames.ANOMALY_STREAMS, streams);
+        setMetric(MetricNames.ANOMALY_BITRATE_STREAMS, bitrate);
+        setMetric(MetricNames.ANOMALY_READERS_STREAMS, readers);
+    }
+    
     /** 音频轨道相关指标 */
     public void setAudioInfo(int sampleRate, int channels, int sampleBit) {
         setMetric(MetricNames.AUDIO_SAMPLE_RATE, sampleRate);
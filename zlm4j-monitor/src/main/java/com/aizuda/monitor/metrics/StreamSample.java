@@ -0,0 +1,110 @@
+package com.aizuda.monitor.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个流的采样
+ * 流媒体收集器在启用本地存储时为每个流记录一份，通过 {@link StreamMetrics#getStreamSamples()} 读取，
+ * 本地存储和磁盘归档以 vhost、app、stream、schema 为标签写成按流的序列，供查询按流分组
+ */
+public final class StreamSample {
+    private final String schema;
+    private final String vhost;
+    private final String app;
+    private final String stream;
+    private final int readerCount;
+    private final int totalReaderCount;
+    private final int bytesSpeed;
+    private final long aliveSeconds;
+
+    /**
+     * @param schema           协议
+     * @param vhost            虚拟主机
+     * @param app              应用名
+     * @param stream           流ID
+     * @param readerCount      当前观看人数
+     * @param totalReaderCount 累计观看人数
+     * @param bytesSpeed       数据速率(字节/秒)
+     * @param aliveSeconds     存活时长(秒)
+     */
+    public StreamSample(String schema, String vhost, String app, String stream,
+                        int readerCount, int totalReaderCount, int bytesSpeed, long aliveSeconds) {
+        this.schema = schema;
+        this.vhost = vhost;
+        this.app = app;
+        this.stream = stream;
+        this.readerCount = readerCount;
+        this.totalReaderCount = totalReaderCount;
+        this.bytesSpeed = bytesSpeed;
+        this.aliveSeconds = aliveSeconds;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getVhost() {
+        return vhost;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    public int getReaderCount() {
+        return readerCount;
+    }
+
+    public int getTotalReaderCount() {
+        return totalReaderCount;
+    }
+
+    public int getBytesSpeed() {
+        return bytesSpeed;
+    }
+
+    public long getAliveSeconds() {
+        return aliveSeconds;
+    }
+
+    /**
+     * 流标识标签，值为null的标签不输出
+     */
+    public Map<String, String> getTags() {
+        Map<String, String> tags = new LinkedHashMap<>(8);
+        putTag(tags, "vhost", vhost);
+        putTag(tags, "app", app);
+        putTag(tags, "stream", stream);
+        putTag(tags, "schema", schema);
+        return tags;
+    }
+
+    /**
+     * 按 {@link StreamMetrics.MetricNames} 命名的采样值
+     */
+    public Map<String, Number> getValues() {
+        Map<String, Number> values = new LinkedHashMap<>(8);
+        values.put(StreamMetrics.MetricNames.STREAM_READER_COUNT, readerCount);
+        values.put(StreamMetrics.MetricNames.STREAM_TOTAL_READER_COUNT, totalReaderCount);
+        values.put(StreamMetrics.MetricNames.STREAM_BYTES_SPEED, bytesSpeed);
+        values.put(StreamMetrics.MetricNames.STREAM_ALIVE_SECONDS, aliveSeconds);
+        return values;
+    }
+
+    private static void putTag(Map<String, String> tags, String name, String value) {
+        if (value != null) {
+            tags.put(name, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StreamSample{" + schema + "://" + vhost + "/" + app + "/" + stream
+            + ", readers=" + readerCount + ", bytesSpeed=" + bytesSpeed + '}';
+    }
+}
@@ -0,0 +1,67 @@
+package com.aizuda.monitor.metrics.enums;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 网络协议枚举
+ * 按序号索引协议计数器，{@link #of(String)} 是从ZLM schema 到协议的唯一解析入口
+ */
+public enum Protocol {
+    /** HTTP，含 HTTP-FLV、HLS、HTTP-TS、HTTP-fMP4 */
+    HTTP("http", "https", "flv", "hls", "hls.fmp4", "ts", "fmp4"),
+    RTSP("rtsp", "rtsps"),
+    RTMP("rtmp", "rtmps"),
+    /** WebSocket */
+    WS("ws", "wss"),
+    /** ZLM中WebRTC流的 schema */
+    RTC("rtc"),
+    SRT("srt"),
+    GB28181("gb", "gb28181"),
+    WEBRTC("webrtc"),
+    UDP("udp");
+
+    /** 协议数量 */
+    public static final int COUNT = values().length;
+
+    private static final Protocol[] VALUES = values();
+    private static final Map<String, Protocol> BY_NAME = new HashMap<>();
+    static {
+        for (Protocol protocol : VALUES) {
+            for (String alias : protocol.aliases) {
+                BY_NAME.put(alias, protocol);
+            }
+        }
+    }
+
+    private final String prefix;
+    private final String[] aliases;
+
+    Protocol(String... aliases) {
+        this.prefix = aliases[0];
+        this.aliases = aliases;
+    }
+
+    /**
+     * 指标名前缀，如 rtmp
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * 解析 schema，不区分大小写
+     *
+     * @param schema ZLM schema 或协议名，如 rtmp、RTSP、ts
+     * @return 协议，无法识别时返回null
+     */
+    public static Protocol of(String schema) {
+        if (schema == null) {
+            return null;
+        }
+        Protocol protocol = BY_NAME.get(schema);
+        // ZLM的 schema 均为小写，只有其他来源的名称才需要转换
+        return protocol != null ? protocol : BY_NAME.get(schema.toLowerCase(Locale.ROOT));
+    }
+}
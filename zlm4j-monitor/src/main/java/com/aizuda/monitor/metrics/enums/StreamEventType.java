@@ -0,0 +1,38 @@
+package com.aizuda.monitor.metrics.enums;
+
+/**
+ * 流事件类型
+ * 由收集器在采集时检测，随当次采集的指标分发；订阅按事件所属的指标前缀选择事件
+ */
+public enum StreamEventType {
+    /** 视频轨道连续多个周期没有新帧或帧数远低于声明帧率，value为本周期帧数，expected为按帧率应有的帧数 */
+    STALL_START("stall."),
+    
+    /** 卡顿的视频轨道恢复出帧或流已下线，value为本周期帧数，流下线时为-1 */
+    STALL_END("stall."),
+    
+    /** 流的GOP间隔超过切片时长，value为窗口内最大GOP间隔或当前GOP已持续的时间(毫秒)，expected为切片时长(毫秒) */
+    GOP_LONG_START("gop."),
+    
+    /** 流的GOP间隔恢复到切片时长以内或流已下线，value同上，流下线时为-1 */
+    GOP_LONG_END("gop."),
+    
+    /** 流的数据速率或观看人数偏离基线，metric为序列的指标名，value为观测值，expected为基线预期值，score为z分数 */
+    ANOMALY_START("anomaly."),
+    
+    /** 序列回到基线附近或流已下线，字段同上，流下线时value为-1 */
+    ANOMALY_END("anomaly.");
+
+    private final String metricPrefix;
+
+    StreamEventType(String metricPrefix) {
+        this.metricPrefix = metricPrefix;
+    }
+
+    /**
+     * 事件所属的指标前缀，订阅可能选中该前缀的指标时才收到事件
+     */
+    public String getMetricPrefix() {
+        return metricPrefix;
+    }
+}
@@ -0,0 +1,172 @@
+package com.aizuda.monitor.query;
+
+import com.aizuda.monitor.tsdb.PointVisitor;
+import com.aizuda.monitor.util.QuantileSketch;
+
+/**
+ * 分组聚合状态，可合并
+ * 数据点以流式方式累加，分位数记入固定内存的 {@link QuantileSketch}(相对误差1%)，不保留数据点的值；
+ * 草图只接受非负值，负值取反后记入另一个草图
+ */
+final class Accumulator implements PointVisitor {
+    private final Aggregation aggregation;
+    private final double quantile;
+
+    private double sum;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private QuantileSketch positives;
+    private QuantileSketch negatives;
+    private int seriesCount;
+
+    /** 当前序列的增长率状态 */
+    private boolean rateStarted;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private double previous;
+    private double increase;
+    private double rate;
+
+    Accumulator(Aggregation aggregation, double quantile) {
+        this.aggregation = aggregation;
+        this.quantile = quantile;
+        if (aggregation == Aggregation.QUANTILE) {
+            positives = new QuantileSketch();
+            negatives = new QuantileSketch();
+        }
+    }
+
+    /**
+     * 开始累加一个序列
+     */
+    void beginSeries() {
+        seriesCount++;
+        rateStarted = false;
+        increase = 0;
+    }
+
+    /**
+     * 结束当前序列
+     */
+    void endSeries() {
+        if (aggregation == Aggregation.RATE && rateStarted && lastTimestamp > firstTimestamp) {
+            rate += increase * 1000.0 / (lastTimestamp - firstTimestamp);
+        }
+    }
+
+    @Override
+    public void visit(long timestamp, double min, double max, double sum, long count, double last) {
+        this.count += count;
+        switch (aggregation) {
+            case RATE:
+                if (!rateStarted) {
+                    rateStarted = true;
+                    firstTimestamp = timestamp;
+                } else {
+                    // 计数器回退视为重启，从0开始累计
+                    increase += last >= previous ? last - previous : last;
+                }
+                previous = last;
+                lastTimestamp = timestamp;
+                break;
+            case SUM:
+            case AVG:
+                this.sum += sum;
+                break;
+            case MIN:
+                this.min = Math.min(this.min, min);
+                break;
+            case MAX:
+                this.max = Math.max(this.max, max);
+                break;
+            case QUANTILE:
+                // 汇总点以平均值参与分位数计算
+                double value = sum / count;
+                if (value >= 0) {
+                    positives.add(value);
+                } else {
+                    negatives.add(-value);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 合并另一个分区的同组状态
+     */
+    void merge(Accumulator other) {
+        sum += other.sum;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        rate += other.rate;
+        seriesCount += other.seriesCount;
+        if (positives != null) {
+            positives.merge(other.positives);
+            negatives.merge(other.negatives);
+        }
+    }
+
+    /**
+     * 在负值和非负值两个草图上按合并后的排名取分位值
+     */
+    private double quantileResult() {
+        long negativeCount = negatives.getCount();
+        long positiveCount = positives.getCount();
+        long total = negativeCount + positiveCount;
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (total - 1));
+        if (rank < negativeCount) {
+            // 负值升序即取反后的值降序
+            return -negatives.getValueAtQuantile(rankQuantile(negativeCount - 1 - rank, negativeCount));
+        }
+        return positives.getValueAtQuantile(rankQuantile(rank - negativeCount, positiveCount));
+    }
+
+    /**
+     * 草图内第 rank 个值(从0开始)对应的分位点，取排名中点避免浮点误差落到前一个排名
+     */
+    private static double rankQuantile(long rank, long count) {
+        return count <= 1 ? 0 : Math.min(1.0, (rank + 0.5) / (count - 1));
+    }
+
+    int seriesCount() {
+        return seriesCount;
+    }
+
+    long pointCount() {
+        return count;
+    }
+
+    /**
+     * 聚合结果，没有数据时返回NaN
+     */
+    double result() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        switch (aggregation) {
+            case RATE:
+                return rate;
+            case SUM:
+                return sum;
+            case AVG:
+                return sum / count;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            case COUNT:
+                return count;
+            case QUANTILE:
+                return quantileResult();
+            default:
+                return Double.NaN;
+        }
+    }
+}
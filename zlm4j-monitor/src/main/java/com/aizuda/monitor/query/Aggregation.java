@@ -0,0 +1,23 @@
+package com.aizuda.monitor.query;
+
+/**
+ * 聚合函数
+ * 除RATE外均作用于同一分组内全部序列在时间范围内的全部数据点；
+ * RATE先按序列计算每秒增长率(计数器回退视为重启)，再在分组内求和
+ */
+public enum Aggregation {
+    /** 每秒增长率，适用于累计计数类指标 */
+    RATE,
+    /** 求和 */
+    SUM,
+    /** 平均值 */
+    AVG,
+    /** 最小值 */
+    MIN,
+    /** 最大值 */
+    MAX,
+    /** 数据点数 */
+    COUNT,
+    /** 分位数，分位点通过 {@link MetricsQuery#quantile(double)} 指定 */
+    QUANTILE
+}
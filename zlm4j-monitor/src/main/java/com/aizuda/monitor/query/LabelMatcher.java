@@ -0,0 +1,90 @@
+package com.aizuda.monitor.query;
+
+import java.util.regex.Pattern;
+
+/**
+ * 标签匹配器
+ * 标签不存在时按空字符串匹配
+ */
+public final class LabelMatcher {
+
+    /**
+     * 匹配方式
+     */
+    public enum Type {
+        /** 等于 */
+        EQUAL,
+        /** 不等于 */
+        NOT_EQUAL,
+        /** 正则完整匹配 */
+        REGEX,
+        /** 正则不匹配 */
+        NOT_REGEX
+    }
+
+    private final String label;
+    private final Type type;
+    private final String value;
+    private final Pattern pattern;
+
+    private LabelMatcher(String label, Type type, String value) {
+        this.label = label;
+        this.type = type;
+        this.value = value;
+        this.pattern = type == Type.REGEX || type == Type.NOT_REGEX ? Pattern.compile(value) : null;
+    }
+
+    public static LabelMatcher equal(String label, String value) {
+        return new LabelMatcher(label, Type.EQUAL, value);
+    }
+
+    public static LabelMatcher notEqual(String label, String value) {
+        return new LabelMatcher(label, Type.NOT_EQUAL, value);
+    }
+
+    public static LabelMatcher regex(String label, String regex) {
+        return new LabelMatcher(label, Type.REGEX, regex);
+    }
+
+    public static LabelMatcher notRegex(String label, String regex) {
+        return new LabelMatcher(label, Type.NOT_REGEX, regex);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * 判断标签值是否匹配
+     *
+     * @param actual 标签值，不存在时为null
+     */
+    public boolean matches(String actual) {
+        String v = actual == null ? "" : actual;
+        switch (type) {
+            case EQUAL:
+                return value.equals(v);
+            case NOT_EQUAL:
+                return !value.equals(v);
+            case REGEX:
+                return pattern.matcher(v).matches();
+            case NOT_REGEX:
+                return !pattern.matcher(v).matches();
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return label + type + value;
+    }
+}
@@ -0,0 +1,332 @@
+package com.aizuda.monitor.query;
+
+import com.aizuda.monitor.tsdb.MetricsArchive;
+import com.aizuda.monitor.tsdb.MetricsStore;
+import com.aizuda.monitor.tsdb.Resolution;
+import com.aizuda.monitor.tsdb.Series;
+import com.aizuda.monitor.tsdb.SeriesKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地指标查询
+ * 在本地时序存储和磁盘归档上按时间范围、标签匹配选择序列，聚合后按分组返回结果
+ *
+ * 序列标签取自指标标签；流媒体的 stream.reader_count、stream.total_reader_count、stream.bytes_speed、
+ * stream.alive_seconds 按流写入，带 vhost、app、stream、schema 标签，可按这些标签过滤和分组。
+ * 同一个流的每种协议各是一个序列，只关心某一种协议时用 where("schema", ...) 过滤
+ *
+ * 使用示例:
+ * <pre>
+ * // 最近15分钟出口带宽最高的20个流
+ * monitor.query()
+ *     .metric("stream.stream.bytes_speed")
+ *     .where("schema", "rtmp")
+ *     .last(15, TimeUnit.MINUTES)
+ *     .aggregate(Aggregation.AVG)
+ *     .groupBy("app", "stream")
+ *     .limit(20)
+ *     .execute();
+ *
+ * // 各应用观看人数的p95
+ * monitor.query()
+ *     .metric("stream.stream.reader_count")
+ *     .last(1, TimeUnit.HOURS)
+ *     .quantile(0.95)
+ *     .groupBy("app")
+ *     .execute();
+ * </pre>
+ *
+ * 匹配的序列被划分为多个分区，在ForkJoin公共池中并行扫描，每个分区独立累加后逐级合并；
+ * 扫描以回调方式流式进行，不会把序列数据整体读入内存，分位数使用固定内存的草图
+ *
+ * 原始分辨率下，早于内存环中最旧点的部分从磁盘归档读取；汇总分辨率只读取内存环
+ */
+public class MetricsQuery {
+    /** 单个分区的最大序列数 */
+    private static final int PARTITION_SIZE = 32;
+
+    private final MetricsStore store;
+    private final MetricsArchive archive;
+
+    private String metric;
+    private final List<LabelMatcher> matchers = new ArrayList<>();
+    private long from = 0;
+    private long to = Long.MAX_VALUE;
+    private Resolution resolution = Resolution.RAW;
+    private Aggregation aggregation = Aggregation.AVG;
+    private double quantile = 0.5;
+    private List<String> groupBy = Collections.emptyList();
+    private int limit = Integer.MAX_VALUE;
+    private boolean ascending = false;
+
+    /**
+     * @param store 本地时序存储，可为null
+     * @param archive 磁盘归档，可为null
+     */
+    public MetricsQuery(MetricsStore store, MetricsArchive archive) {
+        if (store == null && archive == null) {
+            throw new IllegalStateException("本地存储和磁盘归档均未启用");
+        }
+        this.store = store;
+        this.archive = archive;
+    }
+
+    /**
+     * 指标名，格式为 {类型}.{指标名}，如 system.cpu.usage
+     */
+    public MetricsQuery metric(String metric) {
+        this.metric = metric;
+        return this;
+    }
+
+    /**
+     * 标签等于指定值
+     */
+    public MetricsQuery where(String label, String value) {
+        return match(LabelMatcher.equal(label, value));
+    }
+
+    /**
+     * 标签正则完整匹配
+     */
+    public MetricsQuery whereRegex(String label, String regex) {
+        return match(LabelMatcher.regex(label, regex));
+    }
+
+    /**
+     * 添加标签匹配器，多个匹配器之间为且关系
+     */
+    public MetricsQuery match(LabelMatcher... matchers) {
+        this.matchers.addAll(Arrays.asList(matchers));
+        return this;
+    }
+
+    /**
+     * 时间范围 [from, to]，毫秒时间戳
+     */
+    public MetricsQuery range(long from, long to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * 截至当前的最近一段时间
+     */
+    public MetricsQuery last(long duration, TimeUnit unit) {
+        long now = System.currentTimeMillis();
+        return range(now - unit.toMillis(duration), now);
+    }
+
+    /**
+     * 数据分辨率，默认原始点
+     */
+    public MetricsQuery resolution(Resolution resolution) {
+        this.resolution = resolution;
+        return this;
+    }
+
+    /**
+     * 聚合函数，默认AVG
+     */
+    public MetricsQuery aggregate(Aggregation aggregation) {
+        this.aggregation = aggregation;
+        return this;
+    }
+
+    /**
+     * 按分位数聚合
+     *
+     * @param quantile 分位点，取值 [0, 1]
+     */
+    public MetricsQuery quantile(double quantile) {
+        this.aggregation = Aggregation.QUANTILE;
+        this.quantile = quantile;
+        return this;
+    }
+
+    /**
+     * 分组标签，未指定时全部序列聚合为一组
+     */
+    public MetricsQuery groupBy(String... labels) {
+        this.groupBy = Arrays.asList(labels);
+        return this;
+    }
+
+    /**
+     * 结果按聚合值降序排列后保留的条数
+     */
+    public MetricsQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * 结果按聚合值升序排列
+     */
+    public MetricsQuery ascending() {
+        this.ascending = true;
+        return this;
+    }
+
+    /**
+     * 执行查询
+     *
+     * @return 各分组的聚合结果，没有数据的分组不返回
+     */
+    public List<QueryResult> execute() {
+        if (metric == null || metric.isEmpty()) {
+            throw new IllegalStateException("未指定查询指标");
+        }
+        if (from > to) {
+            throw new IllegalArgumentException("查询起始时间不能晚于结束时间");
+        }
+        if (aggregation == Aggregation.QUANTILE && (quantile < 0 || quantile > 1)) {
+            throw new IllegalArgumentException("分位点必须在0到1之间");
+        }
+
+        List<SeriesKey> keys = select();
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<List<String>, Accumulator> groups = ForkJoinPool.commonPool()
+            .invoke(new ScanTask(keys, 0, keys.size()));
+
+        List<QueryResult> results = new ArrayList<>(groups.size());
+        for (Map.Entry<List<String>, Accumulator> entry : groups.entrySet()) {
+            Accumulator acc = entry.getValue();
+            double value = acc.result();
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            Map<String, String> group = new LinkedHashMap<>();
+            for (int i = 0; i < groupBy.size(); i++) {
+                group.put(groupBy.get(i), entry.getKey().get(i));
+            }
+            results.add(new QueryResult(group, value, acc.seriesCount(), acc.pointCount()));
+        }
+        Comparator<QueryResult> order = Comparator.comparingDouble(QueryResult::getValue);
+        results.sort(ascending ? order : order.reversed());
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    /**
+     * 选择名称和标签均匹配的序列
+     */
+    private List<SeriesKey> select() {
+        Set<SeriesKey> candidates = new LinkedHashSet<>();
+        if (store != null) {
+            candidates.addAll(store.keys());
+        }
+        if (archive != null && resolution == Resolution.RAW) {
+            candidates.addAll(archive.keys(from, to));
+        }
+        List<SeriesKey> keys = new ArrayList<>();
+        for (SeriesKey key : candidates) {
+            if (matches(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private boolean matches(SeriesKey key) {
+        if (!metric.equals(key.getName())) {
+            return false;
+        }
+        for (LabelMatcher matcher : matchers) {
+            if (!matcher.matches(key.getLabel(matcher.getLabel()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 扫描单个序列，按时间升序回调
+     */
+    private void scanSeries(SeriesKey key, Accumulator acc) {
+        Series series = store == null ? null : store.get(key);
+        if (archive != null && resolution == Resolution.RAW) {
+            // 内存环中已覆盖的部分从归档读取，两段不重叠且保持时间顺序
+            long oldest = series == null ? Long.MAX_VALUE : series.getOldestTimestamp(Resolution.RAW);
+            if (from < oldest) {
+                archive.scan(key, from, Math.min(to, oldest - 1), acc);
+            }
+        }
+        if (series != null) {
+            series.scan(resolution, from, to, acc);
+        }
+    }
+
+    private List<String> groupKey(SeriesKey key) {
+        if (groupBy.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>(groupBy.size());
+        for (String label : groupBy) {
+            String value = key.getLabel(label);
+            values.add(value == null ? "" : value);
+        }
+        return values;
+    }
+
+    /**
+     * 分区扫描任务，序列数超过分区大小时二分
+     */
+    private final class ScanTask extends RecursiveTask<Map<List<String>, Accumulator>> {
+        private final List<SeriesKey> keys;
+        private final int lo;
+        private final int hi;
+
+        ScanTask(List<SeriesKey> keys, int lo, int hi) {
+            this.keys = keys;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected Map<List<String>, Accumulator> compute() {
+            if (hi - lo <= PARTITION_SIZE) {
+                Map<List<String>, Accumulator> groups = new HashMap<>();
+                for (int i = lo; i < hi; i++) {
+                    SeriesKey key = keys.get(i);
+                    Accumulator acc = groups.computeIfAbsent(groupKey(key),
+                        k -> new Accumulator(aggregation, quantile));
+                    acc.beginSeries();
+                    scanSeries(key, acc);
+                    acc.endSeries();
+                }
+                return groups;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            ScanTask left = new ScanTask(keys, lo, mid);
+            left.fork();
+            Map<List<String>, Accumulator> right = new ScanTask(keys, mid, hi).compute();
+            Map<List<String>, Accumulator> merged = left.join();
+            for (Map.Entry<List<String>, Accumulator> entry : right.entrySet()) {
+                Accumulator acc = merged.get(entry.getKey());
+                if (acc == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                } else {
+                    acc.merge(entry.getValue());
+                }
+            }
+            return merged;
+        }
+    }
+}
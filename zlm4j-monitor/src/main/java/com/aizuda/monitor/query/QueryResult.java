@@ -0,0 +1,54 @@
+package com.aizuda.monitor.query;
+
+import java.util.Map;
+
+/**
+ * 查询结果
+ * 每个分组一条，分组标签为 groupBy 指定的标签及其取值
+ */
+public final class QueryResult {
+    private final Map<String, String> group;
+    private final double value;
+    private final int seriesCount;
+    private final long pointCount;
+
+    QueryResult(Map<String, String> group, double value, int seriesCount, long pointCount) {
+        this.group = group;
+        this.value = value;
+        this.seriesCount = seriesCount;
+        this.pointCount = pointCount;
+    }
+
+    /**
+     * 分组标签
+     */
+    public Map<String, String> getGroup() {
+        return group;
+    }
+
+    /**
+     * 聚合结果
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * 参与聚合的序列数
+     */
+    public int getSeriesCount() {
+        return seriesCount;
+    }
+
+    /**
+     * 参与聚合的数据点数
+     */
+    public long getPointCount() {
+        return pointCount;
+    }
+
+    @Override
+    public String toString() {
+        return group + "=" + value;
+    }
+}
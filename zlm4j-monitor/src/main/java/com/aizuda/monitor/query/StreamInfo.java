@@ -0,0 +1,143 @@
+package com.aizuda.monitor.query;
+
+/**
+ * 单个流的实时属性快照
+ * 由 {@link StreamLookup} 在 mk_media_source_find 回调中一次读取，读取后不再访问ZLM
+ */
+public final class StreamInfo {
+    private final String schema;
+    private final String vhost;
+    private final String app;
+    private final String stream;
+    private final int readerCount;
+    private final int totalReaderCount;
+    private final int bytesSpeed;
+    private final int originType;
+    private final long aliveSecond;
+    private final int trackCount;
+    private final int videoWidth;
+    private final int videoHeight;
+    private final int videoFps;
+    private final int bitRate;
+    private final long timestamp;
+
+    StreamInfo(String schema, String vhost, String app, String stream,
+               int readerCount, int totalReaderCount, int bytesSpeed, int originType, long aliveSecond,
+               int trackCount, int videoWidth, int videoHeight, int videoFps, int bitRate, long timestamp) {
+        this.schema = schema;
+        this.vhost = vhost;
+        this.app = app;
+        this.stream = stream;
+        this.readerCount = readerCount;
+        this.totalReaderCount = totalReaderCount;
+        this.bytesSpeed = bytesSpeed;
+        this.originType = originType;
+        this.aliveSecond = aliveSecond;
+        this.trackCount = trackCount;
+        this.videoWidth = videoWidth;
+        this.videoHeight = videoHeight;
+        this.videoFps = videoFps;
+        this.bitRate = bitRate;
+        this.timestamp = timestamp;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getVhost() {
+        return vhost;
+    }
+
+    public String getApp() {
+        return app;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    /**
+     * 当前协议的观看人数
+     */
+    public int getReaderCount() {
+        return readerCount;
+    }
+
+    /**
+     * 所有协议的观看人数
+     */
+    public int getTotalReaderCount() {
+        return totalReaderCount;
+    }
+
+    /**
+     * 数据产生速度(字节/秒)
+     */
+    public int getBytesSpeed() {
+        return bytesSpeed;
+    }
+
+    /**
+     * 来源类型
+     */
+    public int getOriginType() {
+        return originType;
+    }
+
+    /**
+     * 存活时间(秒)
+     */
+    public long getAliveSecond() {
+        return aliveSecond;
+    }
+
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    /**
+     * 视频宽度，没有视频轨道时为0
+     */
+    public int getVideoWidth() {
+        return videoWidth;
+    }
+
+    /**
+     * 视频高度，没有视频轨道时为0
+     */
+    public int getVideoHeight() {
+        return videoHeight;
+    }
+
+    /**
+     * 视频帧率，没有视频轨道时为0
+     */
+    public int getVideoFps() {
+        return videoFps;
+    }
+
+    /**
+     * 各轨道码率之和(bit/s)
+     */
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * 读取时间(毫秒)，命中缓存时为首次读取的时间
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamInfo{" + schema + "://" + vhost + "/" + app + "/" + stream
+            + ", readers=" + readerCount + "/" + totalReaderCount
+            + ", bytesSpeed=" + bytesSpeed
+            + ", bitRate=" + bitRate
+            + ", video=" + videoWidth + "x" + videoHeight + "@" + videoFps
+            + ", alive=" + aliveSecond + "s}";
+    }
+}
@@ -0,0 +1,257 @@
+package com.aizuda.monitor.query;
+
+import com.aizuda.zlm4j.callback.IMKSourceFindCallBack;
+import com.aizuda.zlm4j.core.ZLMApi;
+import com.aizuda.zlm4j.structure.MK_MEDIA_SOURCE;
+import com.aizuda.zlm4j.structure.MK_TRACK;
+import com.sun.jna.Pointer;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单流查询
+ * 通过 mk_media_source_find 直接定位一个流并读取其实时属性，不遍历全部流；
+ * 结果在 ttl 内直接复用，同一个流正在查找时，并发的相同查询等待这一次查找的结果，不重复调用ZLM
+ *
+ * 流不存在的结果同样缓存，频繁查询已下线的流不会每次都进入ZLM；
+ * 缓存超过 maxEntries 时先淘汰过期条目，仍超出时淘汰最久未被查询的条目
+ */
+public class StreamLookup {
+    /** ZLM默认虚拟主机 */
+    public static final String DEFAULT_VHOST = "__defaultVhost__";
+
+    private final ZLMApi zlmApi;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    /** mk_media_source_find 在调用线程中同步回调，查找结果经线程本地变量带出，回调对象全局复用 */
+    private final ThreadLocal<StreamInfo> found = new ThreadLocal<>();
+    private final IMKSourceFindCallBack findCallback;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder finds = new LongAdder();
+
+    private volatile long ttlNanos;
+    private volatile int maxEntries;
+
+    /**
+     * @param zlmApi     ZLM接口
+     * @param ttl        结果缓存时间(毫秒)，0表示只合并并发查询
+     * @param maxEntries 最多缓存的流数量
+     */
+    public StreamLookup(ZLMApi zlmApi, long ttl, int maxEntries) {
+        this.zlmApi = zlmApi;
+        this.findCallback = new IMKSourceFindCallBack() {
+            @Override
+            public void invoke(Pointer user_data, MK_MEDIA_SOURCE mediaSource) {
+                found.set(mediaSource == null ? null : read(mediaSource));
+            }
+        };
+        setLimits(ttl, maxEntries);
+    }
+
+    /**
+     * 修改缓存时间和最多缓存的流数量，对之后的查询生效
+     */
+    public void setLimits(long ttl, int maxEntries) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("缓存时间不能小于0");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("最多缓存的流数量必须大于0");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 查询单个流
+     *
+     * @param schema 协议，如 rtmp、rtsp
+     * @param vhost  虚拟主机，为null时使用默认虚拟主机
+     * @param app    应用名
+     * @param stream 流ID
+     * @return 流的实时属性，流不存在时返回null
+     */
+    public StreamInfo find(String schema, String vhost, String app, String stream) {
+        if (schema == null || app == null || stream == null) {
+            throw new IllegalArgumentException("schema、app、stream不能为空");
+        }
+        String host = vhost == null || vhost.isEmpty() ? DEFAULT_VHOST : vhost;
+        String key = schema + "://" + host + "/" + app + "/" + stream;
+        requests.increment();
+
+        long now = System.nanoTime();
+        Entry entry = cache.get(key);
+        if (entry != null && entry.isFresh(now, ttlNanos)) {
+            entry.accessedAt = now;
+            return entry.await();
+        }
+
+        // 只有装入新条目的线程执行查找，其余线程等待该条目
+        Entry created = new Entry();
+        Entry current = cache.compute(key, (k, old) -> old != null && old.isFresh(now, ttlNanos) ? old : created);
+        if (current != created) {
+            return current.await();
+        }
+
+        StreamInfo info;
+        try {
+            info = lookup(schema, host, app, stream);
+        } catch (RuntimeException | Error e) {
+            cache.remove(key, created);
+            created.future.completeExceptionally(e);
+            throw e;
+        }
+        created.loadedAt = System.nanoTime();
+        created.accessedAt = created.loadedAt;
+        created.future.complete(info);
+        if (ttlNanos == 0) {
+            cache.remove(key, created);
+        } else if (cache.size() > maxEntries) {
+            evict(created.loadedAt);
+        }
+        return info;
+    }
+
+    /**
+     * 累计查询次数
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * 累计实际调用 mk_media_source_find 的次数
+     */
+    public long getFinds() {
+        return finds.sum();
+    }
+
+    /**
+     * 当前缓存的流数量
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 清空缓存，正在进行的查找不受影响
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private StreamInfo lookup(String schema, String vhost, String app, String stream) {
+        finds.increment();
+        try {
+            // from_mp4=0: 只查找已注册的流，不触发点播文件加载
+            zlmApi.mk_media_source_find(schema, vhost, app, stream, 0, Pointer.NULL, findCallback);
+            return found.get();
+        } finally {
+            found.remove();
+        }
+    }
+
+    /**
+     * 在回调中一次读取全部属性，回调返回后媒体源指针不再有效
+     */
+    private StreamInfo read(MK_MEDIA_SOURCE mediaSource) {
+        int width = 0;
+        int height = 0;
+        int fps = 0;
+        int bitRate = 0;
+        int trackCount = zlmApi.mk_media_source_get_track_count(mediaSource);
+        for (int i = 0; i < trackCount; i++) {
+            MK_TRACK track = zlmApi.mk_media_source_get_track(mediaSource, i);
+            if (track == null) {
+                continue;
+            }
+            try {
+                bitRate += zlmApi.mk_track_bit_rate(track);
+                if (width == 0 && zlmApi.mk_track_is_video(track) == 1) {
+                    width = zlmApi.mk_track_video_width(track);
+                    height = zlmApi.mk_track_video_height(track);
+                    fps = zlmApi.mk_track_video_fps(track);
+                }
+            } finally {
+                zlmApi.mk_track_unref(track);
+            }
+        }
+        return new StreamInfo(
+            zlmApi.mk_media_source_get_schema(mediaSource),
+            zlmApi.mk_media_source_get_vhost(mediaSource),
+            zlmApi.mk_media_source_get_app(mediaSource),
+            zlmApi.mk_media_source_get_stream(mediaSource),
+            zlmApi.mk_media_source_get_reader_count(mediaSource),
+            zlmApi.mk_media_source_get_total_reader_count(mediaSource),
+            zlmApi.mk_media_source_get_bytes_speed(mediaSource),
+            zlmApi.mk_media_source_get_origin_type(mediaSource),
+            zlmApi.mk_media_source_get_alive_second(mediaSource),
+            trackCount, width, height, fps, bitRate,
+            System.currentTimeMillis());
+    }
+
+    /**
+     * 淘汰过期条目，仍超过 maxEntries 时依次淘汰最久未被查询的条目，进行中的查找不淘汰
+     */
+    private void evict(long now) {
+        long ttl = ttlNanos;
+        Iterator<Entry> it = cache.values().iterator();
+        while (it.hasNext()) {
+            if (!it.next().isFresh(now, ttl)) {
+                it.remove();
+            }
+        }
+        while (cache.size() > maxEntries) {
+            Map.Entry<String, Entry> oldest = null;
+            for (Map.Entry<String, Entry> candidate : cache.entrySet()) {
+                Entry value = candidate.getValue();
+                if (value.future.isDone() && (oldest == null || value.accessedAt - oldest.getValue().accessedAt < 0)) {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            cache.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    /**
+     * 缓存条目，查找完成前为进行中状态，并发查询等待其结果
+     */
+    private static final class Entry {
+        private final CompletableFuture<StreamInfo> future = new CompletableFuture<>();
+        /** 查找完成的时间(纳秒)，在完成future之前写入 */
+        private volatile long loadedAt;
+        /** 最近一次被查询命中的时间(纳秒)，按此淘汰最久未使用的条目 */
+        private volatile long accessedAt;
+
+        boolean isFresh(long now, long ttl) {
+            if (!future.isDone()) {
+                return true;
+            }
+            return !future.isCompletedExceptionally() && now - loadedAt < ttl;
+        }
+
+        StreamInfo await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP批量导出器基类
+ * 采集线程只负责把指标渲染为待发送条目并放入有界内存缓冲区，
+ * 由独立写线程按批次(可选gzip压缩)POST到远端
+ *
+ * 缓冲区满时丢弃最旧的条目，写入失败(连接异常、429、5xx)按指数退避重试，
+ * 其他4xx视为数据或鉴权错误直接丢弃该批次
+ *
+ * 写入失败后导出器标记为不可写，直到再次发送成功，期间采集管道可将数据转入本地暂存区；
+ * 设置了溢出处理器(启用暂存区)时，缓冲区放不下的新采集和重试耗尽的批次交给处理器写入暂存区，不再丢弃
+ *
+ * @param <E> 缓冲区条目类型
+ */
+public abstract class AbstractHttpMetricsExporter<E> extends AbstractMetricsExporter {
+    private static final Logger log = LoggerFactory.getLogger(AbstractHttpMetricsExporter.class);
+
+    /** 待发送条目 */
+    private final ArrayDeque<Pending<E>> buffer = new ArrayDeque<>();
+    private final Object lock = new Object();
+
+    /** 溢出处理器，未设置时溢出和失败的数据直接丢弃 */
+    private volatile Consumer<Metrics> overflowHandler;
+
+    /** 写线程 */
+    private Thread writer;
+    private volatile boolean running = false;
+
+    /** 最近一次写入是否成功 */
+    private volatile boolean available = true;
+
+    /** 统计 */
+    private final AtomicLong sentItems = new AtomicLong();
+    private final AtomicLong droppedItems = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong spilledItems = new AtomicLong();
+
+    /**
+     * 获取HTTP配置
+     */
+    protected abstract MonitorConfig.HttpExporterConfig httpConfig();
+
+    /**
+     * 将指标渲染为一个缓冲区条目
+     *
+     * @return 待发送条目，没有可写数据时返回null
+     */
+    protected abstract E render(Metrics metrics);
+
+    /**
+     * 将暂存区补发的指标渲染为一个条目
+     * 补发的采集早于实时采集，依赖前后采集状态的导出器应在此使用单独的状态，默认与 {@link #render(Metrics)} 相同
+     *
+     * @return 待发送条目，没有可写数据时返回null
+     */
+    protected E renderReplay(Metrics metrics) {
+        return render(metrics);
+    }
+
+    /**
+     * 将一批条目写入请求体
+     */
+    protected abstract void writeBody(List<E> batch, OutputStream out) throws IOException;
+
+    /**
+     * 请求体类型
+     */
+    protected abstract String contentType();
+
+    /**
+     * 设置导出器特有的请求头，默认只设置配置中的附加请求头
+     */
+    protected void addHeaders(HttpURLConnection conn) {
+        Map<String, String> headers = httpConfig().getHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        writer = new Thread(this::writeLoop, "ZLMMonitor-" + getName() + "-Writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("{}导出器已启动", getName());
+    }
+
+    @Override
+    public void stop() throws Exception {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            // 写线程退出前会尝试发送剩余数据
+            writer.join(httpConfig().getConnectTimeout() + httpConfig().getReadTimeout());
+            writer = null;
+        }
+        log.info("{}导出器已停止: sent={}, dropped={}, spilled={}, failedBatches={}",
+            getName(), sentItems.get(), droppedItems.get(), spilledItems.get(), failedBatches.get());
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+    }
+
+    @Override
+    protected <T extends Metrics> void doExport(Class<T> type, T metrics) throws Exception {
+        enqueue(metrics);
+    }
+
+    @Override
+    public void exportSystem(SystemMetrics metrics) throws Exception {
+        enqueue(metrics);
+    }
+
+    @Override
+    public void exportStream(StreamMetrics metrics) throws Exception {
+        enqueue(metrics);
+    }
+
+    @Override
+    public void exportNetwork(NetworkMetrics metrics) throws Exception {
+        enqueue(metrics);
+    }
+
+    @Override
+    public void exportPerformance(PerformanceMetrics metrics) throws Exception {
+        enqueue(metrics);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * 同步发送一次采集，不经过缓冲区和重试
+     * 连接异常、429和5xx抛出异常由暂存区保留游标；其他4xx重发也不会成功，记为丢弃后正常返回
+     */
+    @Override
+    public void deliver(Metrics metrics) throws Exception {
+        E item = renderReplay(metrics);
+        if (item == null) {
+            return;
+        }
+        List<E> batch = new ArrayList<>(1);
+        batch.add(item);
+        int status;
+        try {
+            status = post(encode(batch));
+        } catch (IOException e) {
+            available = false;
+            throw e;
+        }
+        if (status / 100 == 2) {
+            sentItems.incrementAndGet();
+            available = true;
+            return;
+        }
+        if (status == 429 || status / 100 == 5) {
+            available = false;
+            throw new IOException(getName() + "写入失败: status=" + status);
+        }
+        log.error("{}拒绝写入: status={}, items=1", getName(), status);
+        droppedItems.incrementAndGet();
+    }
+
+    @Override
+    public void setOverflowHandler(Consumer<Metrics> handler) {
+        this.overflowHandler = handler;
+    }
+
+    /**
+     * 已发送条目数
+     */
+    protected long sentItems() {
+        return sentItems.get();
+    }
+
+    /**
+     * 因缓冲区溢出或写入失败转入暂存区的条目数
+     */
+    protected long spilledItems() {
+        return spilledItems.get();
+    }
+
+    /**
+     * 因缓冲区溢出或写入失败丢弃的条目数
+     */
+    protected long droppedItems() {
+        return droppedItems.get();
+    }
+
+    /**
+     * 缓冲区中待发送条目数
+     */
+    protected int pendingItems() {
+        synchronized (lock) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * 渲染并入队
+     */
+    private void enqueue(Metrics metrics) {
+        if (metrics == null) {
+            return;
+        }
+        E item = render(metrics);
+        if (item == null) {
+            return;
+        }
+        MonitorConfig.HttpExporterConfig config = httpConfig();
+        Consumer<Metrics> handler = overflowHandler;
+        synchronized (lock) {
+            if (buffer.size() < config.getBufferSize() || handler == null) {
+                if (buffer.size() >= config.getBufferSize()) {
+                    buffer.pollFirst();
+                    droppedItems.incrementAndGet();
+                }
+                buffer.addLast(new Pending<>(metrics, item));
+                if (buffer.size() >= config.getBatchSize()) {
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+        // 缓冲区已满，旧数据先发，新采集写入暂存区排在其后(不持锁写盘)
+        spill(handler, metrics);
+    }
+
+    /**
+     * 写线程主循环
+     */
+    private void writeLoop() {
+        while (running) {
+            List<Pending<E>> batch = takeBatch();
+            if (!batch.isEmpty()) {
+                send(batch, httpConfig().getMaxRetries());
+            }
+        }
+
+        // 停止时尽力发送剩余数据，不再重试
+        List<Pending<E>> rest;
+        while (!(rest = drain(httpConfig().getBatchSize())).isEmpty()) {
+            send(rest, 0);
+        }
+    }
+
+    /**
+     * 等待批次写满或刷新间隔到期后取出一批数据
+     */
+    private List<Pending<E>> takeBatch() {
+        MonitorConfig.HttpExporterConfig config = httpConfig();
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + config.getFlushInterval();
+            long remaining;
+            while (running && buffer.size() < config.getBatchSize()
+                && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return drain(config.getBatchSize());
+        }
+    }
+
+    private List<Pending<E>> drain(int max) {
+        synchronized (lock) {
+            int size = Math.min(max, buffer.size());
+            List<Pending<E>> batch = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                batch.add(buffer.pollFirst());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * 发送一批数据，失败时按指数退避重试，重试耗尽后转入暂存区或丢弃
+     */
+    private void send(List<Pending<E>> batch, int maxRetries) {
+        List<E> items = new ArrayList<>(batch.size());
+        for (Pending<E> pending : batch) {
+            items.add(pending.item);
+        }
+        byte[] body;
+        try {
+            body = encode(items);
+        } catch (IOException | RuntimeException e) {
+            log.error("编码{}数据失败", getName(), e);
+            droppedItems.addAndGet(batch.size());
+            return;
+        }
+
+        for (int attempt = 0; ; attempt++) {
+            int status;
+            try {
+                status = post(body);
+                if (status / 100 == 2) {
+                    sentItems.addAndGet(batch.size());
+                    available = true;
+                    return;
+                }
+                if (status != 429 && status / 100 != 5) {
+                    // 4xx表示数据或鉴权有误，重试无意义，也不转入暂存区
+                    log.error("{}拒绝写入: status={}, items={}", getName(), status, batch.size());
+                    failedBatches.incrementAndGet();
+                    droppedItems.addAndGet(batch.size());
+                    return;
+                }
+                log.warn("{}写入失败: status={}, attempt={}", getName(), status, attempt + 1);
+            } catch (IOException e) {
+                log.warn("{}写入异常: attempt={}, error={}", getName(), attempt + 1, e.getMessage());
+            }
+            available = false;
+
+            if (attempt >= maxRetries || !backoff(attempt)) {
+                break;
+            }
+        }
+        failedBatches.incrementAndGet();
+        Consumer<Metrics> handler = overflowHandler;
+        if (handler == null) {
+            droppedItems.addAndGet(batch.size());
+            return;
+        }
+        log.warn("{}重试耗尽，{}条数据转入暂存区", getName(), batch.size());
+        for (Pending<E> pending : batch) {
+            spill(handler, pending.metrics);
+        }
+    }
+
+    private void spill(Consumer<Metrics> handler, Metrics metrics) {
+        try {
+            handler.accept(metrics);
+            spilledItems.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.error("{}数据转入暂存区失败", getName(), e);
+            droppedItems.incrementAndGet();
+        }
+    }
+
+    /**
+     * 退避等待
+     *
+     * @return 是否继续重试，导出器停止时返回false
+     */
+    private boolean backoff(int attempt) {
+        MonitorConfig.HttpExporterConfig config = httpConfig();
+        long delay = Math.min(config.getMaxRetryBackoff(), config.getRetryBackoff() << Math.min(attempt, 20));
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + delay;
+            long remaining;
+            while (running && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return running;
+        }
+    }
+
+    private byte[] encode(List<E> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 128);
+        try (OutputStream out = httpConfig().isGzip() ? new GZIPOutputStream(bytes) : bytes) {
+            writeBody(batch, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private int post(byte[] body) throws IOException {
+        MonitorConfig.HttpExporterConfig config = httpConfig();
+        HttpURLConnection conn = (HttpURLConnection) new URL(config.getUrl()).openConnection();
+        conn.setConnectTimeout(config.getConnectTimeout());
+        conn.setReadTimeout(config.getReadTimeout());
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(body.length);
+        conn.setRequestProperty("Content-Type", contentType());
+        if (config.isGzip()) {
+            conn.setRequestProperty("Content-Encoding", "gzip");
+        }
+        addHeaders(conn);
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(body);
+        }
+        int status = conn.getResponseCode();
+        // 读完响应体以便复用连接
+        InputStream in = status >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        if (in != null) {
+            try (InputStream ignored = in) {
+                byte[] buf = new byte[512];
+                while (in.read(buf) >= 0) {
+                    // 丢弃
+                }
+            }
+        }
+        return status;
+    }
+
+    /**
+     * 缓冲区条目，保留原始采集以便失败时转入暂存区
+     */
+    private static final class Pending<E> {
+        private final Metrics metrics;
+        private final E item;
+
+        Pending(Metrics metrics, E item) {
+            this.metrics = metrics;
+            this.item = item;
+        }
+    }
+}
@@ -33,21 +33,34 @@ public class DefaultMetricsExporter extends AbstractMetricsExporter {
     public void exportSystem(SystemMetrics metrics) throws Exception {
         // 标准化的log日志输出日志信息
         log.info("导出系统指标: {}", metrics);
+        logEvents(metrics);
     }
 
     @Override
     public void exportNetwork(NetworkMetrics metrics) throws Exception {
         log.info("导出网络指标: {}", metrics);
+        logEvents(metrics);
     }
 
     @Override
     public void exportStream(StreamMetrics metrics) throws Exception {
         log.info("导出流媒体指标: {}", metrics);
+        logEvents(metrics);
     }
 
     @Override
     public void exportPerformance(PerformanceMetrics metrics) throws Exception {
         log.info("导出性能指标: {}", metrics);
+        logEvents(metrics);
+    }
+
+    /**
+     * 本次采集的流事件逐条输出到日志
+     */
+    private static void logEvents(Metrics metrics) {
+        for (StreamEvent event : metrics.getEvents()) {
+            log.info("导出流事件: {}", event);
+        }
     }
 
     @Override
@@ -0,0 +1,518 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.annotation.SPI;
+import com.aizuda.monitor.config.ConfigManager;
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Graphite导出器
+ * 以plaintext协议写入Carbon，每个地址保持一条非阻塞的长连接
+ *
+ * 指标路径: {前缀}.{类型}.{标识标签值...}.{指标名}，指标名即各 MetricNames 中的点分常量，
+ * 标识标签值中的非法字符(含点号)替换为下划线，避免产生多余的层级；
+ * 本次采集的流事件以 {前缀}.{类型}.{标识标签值...}.event.{vhost}.{app}.{stream}.{事件类型}.{value|expected|score}
+ * 三行写出，时间为事件的检测时间
+ *
+ * 每次采集的所有数据行先进入该地址的环形缓冲区，再通过一次聚集写(gathering write)整体发出；
+ * 连接断开或写不完的数据留在缓冲区等待下次发送，缓冲区满时丢弃最旧的数据；
+ * 设置了溢出处理器(启用暂存区)时，任一地址放不下本次采集即整次交给处理器写入暂存区，不再覆盖旧数据，
+ * 补发时同步写出并在全部地址写入内核后才确认，多地址部分成功时按至少一次重发
+ * 非阻塞连接超过 connectTimeout 仍未建立时按连接失败处理，重连间隔按指数退避并加随机抖动
+ */
+@SPI("graphite")
+public class GraphiteMetricsExporter extends AbstractMetricsExporter {
+    private static final Logger log = LoggerFactory.getLogger(GraphiteMetricsExporter.class);
+
+    /** 单次聚集写的最大缓冲区数，与常见系统的IOV_MAX一致 */
+    private static final int MAX_GATHER = 1024;
+
+    /** 导出器配置 */
+    private MonitorConfig.GraphiteConfig config;
+
+    /** Carbon地址 */
+    private final List<Endpoint> endpoints = new ArrayList<>();
+
+    /** 溢出处理器，未设置时缓冲区满丢弃最旧的行 */
+    private volatile Consumer<Metrics> overflowHandler;
+
+    /** 转入暂存区的采集次数 */
+    private final AtomicLong spilledTicks = new AtomicLong();
+
+    public GraphiteMetricsExporter() {
+        this(null);
+    }
+
+    /**
+     * 使用指定配置创建导出器，未指定时在初始化阶段从配置管理器读取
+     *
+     * @param config Graphite导出器配置
+     */
+    public GraphiteMetricsExporter(MonitorConfig.GraphiteConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getName() {
+        return "graphite";
+    }
+
+    @Override
+    public void configure(MonitorConfig.ExporterConfig exporterConfig) {
+        if (exporterConfig != null) {
+            this.config = exporterConfig.getGraphite();
+        }
+    }
+
+    @Override
+    public Object getSettings() {
+        return config;
+    }
+
+    @Override
+    public void init() throws Exception {
+        if (config == null) {
+            config = ConfigManager.getInstance().getConfig().getExporter().getGraphite();
+        }
+        if (config == null || config.getEndpoints() == null || config.getEndpoints().isEmpty()) {
+            throw new IllegalStateException("Graphite地址未配置");
+        }
+        synchronized (endpoints) {
+            endpoints.clear();
+            for (String address : config.getEndpoints()) {
+                endpoints.add(new Endpoint(address.trim(), config.getBufferSize()));
+            }
+        }
+        log.info("Graphite导出器初始化完成: endpoints={}", config.getEndpoints());
+    }
+
+    @Override
+    public void start() throws Exception {
+        // 提前发起连接，失败时在后续导出中按退避策略重连
+        for (Endpoint endpoint : snapshot()) {
+            endpoint.connect();
+        }
+        log.info("Graphite导出器已启动");
+    }
+
+    @Override
+    public void stop() throws Exception {
+        for (Endpoint endpoint : snapshot()) {
+            endpoint.close();
+        }
+        log.info("Graphite导出器已停止");
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+    }
+
+    @Override
+    protected <T extends Metrics> void doExport(Class<T> type, T metrics) throws Exception {
+        write(metrics);
+    }
+
+    @Override
+    public void exportSystem(SystemMetrics metrics) throws Exception {
+        write(metrics);
+    }
+
+    @Override
+    public void exportStream(StreamMetrics metrics) throws Exception {
+        write(metrics);
+    }
+
+    @Override
+    public void exportNetwork(NetworkMetrics metrics) throws Exception {
+        write(metrics);
+    }
+
+    @Override
+    public void exportPerformance(PerformanceMetrics metrics) throws Exception {
+        write(metrics);
+    }
+
+    /**
+     * 全部地址连接正常时可写
+     */
+    @Override
+    public boolean isAvailable() {
+        for (Endpoint endpoint : snapshot()) {
+            if (endpoint.failures > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void deliver(Metrics metrics) throws Exception {
+        List<ByteBuffer> lines = render(metrics);
+        if (lines.isEmpty()) {
+            return;
+        }
+        for (Endpoint endpoint : snapshot()) {
+            endpoint.deliver(lines);
+        }
+    }
+
+    @Override
+    public void setOverflowHandler(Consumer<Metrics> handler) {
+        this.overflowHandler = handler;
+    }
+
+    /**
+     * 因缓冲区放不下转入暂存区的采集次数
+     */
+    public long getSpilledTicks() {
+        return spilledTicks.get();
+    }
+
+    /**
+     * 因缓冲区溢出丢弃的行数
+     */
+    public long getDroppedLines() {
+        long dropped = 0;
+        for (Endpoint endpoint : snapshot()) {
+            dropped += endpoint.dropped;
+        }
+        return dropped;
+    }
+
+    /**
+     * 缓冲区中待发送的行数
+     */
+    public int getPendingLines() {
+        int pending = 0;
+        for (Endpoint endpoint : snapshot()) {
+            pending += endpoint.size;
+        }
+        return pending;
+    }
+
+    private List<Endpoint> snapshot() {
+        synchronized (endpoints) {
+            return new ArrayList<>(endpoints);
+        }
+    }
+
+    private void write(Metrics metrics) {
+        if (metrics == null) {
+            return;
+        }
+        List<ByteBuffer> lines = render(metrics);
+        if (lines.isEmpty()) {
+            return;
+        }
+        List<Endpoint> targets = snapshot();
+        Consumer<Metrics> handler = overflowHandler;
+        if (handler != null) {
+            for (Endpoint endpoint : targets) {
+                if (endpoint.free() < lines.size()) {
+                    handler.accept(metrics);
+                    spilledTicks.incrementAndGet();
+                    return;
+                }
+            }
+        }
+        for (Endpoint endpoint : targets) {
+            endpoint.write(lines);
+        }
+    }
+
+    /**
+     * 渲染一次采集的全部数据行
+     */
+    List<ByteBuffer> render(Metrics metrics) {
+        StringBuilder base = new StringBuilder(64);
+        base.append(config.getPrefix()).append('.').append(metrics.getType().name().toLowerCase());
+        if (config.getIdentityTags() != null) {
+            Map<String, String> tags = metrics.getTags();
+            for (String tag : config.getIdentityTags()) {
+                String value = tags.get(tag);
+                if (value != null && !value.isEmpty()) {
+                    base.append('.');
+                    sanitize(base, value, false);
+                }
+            }
+        }
+        base.append('.');
+
+        long timestamp = (metrics.getTimestamp() > 0 ? metrics.getTimestamp() : System.currentTimeMillis()) / 1000;
+        int baseLength = base.length();
+        List<ByteBuffer> lines = new ArrayList<>(metrics.getValues().size());
+        for (Map.Entry<String, Number> entry : metrics.getValues().entrySet()) {
+            Number value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            boolean integral = value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+            if (!integral && (Double.isNaN(value.doubleValue()) || Double.isInfinite(value.doubleValue()))) {
+                continue;
+            }
+            base.setLength(baseLength);
+            sanitize(base, entry.getKey(), true);
+            base.append(' ');
+            if (integral) {
+                base.append(value.longValue());
+            } else {
+                base.append(value.doubleValue());
+            }
+            base.append(' ').append(timestamp).append('\n');
+            lines.add(ByteBuffer.wrap(base.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+        for (StreamEvent event : metrics.getEvents()) {
+            base.setLength(baseLength);
+            base.append("event.");
+            sanitize(base, String.valueOf(event.getVhost()), false);
+            base.append('.');
+            sanitize(base, String.valueOf(event.getApp()), false);
+            base.append('.');
+            sanitize(base, String.valueOf(event.getStream()), false);
+            base.append('.').append(event.getType().name().toLowerCase()).append('.');
+            int eventLength = base.length();
+            long eventTime = event.getTimestamp() / 1000;
+            addEventLine(lines, base, eventLength, "value", event.getValue(), eventTime);
+            addEventLine(lines, base, eventLength, "expected", event.getExpected(), eventTime);
+            addEventLine(lines, base, eventLength, "score", event.getScore(), eventTime);
+        }
+        return lines;
+    }
+
+    private static void addEventLine(List<ByteBuffer> lines, StringBuilder base, int length, String field,
+                                     double value, long timestamp) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        base.setLength(length);
+        base.append(field).append(' ').append(value).append(' ').append(timestamp).append('\n');
+        lines.add(ByteBuffer.wrap(base.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 路径片段只保留字母、数字、下划线和中划线，指标名额外保留点号
+     */
+    private static void sanitize(StringBuilder sb, String value, boolean keepDots) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-' || (keepDots && c == '.')) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+    }
+
+    /**
+     * 单个Carbon地址: 一条非阻塞连接加一个有界环形缓冲区
+     */
+    private final class Endpoint {
+        private final String address;
+        private final ByteBuffer[] ring;
+        private final ByteBuffer[] gather;
+        private int head;
+        private volatile int size;
+
+        private SocketChannel channel;
+        private volatile int failures;
+        private long nextConnectAt;
+        /** 本次非阻塞连接的发起时间 */
+        private long connectStartedAt;
+        private volatile long dropped;
+
+        Endpoint(String address, int capacity) {
+            this.address = address;
+            this.ring = new ByteBuffer[capacity];
+            this.gather = new ByteBuffer[Math.min(capacity, MAX_GATHER)];
+        }
+
+        synchronized void write(List<ByteBuffer> lines) {
+            for (ByteBuffer line : lines) {
+                offer(line.duplicate());
+            }
+            if (connect()) {
+                flush();
+            }
+        }
+
+        /**
+         * 同步写出一次采集，未连接或缓冲区放不下时抛出异常且不留下本次数据；
+         * 写入中途断开时同样抛出异常，已入缓冲区的行随重连发出，暂存区重发可能产生重复
+         */
+        synchronized void deliver(List<ByteBuffer> lines) throws IOException {
+            if (!connect()) {
+                throw new IOException("Graphite未连接: " + address);
+            }
+            if (free() < lines.size()) {
+                flush();
+                if (free() < lines.size()) {
+                    throw new IOException("Graphite发送缓冲区已满: " + address);
+                }
+            }
+            for (ByteBuffer line : lines) {
+                offer(line.duplicate());
+            }
+            flush();
+            if (channel == null) {
+                throw new IOException("Graphite写入失败: " + address);
+            }
+        }
+
+        /**
+         * 缓冲区剩余行数
+         */
+        int free() {
+            return ring.length - size;
+        }
+
+        private void offer(ByteBuffer line) {
+            if (size == ring.length) {
+                dropOldest();
+            }
+            ring[(head + size) % ring.length] = line;
+            size++;
+        }
+
+        /**
+         * 丢弃最旧的一行，已写出一部分的行保留以免截断
+         */
+        private void dropOldest() {
+            if (ring[head].position() > 0 && size > 1) {
+                int second = (head + 1) % ring.length;
+                ring[second] = ring[head];
+            }
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+            dropped++;
+        }
+
+        /**
+         * 确保连接可用
+         *
+         * @return 连接是否已建立
+         */
+        synchronized boolean connect() {
+            if (channel != null) {
+                if (channel.isConnected()) {
+                    return true;
+                }
+                try {
+                    if (channel.isConnectionPending() && channel.finishConnect()) {
+                        onConnected();
+                        return true;
+                    }
+                    if (System.currentTimeMillis() - connectStartedAt >= config.getConnectTimeout()) {
+                        onFailure(new IOException("连接超时(" + config.getConnectTimeout() + "ms)"));
+                    }
+                    return false;
+                } catch (IOException e) {
+                    onFailure(e);
+                    return false;
+                }
+            }
+
+            if (System.currentTimeMillis() < nextConnectAt) {
+                return false;
+            }
+            try {
+                int i = address.lastIndexOf(':');
+                InetSocketAddress target = new InetSocketAddress(
+                    address.substring(0, i), Integer.parseInt(address.substring(i + 1)));
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                connectStartedAt = System.currentTimeMillis();
+                if (channel.connect(target)) {
+                    onConnected();
+                    return true;
+                }
+                return false;
+            } catch (IOException | RuntimeException e) {
+                onFailure(e);
+                return false;
+            }
+        }
+
+        private void onConnected() {
+            failures = 0;
+            // 旧连接上写出一半的行需要整行重发
+            if (size > 0) {
+                ring[head].rewind();
+            }
+            log.info("Graphite连接已建立: {}", address);
+        }
+
+        private void onFailure(Exception e) {
+            closeChannel();
+            failures++;
+            long backoff = Math.min(config.getMaxReconnectBackoff(),
+                config.getReconnectBackoff() << Math.min(failures - 1, 16));
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            nextConnectAt = System.currentTimeMillis() + delay;
+            log.warn("Graphite连接不可用: {}, {}ms后重连, error={}", address, delay, e.getMessage());
+        }
+
+        /**
+         * 以聚集写发送缓冲区中的数据，写不完的部分留待下次
+         */
+        private void flush() {
+            try {
+                while (size > 0) {
+                    int n = Math.min(size, gather.length);
+                    for (int i = 0; i < n; i++) {
+                        gather[i] = ring[(head + i) % ring.length];
+                    }
+                    long written = channel.write(gather, 0, n);
+                    Arrays.fill(gather, 0, n, null);
+                    while (size > 0 && !ring[head].hasRemaining()) {
+                        ring[head] = null;
+                        head = (head + 1) % ring.length;
+                        size--;
+                    }
+                    if (written == 0) {
+                        // 发送缓冲区已满
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                onFailure(e);
+            }
+        }
+
+        synchronized void close() {
+            closeChannel();
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("关闭Graphite连接失败: {}", address, e);
+                }
+                channel = null;
+            }
+        }
+    }
+}
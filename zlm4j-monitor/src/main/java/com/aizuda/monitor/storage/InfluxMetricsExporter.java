@@ -0,0 +1,264 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.annotation.SPI;
+import com.aizuda.monitor.config.ConfigManager;
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.Metrics;
+import com.aizuda.monitor.metrics.StreamEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InfluxDB行协议导出器
+ * 将每次采集的指标渲染为一行行协议数据，写入有界内存缓冲区，
+ * 由独立写线程按批次gzip压缩后POST到InfluxDB/VictoriaMetrics
+ *
+ * 行格式: {前缀}{类型},{标签} {指标}={值},... {采集时间(纳秒)}
+ * 本次采集的流事件跟在同一条目中，每个事件一行:
+ * {前缀}event,{标签},type=..,vhost=..,app=..,stream=..[,schema=..][,track=..][,metric=..] value=..,expected=..,score=.. {检测时间(纳秒)}
+ *
+ * 缓冲区满时丢弃最旧的数据行，写入失败(连接异常、429、5xx)按指数退避重试，
+ * 采集线程只负责渲染和入队，不会被网络阻塞
+ */
+@SPI("influx")
+public class InfluxMetricsExporter extends AbstractHttpMetricsExporter<String> {
+    private static final Logger log = LoggerFactory.getLogger(InfluxMetricsExporter.class);
+
+    /** 毫秒转纳秒 */
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** 导出器配置 */
+    private MonitorConfig.InfluxConfig config;
+
+    public InfluxMetricsExporter() {
+        this(null);
+    }
+
+    /**
+     * 使用指定配置创建导出器，未指定时在初始化阶段从配置管理器读取
+     *
+     * @param config InfluxDB导出器配置
+     */
+    public InfluxMetricsExporter(MonitorConfig.InfluxConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getName() {
+        return "influx";
+    }
+
+    @Override
+    public void configure(MonitorConfig.ExporterConfig exporterConfig) {
+        if (exporterConfig != null) {
+            this.config = exporterConfig.getInflux();
+        }
+    }
+
+    @Override
+    public Object getSettings() {
+        return config;
+    }
+
+    @Override
+    public void init() throws Exception {
+        if (config == null) {
+            config = ConfigManager.getInstance().getConfig().getExporter().getInflux();
+        }
+        if (config == null || config.getUrl() == null || config.getUrl().isEmpty()) {
+            throw new IllegalStateException("InfluxDB写入地址未配置");
+        }
+        log.info("InfluxDB导出器初始化完成: url={}, batchSize={}, bufferSize={}",
+            config.getUrl(), config.getBatchSize(), config.getBufferSize());
+    }
+
+    /**
+     * 已发送行数
+     */
+    public long getSentLines() {
+        return sentItems();
+    }
+
+    /**
+     * 因缓冲区溢出或写入失败转入暂存区的行数
+     */
+    public long getSpilledLines() {
+        return spilledItems();
+    }
+
+    /**
+     * 因缓冲区溢出或写入失败丢弃的行数
+     */
+    public long getDroppedLines() {
+        return droppedItems();
+    }
+
+    /**
+     * 缓冲区中待发送行数
+     */
+    public int getPendingLines() {
+        return pendingItems();
+    }
+
+    @Override
+    protected MonitorConfig.HttpExporterConfig httpConfig() {
+        return config;
+    }
+
+    @Override
+    protected String contentType() {
+        return "text/plain; charset=utf-8";
+    }
+
+    @Override
+    protected void addHeaders(HttpURLConnection conn) {
+        super.addHeaders(conn);
+        if (config.getToken() != null && !config.getToken().isEmpty()) {
+            conn.setRequestProperty("Authorization", "Token " + config.getToken());
+        }
+    }
+
+    @Override
+    protected void writeBody(List<String> batch, OutputStream out) throws IOException {
+        for (String line : batch) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * 将指标渲染为一行行协议数据
+     *
+     * @return 行协议数据，没有可写字段时返回null
+     */
+    @Override
+    protected String render(Metrics metrics) {
+        StringBuilder sb = new StringBuilder(256);
+        escape(sb, config.getMeasurementPrefix() + metrics.getType().name().toLowerCase(), false);
+
+        // 标签: 全局标签 + 指标标签
+        if (config.getTags() != null) {
+            appendTags(sb, config.getTags());
+        }
+        appendTags(sb, metrics.getTags());
+
+        // 字段
+        int fields = 0;
+        for (Map.Entry<String, Number> entry : metrics.getValues().entrySet()) {
+            Number value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            boolean integral = value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+            if (!integral && (Double.isNaN(value.doubleValue()) || Double.isInfinite(value.doubleValue()))) {
+                continue;
+            }
+            sb.append(fields == 0 ? ' ' : ',');
+            escape(sb, entry.getKey(), true);
+            sb.append('=');
+            if (integral) {
+                sb.append(value.longValue()).append('i');
+            } else {
+                sb.append(value.doubleValue());
+            }
+            fields++;
+        }
+        if (fields == 0) {
+            sb.setLength(0);
+        } else {
+            // 时间戳(纳秒)，使用采集时刻
+            long timestamp = metrics.getTimestamp() > 0 ? metrics.getTimestamp() : System.currentTimeMillis();
+            sb.append(' ').append(timestamp * NANOS_PER_MILLI);
+        }
+
+        for (StreamEvent event : metrics.getEvents()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            appendEvent(sb, metrics, event);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * 渲染一行流事件，与所属采集共用全局标签和指标标签
+     */
+    private void appendEvent(StringBuilder sb, Metrics metrics, StreamEvent event) {
+        escape(sb, config.getMeasurementPrefix() + "event", false);
+        if (config.getTags() != null) {
+            appendTags(sb, config.getTags());
+        }
+        appendTags(sb, metrics.getTags());
+        appendTag(sb, "type", event.getType().name());
+        appendTag(sb, "schema", event.getSchema());
+        appendTag(sb, "vhost", event.getVhost());
+        appendTag(sb, "app", event.getApp());
+        appendTag(sb, "stream", event.getStream());
+        if (event.getTrack() >= 0) {
+            appendTag(sb, "track", String.valueOf(event.getTrack()));
+        }
+        appendTag(sb, "metric", event.getMetric());
+        sb.append(" value=").append(finite(event.getValue()))
+            .append(",expected=").append(finite(event.getExpected()))
+            .append(",score=").append(finite(event.getScore()))
+            .append(' ').append(event.getTimestamp() * NANOS_PER_MILLI);
+    }
+
+    private static double finite(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? 0 : value;
+    }
+
+    private static void appendTags(StringBuilder sb, Map<String, String> tags) {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            appendTag(sb, tag.getKey(), tag.getValue());
+        }
+    }
+
+    private static void appendTag(StringBuilder sb, String key, String value) {
+        // 行协议不允许空标签值
+        if (key == null || key.isEmpty() || value == null || value.isEmpty()) {
+            return;
+        }
+        sb.append(',');
+        escape(sb, key, true);
+        sb.append('=');
+        escape(sb, value, true);
+    }
+
+    /**
+     * 行协议转义: 度量名转义逗号和空格，标签键值与字段名还需转义等号
+     */
+    private static void escape(StringBuilder sb, String value, boolean escapeEquals) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case ',':
+                case ' ':
+                    sb.append('\\').append(c);
+                    break;
+                case '=':
+                    if (escapeEquals) {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                    break;
+                case '\n':
+                case '\r':
+                    // 换行会截断数据行，替换为转义空格
+                    sb.append("\\ ");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+}
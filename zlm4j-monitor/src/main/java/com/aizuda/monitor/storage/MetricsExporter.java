@@ -1,7 +1,11 @@
 package com.aizuda.monitor.storage;
 
+import com.aizuda.monitor.config.MonitorConfig;
 import com.aizuda.monitor.metrics.*;
 import com.aizuda.monitor.annotation.SPI;
+
+import java.util.function.Consumer;
+
 /**
  * 指标导出器接口
  * 定义了所有导出器必须实现的基本操作
@@ -19,6 +23,25 @@ public interface MetricsExporter extends AutoCloseable {
      */
     String getName();
     
+    /**
+     * 设置导出器配置，在 {@link #init()} 之前调用
+     * 未设置时 init() 从配置管理器读取；配置热更新时按新配置创建的导出器实例通过该方法取得配置
+     *
+     * @param config 导出器配置
+     */
+    default void configure(MonitorConfig.ExporterConfig config) {
+    }
+    
+    /**
+     * 当前使用的配置段
+     * 配置热更新时与新配置中的同一配置段比较，有变化才按新配置重建导出器
+     *
+     * @return 配置段，没有专属配置时返回null
+     */
+    default Object getSettings() {
+        return null;
+    }
+    
     /**
      * 初始化导出器
      */
@@ -49,6 +72,45 @@ public interface MetricsExporter extends AutoCloseable {
      */
     void exportPerformance(PerformanceMetrics metrics) throws Exception;
     
+    /**
+     * 远端当前是否可写
+     * 不可写时采集管道将数据写入本地暂存区，恢复后再按序补发
+     *
+     * @return 是否可写，默认始终可写
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+    
+    /**
+     * 同步投递一次采集，远端确认接收后返回，失败时抛出异常
+     * 暂存区补发使用该方法，投递成功后才前移游标；默认按类型调用对应的导出方法
+     */
+    default void deliver(Metrics metrics) throws Exception {
+        switch (metrics.getType()) {
+            case SYSTEM:
+                exportSystem((SystemMetrics) metrics);
+                break;
+            case STREAM:
+                exportStream((StreamMetrics) metrics);
+                break;
+            case NETWORK:
+                exportNetwork((NetworkMetrics) metrics);
+                break;
+            default:
+                exportPerformance((PerformanceMetrics) metrics);
+                break;
+        }
+    }
+    
+    /**
+     * 设置溢出处理器
+     * 启用暂存区时，导出器内部缓冲区放不下或写入最终失败的采集交给该处理器写入暂存区，而不是丢弃；
+     * 未设置时导出器按自身策略丢弃
+     */
+    default void setOverflowHandler(Consumer<Metrics> handler) {
+    }
+    
     /**
      * 启动导出器
      */
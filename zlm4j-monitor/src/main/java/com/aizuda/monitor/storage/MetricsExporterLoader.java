@@ -195,10 +195,37 @@ public class MetricsExporterLoader {
         return new DefaultMetricsExporter();
     }
     
+    /**
+     * 创建指定名称的导出器新实例
+     * 与 {@link #getExporter(String)} 返回的共享实例不同，每次调用都创建新对象，
+     * 供监控按各自的配置初始化，关闭后不会被再次取到
+     */
+    public static MetricsExporter newExporter(String name) throws Exception {
+        // 优先使用 META-INF/zlmmonitor 中注册的导出器
+        Class<? extends MetricsExporter> exporterClass = EXPORTER_CLASSES.get(name);
+        if (exporterClass != null) {
+            return exporterClass.newInstance();
+        }
+        
+        // 使用SPI机制加载导出器，ServiceLoader每次遍历都创建新实例
+        for (MetricsExporter exporter : ServiceLoader.load(MetricsExporter.class)) {
+            if (exporter.getName().equals(name)) {
+                return exporter;
+            }
+        }
+        throw new IllegalArgumentException("未找到导出器: " + name);
+    }
+    
     /**
      * 获取指定名称的导出器
      */
     public static MetricsExporter getExporter(String name) throws Exception {
+        // 优先使用 META-INF/zlmmonitor 中注册的导出器
+        MetricsExporter registered = EXPORTER_INSTANCES.get(name);
+        if (registered != null) {
+            return registered;
+        }
+        
         // 使用SPI机制加载导出器
         ServiceLoader<MetricsExporter> loader = ServiceLoader.load(MetricsExporter.class);
 
@@ -0,0 +1,330 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 导出器本地暂存区
+ * 位于采集管道和网络导出器之间的预写日志，远端不可写或导出失败时，
+ * 采集数据按导出器写入各自的暂存通道，由补发线程在远端恢复后按采集顺序限速补发
+ *
+ * 某个导出器存在积压时，新采集的数据也进入暂存区排队，保证远端收到的数据按时间有序；
+ * 补发通过 {@link MetricsExporter#deliver(Metrics)} 同步投递，远端确认后才前移游标，
+ * 远端不可写期间每隔 probeInterval 试投一条最旧的记录以触发重连，补发语义为至少一次
+ *
+ * 写入只追加到页缓存，补发线程每秒刷盘一次；
+ * 全部通道合计超过 maxDiskSize 时，删除积压最多的通道的最旧分段
+ */
+public class MetricsSpool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsSpool.class);
+
+    /** 补发线程轮询间隔(毫秒)，令牌按时间累积，不影响补发速率 */
+    private static final long POLL_INTERVAL = 20;
+    /** 刷盘间隔(毫秒) */
+    private static final long FORCE_INTERVAL = 1000;
+
+    private final MonitorConfig.SpoolConfig config;
+    private final Path directory;
+    private final long segmentSize;
+    private final long maxDiskSize;
+
+    /** 各导出器的暂存通道 */
+    private final Map<String, SpoolLane> lanes = new ConcurrentHashMap<>();
+    /** 各通道的补发状态，仅由补发线程访问 */
+    private final Map<String, ReplayState> states = new ConcurrentHashMap<>();
+
+    private Function<String, MetricsExporter> resolver;
+    private Thread replayer;
+    private volatile boolean running = false;
+
+    public MetricsSpool(MonitorConfig.SpoolConfig config) throws IOException {
+        this.config = config;
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentSize = config.getSegmentSize() * 1024L * 1024L;
+        this.maxDiskSize = config.getMaxDiskSize() * 1024L * 1024L;
+        Files.createDirectories(directory);
+        List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    existing.add(path);
+                }
+            }
+        }
+        for (Path path : existing) {
+            String name = path.getFileName().toString();
+            lanes.put(name, new SpoolLane(name, path, segmentSize));
+        }
+        log.info("导出暂存区初始化完成: directory={}, lanes={}, backlog={}",
+            directory.toAbsolutePath(), lanes.size(), getBacklog());
+    }
+
+    /**
+     * 启动补发线程
+     *
+     * @param resolver 按名称查找当前生效的导出器，导出器已移除时返回null，对应积压保留到其重新启用
+     */
+    public synchronized void start(Function<String, MetricsExporter> resolver) {
+        if (running) {
+            return;
+        }
+        this.resolver = resolver;
+        running = true;
+        replayer = new Thread(this::replayLoop, "ZLMMonitor-Spool-Replay");
+        replayer.setDaemon(true);
+        replayer.start();
+        log.info("导出暂存区补发线程已启动: replayRate={}/s", config.getReplayRate());
+    }
+
+    /**
+     * 写入一次采集
+     *
+     * @param exporter 导出器名称
+     * @return 是否写入成功
+     */
+    public boolean append(String exporter, Metrics metrics) {
+        if (metrics == null) {
+            return false;
+        }
+        try {
+            lane(exporter).append(SpoolCodec.encode(metrics));
+            enforceDiskLimit();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("写入导出暂存区失败: exporter={}", exporter, e);
+            return false;
+        }
+    }
+
+    /**
+     * 导出器是否存在待补发数据
+     */
+    public boolean hasBacklog(String exporter) {
+        SpoolLane lane = lanes.get(exporter);
+        return lane != null && lane.backlog() > 0;
+    }
+
+    /**
+     * 全部导出器待补发的采集次数
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        for (SpoolLane lane : lanes.values()) {
+            backlog += lane.backlog();
+        }
+        return backlog;
+    }
+
+    /**
+     * 指定导出器待补发的采集次数
+     */
+    public long getBacklog(String exporter) {
+        SpoolLane lane = lanes.get(exporter);
+        return lane == null ? 0 : lane.backlog();
+    }
+
+    /**
+     * 暂存文件占用的磁盘空间(字节)
+     */
+    public long getDiskUsage() {
+        long size = 0;
+        for (SpoolLane lane : lanes.values()) {
+            size += lane.diskUsage();
+        }
+        return size;
+    }
+
+    /**
+     * 因超过磁盘上限或记录损坏丢弃的采集次数
+     */
+    public long getDroppedRecords() {
+        long dropped = 0;
+        for (SpoolLane lane : lanes.values()) {
+            dropped += lane.dropped();
+        }
+        return dropped;
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (this) {
+            running = false;
+        }
+        if (replayer != null) {
+            replayer.interrupt();
+            replayer.join(5000);
+            replayer = null;
+        }
+        for (SpoolLane lane : lanes.values()) {
+            try {
+                lane.close();
+            } catch (IOException e) {
+                log.error("关闭暂存通道失败: {}", lane.name(), e);
+            }
+        }
+        log.info("导出暂存区已关闭: backlog={}, dropped={}", getBacklog(), getDroppedRecords());
+    }
+
+    private SpoolLane lane(String exporter) throws IOException {
+        SpoolLane lane = lanes.get(exporter);
+        if (lane != null) {
+            return lane;
+        }
+        synchronized (lanes) {
+            lane = lanes.get(exporter);
+            if (lane == null) {
+                lane = new SpoolLane(exporter, directory.resolve(exporter), segmentSize);
+                lanes.put(exporter, lane);
+            }
+            return lane;
+        }
+    }
+
+    /**
+     * 超过磁盘上限时删除积压最多的通道的最旧分段
+     */
+    private void enforceDiskLimit() throws IOException {
+        long usage = getDiskUsage();
+        while (usage > maxDiskSize) {
+            SpoolLane largest = null;
+            long largestUsage = 0;
+            for (SpoolLane lane : lanes.values()) {
+                long laneUsage = lane.diskUsage();
+                if (laneUsage > largestUsage) {
+                    largest = lane;
+                    largestUsage = laneUsage;
+                }
+            }
+            long freed = largest == null ? 0 : largest.dropOldest();
+            if (freed == 0) {
+                return;
+            }
+            usage -= freed;
+        }
+    }
+
+    /**
+     * 补发线程主循环
+     */
+    private void replayLoop() {
+        long lastForce = System.currentTimeMillis();
+        while (running) {
+            for (SpoolLane lane : lanes.values()) {
+                try {
+                    replay(lane);
+                } catch (IOException | RuntimeException e) {
+                    log.error("补发暂存数据失败: lane={}", lane.name(), e);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastForce >= FORCE_INTERVAL) {
+                lastForce = now;
+                for (SpoolLane lane : lanes.values()) {
+                    try {
+                        lane.force();
+                    } catch (IOException e) {
+                        log.warn("暂存区刷盘失败: lane={}", lane.name(), e);
+                    }
+                }
+            }
+
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * 按令牌桶补发一个通道的积压数据，令牌最多累积1秒
+     */
+    private void replay(SpoolLane lane) throws IOException {
+        if (lane.backlog() == 0) {
+            return;
+        }
+        MetricsExporter exporter = resolver.apply(lane.name());
+        if (exporter == null) {
+            return;
+        }
+        ReplayState state = states.computeIfAbsent(lane.name(), k -> new ReplayState());
+        long now = System.currentTimeMillis();
+        if (now - state.lastFailure < config.getProbeInterval()) {
+            // 上次补发失败，等待一个探测间隔再重试
+            return;
+        }
+
+        if (!exporter.isAvailable()) {
+            // 远端不可写，定期试发最旧的一条以触发重连
+            if (now - state.lastProbe >= config.getProbeInterval()) {
+                state.lastProbe = now;
+                byte[] payload = lane.peek();
+                if (payload != null) {
+                    try {
+                        exporter.deliver(SpoolCodec.decode(payload));
+                        lane.commit();
+                    } catch (Exception e) {
+                        log.debug("暂存区探测失败: exporter={}, error={}", lane.name(), e.getMessage());
+                    }
+                }
+            }
+            return;
+        }
+
+        int rate = config.getReplayRate();
+        state.tokens = Math.min(rate, state.tokens + (now - state.lastRefill) * rate / 1000.0);
+        state.lastRefill = now;
+        while (running && state.tokens >= 1) {
+            byte[] payload = lane.peek();
+            if (payload == null) {
+                return;
+            }
+            Metrics metrics;
+            try {
+                metrics = SpoolCodec.decode(payload);
+            } catch (IOException | RuntimeException e) {
+                log.warn("丢弃无法解码的暂存记录: lane={}, error={}", lane.name(), e.getMessage());
+                lane.commit();
+                continue;
+            }
+            try {
+                exporter.deliver(metrics);
+            } catch (Exception e) {
+                // 保留游标，等待下一次探测
+                state.lastFailure = now;
+                log.warn("补发暂存数据失败，等待远端恢复: exporter={}, error={}", lane.name(), e.getMessage());
+                return;
+            }
+            lane.commit();
+            state.tokens -= 1;
+            if (!exporter.isAvailable()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 单个通道的补发状态
+     */
+    private static final class ReplayState {
+        private double tokens;
+        private long lastRefill = System.currentTimeMillis();
+        private long lastProbe;
+        private long lastFailure;
+    }
+}
@@ -0,0 +1,581 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.annotation.SPI;
+import com.aizuda.monitor.config.ConfigManager;
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.*;
+import com.aizuda.monitor.util.QuantileSketch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OTLP导出器
+ * 以OTLP/HTTP protobuf格式(ExportMetricsServiceRequest)写入OpenTelemetry Collector
+ *
+ * 每次采集编码为一组Metric消息后入队，写线程按批次拼接到同一个ResourceMetrics下发送；
+ * 节点身份(service.name、host.name、process.pid及配置的资源属性)作为Resource属性，
+ * 指标标签作为数据点属性
+ *
+ * 累计计数类指标(字节数、包数、帧数、任务总数等)导出为单调Sum，其余导出为Gauge；
+ * Sum的时间性可配置为cumulative或delta，delta模式下由导出器按序列计算差值，
+ * 序列首个数据点只作为基准不导出，计数器回退时视为重启，以当前值作为差值；
+ * 暂存区补发的采集使用单独的基准，不影响实时采集的差值
+ *
+ * 分布指标在 .p50/.p95 等Gauge之外，另以 {指标名}.distribution 导出为delta时间性的ExponentialHistogram，
+ * 每次采集一个数据点，接收端可跨节点、跨时间合并后计算任意分位数
+ *
+ * 本次采集的流事件导出为 {类型}.event.value、.expected、.score 三个Gauge，时间为事件的检测时间，
+ * 事件类型、vhost、app、stream及可选的schema、track、metric作为数据点属性
+ */
+@SPI("otlp")
+public class OtlpMetricsExporter extends AbstractHttpMetricsExporter<byte[]> {
+    private static final Logger log = LoggerFactory.getLogger(OtlpMetricsExporter.class);
+
+    /** 毫秒转纳秒 */
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /** 分布指标导出为ExponentialHistogram时的名称后缀，避免与同名Gauge冲突 */
+    private static final String DISTRIBUTION_SUFFIX = ".distribution";
+
+    /** ExponentialHistogram的scale取值范围 */
+    private static final int MIN_SCALE = -10;
+    private static final int MAX_SCALE = 20;
+
+    /** AggregationTemporality */
+    private static final int TEMPORALITY_DELTA = 1;
+    private static final int TEMPORALITY_CUMULATIVE = 2;
+
+    /**
+     * 导出为单调Sum的累计指标
+     * 只包含整机或全部流之和的计数；video.key_frames、track.frames、publish.total_count 等
+     * 按轨道或按流逐个覆盖、最后写入者生效的值不单调，导出为Gauge
+     */
+    private static final Set<String> MONOTONIC_COUNTERS = new HashSet<>(Arrays.asList(
+        SystemMetrics.MetricNames.DISK_READ_BYTES,
+        SystemMetrics.MetricNames.DISK_WRITE_BYTES,
+        SystemMetrics.MetricNames.NET_RX_BYTES,
+        SystemMetrics.MetricNames.NET_TX_BYTES,
+        SystemMetrics.MetricNames.NET_RX_PACKETS,
+        SystemMetrics.MetricNames.NET_TX_PACKETS,
+        SystemMetrics.MetricNames.NET_RX_ERRORS,
+        SystemMetrics.MetricNames.NET_TX_ERRORS,
+        NetworkMetrics.MetricNames.BYTES_IN,
+        NetworkMetrics.MetricNames.BYTES_OUT,
+        NetworkMetrics.MetricNames.PACKETS_IN,
+        NetworkMetrics.MetricNames.PACKETS_OUT,
+        NetworkMetrics.MetricNames.PACKETS_LOST,
+        NetworkMetrics.MetricNames.FLOW_PUBLISH_BYTES,
+        NetworkMetrics.MetricNames.FLOW_PLAY_BYTES,
+        NetworkMetrics.MetricNames.FLOW_PUBLISH_SESSIONS,
+        NetworkMetrics.MetricNames.FLOW_PLAY_SESSIONS,
+        NetworkMetrics.MetricNames.FLOW_PUBLISH_SECONDS,
+        NetworkMetrics.MetricNames.FLOW_PLAY_SECONDS,
+        NetworkMetrics.MetricNames.UDP_BYTES_IN,
+        NetworkMetrics.MetricNames.UDP_BYTES_OUT,
+        NetworkMetrics.MetricNames.UDP_PACKETS_LOST,
+        NetworkMetrics.MetricNames.UDP_TOTAL_PACKETS,
+        NetworkMetrics.MetricNames.RTP_PACKETS,
+        NetworkMetrics.MetricNames.RTCP_PACKETS,
+        NetworkMetrics.MetricNames.SRTP_PACKETS,
+        PerformanceMetrics.MetricNames.THREAD_POOL_PREFIX + "totalTasks",
+        PerformanceMetrics.MetricNames.THREAD_POOL_PREFIX + "completedTasks",
+        PerformanceMetrics.MetricNames.THREAD_POOL_PREFIX + "rejectedTasks",
+        PerformanceMetrics.MetricNames.THREAD_POOL_PREFIX + "failedTasks",
+        PerformanceMetrics.MetricNames.SPOOL_DROPPED,
+        PerformanceMetrics.MetricNames.STORE_DROPPED,
+        PerformanceMetrics.MetricNames.STORE_EVICTED
+    ));
+
+    /** 导出器配置 */
+    private MonitorConfig.OtlpConfig config;
+
+    /** 预编码的Resource和InstrumentationScope */
+    private byte[] resource;
+    private byte[] scope;
+
+    /** 累计模式的起始时间(纳秒)，也是各分布序列首个数据点的起始时间 */
+    private long startTimeNanos;
+
+    /** delta模式下序列超过该时长没有新数据点时清理其基准 */
+    private static final long DELTA_STALE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    /** 补发基准超过该数量时清理 */
+    private static final int MAX_REPLAY_BASELINES = 100000;
+
+    /** delta基准的清理间隔 */
+    private static final long DELTA_SWEEP_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /** delta模式下各序列的上一个值，[值或double位, 时间(纳秒)]；分布序列只记录上一个数据点的时间 */
+    private final Map<String, long[]> previous = new ConcurrentHashMap<>();
+
+    /**
+     * 暂存区补发使用的delta基准
+     * 补发的是更早的采集，与实时采集分开计算差值，不会把实时基准拉回旧值；
+     * 补发按暂存顺序进行，每个序列补发的首个数据点只作为基准
+     */
+    private final Map<String, long[]> replayPrevious = new ConcurrentHashMap<>();
+
+    /** 上次清理delta基准的时间(纳秒) */
+    private volatile long lastSweepNanos;
+
+    public OtlpMetricsExporter() {
+        this(null);
+    }
+
+    /**
+     * 使用指定配置创建导出器，未指定时在初始化阶段从配置管理器读取
+     *
+     * @param config OTLP导出器配置
+     */
+    public OtlpMetricsExporter(MonitorConfig.OtlpConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public String getName() {
+        return "otlp";
+    }
+
+    @Override
+    public void configure(MonitorConfig.ExporterConfig exporterConfig) {
+        if (exporterConfig != null) {
+            this.config = exporterConfig.getOtlp();
+        }
+    }
+
+    @Override
+    public Object getSettings() {
+        return config;
+    }
+
+    @Override
+    public void init() throws Exception {
+        if (config == null) {
+            config = ConfigManager.getInstance().getConfig().getExporter().getOtlp();
+        }
+        if (config == null || config.getUrl() == null || config.getUrl().isEmpty()) {
+            throw new IllegalStateException("OTLP写入地址未配置");
+        }
+        startTimeNanos = System.currentTimeMillis() * NANOS_PER_MILLI;
+        previous.clear();
+        replayPrevious.clear();
+        lastSweepNanos = startTimeNanos;
+        resource = encodeResource();
+        scope = new ProtobufWriter(64)
+            .string(1, "zlm4j-monitor")
+            .toByteArray();
+        log.info("OTLP导出器初始化完成: url={}, temporality={}, batchSize={}",
+            config.getUrl(), config.getTemporality(), config.getBatchSize());
+    }
+
+    /**
+     * 已发送的采集次数
+     */
+    public long getSentTicks() {
+        return sentItems();
+    }
+
+    /**
+     * 因缓冲区溢出或写入失败转入暂存区的采集次数
+     */
+    public long getSpilledTicks() {
+        return spilledItems();
+    }
+
+    /**
+     * 因缓冲区溢出或写入失败丢弃的采集次数
+     */
+    public long getDroppedTicks() {
+        return droppedItems();
+    }
+
+    /**
+     * 缓冲区中待发送的采集次数
+     */
+    public int getPendingTicks() {
+        return pendingItems();
+    }
+
+    @Override
+    protected MonitorConfig.HttpExporterConfig httpConfig() {
+        return config;
+    }
+
+    @Override
+    protected String contentType() {
+        return "application/x-protobuf";
+    }
+
+    /**
+     * 将一次采集编码为ScopeMetrics.metrics(字段2)的序列
+     */
+    @Override
+    protected byte[] render(Metrics metrics) {
+        return render(metrics, previous);
+    }
+
+    /**
+     * 补发的采集使用单独的delta基准
+     */
+    @Override
+    protected byte[] renderReplay(Metrics metrics) {
+        return render(metrics, replayPrevious);
+    }
+
+    private byte[] render(Metrics metrics, Map<String, long[]> baselines) {
+        long timeNanos = (metrics.getTimestamp() > 0 ? metrics.getTimestamp() : System.currentTimeMillis())
+            * NANOS_PER_MILLI;
+        String namePrefix = config.getPrefix() + "." + metrics.getType().name().toLowerCase() + ".";
+        Map<String, String> tags = metrics.getTags();
+        String seriesPrefix = namePrefix + tags + "|";
+        boolean delta = config.isDelta();
+
+        ProtobufWriter out = new ProtobufWriter(1024);
+        ProtobufWriter metric = new ProtobufWriter();
+        ProtobufWriter data = new ProtobufWriter();
+        ProtobufWriter point = new ProtobufWriter();
+        int count = 0;
+        for (Map.Entry<String, Number> entry : metrics.getValues().entrySet()) {
+            Number value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            boolean integral = value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte;
+            if (!integral && (Double.isNaN(value.doubleValue()) || Double.isInfinite(value.doubleValue()))) {
+                continue;
+            }
+            boolean sum = MONOTONIC_COUNTERS.contains(entry.getKey());
+
+            long start = 0;
+            if (sum && delta) {
+                long bits = integral ? value.longValue() : Double.doubleToRawLongBits(value.doubleValue());
+                // 同一序列可能被多个写线程同时渲染，读取旧基准和写入新基准需在同一次compute中完成
+                long[] prev = new long[2];
+                baselines.compute(seriesPrefix + entry.getKey(), (key, base) -> {
+                    if (base != null) {
+                        prev[0] = base[0];
+                        prev[1] = base[1];
+                        if (base[1] >= timeNanos) {
+                            // 不晚于基准的数据点无法计算差值，基准保持不变
+                            return base;
+                        }
+                    }
+                    return new long[]{bits, timeNanos};
+                });
+                if (prev[1] == 0 || prev[1] >= timeNanos) {
+                    // 首个数据点只作为基准
+                    continue;
+                }
+                start = prev[1];
+                if (integral) {
+                    long diff = value.longValue() - prev[0];
+                    value = diff >= 0 ? diff : value.longValue();
+                } else {
+                    double diff = value.doubleValue() - Double.longBitsToDouble(prev[0]);
+                    value = diff >= 0 ? diff : value.doubleValue();
+                }
+            } else if (sum && timeNanos > startTimeNanos) {
+                // 早于本次启动的补发采集不知道计数起点，不写起始时间
+                start = startTimeNanos;
+            }
+
+            // NumberDataPoint
+            point.reset();
+            writeAttributes(point, 7, tags);
+            if (start > 0) {
+                point.fixed64(2, start);
+            }
+            point.fixed64(3, timeNanos);
+            if (integral) {
+                point.fixed64(6, value.longValue());
+            } else {
+                point.doubleValue(4, value.doubleValue());
+            }
+
+            // Gauge(字段5) 或 Sum(字段7)
+            data.reset();
+            data.message(1, point);
+            if (sum) {
+                data.varint(2, delta ? TEMPORALITY_DELTA : TEMPORALITY_CUMULATIVE);
+                data.varint(3, 1);
+            }
+
+            metric.reset();
+            metric.string(1, namePrefix + entry.getKey());
+            metric.message(sum ? 7 : 5, data);
+            out.message(2, metric);
+            count++;
+        }
+
+        // 分布指标: ExponentialHistogram(字段10)
+        ProtobufWriter buckets = null;
+        for (Map.Entry<String, QuantileSketch> entry : metrics.getDistributions().entrySet()) {
+            QuantileSketch sketch = entry.getValue();
+            if (sketch.getCount() == 0) {
+                continue;
+            }
+            if (buckets == null) {
+                buckets = new ProtobufWriter();
+            }
+            // 每个数据点覆盖上一个数据点到本次采集之间的样本，起始时间取同一序列上一个数据点的时间；
+            // 首个数据点取本次启动时间，早于启动的补发采集不写起始时间
+            long[] prev = new long[1];
+            baselines.compute(seriesPrefix + entry.getKey() + DISTRIBUTION_SUFFIX, (key, base) -> {
+                if (base != null) {
+                    prev[0] = base[1];
+                    if (base[1] >= timeNanos) {
+                        return base;
+                    }
+                }
+                return new long[]{0, timeNanos};
+            });
+            long start = prev[0] > 0 && prev[0] < timeNanos ? prev[0]
+                : startTimeNanos < timeNanos ? startTimeNanos : 0;
+
+            point.reset();
+            writeAttributes(point, 1, tags);
+            if (start > 0) {
+                point.fixed64(2, start);
+            }
+            point.fixed64(3, timeNanos);
+            writeExponentialHistogram(point, buckets, sketch);
+
+            data.reset();
+            data.message(1, point);
+            data.varint(2, TEMPORALITY_DELTA);
+
+            metric.reset();
+            metric.string(1, namePrefix + entry.getKey() + DISTRIBUTION_SUFFIX);
+            metric.message(10, data);
+            out.message(2, metric);
+            count++;
+        }
+        // 流事件: Gauge(字段5)
+        for (StreamEvent event : metrics.getEvents()) {
+            Map<String, String> attributes = eventAttributes(tags, event);
+            long eventNanos = event.getTimestamp() * NANOS_PER_MILLI;
+            count += writeEventGauge(out, metric, data, point, namePrefix + "event.value", attributes, eventNanos,
+                event.getValue());
+            count += writeEventGauge(out, metric, data, point, namePrefix + "event.expected", attributes, eventNanos,
+                event.getExpected());
+            count += writeEventGauge(out, metric, data, point, namePrefix + "event.score", attributes, eventNanos,
+                event.getScore());
+        }
+
+        // 分布序列的上一个数据点时间与delta基准存放在一起，两种时间性下都需要清理
+        sweepPrevious(baselines, timeNanos);
+        return count == 0 ? null : out.toByteArray();
+    }
+
+    private static Map<String, String> eventAttributes(Map<String, String> tags, StreamEvent event) {
+        Map<String, String> attributes = new LinkedHashMap<>(tags);
+        attributes.put("type", event.getType().name());
+        if (event.getSchema() != null) {
+            attributes.put("schema", event.getSchema());
+        }
+        attributes.put("vhost", event.getVhost());
+        attributes.put("app", event.getApp());
+        attributes.put("stream", event.getStream());
+        if (event.getTrack() >= 0) {
+            attributes.put("track", String.valueOf(event.getTrack()));
+        }
+        if (event.getMetric() != null) {
+            attributes.put("metric", event.getMetric());
+        }
+        return attributes;
+    }
+
+    /**
+     * 写入流事件的一个Gauge
+     *
+     * @return 写入的Metric数，值不是有限数时不写入
+     */
+    private static int writeEventGauge(ProtobufWriter out, ProtobufWriter metric, ProtobufWriter data,
+                                       ProtobufWriter point, String name, Map<String, String> attributes,
+                                       long timeNanos, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return 0;
+        }
+        point.reset();
+        writeAttributes(point, 7, attributes);
+        point.fixed64(3, timeNanos);
+        point.doubleValue(4, value);
+
+        data.reset();
+        data.message(1, point);
+
+        metric.reset();
+        metric.string(1, name);
+        metric.message(5, data);
+        out.message(2, metric);
+        return 1;
+    }
+
+    /**
+     * 写入数据点属性
+     *
+     * @param field 属性字段号，NumberDataPoint为7，ExponentialHistogramDataPoint为1
+     */
+    private static void writeAttributes(ProtobufWriter point, int field, Map<String, String> tags) {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (tag.getKey() != null && tag.getValue() != null) {
+                point.message(field, keyValue(tag.getKey(), tag.getValue()));
+            }
+        }
+    }
+
+    /**
+     * 把分位数草图换算为ExponentialHistogramDataPoint的计数字段
+     * 取底数不小于草图gamma的最大scale，草图的每个桶按代表值落入唯一的指数桶，
+     * 分位数误差在草图的相对精度之外最多再增加一个指数桶的宽度
+     */
+    private static void writeExponentialHistogram(ProtobufWriter point, ProtobufWriter buckets, QuantileSketch sketch) {
+        double accuracy = sketch.getRelativeAccuracy();
+        double logGamma = Math.log((1 + accuracy) / (1 - accuracy));
+        int scale = (int) Math.floor(Math.log(Math.log(2) / logGamma) / Math.log(2));
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        ExponentialBuckets positive = new ExponentialBuckets(Math.scalb(1 / Math.log(2), scale));
+        sketch.forEachBin(positive);
+
+        point.fixed64(4, sketch.getZeroCount() + positive.total);
+        point.doubleValue(5, sketch.getSum());
+        point.sint32(6, scale);
+        point.fixed64(7, sketch.getZeroCount());
+        if (positive.length > 0) {
+            buckets.reset();
+            buckets.sint32(1, positive.offset);
+            buckets.packedVarints(2, positive.counts, 0, positive.length);
+            point.message(8, buckets);
+        }
+        point.doubleValue(12, sketch.getMin());
+        point.doubleValue(13, sketch.getMax());
+        point.doubleValue(14, QuantileSketch.MIN_VALUE);
+    }
+
+    /**
+     * 按值从小到大接收草图的桶并累加到指数桶，指数桶 i 覆盖 (base^i, base^(i+1)]，base = 2^(2^-scale)
+     */
+    private static final class ExponentialBuckets implements QuantileSketch.BinVisitor {
+        /** 2^scale / ln2 */
+        private final double scaleFactor;
+        private long[] counts = new long[16];
+        private int offset;
+        private int length;
+        private long total;
+
+        ExponentialBuckets(double scaleFactor) {
+            this.scaleFactor = scaleFactor;
+        }
+
+        @Override
+        public void visit(double value, long count) {
+            int index = (int) Math.ceil(Math.log(value) * scaleFactor) - 1;
+            if (length == 0) {
+                offset = index;
+            }
+            int k = index - offset;
+            if (k >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(counts.length * 2, k + 1));
+            }
+            counts[k] += count;
+            length = k + 1;
+            total += count;
+        }
+    }
+
+    /**
+     * 清理长时间没有新数据点的delta基准，避免已下线的流和会话使基准表无限增长
+     * 序列重新出现时首个数据点重新作为基准
+     */
+    private void sweepPrevious(Map<String, long[]> baselines, long timeNanos) {
+        if (baselines == previous) {
+            if (timeNanos - lastSweepNanos < DELTA_SWEEP_NANOS) {
+                return;
+            }
+            lastSweepNanos = timeNanos;
+        } else if (baselines.size() < MAX_REPLAY_BASELINES) {
+            // 补发的时间早于实时采集，补发基准只在数量过多时按补发时间清理
+            return;
+        }
+        long expireBefore = timeNanos - DELTA_STALE_NANOS;
+        int before = baselines.size();
+        baselines.values().removeIf(base -> base[1] < expireBefore);
+        int evicted = before - baselines.size();
+        if (evicted > 0) {
+            log.debug("已清理过期的OTLP delta基准: {}个, 剩余{}个", evicted, baselines.size());
+        }
+    }
+
+    /**
+     * 拼接为 ExportMetricsServiceRequest{ResourceMetrics{Resource, ScopeMetrics{scope, metrics...}}}
+     */
+    @Override
+    protected void writeBody(List<byte[]> batch, OutputStream out) throws IOException {
+        int metricsSize = 0;
+        for (byte[] item : batch) {
+            metricsSize += item.length;
+        }
+        ProtobufWriter scopeMetrics = new ProtobufWriter(scope.length + metricsSize + 16);
+        scopeMetrics.bytes(1, scope, 0, -1);
+        for (byte[] item : batch) {
+            scopeMetrics.raw(item, 0, item.length);
+        }
+
+        ProtobufWriter resourceMetrics = new ProtobufWriter(resource.length + scopeMetrics.size() + 16);
+        resourceMetrics.bytes(1, resource, 0, -1);
+        resourceMetrics.message(2, scopeMetrics);
+
+        ProtobufWriter request = new ProtobufWriter(resourceMetrics.size() + 8);
+        request.message(1, resourceMetrics);
+        out.write(request.toByteArray());
+    }
+
+    /**
+     * 编码Resource，包含节点身份属性
+     */
+    private byte[] encodeResource() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put("service.name", config.getServiceName());
+        try {
+            attributes.put("host.name", InetAddress.getLocalHost().getHostName());
+        } catch (Exception e) {
+            log.debug("获取主机名失败", e);
+        }
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+        int at = jvmName.indexOf('@');
+        if (at > 0) {
+            attributes.put("process.pid", jvmName.substring(0, at));
+        }
+        // 配置的资源属性优先
+        if (config.getResourceAttributes() != null) {
+            attributes.putAll(config.getResourceAttributes());
+        }
+
+        ProtobufWriter writer = new ProtobufWriter();
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (attribute.getKey() != null && attribute.getValue() != null) {
+                writer.message(1, keyValue(attribute.getKey(), attribute.getValue()));
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * KeyValue{key, AnyValue{string_value}}
+     */
+    private static ProtobufWriter keyValue(String key, String value) {
+        ProtobufWriter anyValue = new ProtobufWriter(value.length() + 4).string(1, value);
+        return new ProtobufWriter(key.length() + anyValue.size() + 8)
+            .string(1, key)
+            .message(2, anyValue);
+    }
+}
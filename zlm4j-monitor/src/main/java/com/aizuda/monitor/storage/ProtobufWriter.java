@@ -0,0 +1,153 @@
+package com.aizuda.monitor.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 极简protobuf编码器
+ * 只实现OTLP导出用到的varint(含zigzag和packed)、fixed64和长度前缀三种线格式，避免引入protobuf运行时依赖
+ */
+final class ProtobufWriter {
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private byte[] buf;
+    private int size;
+
+    ProtobufWriter() {
+        this(256);
+    }
+
+    ProtobufWriter(int capacity) {
+        this.buf = new byte[capacity];
+    }
+
+    /**
+     * 写入varint字段
+     */
+    ProtobufWriter varint(int field, long value) {
+        tag(field, WIRE_VARINT);
+        rawVarint(value);
+        return this;
+    }
+
+    /**
+     * 写入sint32字段(zigzag编码)
+     */
+    ProtobufWriter sint32(int field, int value) {
+        return varint(field, ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 写入packed repeated uint64字段
+     */
+    ProtobufWriter packedVarints(int field, long[] values, int offset, int length) {
+        int len = 0;
+        for (int i = offset; i < offset + length; i++) {
+            len += varintSize(values[i]);
+        }
+        tag(field, WIRE_LENGTH_DELIMITED);
+        rawVarint(len);
+        for (int i = offset; i < offset + length; i++) {
+            rawVarint(values[i]);
+        }
+        return this;
+    }
+
+    /**
+     * 写入fixed64字段(fixed64/sfixed64)
+     */
+    ProtobufWriter fixed64(int field, long value) {
+        tag(field, WIRE_FIXED64);
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buf[size++] = (byte) (value >>> (i * 8));
+        }
+        return this;
+    }
+
+    /**
+     * 写入double字段
+     */
+    ProtobufWriter doubleValue(int field, double value) {
+        return fixed64(field, Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * 写入string字段
+     */
+    ProtobufWriter string(int field, String value) {
+        return bytes(field, value.getBytes(StandardCharsets.UTF_8), 0, -1);
+    }
+
+    /**
+     * 写入嵌套消息字段
+     */
+    ProtobufWriter message(int field, ProtobufWriter message) {
+        return bytes(field, message.buf, 0, message.size);
+    }
+
+    /**
+     * 写入bytes字段
+     *
+     * @param length 长度，小于0表示整个数组
+     */
+    ProtobufWriter bytes(int field, byte[] value, int offset, int length) {
+        int len = length < 0 ? value.length - offset : length;
+        tag(field, WIRE_LENGTH_DELIMITED);
+        rawVarint(len);
+        raw(value, offset, len);
+        return this;
+    }
+
+    /**
+     * 追加已编码的数据
+     */
+    ProtobufWriter raw(byte[] value, int offset, int length) {
+        ensure(length);
+        System.arraycopy(value, offset, buf, size, length);
+        size += length;
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    private void tag(int field, int wireType) {
+        rawVarint(((long) field << 3) | wireType);
+    }
+
+    private void rawVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    private static int varintSize(long value) {
+        int n = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.metrics.*;
+import com.aizuda.monitor.metrics.enums.MetricsType;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+import com.aizuda.monitor.util.QuantileSketch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 暂存区记录编解码
+ * 格式: 版本, 指标类型, 采集时间戳, 标签数, [标签名, 标签值]..., 指标数, [指标名, 值类型, 值]...,
+ * 分布数, [分布名, 长度, {@link QuantileSketch#toBytes()}]..., 按流采样数, [采样]..., 流事件数, [事件]...
+ * 各部分的条目数均为int，每一部分都显式写出条目数，解码不依赖剩余字节数；
+ * 值类型0为整数(long)，1为浮点数(double)，解码后保持原有的数值类型；
+ * 可为null的字符串先写一个是否存在的标志
+ */
+final class SpoolCodec {
+    /** 记录格式版本，旧格式的首字节是类型名长度的高位(0)，不会与版本号冲突 */
+    private static final byte VERSION = 1;
+
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+
+    private SpoolCodec() {
+    }
+
+    static byte[] encode(Metrics metrics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + metrics.getValues().size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeUTF(metrics.getType().name());
+        out.writeLong(metrics.getTimestamp());
+        Map<String, String> tags = metrics.getTags();
+        out.writeInt(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            out.writeUTF(tag.getKey());
+            out.writeUTF(tag.getValue());
+        }
+        Map<String, Number> values = metrics.getValues();
+        out.writeInt(values.size());
+        for (Map.Entry<String, Number> entry : values.entrySet()) {
+            Number value = entry.getValue();
+            out.writeUTF(entry.getKey());
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                out.writeByte(LONG);
+                out.writeLong(value.longValue());
+            } else {
+                out.writeByte(DOUBLE);
+                out.writeDouble(value.doubleValue());
+            }
+        }
+        Map<String, QuantileSketch> distributions = metrics.getDistributions();
+        out.writeInt(distributions.size());
+        for (Map.Entry<String, QuantileSketch> entry : distributions.entrySet()) {
+            byte[] sketch = entry.getValue().toBytes();
+            out.writeUTF(entry.getKey());
+            out.writeInt(sketch.length);
+            out.write(sketch);
+        }
+        List<StreamSample> samples = metrics instanceof StreamMetrics
+            ? ((StreamMetrics) metrics).getStreamSamples() : Collections.emptyList();
+        out.writeInt(samples.size());
+        for (StreamSample sample : samples) {
+            writeString(out, sample.getSchema());
+            writeString(out, sample.getVhost());
+            writeString(out, sample.getApp());
+            writeString(out, sample.getStream());
+            out.writeInt(sample.getReaderCount());
+            out.writeInt(sample.getTotalReaderCount());
+            out.writeInt(sample.getBytesSpeed());
+            out.writeLong(sample.getAliveSeconds());
+        }
+        List<StreamEvent> events = metrics.getEvents();
+        out.writeInt(events.size());
+        for (StreamEvent event : events) {
+            out.writeUTF(event.getType().name());
+            writeString(out, event.getSchema());
+            writeString(out, event.getVhost());
+            writeString(out, event.getApp());
+            writeString(out, event.getStream());
+            out.writeInt(event.getTrack());
+            writeString(out, event.getMetric());
+            out.writeDouble(event.getValue());
+            out.writeDouble(event.getExpected());
+            out.writeDouble(event.getScore());
+            out.writeLong(event.getTimestamp());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static Metrics decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("不支持的暂存记录版本: " + version);
+        }
+        Metrics metrics = Metrics.create(MetricsType.valueOf(in.readUTF()));
+        metrics.setTimestamp(in.readLong());
+        int tags = readCount(in);
+        for (int i = 0; i < tags; i++) {
+            metrics.getTags().put(in.readUTF(), in.readUTF());
+        }
+        int values = readCount(in);
+        for (int i = 0; i < values; i++) {
+            String name = in.readUTF();
+            // 直接写入值表，名称已包含前缀
+            if (in.readByte() == LONG) {
+                metrics.getValues().put(name, in.readLong());
+            } else {
+                metrics.getValues().put(name, in.readDouble());
+            }
+        }
+        int distributions = readCount(in);
+        for (int i = 0; i < distributions; i++) {
+            String name = in.readUTF();
+            byte[] sketch = new byte[readCount(in)];
+            in.readFully(sketch);
+            try {
+                metrics.getDistributions().put(name, QuantileSketch.fromBytes(sketch));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("分布数据损坏: " + name, e);
+            }
+        }
+        int samples = readCount(in);
+        for (int i = 0; i < samples; i++) {
+            StreamSample sample = new StreamSample(readString(in), readString(in), readString(in), readString(in),
+                in.readInt(), in.readInt(), in.readInt(), in.readLong());
+            if (metrics instanceof StreamMetrics) {
+                ((StreamMetrics) metrics).addStreamSample(sample);
+            }
+        }
+        int events = readCount(in);
+        for (int i = 0; i < events; i++) {
+            StreamEventType type;
+            try {
+                type = StreamEventType.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("流事件类型未知", e);
+            }
+            metrics.getEvents().add(new StreamEvent(type, readString(in), readString(in), readString(in),
+                readString(in), in.readInt(), readString(in), in.readDouble(), in.readDouble(), in.readDouble(),
+                in.readLong()));
+        }
+        return metrics;
+    }
+
+    /**
+     * 读取条目数，负数说明记录已损坏
+     */
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("暂存记录损坏: count=" + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,444 @@
+package com.aizuda.monitor.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 单个导出器的暂存通道
+ * 由若干按序号命名的分段文件组成，写入追加到最后一个分段，读取从游标处按顺序进行
+ *
+ * 记录格式: 长度(4字节) + CRC32(4字节) + 内容，
+ * 启动时校验全部分段，最后一个分段中不完整或校验失败的尾部被截断
+ *
+ * 游标(分段序号 + 段内偏移)保存在 cursor 文件中，读取确认后更新；
+ * 游标文件损坏时从最旧分段开始重放，因此补发语义为至少一次
+ */
+final class SpoolLane {
+    private static final Logger log = LoggerFactory.getLogger(SpoolLane.class);
+
+    private static final String SUFFIX = ".spool";
+    private static final String CURSOR = "cursor";
+    private static final int HEADER = 8;
+
+    private final String name;
+    private final Path directory;
+    private final long segmentSize;
+
+    /** 全部分段，按序号排序 */
+    private final TreeMap<Long, SegmentFile> segments = new TreeMap<>();
+
+    /** 写入端 */
+    private FileChannel writer;
+    private SegmentFile tail;
+    private boolean dirty;
+
+    /** 读取端 */
+    private FileChannel reader;
+    private SegmentFile head;
+    private long readOffset;
+    /** 当前读取分段中已确认的记录数 */
+    private long readRecords;
+    /** 最近一次读取的记录长度，确认时前移游标 */
+    private int pendingLength = -1;
+    private FileChannel cursor;
+
+    /** 未确认的记录数 */
+    private long backlog;
+    /** 因超过磁盘上限或记录损坏丢弃的记录数 */
+    private long dropped;
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER);
+    private final ByteBuffer cursorBuffer = ByteBuffer.allocate(24);
+    private final CRC32 crc = new CRC32();
+
+    SpoolLane(String name, Path directory, long segmentSize) throws IOException {
+        this.name = name;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        load();
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized long backlog() {
+        return backlog;
+    }
+
+    synchronized long dropped() {
+        return dropped;
+    }
+
+    synchronized long diskUsage() {
+        long size = 0;
+        for (SegmentFile segment : segments.values()) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * 追加一条记录，当前分段写满时切换到新分段
+     */
+    synchronized void append(byte[] payload) throws IOException {
+        long length = HEADER + payload.length;
+        if (tail == null || (tail.size > 0 && tail.size + length > segmentSize)) {
+            roll();
+        }
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        header.clear();
+        header.putInt(payload.length).putInt((int) crc.getValue()).flip();
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        long position = tail.size;
+        while (header.hasRemaining()) {
+            position += writer.write(header, position);
+        }
+        while (body.hasRemaining()) {
+            position += writer.write(body, position);
+        }
+        tail.size = position;
+        tail.records++;
+        backlog++;
+        dirty = true;
+    }
+
+    /**
+     * 读取游标处的下一条记录，确认前重复调用返回同一条
+     *
+     * @return 记录内容，没有待补发记录时返回null
+     */
+    synchronized byte[] peek() throws IOException {
+        while (head != null) {
+            if (readOffset < head.size) {
+                byte[] payload = read();
+                if (payload != null) {
+                    return payload;
+                }
+                // 记录损坏，丢弃分段剩余部分
+                long lost = Math.max(0, head.records - readRecords);
+                log.warn("暂存记录校验失败，丢弃分段剩余记录: lane={}, segment={}, records={}",
+                    name, head.path.getFileName(), lost);
+                backlog -= lost;
+                dropped += lost;
+                readRecords = head.records;
+                readOffset = head.size;
+            }
+            if (head == tail) {
+                return null;
+            }
+            // 当前分段已读完，删除后前移到下一分段
+            SegmentFile done = head;
+            openReader(segments.higherKey(done.sequence), 0, 0);
+            delete(done);
+            saveCursor();
+        }
+        return null;
+    }
+
+    /**
+     * 确认最近一次读取的记录已补发，前移游标
+     */
+    synchronized void commit() throws IOException {
+        if (pendingLength < 0) {
+            return;
+        }
+        readOffset += HEADER + pendingLength;
+        readRecords++;
+        backlog--;
+        pendingLength = -1;
+        saveCursor();
+    }
+
+    /**
+     * 丢弃最旧的分段，正在写入的分段不会被丢弃
+     *
+     * @return 释放的磁盘空间(字节)，没有可丢弃分段时返回0
+     */
+    synchronized long dropOldest() throws IOException {
+        if (head == null || head == tail) {
+            return 0;
+        }
+        SegmentFile oldest = head;
+        long lost = Math.max(0, oldest.records - readRecords);
+        backlog -= lost;
+        dropped += lost;
+        openReader(segments.higherKey(oldest.sequence), 0, 0);
+        delete(oldest);
+        saveCursor();
+        log.warn("暂存区超过磁盘上限，丢弃最旧分段: lane={}, segment={}, records={}",
+            name, oldest.path.getFileName(), lost);
+        return oldest.size;
+    }
+
+    /**
+     * 刷盘
+     */
+    synchronized void force() throws IOException {
+        if (dirty && writer != null) {
+            writer.force(false);
+            dirty = false;
+        }
+        if (cursor != null) {
+            cursor.force(false);
+        }
+    }
+
+    synchronized void close() throws IOException {
+        try {
+            force();
+        } finally {
+            closeQuietly(writer);
+            closeQuietly(reader);
+            closeQuietly(cursor);
+            writer = null;
+            reader = null;
+            cursor = null;
+        }
+    }
+
+    private byte[] read() throws IOException {
+        header.clear();
+        if (readFully(header, readOffset) < HEADER) {
+            return null;
+        }
+        header.flip();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || readOffset + HEADER + length > head.size) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        if (readFully(ByteBuffer.wrap(payload), readOffset + HEADER) < length) {
+            return null;
+        }
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        pendingLength = length;
+        return payload;
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = reader.read(buffer, position + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    private void roll() throws IOException {
+        long sequence = tail == null ? (segments.isEmpty() ? 0 : segments.lastKey() + 1) : tail.sequence + 1;
+        if (writer != null && dirty) {
+            writer.force(false);
+            dirty = false;
+        }
+        closeQuietly(writer);
+        tail = new SegmentFile(sequence, directory.resolve(fileName(sequence)));
+        writer = FileChannel.open(tail.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        segments.put(sequence, tail);
+        if (head == null) {
+            openReader(sequence, 0, 0);
+            saveCursor();
+        }
+    }
+
+    private void openReader(Long sequence, long offset, long records) throws IOException {
+        closeQuietly(reader);
+        reader = null;
+        pendingLength = -1;
+        head = sequence == null ? null : segments.get(sequence);
+        readOffset = offset;
+        readRecords = records;
+        if (head != null) {
+            reader = FileChannel.open(head.path, StandardOpenOption.READ);
+        }
+    }
+
+    private void delete(SegmentFile segment) {
+        segments.remove(segment.sequence);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("删除暂存分段失败: {}", segment.path, e);
+        }
+    }
+
+    /**
+     * 加载已有分段和游标，统计待补发记录数
+     */
+    private void load() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                try {
+                    long sequence = Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+                    segments.put(sequence, new SegmentFile(sequence, file));
+                } catch (NumberFormatException e) {
+                    log.warn("跳过无法识别的暂存文件: {}", file);
+                }
+            }
+        }
+
+        long[] saved = loadCursor();
+        // 游标之前的分段已补发完毕
+        while (!segments.isEmpty() && saved != null && segments.firstKey() < saved[0]) {
+            delete(segments.firstEntry().getValue());
+        }
+        if (saved != null && (segments.isEmpty() || segments.firstKey() != saved[0])) {
+            saved = null;
+        }
+
+        for (Map.Entry<Long, SegmentFile> entry : segments.entrySet()) {
+            SegmentFile segment = entry.getValue();
+            boolean last = entry.getKey().equals(segments.lastKey());
+            long skip = saved != null && entry.getKey() == saved[0] ? saved[1] : 0;
+            scan(segment, last, skip);
+        }
+
+        cursor = FileChannel.open(directory.resolve(CURSOR), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (!segments.isEmpty()) {
+            SegmentFile first = segments.firstEntry().getValue();
+            long offset = saved == null ? 0 : Math.min(saved[1], first.size);
+            openReader(first.sequence, offset, first.consumed);
+            tail = segments.lastEntry().getValue();
+            writer = FileChannel.open(tail.path, StandardOpenOption.WRITE);
+        }
+        saveCursor();
+        if (backlog > 0) {
+            log.info("暂存区存在待补发数据: lane={}, segments={}, records={}", name, segments.size(), backlog);
+        }
+    }
+
+    /**
+     * 校验分段中的记录，统计游标之后的记录数；最后一个分段截断损坏的尾部
+     */
+    private void scan(SegmentFile segment, boolean last, long skip) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            long position = 0;
+            ByteBuffer frame = ByteBuffer.allocate(HEADER);
+            while (position + HEADER <= fileSize) {
+                frame.clear();
+                channel.read(frame, position);
+                frame.flip();
+                int length = frame.getInt();
+                int checksum = frame.getInt();
+                if (length < 0 || position + HEADER + length > fileSize) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                while (payload.hasRemaining() && channel.read(payload, position + HEADER + payload.position()) > 0) {
+                    // 读满为止
+                }
+                crc.reset();
+                crc.update(payload.array(), 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (position < skip) {
+                    segment.consumed++;
+                } else {
+                    backlog++;
+                }
+                segment.records++;
+                position += HEADER + length;
+            }
+            if (position < fileSize && last) {
+                log.warn("截断暂存分段损坏的尾部: {}, size={}, valid={}", segment.path, fileSize, position);
+                channel.truncate(position);
+            }
+            segment.size = position;
+        }
+    }
+
+    private long[] loadCursor() throws IOException {
+        Path path = directory.resolve(CURSOR);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < 24) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long sequence = buffer.getLong();
+        long offset = buffer.getLong();
+        long checksum = buffer.getLong();
+        crc.reset();
+        crc.update(bytes, 0, 16);
+        if (crc.getValue() != checksum) {
+            log.warn("暂存游标校验失败，从最旧分段开始补发: lane={}", name);
+            return null;
+        }
+        return new long[]{sequence, offset};
+    }
+
+    private void saveCursor() throws IOException {
+        if (cursor == null) {
+            return;
+        }
+        cursorBuffer.clear();
+        cursorBuffer.putLong(head == null ? -1 : head.sequence).putLong(head == null ? 0 : readOffset);
+        crc.reset();
+        crc.update(cursorBuffer.array(), 0, 16);
+        cursorBuffer.putLong(crc.getValue()).flip();
+        long position = 0;
+        while (cursorBuffer.hasRemaining()) {
+            position += cursor.write(cursorBuffer, position);
+        }
+    }
+
+    private static String fileName(long sequence) {
+        return String.format("%016d%s", sequence, SUFFIX);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭暂存文件失败", e);
+            }
+        }
+    }
+
+    /**
+     * 分段文件
+     */
+    private static final class SegmentFile {
+        private final long sequence;
+        private final Path path;
+        private long size;
+        private long records;
+        /** 加载时位于游标之前的记录数 */
+        private long consumed;
+
+        SegmentFile(long sequence, Path path) {
+            this.sequence = sequence;
+            this.path = path;
+        }
+    }
+}
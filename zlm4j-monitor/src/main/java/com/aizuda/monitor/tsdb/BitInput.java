@@ -0,0 +1,38 @@
+package com.aizuda.monitor.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 按位读取，直接使用绝对位置访问缓冲区，可作用于内存映射文件而不复制到堆内
+ */
+final class BitInput {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private long bitPosition;
+
+    BitInput(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    /**
+     * 读取n位，作为无符号数返回
+     */
+    long readBits(int n) {
+        long value = 0;
+        while (n > 0) {
+            int b = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int) (bitPosition & 7);
+            int take = Math.min(available, n);
+            int bits = (b >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | bits;
+            bitPosition += take;
+            n -= take;
+        }
+        return value;
+    }
+
+    boolean readBit() {
+        return readBits(1) == 1;
+    }
+}
@@ -0,0 +1,58 @@
+package com.aizuda.monitor.tsdb;
+
+import java.util.Arrays;
+
+/**
+ * 按位写入的堆内缓冲区，高位在前
+ */
+final class BitOutput {
+    private byte[] buf;
+    private long bitPosition;
+
+    BitOutput(int capacity) {
+        this.buf = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * 写入value的低n位
+     */
+    void writeBits(long value, int n) {
+        ensure(n);
+        while (n > 0) {
+            int index = (int) (bitPosition >>> 3);
+            int free = 8 - (int) (bitPosition & 7);
+            int take = Math.min(free, n);
+            int bits = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+            buf[index] |= (byte) (bits << (free - take));
+            bitPosition += take;
+            n -= take;
+        }
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * 已写入的字节数(末尾不足一字节按一字节计)
+     */
+    int byteLength() {
+        return (int) ((bitPosition + 7) >>> 3);
+    }
+
+    byte[] array() {
+        return buf;
+    }
+
+    void reset() {
+        Arrays.fill(buf, 0, byteLength(), (byte) 0);
+        bitPosition = 0;
+    }
+
+    private void ensure(int bits) {
+        long need = (bitPosition + bits + 7) >>> 3;
+        if (need > buf.length) {
+            buf = Arrays.copyOf(buf, (int) Math.max(buf.length * 2L, need));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.aizuda.monitor.tsdb;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Gorilla压缩解码器，编码格式见 {@link GorillaEncoder}
+ */
+final class GorillaDecoder {
+    private final BitInput in;
+    private final int count;
+    private int read;
+    private long timestamp;
+    private long delta;
+    private long value;
+    private int leading;
+    private int trailing;
+
+    GorillaDecoder(ByteBuffer buffer, int offset, int count) {
+        this.in = new BitInput(buffer, offset);
+        this.count = count;
+    }
+
+    /**
+     * 读取下一个点
+     *
+     * @return 是否还有数据
+     */
+    boolean next() {
+        if (read >= count) {
+            return false;
+        }
+        if (read == 0) {
+            timestamp = in.readBits(64);
+            value = in.readBits(64);
+        } else {
+            readTimestamp();
+            readValue();
+        }
+        read++;
+        return true;
+    }
+
+    long timestamp() {
+        return timestamp;
+    }
+
+    double value() {
+        return Double.longBitsToDouble(value);
+    }
+
+    private void readTimestamp() {
+        long dod;
+        if (!in.readBit()) {
+            dod = 0;
+        } else if (!in.readBit()) {
+            dod = signExtend(in.readBits(7), 7);
+        } else if (!in.readBit()) {
+            dod = signExtend(in.readBits(9), 9);
+        } else if (!in.readBit()) {
+            dod = signExtend(in.readBits(12), 12);
+        } else {
+            dod = in.readBits(64);
+        }
+        delta += dod;
+        timestamp += delta;
+    }
+
+    private void readValue() {
+        if (!in.readBit()) {
+            return;
+        }
+        if (in.readBit()) {
+            leading = (int) in.readBits(5);
+            int significant = (int) in.readBits(6);
+            if (significant == 0) {
+                significant = 64;
+            }
+            trailing = 64 - leading - significant;
+        }
+        long xor = in.readBits(64 - leading - trailing) << trailing;
+        value ^= xor;
+    }
+
+    private static long signExtend(long value, int bits) {
+        int shift = 64 - bits;
+        return (value << shift) >> shift;
+    }
+}
@@ -0,0 +1,125 @@
+package com.aizuda.monitor.tsdb;
+
+/**
+ * Gorilla压缩编码器
+ * 时间戳使用二阶差分(delta-of-delta)变长编码，值使用与前值异或后只保存有效位的编码，
+ * 固定间隔采样的时间戳通常只占1位，变化缓慢的值通常只占1位到十几位
+ *
+ * 时间戳编码:
+ * <pre>
+ * 0                    差分不变
+ * 10   + 7位           [-64, 63]
+ * 110  + 9位           [-256, 255]
+ * 1110 + 12位          [-2048, 2047]
+ * 1111 + 64位          其他
+ * </pre>
+ * 值编码:
+ * <pre>
+ * 0                            与前值相同
+ * 10 + 有效位                  有效位落在上一次的前导零/尾随零窗口内
+ * 11 + 5位前导零 + 6位长度 + 有效位
+ * </pre>
+ * 首个点的时间戳和值各以64位原样保存
+ */
+final class GorillaEncoder {
+    private final BitOutput out;
+    private int count;
+    private long firstTimestamp;
+    private long prevTimestamp;
+    private long prevDelta;
+    private long prevValue;
+    private int prevLeading = -1;
+    private int prevTrailing;
+
+    GorillaEncoder(int capacity) {
+        this.out = new BitOutput(capacity);
+    }
+
+    void append(long timestamp, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            out.writeBits(timestamp, 64);
+            out.writeBits(bits, 64);
+            firstTimestamp = timestamp;
+        } else {
+            writeTimestamp(timestamp);
+            writeValue(bits);
+        }
+        prevTimestamp = timestamp;
+        prevValue = bits;
+        count++;
+    }
+
+    private void writeTimestamp(long timestamp) {
+        long delta = timestamp - prevTimestamp;
+        long dod = delta - prevDelta;
+        prevDelta = delta;
+        if (dod == 0) {
+            out.writeBit(false);
+        } else if (dod >= -64 && dod <= 63) {
+            out.writeBits(0b10, 2);
+            out.writeBits(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            out.writeBits(0b110, 3);
+            out.writeBits(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            out.writeBits(0b1110, 4);
+            out.writeBits(dod, 12);
+        } else {
+            out.writeBits(0b1111, 4);
+            out.writeBits(dod, 64);
+        }
+    }
+
+    private void writeValue(long bits) {
+        long xor = bits ^ prevValue;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        out.writeBit(true);
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+            out.writeBit(false);
+            out.writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            out.writeBit(true);
+            out.writeBits(leading, 5);
+            // 有效位长度为64时写0
+            out.writeBits(significant & 0x3F, 6);
+            out.writeBits(xor >>> trailing, significant);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return prevTimestamp;
+    }
+
+    int byteLength() {
+        return out.byteLength();
+    }
+
+    byte[] array() {
+        return out.array();
+    }
+
+    void reset() {
+        out.reset();
+        count = 0;
+        prevDelta = 0;
+        prevLeading = -1;
+        prevTrailing = 0;
+    }
+}
@@ -0,0 +1,368 @@
+package com.aizuda.monitor.tsdb;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 磁盘归档
+ * 将原始采样点以Gorilla压缩后写入内存映射的段文件，用于事后分析多天的历史数据
+ *
+ * 每个序列在内存中累积一个数据块，点数达到 blockPoints 或超过 flushInterval 后追加到当前段；
+ * 段按 segmentDuration 对齐的时间窗口轮转，窗口内写满时在同一窗口再开新段，
+ * 轮转时删除超过保留期限的段
+ *
+ * 查询只读取已落盘的数据块，尚在内存中累积的点可从 {@link MetricsStore} 获取
+ */
+public class MetricsArchive implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsArchive.class);
+
+    private static final String SUFFIX = ".seg";
+
+    private final MonitorConfig.ArchiveConfig config;
+    private final Path directory;
+    private final long segmentDuration;
+    private final long retention;
+    private final int segmentCapacity;
+
+    /** 全部段，按 起始时间-序号 排序 */
+    private final ConcurrentSkipListMap<String, Segment> segments = new ConcurrentSkipListMap<>();
+    /** 当前写入段 */
+    private Segment active;
+    /** 已过期、等待最后一个读取方释放后删除的段 */
+    private final Set<Segment> expired = ConcurrentHashMap.newKeySet();
+    /** 各序列尚未落盘的数据块 */
+    private final Map<SeriesKey, Pending> pending = new HashMap<>();
+    private long lastSweep;
+
+    /** 统计 */
+    private final AtomicLong writtenPoints = new AtomicLong();
+    private final AtomicLong droppedPoints = new AtomicLong();
+
+    public MetricsArchive(MonitorConfig.ArchiveConfig config) throws IOException {
+        this.config = config;
+        this.directory = Paths.get(config.getDirectory());
+        this.segmentDuration = config.getSegmentDuration();
+        this.retention = TimeUnit.HOURS.toMillis(config.getRetention());
+        this.segmentCapacity = (int) Math.min(Integer.MAX_VALUE, config.getSegmentSize() * 1024L * 1024L);
+        Files.createDirectories(directory);
+        loadSegments();
+        deleteExpired(System.currentTimeMillis());
+        log.info("磁盘归档初始化完成: directory={}, segments={}, retention={}h",
+            directory.toAbsolutePath(), segments.size(), config.getRetention());
+    }
+
+    /**
+     * 写入一次采集的全部指标
+     * 序列名和标签与 {@link MetricsStore} 一致，见 {@link MetricsPoints}
+     */
+    public void ingest(Metrics metrics) {
+        if (metrics == null) {
+            return;
+        }
+        synchronized (this) {
+            MetricsPoints.forEach(metrics, this::append);
+        }
+    }
+
+    /**
+     * 追加一个采样点
+     *
+     * @return 是否写入，乱序或早于当前段时返回false
+     */
+    public synchronized boolean append(SeriesKey key, long timestamp, double value) {
+        try {
+            if (active == null || timestamp >= active.end()) {
+                rotate(timestamp);
+            }
+            Pending block = pending.get(key);
+            if (timestamp < active.start() || (block != null && block.encoder.count() > 0
+                && timestamp < block.encoder.lastTimestamp())) {
+                droppedPoints.incrementAndGet();
+                return false;
+            }
+            if (block == null) {
+                block = new Pending(config.getBlockPoints());
+                pending.put(key, block);
+            }
+            if (block.encoder.count() == 0) {
+                block.createdAt = System.currentTimeMillis();
+            }
+            block.encoder.append(timestamp, value);
+            writtenPoints.incrementAndGet();
+            if (block.encoder.count() >= config.getBlockPoints()) {
+                flush(key, block);
+            }
+            sweep();
+            return true;
+        } catch (IOException e) {
+            log.error("写入磁盘归档失败: {}", key, e);
+            droppedPoints.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * 将所有序列尚未落盘的数据块写入当前段
+     */
+    public synchronized void flush() {
+        try {
+            flushAll();
+        } catch (IOException e) {
+            log.error("刷新磁盘归档失败", e);
+        }
+    }
+
+    /**
+     * 按时间升序扫描序列在 [from, to] 范围内已落盘的原始点
+     *
+     * @return 回调的数据点数
+     */
+    public int scan(SeriesKey key, long from, long to, PointVisitor visitor) {
+        int visited = 0;
+        for (Segment segment : segments.values()) {
+            if (segment.end() <= from) {
+                continue;
+            }
+            if (segment.start() > to) {
+                break;
+            }
+            // 扫描期间持有引用，段过期后也要等扫描结束才解除映射
+            if (!segment.retain()) {
+                continue;
+            }
+            try {
+                visited += segment.scan(key, from, to, visitor);
+            } finally {
+                release(segment);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * [from, to] 范围内有数据的全部序列
+     */
+    public Set<SeriesKey> keys(long from, long to) {
+        Set<SeriesKey> keys = new LinkedHashSet<>();
+        for (Segment segment : segments.values()) {
+            if (segment.end() > from && segment.start() <= to) {
+                keys.addAll(segment.keys());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * 段文件数
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 段文件占用的磁盘空间(字节)，当前段按映射大小计
+     */
+    public long getDiskUsage() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 已接收的采样点数
+     */
+    public long getWrittenPoints() {
+        return writtenPoints.get();
+    }
+
+    /**
+     * 因乱序或写入失败丢弃的采样点数
+     */
+    public long getDroppedPoints() {
+        return droppedPoints.get();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushAll();
+        for (Segment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.error("关闭归档段失败: {}", segment.path(), e);
+            }
+            release(segment);
+        }
+        segments.clear();
+        active = null;
+        log.info("磁盘归档已关闭: written={}, dropped={}", writtenPoints.get(), droppedPoints.get());
+    }
+
+    /**
+     * 切换到包含指定时间戳的时间窗口
+     */
+    private void rotate(long timestamp) throws IOException {
+        flushAll();
+        if (active != null) {
+            active.seal();
+        }
+        long start = timestamp - Math.floorMod(timestamp, segmentDuration);
+        active = createSegment(start);
+        deleteExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * 在同一时间窗口内创建新段，序号递增
+     */
+    private Segment createSegment(long start) throws IOException {
+        int sequence = 0;
+        while (segments.containsKey(name(start, sequence))) {
+            sequence++;
+        }
+        String name = name(start, sequence);
+        Segment segment = Segment.create(directory.resolve(name + SUFFIX), start, start + segmentDuration,
+            segmentCapacity);
+        segments.put(name, segment);
+        log.debug("创建归档段: {}", name);
+        return segment;
+    }
+
+    private void flush(SeriesKey key, Pending block) throws IOException {
+        if (block.encoder.count() == 0) {
+            return;
+        }
+        if (!active.append(key, block.encoder)) {
+            // 当前段已写满，在同一窗口开新段
+            active.seal();
+            active = createSegment(active.start());
+            if (!active.append(key, block.encoder)) {
+                throw new IOException("数据块超过段大小: " + block.encoder.byteLength());
+            }
+        }
+        block.encoder.reset();
+    }
+
+    private void flushAll() throws IOException {
+        if (active == null) {
+            return;
+        }
+        for (Map.Entry<SeriesKey, Pending> entry : pending.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+        // 当前窗口没有再写入的序列不再保留缓冲
+        pending.values().removeIf(block -> block.encoder.count() == 0
+            && System.currentTimeMillis() - block.createdAt > segmentDuration);
+    }
+
+    /**
+     * 落盘超过刷新间隔的数据块
+     */
+    private void sweep() throws IOException {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep < config.getFlushInterval()) {
+            return;
+        }
+        lastSweep = now;
+        for (Map.Entry<SeriesKey, Pending> entry : pending.entrySet()) {
+            Pending block = entry.getValue();
+            if (block.encoder.count() > 0 && now - block.createdAt >= config.getFlushInterval()) {
+                flush(entry.getKey(), block);
+            }
+        }
+    }
+
+    /**
+     * 删除窗口结束时间超过保留期限的段
+     * 段从列表移除后释放归档持有的引用，正在扫描的读取方结束后才解除映射并删除文件
+     */
+    private void deleteExpired(long now) {
+        Iterator<Segment> it = segments.values().iterator();
+        while (it.hasNext()) {
+            Segment segment = it.next();
+            if (segment == active || segment.end() > now - retention) {
+                continue;
+            }
+            it.remove();
+            expired.add(segment);
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("关闭过期归档段失败: {}", segment.path(), e);
+            }
+            release(segment);
+        }
+    }
+
+    /**
+     * 释放段引用，最后一个引用释放后删除已过期段的文件
+     */
+    private void release(Segment segment) {
+        if (!segment.release() || !expired.remove(segment)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(segment.path());
+            log.debug("删除过期归档段: {}", segment.path());
+        } catch (IOException e) {
+            log.warn("删除过期归档段失败: {}", segment.path(), e);
+        }
+    }
+
+    private void loadSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                segments.put(name.substring(0, name.length() - SUFFIX.length()), Segment.open(file));
+            } catch (IOException | RuntimeException e) {
+                log.warn("跳过无法读取的归档段: {}, error={}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 段名: 零填充的窗口起始时间-序号，字典序即时间序
+     */
+    private static String name(long start, int sequence) {
+        return String.format("%013d-%04d", start, sequence);
+    }
+
+    /**
+     * 序列尚未落盘的数据块
+     */
+    private static final class Pending {
+        private final GorillaEncoder encoder;
+        private long createdAt;
+
+        Pending(int blockPoints) {
+            // 固定间隔采样下每点约2字节
+            this.encoder = new GorillaEncoder(16 + blockPoints * 2);
+        }
+    }
+}
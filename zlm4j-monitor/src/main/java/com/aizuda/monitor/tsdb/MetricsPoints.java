@@ -0,0 +1,59 @@
+package com.aizuda.monitor.tsdb;
+
+import com.aizuda.monitor.metrics.Metrics;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.StreamSample;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把一次采集展开为时序数据点，{@link MetricsStore} 和 {@link MetricsArchive} 共用
+ *
+ * 序列名为 {类型}.{指标名}，标签取指标标签；流媒体指标中的按流采样展开为带 vhost、app、stream、schema
+ * 标签的序列，此时同名的无标签值(只是最后遍历到的那个流)不再写入，避免按流分组时出现空标签的一组
+ */
+final class MetricsPoints {
+
+    /**
+     * 数据点接收方
+     */
+    @FunctionalInterface
+    interface Sink {
+        void accept(SeriesKey key, long timestamp, double value);
+    }
+
+    private MetricsPoints() {
+    }
+
+    static void forEach(Metrics metrics, Sink sink) {
+        long timestamp = metrics.getTimestamp() > 0 ? metrics.getTimestamp() : System.currentTimeMillis();
+        String prefix = metrics.getType().name().toLowerCase() + ".";
+        Map<String, String> tags = metrics.getTags();
+
+        Set<String> perStream = null;
+        if (metrics instanceof StreamMetrics && !((StreamMetrics) metrics).getStreamSamples().isEmpty()) {
+            Map<String, String> sampleTags = new HashMap<>(tags);
+            for (StreamSample sample : ((StreamMetrics) metrics).getStreamSamples()) {
+                sampleTags.putAll(sample.getTags());
+                Map<String, Number> values = sample.getValues();
+                for (Map.Entry<String, Number> entry : values.entrySet()) {
+                    sink.accept(SeriesKey.of(prefix + entry.getKey(), sampleTags), timestamp,
+                        entry.getValue().doubleValue());
+                }
+                perStream = values.keySet();
+                sampleTags.clear();
+                sampleTags.putAll(tags);
+            }
+        }
+
+        for (Map.Entry<String, Number> entry : metrics.getValues().entrySet()) {
+            Number value = entry.getValue();
+            if (value == null || (perStream != null && perStream.contains(entry.getKey()))) {
+                continue;
+            }
+            sink.accept(SeriesKey.of(prefix + entry.getKey(), tags), timestamp, value.doubleValue());
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.aizuda.monitor.tsdb;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内时序存储
+ * 每个序列(指标名 + 标签)一段固定大小的堆外环形缓冲区，保存原始采样点以及1分钟、10分钟的
+ * min/max/avg/last汇总，上游不可用或直接排查节点时可查询最近的历史数据
+ *
+ * 堆外内存按块(chunk)向系统申请并切分给序列，总量受 maxMemory 限制；
+ * 连续 idlePeriods 个1分钟周期没有新数据的序列被回收，内存用尽时先回收最久未写入的空闲序列，
+ * 仍无可回收的序列时新序列的数据被丢弃并计数，已有序列不受影响；移除和回收的序列内存复用
+ */
+public class MetricsStore implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsStore.class);
+
+    /** 单次向系统申请的堆外内存块大小 */
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final int rawPoints;
+    private final int minutePoints;
+    private final int tenMinutePoints;
+    /** 单个序列占用字节数 */
+    private final int seriesBytes;
+    /** 可容纳的最大序列数 */
+    private final long maxSeries;
+    /** 序列空闲多久(毫秒)后回收 */
+    private final long idleTime;
+
+    private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    /** 内存分配状态，由 allocator 锁保护 */
+    private final Object allocator = new Object();
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final ArrayDeque<ByteBuffer> freeSlots = new ArrayDeque<>();
+    private ByteBuffer currentChunk;
+    private long allocatedSlots;
+    private boolean exhausted;
+
+    /** 上次回收空闲序列的采样时间 */
+    private volatile long lastSweep;
+    /** 内存用尽且没有可回收序列时，在此采样时间之前不再查找 */
+    private volatile long noVictimUntil = Long.MIN_VALUE;
+
+    /** 统计 */
+    private final AtomicLong droppedPoints = new AtomicLong();
+    private final AtomicLong evictedSeries = new AtomicLong();
+
+    public MetricsStore(MonitorConfig.StoreConfig config) {
+        this.rawPoints = config.getRawPoints();
+        this.minutePoints = config.getMinutePoints();
+        this.tenMinutePoints = config.getTenMinutePoints();
+        long bytes = Series.bytes(rawPoints, minutePoints, tenMinutePoints);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("单个序列占用内存过大: " + bytes);
+        }
+        this.seriesBytes = (int) bytes;
+        this.maxSeries = config.getMaxMemory() * 1024L * 1024L / seriesBytes;
+        this.idleTime = config.getIdlePeriods() * Resolution.ONE_MINUTE.getStep();
+        log.info("时序存储初始化完成: maxMemory={}MB, seriesBytes={}, maxSeries={}, idlePeriods={}",
+            config.getMaxMemory(), seriesBytes, maxSeries, config.getIdlePeriods());
+    }
+
+    /**
+     * 写入一次采集的全部指标
+     * 序列名为 {类型}.{指标名}，标签取指标标签，流媒体指标的按流采样写成按流的序列，见 {@link MetricsPoints}
+     */
+    public void ingest(Metrics metrics) {
+        if (metrics == null) {
+            return;
+        }
+        long timestamp = metrics.getTimestamp() > 0 ? metrics.getTimestamp() : System.currentTimeMillis();
+        MetricsPoints.forEach(metrics, this::append);
+        if (timestamp - lastSweep >= Resolution.ONE_MINUTE.getStep()) {
+            lastSweep = timestamp;
+            evictIdle(timestamp - idleTime);
+        }
+    }
+
+    /**
+     * 追加一个采样点
+     *
+     * @return 是否写入，内存不足或乱序时返回false
+     */
+    public boolean append(SeriesKey key, long timestamp, double value) {
+        boolean evicted = false;
+        while (true) {
+            Series s = series.get(key);
+            if (s == null) {
+                s = series.computeIfAbsent(key, k -> {
+                    ByteBuffer memory = allocate();
+                    return memory == null ? null : new Series(k, memory, rawPoints, minutePoints, tenMinutePoints);
+                });
+            }
+            if (s == null) {
+                // 内存已用尽，回收一个最久未写入的空闲序列后重试一次
+                if (!evicted && evictLeastRecent(timestamp)) {
+                    evicted = true;
+                    continue;
+                }
+                droppedPoints.incrementAndGet();
+                return false;
+            }
+            if (s.append(timestamp, value)) {
+                return true;
+            }
+            if (!s.isRetired()) {
+                // 乱序点
+                droppedPoints.incrementAndGet();
+                return false;
+            }
+            // 序列在写入前被回收，重新创建
+        }
+    }
+
+    /**
+     * 获取序列
+     *
+     * @return 序列，不存在时返回null
+     */
+    public Series get(SeriesKey key) {
+        return series.get(key);
+    }
+
+    /**
+     * 当前全部序列的标识
+     */
+    public Collection<SeriesKey> keys() {
+        return Collections.unmodifiableSet(series.keySet());
+    }
+
+    /**
+     * 当前全部序列
+     */
+    public Collection<Series> series() {
+        return Collections.unmodifiableCollection(series.values());
+    }
+
+    /**
+     * 扫描指定序列 [from, to] 范围内的数据点
+     *
+     * @return 回调的数据点数，序列不存在时返回0
+     */
+    public int scan(SeriesKey key, Resolution resolution, long from, long to, PointVisitor visitor) {
+        Series s = series.get(key);
+        return s == null ? 0 : s.scan(resolution, from, to, visitor);
+    }
+
+    /**
+     * 移除序列并回收其内存
+     * 回收的内存会分配给新序列，之后对同一标识的写入会创建新序列
+     *
+     * @return 是否存在并已移除
+     */
+    public boolean remove(SeriesKey key) {
+        Series s = series.remove(key);
+        if (s == null) {
+            return false;
+        }
+        release(s);
+        return true;
+    }
+
+    /**
+     * 回收最后写入时间早于指定时间的序列
+     *
+     * @return 回收的序列数
+     */
+    public int evictIdle(long idleBefore) {
+        int evicted = 0;
+        for (Series s : series.values()) {
+            if (s.getLastTimestamp() < idleBefore && series.remove(s.getKey(), s)) {
+                release(s);
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            evictedSeries.addAndGet(evicted);
+            synchronized (allocator) {
+                exhausted = false;
+            }
+            noVictimUntil = Long.MIN_VALUE;
+            log.debug("已回收空闲序列: {}个, 剩余{}个", evicted, series.size());
+        }
+        return evicted;
+    }
+
+    /**
+     * 内存用尽时回收最久未写入的序列，只回收至少空闲一个1分钟周期的序列，避免活跃序列相互挤占
+     *
+     * @return 是否回收了序列
+     */
+    private boolean evictLeastRecent(long now) {
+        if (now < noVictimUntil) {
+            return false;
+        }
+        long idleBefore = now - Resolution.ONE_MINUTE.getStep();
+        Series victim = null;
+        long oldest = Long.MAX_VALUE;
+        for (Series s : series.values()) {
+            long last = s.getLastTimestamp();
+            if (last < idleBefore && last < oldest) {
+                victim = s;
+                oldest = last;
+            }
+        }
+        if (victim == null) {
+            noVictimUntil = now + Resolution.ONE_MINUTE.getStep();
+            return false;
+        }
+        if (series.remove(victim.getKey(), victim)) {
+            release(victim);
+            evictedSeries.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * 标记序列已回收并归还其内存
+     */
+    private void release(Series s) {
+        s.retire();
+        synchronized (allocator) {
+            freeSlots.push(s.memory());
+        }
+    }
+
+    /**
+     * 序列数
+     */
+    public int getSeriesCount() {
+        return series.size();
+    }
+
+    /**
+     * 已分配给序列的堆外内存字节数
+     */
+    public long getMemoryUsed() {
+        synchronized (allocator) {
+            return (allocatedSlots - freeSlots.size()) * seriesBytes;
+        }
+    }
+
+    /**
+     * 堆外内存上限字节数
+     */
+    public long getMemoryLimit() {
+        return maxSeries * seriesBytes;
+    }
+
+    /**
+     * 因内存不足或乱序丢弃的采样点数
+     */
+    public long getDroppedPoints() {
+        return droppedPoints.get();
+    }
+
+    /**
+     * 因空闲或内存不足被回收的序列数
+     */
+    public long getEvictedSeries() {
+        return evictedSeries.get();
+    }
+
+    @Override
+    public void close() {
+        series.clear();
+        synchronized (allocator) {
+            // 堆外内存随缓冲区对象回收释放
+            chunks.clear();
+            freeSlots.clear();
+            currentChunk = null;
+            allocatedSlots = 0;
+            exhausted = false;
+        }
+    }
+
+    /**
+     * 为新序列分配内存
+     *
+     * @return 序列内存，超出上限时返回null
+     */
+    private ByteBuffer allocate() {
+        synchronized (allocator) {
+            ByteBuffer free = freeSlots.poll();
+            if (free != null) {
+                // 复用的内存无需清零，序列按写入计数读取
+                return free;
+            }
+            if (currentChunk == null || currentChunk.remaining() < seriesBytes) {
+                long slots = Math.min(Math.max(1, CHUNK_SIZE / seriesBytes), maxSeries - allocatedSlots);
+                if (slots <= 0) {
+                    if (!exhausted) {
+                        exhausted = true;
+                        log.warn("时序存储内存已用尽，新序列的数据将被丢弃: maxSeries={}", maxSeries);
+                    }
+                    return null;
+                }
+                currentChunk = ByteBuffer.allocateDirect((int) (slots * seriesBytes));
+                chunks.add(currentChunk);
+            }
+            ByteBuffer memory = currentChunk.slice();
+            memory.limit(seriesBytes);
+            currentChunk.position(currentChunk.position() + seriesBytes);
+            allocatedSlots++;
+            return memory.slice();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.aizuda.monitor.tsdb;
+
+/**
+ * 数据点访问器
+ * 范围扫描时按时间升序回调，原始采样点的 min/max/last 均为采样值，count 为1
+ */
+@FunctionalInterface
+public interface PointVisitor {
+
+    /**
+     * 访问一个数据点
+     *
+     * @param timestamp 时间戳(毫秒)，汇总点为窗口起始时间
+     * @param min 最小值
+     * @param max 最大值
+     * @param sum 累加值，平均值为 sum / count
+     * @param count 采样数
+     * @param last 窗口内最后一个采样值
+     */
+    void visit(long timestamp, double min, double max, double sum, long count, double last);
+}
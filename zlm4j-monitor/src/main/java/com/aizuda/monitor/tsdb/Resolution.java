@@ -0,0 +1,27 @@
+package com.aizuda.monitor.tsdb;
+
+/**
+ * 存储分辨率
+ * RAW为原始采样点，其余为按固定时间窗口汇总的min/max/avg/last
+ */
+public enum Resolution {
+    /** 原始采样点 */
+    RAW(0),
+
+    /** 1分钟汇总 */
+    ONE_MINUTE(60_000L),
+
+    /** 10分钟汇总 */
+    TEN_MINUTES(600_000L);
+
+    /** 汇总窗口(毫秒)，RAW为0 */
+    private final long step;
+
+    Resolution(long step) {
+        this.step = step;
+    }
+
+    public long getStep() {
+        return step;
+    }
+}
@@ -0,0 +1,502 @@
+package com.aizuda.monitor.tsdb;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 归档段文件
+ * 一个段覆盖固定的时间窗口，写入时整个文件以读写方式内存映射，记录顺序追加:
+ * <pre>
+ * 文件头(40字节): magic, version, flags, 窗口起始, 窗口结束, 索引偏移, 数据结束位置
+ * 序列记录:      type=1, 序列号, 序列标识
+ * 数据块记录:    type=2, 序列号, 点数, 最小时间戳, 最大时间戳, 长度, Gorilla压缩数据
+ * 索引(封存后):  序列数, [序列标识, 块数, [数据偏移, 点数, 最小时间戳, 最大时间戳]...]...
+ * </pre>
+ * 封存时写入段内序列索引并截断到实际长度；未正常封存的段(如进程崩溃)打开时顺序扫描记录重建索引
+ *
+ * 读取只使用内存映射的绝对位置访问，数据块不会复制到堆内
+ *
+ * 段带引用计数: 归档持有一个引用，读取方扫描期间各持有一个，最后一个引用释放时解除内存映射，
+ * 过期段因此在最后一个读取方结束后才解除映射并删除文件
+ */
+final class Segment implements Closeable {
+    private static final int MAGIC = 0x5A4C4D41;
+    private static final short VERSION = 1;
+    private static final short FLAG_SEALED = 1;
+    static final int HEADER_SIZE = 40;
+
+    private static final byte RECORD_SERIES = 1;
+    private static final byte RECORD_BLOCK = 2;
+    /** 数据块记录头: type + 序列号 + 点数 + 最小时间戳 + 最大时间戳 + 长度 */
+    private static final int BLOCK_HEADER_SIZE = 1 + 4 + 4 + 8 + 8 + 4;
+
+    /** Java 9+ 的 Unsafe.invokeCleaner，不可用时为null并回退到Java 8的 DirectBuffer.cleaner() */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Path path;
+    private final long start;
+    private final long end;
+    private final Map<SeriesKey, SeriesIndex> index = new ConcurrentHashMap<>();
+
+    /** 当前映射，封存后替换为只读映射 */
+    private volatile MappedByteBuffer buffer;
+    private RandomAccessFile file;
+    private boolean writable;
+    /** 写入位置，仅写入方访问 */
+    private int position;
+    private final Map<Integer, SeriesIndex> byId = new HashMap<>();
+
+    /** 引用计数，归档持有初始引用 */
+    private final AtomicInteger refs = new AtomicInteger(1);
+    /** 封存前的读写映射，封存时可能仍有读取方在使用，最后一个引用释放时一并解除映射 */
+    private MappedByteBuffer unsealed;
+
+    private Segment(Path path, long start, long end) {
+        this.path = path;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * 创建可写段
+     *
+     * @param capacity 映射大小(字节)
+     */
+    static Segment create(Path path, long start, long end, int capacity) throws IOException {
+        Segment segment = new Segment(path, start, end);
+        segment.file = new RandomAccessFile(path.toFile(), "rw");
+        segment.file.setLength(capacity);
+        segment.buffer = segment.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        segment.writable = true;
+        segment.position = HEADER_SIZE;
+        MappedByteBuffer buf = segment.buffer;
+        buf.putInt(0, MAGIC);
+        buf.putShort(4, VERSION);
+        buf.putShort(6, (short) 0);
+        buf.putLong(8, start);
+        buf.putLong(16, end);
+        buf.putLong(24, 0L);
+        buf.putLong(32, HEADER_SIZE);
+        return segment;
+    }
+
+    /**
+     * 以只读方式打开已有段
+     */
+    static Segment open(Path path) throws IOException {
+        MappedByteBuffer buf;
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+            buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+            throw new IOException("不是有效的归档段: " + path);
+        }
+        Segment segment = new Segment(path, buf.getLong(8), buf.getLong(16));
+        segment.buffer = buf;
+        if ((buf.getShort(6) & FLAG_SEALED) != 0) {
+            segment.readFooter((int) buf.getLong(24));
+        } else {
+            segment.scanRecords((int) Math.min(buf.getLong(32), buf.capacity()));
+        }
+        return segment;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long start() {
+        return start;
+    }
+
+    long end() {
+        return end;
+    }
+
+    Collection<SeriesKey> keys() {
+        return index.keySet();
+    }
+
+    /**
+     * 段内数据大小(字节)
+     */
+    long size() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 追加一个数据块
+     *
+     * @return 是否写入，段空间不足时返回false
+     */
+    boolean append(SeriesKey key, GorillaEncoder encoder) {
+        SeriesIndex series = index.get(key);
+        byte[] keyBytes = series == null ? encodeKey(key) : null;
+        int length = encoder.byteLength();
+        int need = BLOCK_HEADER_SIZE + length + (keyBytes == null ? 0 : 1 + 4 + keyBytes.length);
+        if (!writable || position + need > buffer.capacity()) {
+            return false;
+        }
+
+        MappedByteBuffer buf = buffer;
+        if (series == null) {
+            series = new SeriesIndex(byId.size(), key);
+            buf.put(position, RECORD_SERIES);
+            buf.putInt(position + 1, series.id);
+            putBytes(buf, position + 5, keyBytes);
+            position += 5 + keyBytes.length;
+            byId.put(series.id, series);
+        }
+
+        int offset = position;
+        buf.put(offset, RECORD_BLOCK);
+        buf.putInt(offset + 1, series.id);
+        buf.putInt(offset + 5, encoder.count());
+        buf.putLong(offset + 9, encoder.firstTimestamp());
+        buf.putLong(offset + 17, encoder.lastTimestamp());
+        buf.putInt(offset + 25, length);
+        putBytes(buf, offset + BLOCK_HEADER_SIZE, encoder.array(), length);
+        position = offset + BLOCK_HEADER_SIZE + length;
+        buf.putLong(32, position);
+
+        // 数据写完后再发布索引，读取方看到索引即可读到完整数据块
+        series.add(new BlockRef(offset + BLOCK_HEADER_SIZE, encoder.count(),
+            encoder.firstTimestamp(), encoder.lastTimestamp()));
+        index.putIfAbsent(key, series);
+        return true;
+    }
+
+    /**
+     * 封存: 写入序列索引，截断到实际长度并改为只读映射
+     */
+    void seal() throws IOException {
+        if (!writable) {
+            return;
+        }
+        writable = false;
+        buffer.force();
+
+        // 索引写在数据之后，通过文件通道写入，不受映射大小限制
+        ByteBuffer footer = encodeFooter();
+        FileChannel channel = file.getChannel();
+        int footerOffset = position;
+        channel.write(footer, footerOffset);
+        channel.force(false);
+
+        MappedByteBuffer buf = buffer;
+        buf.putLong(24, footerOffset);
+        buf.putShort(6, FLAG_SEALED);
+        buf.force();
+        channel.truncate(footerOffset + footer.limit());
+        unsealed = buf;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        file.close();
+        file = null;
+    }
+
+    /**
+     * 按时间升序扫描序列在 [from, to] 范围内的原始点
+     *
+     * @return 回调的数据点数
+     */
+    int scan(SeriesKey key, long from, long to, PointVisitor visitor) {
+        SeriesIndex series = index.get(key);
+        if (series == null) {
+            return 0;
+        }
+        ByteBuffer buf = buffer;
+        int visited = 0;
+        for (BlockRef block : series.blocks) {
+            if (block.maxTimestamp < from) {
+                continue;
+            }
+            if (block.minTimestamp > to) {
+                break;
+            }
+            GorillaDecoder decoder = new GorillaDecoder(buf, block.offset, block.count);
+            while (decoder.next()) {
+                long timestamp = decoder.timestamp();
+                if (timestamp < from) {
+                    continue;
+                }
+                if (timestamp > to) {
+                    return visited;
+                }
+                double value = decoder.value();
+                visitor.visit(timestamp, value, value, value, 1, value);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writable) {
+            seal();
+        }
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    /**
+     * 读取前获取引用
+     *
+     * @return 是否获取成功，段已释放时返回false，不可再读取
+     */
+    boolean retain() {
+        while (true) {
+            int count = refs.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refs.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放引用，最后一个引用释放时解除内存映射
+     *
+     * @return 是否为最后一个引用
+     */
+    boolean release() {
+        if (refs.decrementAndGet() != 0) {
+            return false;
+        }
+        unmap(buffer);
+        if (unsealed != null) {
+            unmap(unsealed);
+            unsealed = null;
+        }
+        return true;
+    }
+
+    /**
+     * 立即解除映射，不等待垃圾回收，释放失败时仍由垃圾回收兜底
+     */
+    private static void unmap(MappedByteBuffer buf) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buf);
+                return;
+            }
+            Method cleanerMethod = buf.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buf);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // 映射随缓冲区对象回收释放
+        }
+    }
+
+    private void readFooter(int offset) throws IOException {
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(offset);
+        int seriesCount = buf.getInt();
+        for (int i = 0; i < seriesCount; i++) {
+            SeriesKey key = readKey(buf);
+            SeriesIndex series = new SeriesIndex(i, key);
+            int blocks = buf.getInt();
+            BlockRef[] refs = new BlockRef[blocks];
+            for (int j = 0; j < blocks; j++) {
+                refs[j] = new BlockRef(buf.getInt(), buf.getInt(), buf.getLong(), buf.getLong());
+            }
+            series.blocks = refs;
+            index.put(key, series);
+        }
+    }
+
+    /**
+     * 顺序扫描记录重建索引，遇到未写完的记录即停止
+     */
+    private void scanRecords(int limit) {
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(HEADER_SIZE);
+        buf.limit(limit);
+        Map<Integer, SeriesIndex> ids = new HashMap<>();
+        try {
+            while (buf.remaining() > 0) {
+                byte type = buf.get();
+                if (type == RECORD_SERIES) {
+                    int id = buf.getInt();
+                    SeriesIndex series = new SeriesIndex(id, readKey(buf));
+                    ids.put(id, series);
+                    index.put(series.key, series);
+                } else if (type == RECORD_BLOCK) {
+                    SeriesIndex series = ids.get(buf.getInt());
+                    int count = buf.getInt();
+                    long min = buf.getLong();
+                    long max = buf.getLong();
+                    int length = buf.getInt();
+                    int offset = buf.position();
+                    if (series == null || length < 0 || length > buf.remaining()) {
+                        break;
+                    }
+                    buf.position(offset + length);
+                    series.add(new BlockRef(offset, count, min, max));
+                } else {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // 末尾记录不完整，保留已解析的部分
+        }
+    }
+
+    private ByteBuffer encodeFooter() {
+        Map<byte[], BlockRef[]> entries = new LinkedHashMap<>();
+        int size = 4;
+        for (SeriesIndex series : new TreeMap<>(byId).values()) {
+            byte[] key = encodeKey(series.key);
+            BlockRef[] blocks = series.blocks;
+            entries.put(key, blocks);
+            size += key.length + 4 + blocks.length * 24;
+        }
+        ByteBuffer footer = ByteBuffer.allocate(size);
+        footer.putInt(entries.size());
+        for (Map.Entry<byte[], BlockRef[]> entry : entries.entrySet()) {
+            footer.put(entry.getKey());
+            footer.putInt(entry.getValue().length);
+            for (BlockRef block : entry.getValue()) {
+                footer.putInt(block.offset);
+                footer.putInt(block.count);
+                footer.putLong(block.minTimestamp);
+                footer.putLong(block.maxTimestamp);
+            }
+        }
+        footer.flip();
+        return footer;
+    }
+
+    /**
+     * 序列标识编码: 名称, 标签数, [标签名, 标签值]...，字符串为2字节长度 + UTF-8
+     */
+    private static byte[] encodeKey(SeriesKey key) {
+        int size = 2;
+        byte[] name = key.getName().getBytes(StandardCharsets.UTF_8);
+        size += 2 + name.length;
+        byte[][] labels = new byte[key.getLabels().size() * 2][];
+        int i = 0;
+        for (Map.Entry<String, String> label : key.getLabels().entrySet()) {
+            labels[i] = label.getKey().getBytes(StandardCharsets.UTF_8);
+            labels[i + 1] = label.getValue().getBytes(StandardCharsets.UTF_8);
+            size += 4 + labels[i].length + labels[i + 1].length;
+            i += 2;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        putString(buf, name);
+        buf.putShort((short) key.getLabels().size());
+        for (byte[] label : labels) {
+            putString(buf, label);
+        }
+        return buf.array();
+    }
+
+    private static SeriesKey readKey(ByteBuffer buf) {
+        String name = getString(buf);
+        int labels = buf.getShort() & 0xFFFF;
+        Map<String, String> map = new TreeMap<>();
+        for (int i = 0; i < labels; i++) {
+            map.put(getString(buf), getString(buf));
+        }
+        return SeriesKey.of(name, map);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] value) {
+        buf.putShort((short) value.length);
+        buf.put(value);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] value = new byte[buf.getShort() & 0xFFFF];
+        buf.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buf, int offset, byte[] value) {
+        putBytes(buf, offset, value, value.length);
+    }
+
+    private static void putBytes(ByteBuffer buf, int offset, byte[] value, int length) {
+        ByteBuffer dup = buf.duplicate();
+        dup.position(offset);
+        dup.put(value, 0, length);
+    }
+
+    /**
+     * 段内单个序列的数据块索引，块按时间升序追加，写时复制
+     */
+    private static final class SeriesIndex {
+        private final int id;
+        private final SeriesKey key;
+        private volatile BlockRef[] blocks = new BlockRef[0];
+
+        SeriesIndex(int id, SeriesKey key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        void add(BlockRef block) {
+            BlockRef[] current = blocks;
+            BlockRef[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = block;
+            blocks = next;
+        }
+    }
+
+    /**
+     * 数据块位置
+     */
+    private static final class BlockRef {
+        private final int offset;
+        private final int count;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+
+        BlockRef(int offset, int count, long minTimestamp, long maxTimestamp) {
+            this.offset = offset;
+            this.count = count;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.aizuda.monitor.tsdb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 单个序列的环形存储
+ * 原始点、1分钟汇总和10分钟汇总各占一段堆外环形缓冲区，写满后覆盖最旧的数据
+ *
+ * 写入方持有写锁串行追加；读取方使用乐观读，逐点校验版本号，
+ * 读到被并发覆盖的槽位时重读该槽位，不会阻塞写入也不会被写入阻塞
+ *
+ * 汇总窗口在收到下一个窗口的采样点时落盘，未结束的窗口在扫描时作为最后一个点返回
+ */
+public final class Series {
+    /** 原始点槽位: 时间戳 + 值 */
+    static final int RAW_SLOT = 16;
+    /** 汇总点槽位: 时间戳 + min + max + sum + count + last */
+    static final int ROLLUP_SLOT = 48;
+
+    private final SeriesKey key;
+    private final ByteBuffer memory;
+    private final StampedLock lock = new StampedLock();
+
+    private final Ring raw;
+    private final Ring minute;
+    private final Ring tenMinutes;
+    private final Bucket minuteBucket;
+    private final Bucket tenMinutesBucket;
+
+    /** 最后写入的时间戳，乱序点直接丢弃 */
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /** 已被存储回收，内存可能已分配给其他序列，由写锁保护 */
+    private boolean retired;
+
+    Series(SeriesKey key, ByteBuffer memory, int rawPoints, int minutePoints, int tenMinutePoints) {
+        this.key = key;
+        this.memory = memory;
+        int offset = 0;
+        this.raw = new Ring(slice(memory, offset, rawPoints * RAW_SLOT), rawPoints, RAW_SLOT);
+        offset += rawPoints * RAW_SLOT;
+        this.minute = new Ring(slice(memory, offset, minutePoints * ROLLUP_SLOT), minutePoints, ROLLUP_SLOT);
+        offset += minutePoints * ROLLUP_SLOT;
+        this.tenMinutes = new Ring(slice(memory, offset, tenMinutePoints * ROLLUP_SLOT), tenMinutePoints, ROLLUP_SLOT);
+        this.minuteBucket = new Bucket(Resolution.ONE_MINUTE.getStep());
+        this.tenMinutesBucket = new Bucket(Resolution.TEN_MINUTES.getStep());
+    }
+
+    /**
+     * 单个序列占用的堆外内存字节数
+     */
+    static long bytes(int rawPoints, int minutePoints, int tenMinutePoints) {
+        return (long) rawPoints * RAW_SLOT + (long) (minutePoints + tenMinutePoints) * ROLLUP_SLOT;
+    }
+
+    public SeriesKey getKey() {
+        return key;
+    }
+
+    /**
+     * 底层内存，序列移除后归还给分配器
+     */
+    ByteBuffer memory() {
+        return memory;
+    }
+
+    /**
+     * 追加一个采样点
+     *
+     * @return 是否写入，时间戳早于上一个点或序列已回收时返回false
+     */
+    boolean append(long timestamp, double value) {
+        long stamp = lock.writeLock();
+        try {
+            if (retired || timestamp < lastTimestamp) {
+                return false;
+            }
+            lastTimestamp = timestamp;
+            raw.putRaw(timestamp, value);
+            minuteBucket.add(timestamp, value, minute);
+            tenMinutesBucket.add(timestamp, value, tenMinutes);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 标记为已回收，之后的写入失败、读取返回空，调用方随后可复用其内存
+     * 在写锁内标记，此前开始的乐观读都会校验失败并在重读时看到标记
+     */
+    void retire() {
+        long stamp = lock.writeLock();
+        try {
+            retired = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 是否已被存储回收
+     */
+    public boolean isRetired() {
+        long stamp = lock.readLock();
+        try {
+            return retired;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 最后写入的时间戳，没有数据时返回 Long.MIN_VALUE
+     */
+    public long getLastTimestamp() {
+        long stamp = lock.tryOptimisticRead();
+        long last = lastTimestamp;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                last = lastTimestamp;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 指定分辨率下环中最旧数据点的时间戳，没有数据时返回 Long.MAX_VALUE
+     */
+    public long getOldestTimestamp(Resolution resolution) {
+        Ring ring = ring(resolution);
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            if (retired) {
+                return Long.MAX_VALUE;
+            }
+            long written = ring.written;
+            long oldest = written == 0 ? Long.MAX_VALUE
+                : ring.buffer.getLong(ring.position(Math.max(0, written - ring.capacity)));
+            if (lock.validate(stamp)) {
+                return oldest;
+            }
+        }
+    }
+
+    /**
+     * 按时间升序扫描 [from, to] 范围内的数据点
+     *
+     * @return 回调的数据点数
+     */
+    public int scan(Resolution resolution, long from, long to, PointVisitor visitor) {
+        Ring ring = ring(resolution);
+        Bucket bucket = bucket(resolution);
+        int visited = 0;
+        long index = 0;
+        while (true) {
+            long stamp = lock.tryOptimisticRead();
+            if (retired) {
+                // 内存已交给其他序列
+                return visited;
+            }
+            long written = ring.written;
+            long oldest = Math.max(0, written - ring.capacity);
+            if (index < oldest) {
+                // 扫描期间被覆盖的部分直接跳过
+                index = oldest;
+            }
+
+            if (index >= written) {
+                // 环已读完，在同一版本下读取未结束的汇总窗口，避免窗口恰好落盘时漏读或重读
+                if (bucket == null) {
+                    if (lock.validate(stamp)) {
+                        return visited;
+                    }
+                    continue;
+                }
+                long start = bucket.start;
+                long count = bucket.count;
+                double min = bucket.min;
+                double max = bucket.max;
+                double sum = bucket.sum;
+                double last = bucket.last;
+                if (!lock.validate(stamp)) {
+                    continue;
+                }
+                if (count > 0 && start >= from && start <= to) {
+                    visitor.visit(start, min, max, sum, count, last);
+                    visited++;
+                }
+                return visited;
+            }
+
+            int pos = ring.position(index);
+            ByteBuffer buf = ring.buffer;
+            long timestamp = buf.getLong(pos);
+            double min;
+            double max;
+            double sum;
+            long count;
+            double last;
+            if (ring.slotSize == RAW_SLOT) {
+                min = max = sum = last = buf.getDouble(pos + 8);
+                count = 1;
+            } else {
+                min = buf.getDouble(pos + 8);
+                max = buf.getDouble(pos + 16);
+                sum = buf.getDouble(pos + 24);
+                count = buf.getLong(pos + 32);
+                last = buf.getDouble(pos + 40);
+            }
+            if (!lock.validate(stamp)) {
+                // 读取期间有写入，重读当前槽位
+                continue;
+            }
+            index++;
+            if (timestamp < from) {
+                continue;
+            }
+            if (timestamp > to) {
+                return visited;
+            }
+            visitor.visit(timestamp, min, max, sum, count, last);
+            visited++;
+        }
+    }
+
+    private Ring ring(Resolution resolution) {
+        switch (resolution) {
+            case ONE_MINUTE:
+                return minute;
+            case TEN_MINUTES:
+                return tenMinutes;
+            default:
+                return raw;
+        }
+    }
+
+    private Bucket bucket(Resolution resolution) {
+        switch (resolution) {
+            case ONE_MINUTE:
+                return minuteBucket;
+            case TEN_MINUTES:
+                return tenMinutesBucket;
+            default:
+                return null;
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer memory, int offset, int length) {
+        ByteBuffer dup = memory.duplicate();
+        dup.position(offset);
+        dup.limit(offset + length);
+        return dup.slice();
+    }
+
+    /**
+     * 堆外环形缓冲区，written为累计写入的点数
+     */
+    private static final class Ring {
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private final int slotSize;
+        private long written;
+
+        Ring(ByteBuffer buffer, int capacity, int slotSize) {
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.slotSize = slotSize;
+        }
+
+        int position(long index) {
+            return (int) (index % capacity) * slotSize;
+        }
+
+        void putRaw(long timestamp, double value) {
+            int pos = position(written);
+            buffer.putLong(pos, timestamp);
+            buffer.putDouble(pos + 8, value);
+            written++;
+        }
+
+        void putRollup(long timestamp, double min, double max, double sum, long count, double last) {
+            int pos = position(written);
+            buffer.putLong(pos, timestamp);
+            buffer.putDouble(pos + 8, min);
+            buffer.putDouble(pos + 16, max);
+            buffer.putDouble(pos + 24, sum);
+            buffer.putLong(pos + 32, count);
+            buffer.putDouble(pos + 40, last);
+            written++;
+        }
+    }
+
+    /**
+     * 未结束的汇总窗口
+     */
+    private static final class Bucket {
+        private final long step;
+        private long start;
+        private long count;
+        private double min;
+        private double max;
+        private double sum;
+        private double last;
+
+        Bucket(long step) {
+            this.step = step;
+        }
+
+        void add(long timestamp, double value, Ring ring) {
+            long bucketStart = timestamp - Math.floorMod(timestamp, step);
+            if (count > 0 && bucketStart != start) {
+                ring.putRollup(start, min, max, sum, count, last);
+                count = 0;
+            }
+            if (count == 0) {
+                start = bucketStart;
+                min = value;
+                max = value;
+                sum = 0;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            sum += value;
+            last = value;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.aizuda.monitor.tsdb;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 序列标识
+ * 由指标名和按键排序的标签组成，标签顺序不影响相等性
+ */
+public final class SeriesKey {
+    private final String name;
+    private final SortedMap<String, String> labels;
+    private final int hash;
+
+    private SeriesKey(String name, SortedMap<String, String> labels) {
+        this.name = name;
+        this.labels = Collections.unmodifiableSortedMap(labels);
+        this.hash = 31 * name.hashCode() + labels.hashCode();
+    }
+
+    /**
+     * 创建序列标识
+     *
+     * @param name 指标名，如 system.cpu.usage
+     * @param labels 标签，空值标签会被忽略
+     */
+    public static SeriesKey of(String name, Map<String, String> labels) {
+        SortedMap<String, String> sorted = new TreeMap<>();
+        if (labels != null) {
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                if (label.getKey() != null && label.getValue() != null) {
+                    sorted.put(label.getKey(), label.getValue());
+                }
+            }
+        }
+        return new SeriesKey(name, sorted);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SortedMap<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * 获取标签值
+     *
+     * @return 标签值，不存在时返回null
+     */
+    public String getLabel(String label) {
+        return labels.get(label);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeriesKey)) {
+            return false;
+        }
+        SeriesKey that = (SeriesKey) o;
+        return hash == that.hash && name.equals(that.name) && labels.equals(that.labels);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return labels.isEmpty() ? name : name + labels;
+    }
+}
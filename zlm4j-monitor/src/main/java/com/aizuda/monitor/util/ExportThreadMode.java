@@ -0,0 +1,28 @@
+package com.aizuda.monitor.util;
+
+/**
+ * 导出线程模式
+ * 决定导出器在哪类线程上执行，阻塞式网络导出器较多时虚拟线程可避免占满工作线程池
+ */
+public enum ExportThreadMode {
+    /** 在工作线程池中依次调用各导出器 */
+    PLATFORM,
+
+    /**
+     * 每个导出器一个有界队列和一个常驻虚拟线程，工作线程只入队，同一导出器按入队顺序依次导出；
+     * 需要JDK 21及以上，低版本回退为PLATFORM
+     */
+    VIRTUAL;
+
+    /**
+     * 按名称解析，忽略大小写
+     *
+     * @throws IllegalArgumentException 未知的模式名
+     */
+    public static ExportThreadMode of(String name) {
+        if (name == null || name.isEmpty()) {
+            return PLATFORM;
+        }
+        return valueOf(name.trim().toUpperCase());
+    }
+}
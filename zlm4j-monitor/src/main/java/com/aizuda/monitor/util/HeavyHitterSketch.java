@@ -0,0 +1,367 @@
+package com.aizuda.monitor.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 固定内存的高频项统计(Space-Saving + Count-Min)
+ * 只为权重最大的 capacity 个键保留计数槽，其余键只累加到 Count-Min 草图；
+ * 新键的草图估计值超过槽中最小计数时才替换该槽，避免大量只出现一次的键反复挤占计数槽
+ *
+ * 槽内计数是真实权重的上界，计数减去误差是下界；键超过 maxKeyLength 字节时截断。
+ * 更新在锁内进行，稳态下不分配对象；{@link #topAndReset(int)} 按周期取出前N项并清空
+ */
+public class HeavyHitterSketch {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int capacity;
+    private final int maxKeyLength;
+
+    /** 计数槽 */
+    private final long[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private final byte[][] keys;
+    private final int[] keyLengths;
+    private int size;
+
+    /** 按计数排列的最小堆，heap 存槽号，heapIndex 为槽在堆中的位置 */
+    private final int[] heap;
+    private final int[] heapIndex;
+
+    /** 哈希到槽号的开放寻址索引，哈希0表示空位 */
+    private final long[] indexHashes;
+    private final int[] indexSlots;
+    private final int indexMask;
+
+    /** Count-Min 草图，depth 行 width 列 */
+    private final long[] sketch;
+    private final int width;
+    private final int depth;
+    private final int widthMask;
+
+    private long total;
+
+    /**
+     * @param capacity     计数槽数量
+     * @param width        草图每行的列数，向上取整到2的幂
+     * @param depth        草图行数
+     * @param maxKeyLength 键的最大字节数
+     */
+    public HeavyHitterSketch(int capacity, int width, int depth, int maxKeyLength) {
+        if (capacity <= 0 || width <= 0 || depth <= 0 || maxKeyLength <= 0) {
+            throw new IllegalArgumentException("计数槽数量、草图宽度、深度和键长度必须大于0");
+        }
+        this.capacity = capacity;
+        this.maxKeyLength = maxKeyLength;
+        this.hashes = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.keys = new byte[capacity][maxKeyLength];
+        this.keyLengths = new int[capacity];
+        this.heap = new int[capacity];
+        this.heapIndex = new int[capacity];
+
+        int indexSize = Integer.highestOneBit(capacity * 4 - 1) << 1;
+        this.indexHashes = new long[indexSize];
+        this.indexSlots = new int[indexSize];
+        this.indexMask = indexSize - 1;
+
+        int columns = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.width = columns;
+        this.depth = depth;
+        this.widthMask = columns - 1;
+        this.sketch = new long[columns * depth];
+    }
+
+    /**
+     * 累加权重
+     *
+     * @param key    键的字节，可以是复用的缓冲区
+     * @param length 有效长度
+     * @param weight 权重，不大于0时忽略
+     */
+    public synchronized void add(byte[] key, int length, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        length = Math.min(length, maxKeyLength);
+        long h = hash(key, length);
+        total += weight;
+
+        int slot = find(h, key, length);
+        long estimate = updateSketch(h, weight);
+        if (slot >= 0) {
+            counts[slot] += weight;
+            siftDown(heapIndex[slot]);
+            return;
+        }
+        if (size < capacity) {
+            slot = size++;
+            heap[slot] = slot;
+            heapIndex[slot] = slot;
+            assign(slot, h, key, length, estimate, weight);
+            siftUp(slot);
+            return;
+        }
+        // 草图估计值不超过最小计数的键不替换
+        int min = heap[0];
+        if (estimate <= counts[min]) {
+            return;
+        }
+        removeIndex(hashes[min], min);
+        assign(min, h, key, length, estimate, weight);
+        siftDown(0);
+    }
+
+    /**
+     * 按UTF-8编码累加权重，用于低频调用
+     */
+    public void add(String key, long weight) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        add(bytes, bytes.length, weight);
+    }
+
+    /**
+     * 取出计数最大的前N项并清空
+     *
+     * @param n 最多取出的项数
+     * @return 按计数从大到小排列
+     */
+    public synchronized Snapshot topAndReset(int n) {
+        List<Entry> entries = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            entries.add(new Entry(new String(keys[slot], 0, keyLengths[slot], StandardCharsets.UTF_8),
+                counts[slot], errors[slot]));
+        }
+        entries.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+        Snapshot snapshot = new Snapshot(
+            Collections.unmodifiableList(new ArrayList<>(entries.subList(0, Math.min(n, entries.size())))),
+            total);
+
+        size = 0;
+        total = 0;
+        Arrays.fill(indexHashes, 0);
+        Arrays.fill(sketch, 0);
+        return snapshot;
+    }
+
+    /**
+     * 计数槽数量
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 占用的堆内存(字节)，不含对象头
+     */
+    public long memoryBytes() {
+        return (long) capacity * (maxKeyLength + 8 * 3 + 4 * 3)
+            + (long) indexHashes.length * 12
+            + (long) sketch.length * 8;
+    }
+
+    private void assign(int slot, long h, byte[] key, int length, long estimate, long weight) {
+        hashes[slot] = h;
+        System.arraycopy(key, 0, keys[slot], 0, length);
+        keyLengths[slot] = length;
+        // 草图估计值是上界，替换前已经累计但未进入计数槽的部分记为误差
+        counts[slot] = estimate;
+        errors[slot] = estimate - weight;
+        putIndex(h, slot);
+    }
+
+    /**
+     * 草图累加并返回估计值(各行最小值)
+     */
+    private long updateSketch(long h, long weight) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = row * width + ((h1 + row * h2) & widthMask);
+            long value = sketch[cell] += weight;
+            if (value < estimate) {
+                estimate = value;
+            }
+        }
+        return estimate;
+    }
+
+    private int find(long h, byte[] key, int length) {
+        int pos = (int) h & indexMask;
+        while (indexHashes[pos] != 0) {
+            if (indexHashes[pos] == h) {
+                int slot = indexSlots[pos];
+                if (slot < size && keyEquals(slot, key, length)) {
+                    return slot;
+                }
+            }
+            pos = (pos + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int slot, byte[] key, int length) {
+        if (keyLengths[slot] != length) {
+            return false;
+        }
+        byte[] stored = keys[slot];
+        for (int i = 0; i < length; i++) {
+            if (stored[i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void putIndex(long h, int slot) {
+        int pos = (int) h & indexMask;
+        while (indexHashes[pos] != 0) {
+            pos = (pos + 1) & indexMask;
+        }
+        indexHashes[pos] = h;
+        indexSlots[pos] = slot;
+    }
+
+    /**
+     * 删除索引项，后续探测链上的项前移，保持线性探测不断链
+     */
+    private void removeIndex(long h, int slot) {
+        int pos = (int) h & indexMask;
+        while (indexHashes[pos] != h || indexSlots[pos] != slot) {
+            pos = (pos + 1) & indexMask;
+        }
+        int hole = pos;
+        pos = (pos + 1) & indexMask;
+        while (indexHashes[pos] != 0) {
+            int home = (int) indexHashes[pos] & indexMask;
+            // home 不在 (hole, pos] 内时可以前移到空位
+            if (((pos - home) & indexMask) >= ((pos - hole) & indexMask)) {
+                indexHashes[hole] = indexHashes[pos];
+                indexSlots[hole] = indexSlots[pos];
+                hole = pos;
+            }
+            pos = (pos + 1) & indexMask;
+        }
+        indexHashes[hole] = 0;
+    }
+
+    private void siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) {
+                break;
+            }
+            moveTo(heap[parent], i);
+            i = parent;
+        }
+        moveTo(slot, i);
+    }
+
+    private void siftDown(int i) {
+        int slot = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[slot] <= counts[heap[child]]) {
+                break;
+            }
+            moveTo(heap[child], i);
+            i = child;
+        }
+        moveTo(slot, i);
+    }
+
+    private void moveTo(int slot, int i) {
+        heap[i] = slot;
+        heapIndex[slot] = i;
+    }
+
+    private static long hash(byte[] key, int length) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            h ^= key[i] & 0xff;
+            h *= FNV_PRIME;
+        }
+        // 再混合一次，草图按低位和高位各取一半作为两个独立哈希
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 一个周期的统计结果
+     */
+    public static final class Snapshot {
+        private final List<Entry> top;
+        private final long total;
+
+        Snapshot(List<Entry> top, long total) {
+            this.top = top;
+            this.total = total;
+        }
+
+        /**
+         * 按计数从大到小排列的前N项
+         */
+        public List<Entry> getTop() {
+            return top;
+        }
+
+        /**
+         * 本周期全部键的权重之和
+         */
+        public long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * 高频项
+     */
+    public static final class Entry {
+        private final String key;
+        private final long count;
+        private final long error;
+
+        Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 计数，真实值的上界
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 最大高估量，count - error 为真实值的下界
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count + (error > 0 ? "(±" + error + ")" : "");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.aizuda.monitor.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁对数线性直方图
+ * 每个2的幂区间再线性划分为16个桶，相对误差不超过1/16，覆盖全部非负long值
+ *
+ * 记录只做一次数组原子自增，多线程并发记录无锁；
+ * {@link #snapshotAndReset()} 逐桶取出并清零，用于按采集周期输出分位数，
+ * 与并发记录交错时计数只会落入本周期或下一周期，不会丢失
+ */
+public class LogLinearHistogram {
+    /** 每个2的幂区间的线性桶数(2^SUB_BITS) */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个值，负数按0记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(index(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 取出当前周期的分布并清零
+     */
+    public Snapshot snapshotAndReset() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                snapshot[i] = counts.getAndSet(i, 0);
+                total += snapshot[i];
+            }
+        }
+        return new Snapshot(snapshot, total, max.getAndSet(0));
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    /**
+     * 桶的代表值(区间中点)
+     */
+    static long value(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * 一个周期内的分布
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        /**
+         * 记录次数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 最大值，没有记录时为0
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 分位数
+         *
+         * @param quantile 分位点，取值 [0, 1]
+         * @return 分位值，不超过最大值，没有记录时为0
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // 与并发记录交错时最大值可能已计入下一周期
+                    return max > 0 ? Math.min(value(i), max) : value(i);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.aizuda.monitor.util;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 可合并的分位数草图(DDSketch)
+ * 按对数把正值映射到桶: 桶 i 覆盖 (gamma^(i-1), gamma^i]，gamma = (1+a)/(1-a)，
+ * 任意分位数的相对误差不超过 a；小于 {@link #MIN_VALUE} 的值计入零桶，负值忽略
+ *
+ * 桶计数连续存放，跨度超过 maxBins 时把最低的桶并入相邻桶，高分位数精度不受影响，内存上限为 maxBins*8 字节。
+ * 相对精度和桶数相同的草图可以无损合并，{@link #toBytes()} 的结果在其他节点合并后与直接记录全部值相同。
+ * 非线程安全，由采集线程在一次采集内使用
+ */
+public class QuantileSketch {
+    /** 默认相对精度 */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    /** 默认最大桶数 */
+    public static final int DEFAULT_MAX_BINS = 2048;
+    /** 计入零桶的阈值 */
+    public static final double MIN_VALUE = 1e-9;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final double relativeAccuracy;
+    private final int maxBins;
+    private final double gamma;
+    private final double logGamma;
+
+    /** bins[k] 为桶 offset+k 的计数 */
+    private long[] bins = new long[0];
+    private int offset;
+    private long zeroCount;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    /**
+     * @param relativeAccuracy 相对精度，取值 (0, 1)
+     * @param maxBins          最大桶数
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("相对精度必须在(0, 1)之间");
+        }
+        if (maxBins <= 0) {
+            throw new IllegalArgumentException("最大桶数必须大于0");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBins = maxBins;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * 记录一个值，负数和NaN忽略
+     */
+    public void add(double value) {
+        if (!(value >= 0) || Double.isInfinite(value)) {
+            return;
+        }
+        if (value < MIN_VALUE) {
+            zeroCount++;
+        } else {
+            addToBin(index(value), 1);
+        }
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * 合并另一个草图，两者的相对精度和最大桶数必须相同
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy || other.maxBins != maxBins) {
+            throw new IllegalArgumentException("相对精度或最大桶数不同的草图不能合并");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        for (int k = other.bins.length - 1; k >= 0; k--) {
+            if (other.bins[k] != 0) {
+                addToBin(other.offset + k, other.bins[k]);
+            }
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * 分位数
+     *
+     * @param quantile 分位点，取值 [0, 1]
+     * @return 分位值，没有记录时返回0
+     */
+    public double getValueAtQuantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) (quantile * (count - 1));
+        if (rank < zeroCount) {
+            return Math.max(min, 0);
+        }
+        long seen = zeroCount;
+        for (int k = 0; k < bins.length; k++) {
+            seen += bins[k];
+            if (seen > rank) {
+                double value = 2 * Math.pow(gamma, offset + k) / (gamma + 1);
+                return Math.max(min, Math.min(value, max));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * 最小值，没有记录时返回0
+     */
+    public double getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * 最大值，没有记录时返回0
+     */
+    public double getMax() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * 零桶计数，即小于 {@link #MIN_VALUE} 的值的个数
+     */
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    /**
+     * 按值从小到大遍历非零桶，不含零桶
+     * 桶的代表值与 {@link #getValueAtQuantile(double)} 一致，相对误差不超过相对精度
+     */
+    public void forEachBin(BinVisitor visitor) {
+        for (int k = 0; k < bins.length; k++) {
+            if (bins[k] != 0) {
+                visitor.visit(2 * Math.pow(gamma, offset + k) / (gamma + 1), bins[k]);
+            }
+        }
+    }
+
+    /**
+     * 清空，保留已分配的桶数组
+     */
+    public void clear() {
+        Arrays.fill(bins, 0);
+        zeroCount = 0;
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * 序列化为字节，只写出非零桶区间，桶计数按变长整数编码
+     */
+    public byte[] toBytes() {
+        int first = 0;
+        int last = bins.length - 1;
+        while (first <= last && bins[first] == 0) {
+            first++;
+        }
+        while (last >= first && bins[last] == 0) {
+            last--;
+        }
+        int length = last - first + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 4 + 8 * 2 + 8 * 3 + 4 * 2 + length * 10);
+        buffer.put(FORMAT_VERSION);
+        buffer.putDouble(relativeAccuracy);
+        buffer.putInt(maxBins);
+        buffer.putLong(count);
+        buffer.putLong(zeroCount);
+        buffer.putDouble(sum);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(offset + first);
+        buffer.putInt(length);
+        for (int k = first; k <= last; k++) {
+            long value = bins[k];
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * 从 {@link #toBytes()} 的结果还原
+     *
+     * @throws IllegalArgumentException 数据格式不正确
+     */
+    public static QuantileSketch fromBytes(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("不支持的分位数草图版本: " + version);
+            }
+            QuantileSketch sketch = new QuantileSketch(buffer.getDouble(), buffer.getInt());
+            sketch.count = buffer.getLong();
+            sketch.zeroCount = buffer.getLong();
+            sketch.sum = buffer.getDouble();
+            sketch.min = buffer.getDouble();
+            sketch.max = buffer.getDouble();
+            sketch.offset = buffer.getInt();
+            int length = buffer.getInt();
+            if (length < 0 || length > sketch.maxBins) {
+                throw new IllegalArgumentException("分位数草图桶数不正确: " + length);
+            }
+            sketch.bins = new long[length];
+            for (int k = 0; k < length; k++) {
+                long value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get();
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                sketch.bins[k] = value;
+            }
+            return sketch;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("分位数草图数据不完整", e);
+        }
+    }
+
+    /**
+     * 桶访问器
+     */
+    @FunctionalInterface
+    public interface BinVisitor {
+        /**
+         * @param value 桶的代表值
+         * @param count 桶计数
+         */
+        void visit(double value, long count);
+    }
+
+    private int index(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    private void addToBin(int index, long n) {
+        if (bins.length == 0) {
+            bins = new long[Math.min(16, maxBins)];
+            // 新值放在数组中间，两侧都留出扩展空间
+            offset = index - bins.length / 2;
+        }
+        if (index < offset || index >= offset + bins.length) {
+            extendRange(index);
+        }
+        if (index < offset) {
+            // 超出最大桶数，最低的桶已合并，低于保留区间的值计入最低桶
+            index = offset;
+        }
+        bins[index - offset] += n;
+    }
+
+    /**
+     * 扩展桶区间以容纳 index，区间跨度超过 maxBins 时合并最低的桶
+     */
+    private void extendRange(int index) {
+        int first = 0;
+        int last = bins.length - 1;
+        while (first <= last && bins[first] == 0) {
+            first++;
+        }
+        while (last >= first && bins[last] == 0) {
+            last--;
+        }
+        if (first > last) {
+            // 全部为空，重新以 index 为中心
+            offset = index - bins.length / 2;
+            return;
+        }
+        int low = Math.min(index, offset + first);
+        int high = Math.max(index, offset + last);
+        if (high - low + 1 > maxBins) {
+            low = high - maxBins + 1;
+        }
+        if (low >= offset && high < offset + bins.length) {
+            // 低于已合并区间的值，无需调整
+            return;
+        }
+        int span = high - low + 1;
+        int capacity = bins.length;
+        while (capacity < span) {
+            capacity <<= 1;
+        }
+        capacity = Math.min(Math.max(capacity, span), maxBins);
+        long[] resized = new long[capacity];
+        // 在容量内为之后的增长留出低端空间
+        int newOffset = Math.max(low - (capacity - span) / 2, high - capacity + 1);
+        for (int k = first; k <= last; k++) {
+            int target = Math.max(offset + k, low) - newOffset;
+            resized[target] += bins[k];
+        }
+        bins = resized;
+        offset = newOffset;
+    }
+}
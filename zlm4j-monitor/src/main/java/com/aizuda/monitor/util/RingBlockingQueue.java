@@ -0,0 +1,383 @@
+package com.aizuda.monitor.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁有界环形队列
+ * 预分配的槽位数组，每个槽位带一个序号，生产者和消费者各自以CAS争用写入/读取位置，
+ * 通过槽位序号判断槽位是否可写/可读，支持多生产者多消费者
+ *
+ * 生产者从不阻塞: 队列满时 offer 立即返回false，由调用方决定丢弃或降级；
+ * 消费者在队列为空时按 {@link WaitStrategy} 等待，PARK策略下由生产者唤醒一个等待的消费者
+ *
+ * 作为 {@link java.util.concurrent.ThreadPoolExecutor} 的工作队列使用时，
+ * 队列满会触发拒绝策略而不是阻塞提交线程；容量可在已分配的槽位数(2的幂)以内在线调整
+ *
+ * {@link #remove(Object)} 把元素所在槽位替换为占位标记，消费者取出时跳过占位；
+ * {@link #size()} 扣除尚未被跳过的占位数，{@link #isEmpty()} 按是否有可取出的元素判断，
+ * 线程池关闭时据此决定工作线程能否退出
+ *
+ * @param <E> 元素类型
+ */
+public class RingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    /** 挂起前的自旋次数 */
+    private static final int SPIN_TRIES = 100;
+    /** YIELD策略下让出CPU前的自旋次数 */
+    private static final int YIELD_SPIN_TRIES = 50;
+    /** PARK策略单次挂起的最长时间，防止极端情况下丢失唤醒 */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** 已移除元素的占位标记 */
+    private static final Object REMOVED = new Object();
+
+    private final AtomicReferenceArray<Object> buffer;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private volatile int capacity;
+    private final WaitStrategy waitStrategy;
+
+    /** 下一个写入位置 */
+    private final AtomicLong tail = new AtomicLong();
+    /** 下一个读取位置 */
+    private final AtomicLong head = new AtomicLong();
+    /** 尚未被消费者跳过的占位数 */
+    private final AtomicLong removed = new AtomicLong();
+
+    /** PARK策略下挂起的消费者 */
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param capacity 容量，槽位数组按2的幂分配
+     * @param waitStrategy 消费者等待策略
+     */
+    public RingBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("队列容量必须大于0");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.capacity = capacity;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * 调整容量，不超过已分配的槽位数时原地生效
+     * 缩容时已在队列中的元素保留，直到元素数降到新容量以下才接受新的写入
+     *
+     * @return 是否调整成功，超过已分配槽位数时返回false
+     */
+    public boolean setCapacity(int capacity) {
+        if (capacity <= 0 || capacity > buffer.length()) {
+            return false;
+        }
+        this.capacity = capacity;
+        return true;
+    }
+
+    /**
+     * 写入一个元素，队列满时立即返回false
+     */
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        while (true) {
+            long pos = tail.get();
+            if (pos - head.get() >= capacity) {
+                return false;
+            }
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(index, e);
+                    // 发布: 序号前移后消费者才能读取该槽位。这里必须是volatile写，
+                    // 与 signal() 中读取等待者构成 写序号-读等待者 / 登记等待者-读序号 的对称顺序，
+                    // 否则消费者可能在登记后读不到新序号而挂起，生产者又读不到等待者而不唤醒
+                    sequences.set(index, pos + 1);
+                    signal();
+                    return true;
+                }
+            } else if (diff < 0) {
+                // 槽位尚未被上一轮的消费者释放
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 取出一个元素，队列为空时立即返回null，跳过已移除元素的占位
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        while (true) {
+            long pos = head.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    // 与 remove 的CAS互斥: 先取走的一方得到元素
+                    Object e = buffer.getAndSet(index, null);
+                    // 释放: 槽位留给下一轮的生产者
+                    sequences.lazySet(index, pos + mask + 1);
+                    if (e != REMOVED) {
+                        return (E) e;
+                    }
+                    removed.decrementAndGet();
+                }
+            } else if (diff < 0) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = await(Long.MAX_VALUE);
+        if (e == null) {
+            // 无限等待只会因中断返回
+            throw new InterruptedException();
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(unit.toNanos(timeout));
+    }
+
+    /**
+     * 按等待策略等待元素
+     *
+     * @param timeoutNanos 最长等待时间，Long.MAX_VALUE表示不超时
+     * @return 元素，超时返回null
+     */
+    private E await(long timeoutNanos) throws InterruptedException {
+        E e = poll();
+        if (e != null || timeoutNanos <= 0) {
+            return e;
+        }
+        long deadline = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        int spins = 0;
+        while (true) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            e = poll();
+            if (e != null) {
+                return e;
+            }
+            long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            switch (waitStrategy) {
+                case BUSY_SPIN:
+                    break;
+                case YIELD:
+                    if (++spins > YIELD_SPIN_TRIES) {
+                        Thread.yield();
+                    }
+                    break;
+                default:
+                    if (++spins > SPIN_TRIES) {
+                        e = park(Math.min(remaining, MAX_PARK_NANOS));
+                        if (e != null) {
+                            return e;
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 登记后再检查一次队列，确保挂起前写入的元素不会错过唤醒
+     */
+    private E park(long nanos) {
+        Thread current = Thread.currentThread();
+        waiters.offer(current);
+        E e = poll();
+        if (e == null) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        waiters.remove(current);
+        return e;
+    }
+
+    /**
+     * 唤醒一个挂起的消费者
+     */
+    private void signal() {
+        if (waitStrategy == WaitStrategy.PARK && !waiters.isEmpty()) {
+            Thread waiter = waiters.poll();
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (!offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+            throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        long deadline = nanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + nanos;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        retry:
+        while (true) {
+            long h = head.get();
+            for (long pos = h; ; pos++) {
+                int index = (int) pos & mask;
+                if (sequences.get(index) != pos + 1) {
+                    if (head.get() != h) {
+                        continue retry;
+                    }
+                    return null;
+                }
+                Object e = buffer.get(index);
+                if (head.get() != h) {
+                    // 读取期间槽位已被消费，重读
+                    continue retry;
+                }
+                if (e != REMOVED && e != null) {
+                    return (E) e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            long r = removed.get();
+            if (h == head.get()) {
+                return (int) Math.max(0, Math.min(buffer.length(), t - h - r));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return peek() == null;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    /**
+     * 移除一个与o相等的元素，线程池在 remove/purge 和关闭时撤回任务时调用
+     * 从队头向队尾扫描已发布的槽位，以CAS把元素替换为占位，与消费者并发时只有一方成功
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        long t = tail.get();
+        for (long pos = head.get(); pos < t; pos++) {
+            int index = (int) pos & mask;
+            if (sequences.get(index) != pos + 1) {
+                continue;
+            }
+            Object e = buffer.get(index);
+            if (e != null && e != REMOVED && o.equals(e) && buffer.compareAndSet(index, e, REMOVED)) {
+                removed.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 弱一致的快照迭代器，不支持移除
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long h = head.get();
+        long t = tail.get();
+        for (long pos = h; pos < t; pos++) {
+            int index = (int) pos & mask;
+            Object e = buffer.get(index);
+            if (e != null && e != REMOVED && sequences.get(index) == pos + 1) {
+                snapshot.add((E) e);
+            }
+        }
+        Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+        };
+    }
+}
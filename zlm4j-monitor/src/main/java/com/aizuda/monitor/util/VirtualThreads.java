@@ -0,0 +1,30 @@
+package com.aizuda.monitor.util;
+
+/**
+ * 虚拟线程支持
+ * 本类为JDK 8的实现，不支持虚拟线程；
+ * JDK 21及以上由多版本JAR中 META-INF/versions/21 下的同名类替换
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * 创建未启动的虚拟线程
+     *
+     * @param name 线程名
+     * @param task 线程任务
+     * @throws UnsupportedOperationException 当前运行时不支持虚拟线程
+     */
+    public static Thread newThread(String name, Runnable task) {
+        throw new UnsupportedOperationException("当前JDK不支持虚拟线程: " + System.getProperty("java.version"));
+    }
+}
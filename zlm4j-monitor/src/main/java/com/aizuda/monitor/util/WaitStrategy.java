@@ -0,0 +1,28 @@
+package com.aizuda.monitor.util;
+
+/**
+ * 消费者等待策略
+ * 队列为空时工作线程的等待方式，在唤醒延迟和空闲CPU占用之间取舍
+ */
+public enum WaitStrategy {
+    /** 忙等，延迟最低，空闲时每个工作线程占满一个CPU核心 */
+    BUSY_SPIN,
+
+    /** 自旋后让出CPU，延迟较低，空闲时仍有一定CPU占用 */
+    YIELD,
+
+    /** 短暂自旋后挂起，由生产者唤醒，空闲时不占用CPU */
+    PARK;
+
+    /**
+     * 按名称解析，忽略大小写，支持中划线
+     *
+     * @throws IllegalArgumentException 未知的策略名
+     */
+    public static WaitStrategy of(String name) {
+        if (name == null || name.isEmpty()) {
+            return PARK;
+        }
+        return valueOf(name.trim().replace('-', '_').toUpperCase());
+    }
+}
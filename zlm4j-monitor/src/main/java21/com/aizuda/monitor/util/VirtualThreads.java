@@ -0,0 +1,28 @@
+package com.aizuda.monitor.util;
+
+/**
+ * 虚拟线程支持
+ * JDK 21及以上的实现，打包到多版本JAR的 META-INF/versions/21 下
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * 创建未启动的虚拟线程
+     *
+     * @param name 线程名
+     * @param task 线程任务
+     */
+    public static Thread newThread(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).unstarted(task);
+    }
+}
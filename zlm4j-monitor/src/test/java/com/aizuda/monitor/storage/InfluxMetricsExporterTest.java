@@ -0,0 +1,182 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.SystemMetrics;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * InfluxDB导出器写入本地HTTP服务，校验请求头和行协议请求体
+ */
+class InfluxMetricsExporterTest {
+
+    private HttpServer server;
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/write", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            requests.add(new Request(exchange.getRequestHeaders().getFirst("Content-Encoding"),
+                exchange.getRequestHeaders().getFirst("Authorization"), body));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void postsGzippedLineProtocol() throws Exception {
+        MonitorConfig.InfluxConfig config = new MonitorConfig.InfluxConfig();
+        config.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/write?db=zlm&precision=ns");
+        config.setToken("secret");
+        config.setFlushInterval(50);
+        config.getTags().put("node", "edge 1");
+
+        SystemMetrics metrics = new SystemMetrics();
+        metrics.reset();
+        metrics.addTag("host", "a=b");
+        metrics.setMetric("cpu.usage", 12.5);
+        metrics.setMetric("memory.used", 1024L);
+        metrics.setTimestamp(1700000000123L);
+
+        InfluxMetricsExporter exporter = new InfluxMetricsExporter(config);
+        exporter.init();
+        exporter.start();
+        try {
+            exporter.exportSystem(metrics);
+            Request request = requests.poll(5, TimeUnit.SECONDS);
+            assertNotNull(request, "未收到写入请求");
+            assertEquals("gzip", request.encoding);
+            assertEquals("Token secret", request.authorization);
+
+            String body = new String(gunzip(request.body), StandardCharsets.UTF_8);
+            String head = "zlm_system,node=edge\\ 1,host=a\\=b ";
+            String tail = " 1700000000123000000\n";
+            assertTrue(body.startsWith(head), body);
+            assertTrue(body.endsWith(tail), body);
+            String fields = body.substring(head.length(), body.length() - tail.length());
+            assertEquals(new HashSet<>(Arrays.asList("cpu.usage=12.5", "memory.used=1024i")),
+                new HashSet<>(Arrays.asList(fields.split(","))), body);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    @Test
+    void writesStreamEventsAfterTheirTick() throws Exception {
+        MonitorConfig.InfluxConfig config = new MonitorConfig.InfluxConfig();
+        config.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/write");
+        config.setFlushInterval(50);
+
+        StreamMetrics metrics = new StreamMetrics();
+        metrics.reset();
+        metrics.getEvents().add(new StreamEvent(StreamEventType.ANOMALY_START, null, "__defaultVhost__", "live", "cam 1",
+            -1, "stream.bytes_speed", 10, 5000, -4.5, 1700000000100L));
+        metrics.getEvents().add(new StreamEvent(StreamEventType.STALL_START, null, "__defaultVhost__", "live", "cam2",
+            0, null, 0, 25, 0, 1700000000200L));
+
+        InfluxMetricsExporter exporter = new InfluxMetricsExporter(config);
+        exporter.init();
+        exporter.start();
+        try {
+            exporter.exportStream(metrics);
+            Request request = requests.poll(5, TimeUnit.SECONDS);
+            assertNotNull(request, "只有事件的采集同样应写出");
+            String body = new String(gunzip(request.body), StandardCharsets.UTF_8);
+            assertEquals("zlm_event,type=ANOMALY_START,vhost=__defaultVhost__,app=live,stream=cam\\ 1,"
+                    + "metric=stream.bytes_speed value=10.0,expected=5000.0,score=-4.5 1700000000100000000\n"
+                    + "zlm_event,type=STALL_START,vhost=__defaultVhost__,app=live,stream=cam2,track=0 "
+                    + "value=0.0,expected=25.0,score=0.0 1700000000200000000\n",
+                body);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    @Test
+    void replaysSpooledAnomalyEvents() throws Exception {
+        MonitorConfig.InfluxConfig config = new MonitorConfig.InfluxConfig();
+        config.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/write");
+
+        StreamMetrics metrics = new StreamMetrics();
+        metrics.reset();
+        metrics.setMetric(StreamMetrics.MetricNames.STREAM_COUNT, 1);
+        metrics.setTimestamp(1700000000000L);
+        metrics.getEvents().add(new StreamEvent(StreamEventType.ANOMALY_END, null, "__defaultVhost__", "live", "cam",
+            -1, "stream.total_reader_count", 40, 42, -0.5, 1700000000050L));
+
+        InfluxMetricsExporter exporter = new InfluxMetricsExporter(config);
+        exporter.init();
+        exporter.start();
+        try {
+            // 写入暂存区后补发
+            exporter.deliver(SpoolCodec.decode(SpoolCodec.encode(metrics)));
+            Request request = requests.poll(5, TimeUnit.SECONDS);
+            assertNotNull(request, "未收到补发请求");
+            String[] lines = new String(gunzip(request.body), StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, lines.length);
+            assertEquals("zlm_stream stream.count=1i 1700000000000000000", lines[0]);
+            assertEquals("zlm_event,type=ANOMALY_END,vhost=__defaultVhost__,app=live,stream=cam,"
+                + "metric=stream.total_reader_count value=40.0,expected=42.0,score=-0.5 1700000000050000000", lines[1]);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class Request {
+        private final String encoding;
+        private final String authorization;
+        private final byte[] body;
+
+        Request(String encoding, String authorization, byte[] body) {
+            this.encoding = encoding;
+            this.authorization = authorization;
+            this.body = body;
+        }
+    }
+}
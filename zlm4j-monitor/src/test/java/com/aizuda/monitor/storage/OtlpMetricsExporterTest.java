@@ -0,0 +1,361 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.config.MonitorConfig;
+import com.aizuda.monitor.metrics.NetworkMetrics;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OTLP导出器写入本地接收端，按OTLP protobuf定义解码请求体，校验指标类型、时间性和数据点
+ */
+class OtlpMetricsExporterTest {
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private HttpServer server;
+    private final BlockingQueue<byte[]> requests = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/metrics", exchange -> {
+            byte[] body = readAll(exchange.getRequestBody());
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = readAll(new GZIPInputStream(new ByteArrayInputStream(body)));
+            }
+            requests.add(body);
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void exportsCountersAsCumulativeSumsAndPerTrackValuesAsGauges() throws Exception {
+        OtlpMetricsExporter exporter = new OtlpMetricsExporter(config("cumulative"));
+        exporter.init();
+        exporter.start();
+        try {
+            long time = System.currentTimeMillis() + 1000;
+            NetworkMetrics network = new NetworkMetrics();
+            network.reset();
+            network.setMetric(NetworkMetrics.MetricNames.BYTES_IN, 100L);
+            network.setMetric(NetworkMetrics.MetricNames.ACTIVE_CONNECTIONS, 5);
+            network.setTimestamp(time);
+            StreamMetrics stream = new StreamMetrics();
+            stream.reset();
+            stream.setMetric(StreamMetrics.MetricNames.VIDEO_KEY_FRAMES, 3L);
+            stream.setTimestamp(time);
+            exporter.exportNetwork(network);
+            exporter.exportStream(stream);
+
+            Map<String, Metric> metrics = receive(3);
+            Metric bytesIn = metrics.get("zlm.network.bytes.in");
+            assertEquals(7, bytesIn.dataField);
+            assertEquals(2, bytesIn.temporality);
+            assertTrue(bytesIn.monotonic);
+            assertEquals(100L, bytesIn.intValue);
+            assertEquals(time * NANOS_PER_MILLI, bytesIn.time);
+            assertTrue(bytesIn.start > 0 && bytesIn.start < bytesIn.time);
+
+            Metric connections = metrics.get("zlm.network.active.connections");
+            assertEquals(5, connections.dataField);
+            assertEquals(5L, connections.intValue);
+            assertEquals(0L, connections.start);
+
+            Metric keyFrames = metrics.get("zlm.stream.video.key_frames");
+            assertEquals(5, keyFrames.dataField, "按轨道覆盖的值应导出为Gauge");
+            assertEquals(3L, keyFrames.intValue);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    @Test
+    void replayedTicksDoNotMoveLiveDeltaBaselines() throws Exception {
+        OtlpMetricsExporter exporter = new OtlpMetricsExporter(config("delta"));
+        exporter.init();
+        exporter.start();
+        try {
+            long t1 = System.currentTimeMillis() + 60000;
+            exporter.exportNetwork(network(t1, 100L));
+            Map<String, Metric> first = receive(1);
+            assertFalse(first.containsKey("zlm.network.bytes.in"), "首个数据点只作为基准");
+
+            exporter.exportNetwork(network(t1 + 1000, 150L));
+            Metric live = receive(2).get("zlm.network.bytes.in");
+            assertEquals(1, live.temporality);
+            assertEquals(50L, live.intValue);
+            assertEquals(t1 * NANOS_PER_MILLI, live.start);
+
+            // 补发更早的采集
+            long t0 = t1 - 30000;
+            exporter.deliver(network(t0, 10L));
+            assertFalse(receive(1).containsKey("zlm.network.bytes.in"));
+            exporter.deliver(network(t0 + 1000, 30L));
+            Metric replayed = receive(2).get("zlm.network.bytes.in");
+            assertEquals(20L, replayed.intValue);
+            assertEquals(t0 * NANOS_PER_MILLI, replayed.start);
+
+            exporter.exportNetwork(network(t1 + 2000, 190L));
+            Metric next = receive(2).get("zlm.network.bytes.in");
+            assertEquals(40L, next.intValue);
+            assertEquals((t1 + 1000) * NANOS_PER_MILLI, next.start);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    @Test
+    void histogramPointsStartAtThePreviousPointOfTheSeries() throws Exception {
+        OtlpMetricsExporter exporter = new OtlpMetricsExporter(config("cumulative"));
+        exporter.init();
+        exporter.start();
+        try {
+            long t1 = System.currentTimeMillis() + 1000;
+            exporter.exportNetwork(histogram(t1));
+            Metric first = receive(1).get("zlm.network.latency.distribution");
+            assertEquals(10, first.dataField);
+            assertEquals(t1 * NANOS_PER_MILLI, first.time);
+            assertTrue(first.start > 0 && first.start < first.time, "首个数据点从导出器启动时开始");
+
+            exporter.exportNetwork(histogram(t1 + 5000));
+            Metric second = receive(1).get("zlm.network.latency.distribution");
+            assertEquals((t1 + 5000) * NANOS_PER_MILLI, second.time);
+            assertEquals(t1 * NANOS_PER_MILLI, second.start);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    @Test
+    void exportsStreamEventsAsGaugesAtDetectionTime() throws Exception {
+        OtlpMetricsExporter exporter = new OtlpMetricsExporter(config("cumulative"));
+        exporter.init();
+        exporter.start();
+        try {
+            long detected = System.currentTimeMillis();
+            StreamMetrics stream = new StreamMetrics();
+            stream.reset();
+            stream.getEvents().add(new StreamEvent(StreamEventType.ANOMALY_START, null, "__defaultVhost__", "live",
+                "cam", -1, "stream.bytes_speed", 10, 5000, -4.5, detected));
+            exporter.exportStream(stream);
+
+            Map<String, Metric> metrics = receive(3);
+            Metric score = metrics.get("zlm.stream.event.score");
+            assertEquals(5, score.dataField);
+            assertEquals(-4.5, score.doubleValue);
+            assertEquals(detected * NANOS_PER_MILLI, score.time);
+            assertEquals("ANOMALY_START", score.attributes.get("type"));
+            assertEquals("cam", score.attributes.get("stream"));
+            assertEquals("stream.bytes_speed", score.attributes.get("metric"));
+            assertFalse(score.attributes.containsKey("schema"));
+            assertEquals(5000.0, metrics.get("zlm.stream.event.expected").doubleValue);
+            assertEquals(10.0, metrics.get("zlm.stream.event.value").doubleValue);
+        } finally {
+            exporter.stop();
+        }
+    }
+
+    private static NetworkMetrics histogram(long time) {
+        NetworkMetrics metrics = new NetworkMetrics();
+        metrics.reset();
+        metrics.recordDistribution("latency", 12);
+        metrics.setTimestamp(time);
+        return metrics;
+    }
+
+    private MonitorConfig.OtlpConfig config(String temporality) {
+        MonitorConfig.OtlpConfig config = new MonitorConfig.OtlpConfig();
+        config.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/metrics");
+        config.setTemporality(temporality);
+        config.setFlushInterval(50);
+        return config;
+    }
+
+    private static NetworkMetrics network(long time, long bytesIn) {
+        NetworkMetrics metrics = new NetworkMetrics();
+        metrics.reset();
+        metrics.setMetric(NetworkMetrics.MetricNames.BYTES_IN, bytesIn);
+        metrics.setMetric(NetworkMetrics.MetricNames.ACTIVE_CONNECTIONS, 1);
+        metrics.setTimestamp(time);
+        return metrics;
+    }
+
+    /**
+     * 接收请求直到解码出指定数量的Metric
+     */
+    private Map<String, Metric> receive(int count) throws Exception {
+        Map<String, Metric> metrics = new LinkedHashMap<>();
+        while (metrics.size() < count) {
+            byte[] body = requests.poll(5, TimeUnit.SECONDS);
+            assertNotNull(body, "未收到写入请求, 已收到: " + metrics.keySet());
+            // ExportMetricsServiceRequest.resource_metrics -> ResourceMetrics.scope_metrics -> ScopeMetrics.metrics
+            for (byte[] resourceMetrics : Proto.parse(body).bytes(1)) {
+                for (byte[] scopeMetrics : Proto.parse(resourceMetrics).bytes(2)) {
+                    for (byte[] metric : Proto.parse(scopeMetrics).bytes(2)) {
+                        Metric decoded = Metric.decode(metric);
+                        metrics.put(decoded.name, decoded);
+                    }
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 解码后的Metric，只取测试关心的字段
+     */
+    private static final class Metric {
+        private String name;
+        /** Gauge为5，Sum为7，ExponentialHistogram为10 */
+        private int dataField;
+        private long temporality;
+        private boolean monotonic;
+        private long start;
+        private long time;
+        private long intValue;
+        private double doubleValue;
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+
+        static Metric decode(byte[] bytes) {
+            Proto metric = Proto.parse(bytes);
+            Metric decoded = new Metric();
+            decoded.name = new String(metric.bytes(1).get(0), StandardCharsets.UTF_8);
+            Proto data;
+            if (!metric.bytes(10).isEmpty()) {
+                decoded.dataField = 10;
+                data = Proto.parse(metric.bytes(10).get(0));
+            } else if (!metric.bytes(7).isEmpty()) {
+                decoded.dataField = 7;
+                data = Proto.parse(metric.bytes(7).get(0));
+                decoded.temporality = data.number(2);
+                decoded.monotonic = data.number(3) == 1;
+            } else {
+                decoded.dataField = 5;
+                data = Proto.parse(metric.bytes(5).get(0));
+            }
+            Proto point = Proto.parse(data.bytes(1).get(0));
+            decoded.start = point.number(2);
+            decoded.time = point.number(3);
+            decoded.intValue = point.number(6);
+            decoded.doubleValue = Double.longBitsToDouble(point.number(4));
+            // NumberDataPoint.attributes: KeyValue{key=1, value=AnyValue{string_value=1}}
+            for (byte[] attribute : decoded.dataField == 10 ? Collections.<byte[]>emptyList() : point.bytes(7)) {
+                Proto keyValue = Proto.parse(attribute);
+                decoded.attributes.put(new String(keyValue.bytes(1).get(0), StandardCharsets.UTF_8),
+                    new String(Proto.parse(keyValue.bytes(2).get(0)).bytes(1).get(0), StandardCharsets.UTF_8));
+            }
+            return decoded;
+        }
+    }
+
+    /**
+     * 最小的protobuf解码器，按字段号收集varint、fixed64和length-delimited字段
+     */
+    private static final class Proto {
+        private final Map<Integer, List<Object>> fields = new LinkedHashMap<>();
+
+        static Proto parse(byte[] bytes) {
+            Proto proto = new Proto();
+            int[] pos = {0};
+            while (pos[0] < bytes.length) {
+                long key = varint(bytes, pos);
+                int field = (int) (key >>> 3);
+                Object value;
+                switch ((int) (key & 7)) {
+                    case 0:
+                        value = varint(bytes, pos);
+                        break;
+                    case 1:
+                        long fixed = 0;
+                        for (int i = 0; i < 8; i++) {
+                            fixed |= (bytes[pos[0] + i] & 0xFFL) << (8 * i);
+                        }
+                        pos[0] += 8;
+                        value = fixed;
+                        break;
+                    case 2:
+                        int length = (int) varint(bytes, pos);
+                        byte[] nested = new byte[length];
+                        System.arraycopy(bytes, pos[0], nested, 0, length);
+                        pos[0] += length;
+                        value = nested;
+                        break;
+                    case 5:
+                        pos[0] += 4;
+                        continue;
+                    default:
+                        throw new IllegalStateException("不支持的wire type: " + (key & 7));
+                }
+                proto.fields.computeIfAbsent(field, k -> new ArrayList<>()).add(value);
+            }
+            return proto;
+        }
+
+        List<byte[]> bytes(int field) {
+            List<byte[]> values = new ArrayList<>();
+            for (Object value : fields.getOrDefault(field, Collections.emptyList())) {
+                values.add((byte[]) value);
+            }
+            return values;
+        }
+
+        long number(int field) {
+            List<Object> values = fields.get(field);
+            return values == null ? 0L : (Long) values.get(0);
+        }
+
+        private static long varint(byte[] bytes, int[] pos) {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos[0]++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
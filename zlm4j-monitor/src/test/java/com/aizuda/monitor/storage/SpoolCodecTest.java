@@ -0,0 +1,80 @@
+package com.aizuda.monitor.storage;
+
+import com.aizuda.monitor.metrics.Metrics;
+import com.aizuda.monitor.metrics.StreamEvent;
+import com.aizuda.monitor.metrics.StreamMetrics;
+import com.aizuda.monitor.metrics.StreamSample;
+import com.aizuda.monitor.metrics.SystemMetrics;
+import com.aizuda.monitor.metrics.enums.StreamEventType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 暂存记录编解码往返
+ */
+class SpoolCodecTest {
+
+    @Test
+    void roundTripsValuesDistributionsSamplesAndEvents() throws IOException {
+        StreamMetrics metrics = new StreamMetrics();
+        metrics.reset();
+        metrics.setTimestamp(1700000000123L);
+        metrics.addTag("node", "edge-1");
+        metrics.setMetric("stream.count", 2L);
+        metrics.setMetric("stream.bitrate.p50", 1.5);
+        metrics.recordDistribution("stream.bitrate", 1000);
+        metrics.recordDistribution("stream.bitrate", 2000);
+        metrics.addStreamSample(new StreamSample("rtmp", "__defaultVhost__", "live", "a", 3, 10, 4096, 60));
+        metrics.addStreamSample(new StreamSample("rtsp", null, "live", "b", 0, 0, 0, 1));
+        metrics.getEvents().add(new StreamEvent(StreamEventType.STALL_START, "rtmp", "__defaultVhost__", "live", "a",
+            0, null, 0, 25, 0, 1700000000100L));
+        metrics.getEvents().add(new StreamEvent(StreamEventType.ANOMALY_START, null, "__defaultVhost__", "live", "a",
+            -1, "stream.bytes_speed", 10, 5000, -4.2, 1700000000110L));
+
+        Metrics decoded = SpoolCodec.decode(SpoolCodec.encode(metrics));
+
+        assertTrue(decoded instanceof StreamMetrics);
+        assertEquals(1700000000123L, decoded.getTimestamp());
+        assertEquals(metrics.getTags(), decoded.getTags());
+        assertEquals(metrics.getValues(), decoded.getValues());
+        assertEquals(2, decoded.getDistributions().get("stream.bitrate").getCount());
+
+        StreamMetrics stream = (StreamMetrics) decoded;
+        assertEquals(2, stream.getStreamSamples().size());
+        assertEquals(metrics.getStreamSamples().get(0).getTags(), stream.getStreamSamples().get(0).getTags());
+        assertEquals(metrics.getStreamSamples().get(0).getValues(), stream.getStreamSamples().get(0).getValues());
+        assertNull(stream.getStreamSamples().get(1).getVhost());
+
+        assertEquals(2, decoded.getEvents().size());
+        for (int i = 0; i < 2; i++) {
+            StreamEvent expected = metrics.getEvents().get(i);
+            StreamEvent actual = decoded.getEvents().get(i);
+            assertEquals(expected.toString(), actual.toString());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getScore(), actual.getScore());
+        }
+    }
+
+    @Test
+    void keepsMoreThan65535Values() throws IOException {
+        SystemMetrics metrics = new SystemMetrics();
+        metrics.reset();
+        for (int i = 0; i < 70000; i++) {
+            metrics.setMetric("v" + i, i);
+        }
+        assertEquals(70000, SpoolCodec.decode(SpoolCodec.encode(metrics)).getValues().size());
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws IOException {
+        byte[] data = SpoolCodec.encode(new SystemMetrics());
+        data[0] = 0;
+        assertThrows(IOException.class, () -> SpoolCodec.decode(data));
+    }
+}
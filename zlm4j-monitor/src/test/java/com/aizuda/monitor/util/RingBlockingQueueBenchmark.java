@@ -0,0 +1,68 @@
+package com.aizuda.monitor.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作队列的多生产者多消费者吞吐，对比 {@link RingBlockingQueue} 与 {@link ArrayBlockingQueue}
+ * 生产者按线程池提交任务的方式非阻塞写入，队列满时让出CPU后重试；
+ * 消费者按工作线程取任务的方式限时等待，队列为空时走等待策略(ring为PARK)或条件变量(array)
+ *
+ * 运行: mvn test-compile 后以测试类路径执行 org.openjdk.jmh.Main RingBlockingQueueBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class RingBlockingQueueBenchmark {
+    private static final Integer ITEM = 1;
+
+    @Param({"ring", "array"})
+    public String queue;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private BlockingQueue<Integer> workQueue;
+
+    @Setup
+    public void setUp() {
+        workQueue = "ring".equals(queue)
+            ? new RingBlockingQueue<>(capacity, WaitStrategy.PARK)
+            : new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(4)
+    public void offer() {
+        while (!workQueue.offer(ITEM)) {
+            Thread.yield();
+        }
+    }
+
+    @Benchmark
+    @Group("mpmc")
+    @GroupThreads(4)
+    public void poll(Blackhole blackhole) throws InterruptedException {
+        blackhole.consume(workQueue.poll(1, TimeUnit.MILLISECONDS));
+    }
+}
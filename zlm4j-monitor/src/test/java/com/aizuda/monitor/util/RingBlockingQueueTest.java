@@ -0,0 +1,114 @@
+package com.aizuda.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 环形队列的移除、线程池撤回任务和多生产者多消费者正确性
+ */
+class RingBlockingQueueTest {
+
+    @Test
+    void removeSkipsElementOnPoll() {
+        RingBlockingQueue<String> queue = new RingBlockingQueue<>(8, WaitStrategy.PARK);
+        queue.offer("a");
+        queue.offer("b");
+        queue.offer("c");
+
+        assertTrue(queue.remove("b"));
+        assertFalse(queue.remove("b"));
+        assertFalse(queue.remove("x"));
+        assertEquals(2, queue.size());
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(queue));
+
+        assertTrue(queue.remove("a"));
+        assertEquals(1, queue.size());
+        assertEquals("c", queue.peek());
+        assertEquals("c", queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.size());
+
+        queue.offer("d");
+        assertTrue(queue.remove("d"));
+        assertTrue(queue.isEmpty(), "只剩占位时线程池按空队列处理");
+    }
+
+    @Test
+    void threadPoolRemoveWithdrawsQueuedTask() throws InterruptedException {
+        RingBlockingQueue<Runnable> queue = new RingBlockingQueue<>(8, WaitStrategy.PARK);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong ran = new AtomicLong();
+        try {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Runnable queued = ran::incrementAndGet;
+            executor.execute(queued);
+            assertTrue(executor.remove(queued));
+            release.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    void parkedConsumersSeeEveryElement() throws InterruptedException {
+        RingBlockingQueue<Long> queue = new RingBlockingQueue<>(64, WaitStrategy.PARK);
+        int producers = 4;
+        int perProducer = 100_000;
+        AtomicLong received = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (received.get() < (long) producers * perProducer) {
+                        Long value = queue.poll(10, TimeUnit.MILLISECONDS);
+                        if (value != null) {
+                            sum.addAndGet(value);
+                            received.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    while (!queue.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(30_000);
+            assertFalse(thread.isAlive());
+        }
+        assertEquals((long) producers * perProducer, received.get());
+        assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sum.get());
+    }
+}